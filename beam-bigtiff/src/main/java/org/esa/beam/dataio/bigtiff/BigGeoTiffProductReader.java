@@ -16,6 +16,7 @@ import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageMetadata;
 import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageReader;
 import it.geosolutions.imageioimpl.plugins.tiff.TIFFRenderedImage;
 import org.esa.beam.dataio.bigtiff.internal.GeoKeyEntry;
+import org.esa.beam.dataio.bigtiff.internal.TiffTileReader;
 import org.esa.beam.dataio.dimap.DimapProductHelpers;
 import org.esa.beam.framework.dataio.AbstractProductReader;
 import org.esa.beam.framework.dataio.ProductReaderPlugIn;
@@ -66,6 +67,8 @@ class BigGeoTiffProductReader extends AbstractProductReader {
 
     private ImageInputStream inputStream;
     private TIFFImageReader imageReader;
+    private volatile TiffTileReader tileReader;
+    private volatile boolean closed;
     private Map<Band, Integer> bandMap;
     private boolean isGlobalShifted180;
 
@@ -97,6 +100,16 @@ class BigGeoTiffProductReader extends AbstractProductReader {
                     destWidth, destHeight, destBuffer, pm);
         } else {
             // the normal case!!
+            final TiffTileReader reader = tileReader;
+            if (reader != null) {
+                readBandRasterDataFromTiles(reader, sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY,
+                                            destBand, destWidth, destHeight, destBuffer, pm);
+                return;
+            }
+            if (closed) {
+                // the tile reader has been removed by close()
+                throw new IOException("Product reader has been closed: " + getInput());
+            }
             final int destSize = destWidth * destHeight;
             pm.beginTask("Reading data...", 3);
             try {
@@ -141,6 +154,24 @@ class BigGeoTiffProductReader extends AbstractProductReader {
         }
     }
 
+    private void readBandRasterDataFromTiles(TiffTileReader reader,
+                                             int sourceOffsetX, int sourceOffsetY, int sourceStepX, int sourceStepY,
+                                             Band destBand, int destWidth, int destHeight,
+                                             ProductData destBuffer, ProgressMonitor pm) throws IOException {
+        pm.beginTask("Reading data...", 1);
+        try {
+            Integer bandIdx = bandMap.get(destBand);
+            if (bandIdx == null) {
+                bandIdx = 0;
+            }
+            reader.readRect(bandIdx, sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY,
+                            destWidth, destHeight, destBuffer);
+            pm.worked(1);
+        } finally {
+            pm.done();
+        }
+    }
+
     private void readBandRasterDataImplGlobalShifted180(int sourceOffsetX, int sourceOffsetY,
                                                         int sourceStepX, int sourceStepY,
                                                         Band destBand,
@@ -202,8 +233,14 @@ class BigGeoTiffProductReader extends AbstractProductReader {
 
     @Override
     public synchronized void close() throws IOException {
+        closed = true;
         super.close();
         inputStream.close();
+        final TiffTileReader reader = tileReader;
+        if (reader != null) {
+            tileReader = null;
+            reader.close();
+        }
     }
 
     Product readGeoTIFFProduct(final ImageInputStream stream, final File inputFile) throws IOException {
@@ -236,9 +273,34 @@ class BigGeoTiffProductReader extends AbstractProductReader {
 
         TiffToProductMetadataConverter.addTiffTagsToMetadata(imageMetadata, tiffFileInfo, product.getMetadataRoot());
 
+        if (inputFile != null && !isGlobalShifted180) {
+            tileReader = openTileReader(inputFile);
+        }
+
         return product;
     }
 
+    /**
+     * Opens a reader which reads and decodes the tiles of the file concurrently. The image reader is
+     * still used for the image pyramid and for layouts the tile reader does not support.
+     */
+    private TiffTileReader openTileReader(File inputFile) {
+        try {
+            final TiffTileReader reader = TiffTileReader.open(inputFile);
+            if (reader != null) {
+                if (reader.getWidth() == imageReader.getWidth(FIRST_IMAGE)
+                        && reader.getHeight() == imageReader.getHeight(FIRST_IMAGE)
+                        && reader.getNumBands() == imageReader.getRawImageType(FIRST_IMAGE).getNumBands()) {
+                    return reader;
+                }
+                reader.close();
+            }
+        } catch (IOException e) {
+            BeamLogManager.getSystemLogger().log(Level.WARNING, "Failed to open TIFF tile reader: " + e.getMessage(), e);
+        }
+        return null;
+    }
+
     private Product createProduct(File inputFile, TiffFileInfo tiffFileInfo) throws IOException {
         Product product;
         final String productName = getProductName(inputFile, tiffFileInfo);
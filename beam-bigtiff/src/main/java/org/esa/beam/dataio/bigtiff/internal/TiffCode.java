@@ -25,7 +25,7 @@ package org.esa.beam.dataio.bigtiff.internal;
  * @author Norman Fomferra
  * @version $Revision: 2182 $ $Date: 2008-06-12 11:09:11 +0200 (Do, 12 Jun 2008) $
  */
-class TiffCode {
+public class TiffCode {
 
     // Compression Codes
     public static final int COMPRESSION_UNCOMPRESSED = 1;
@@ -33,6 +33,7 @@ class TiffCode {
     public static final int COMPRESSION_GROUP3_FAX = 3;
     public static final int COMPRESSION_GROUP4_FAX = 4;
     public static final int COMPRESSION_LZW = 5;
+    public static final int COMPRESSION_DEFLATE = 8;
     public static final int COMPRESSION_PACKBITS = 32773;
 
     // PhotometricInterpretaion Codes
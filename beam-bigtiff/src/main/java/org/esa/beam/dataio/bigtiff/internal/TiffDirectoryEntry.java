@@ -55,6 +55,17 @@ public class TiffDirectoryEntry {
         return values;
     }
 
+    public TiffShort getType() {
+        return type;
+    }
+
+    /**
+     * @return the number of values, or the number of bytes if the values are ASCII
+     */
+    public long getCount() {
+        return count.getValue();
+    }
+
     public void write(final ImageOutputStream ios) throws IOException {
         if (mustValuesBeReferenced() && valuesOffset == null) {
             throw new IllegalStateException("no value offset given");
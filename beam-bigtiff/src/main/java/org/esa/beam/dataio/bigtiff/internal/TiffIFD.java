@@ -52,6 +52,24 @@ public class TiffIFD {
     public TiffIFD(final Product product) {
         entrySet = new TiffDirectoryEntrySet();
         initEntrys(product);
+        initStripEntrys();
+    }
+
+    /**
+     * Creates the IFD of a tiled image. The tile offsets and byte counts are not part of the IFD, they are
+     * added when the IFD is written by the {@link TiffTileWriter}.
+     *
+     * @param product     the product
+     * @param tileWidth   the tile width, a multiple of 16
+     * @param tileHeight  the tile height, a multiple of 16
+     * @param compression the compression code
+     */
+    public TiffIFD(final Product product, final int tileWidth, final int tileHeight, final int compression) {
+        entrySet = new TiffDirectoryEntrySet();
+        initEntrys(product);
+        setEntry(new TiffDirectoryEntry(TiffTag.COMPRESSION, new TiffShort(compression)));
+        setEntry(new TiffDirectoryEntry(TiffTag.TILE_WIDTH, new TiffUInt(tileWidth)));
+        setEntry(new TiffDirectoryEntry(TiffTag.TILE_LENGTH, new TiffUInt(tileHeight)));
     }
 
     public void write(final ImageOutputStream ios, final long ifdOffset, final long nextIfdOffset) throws IOException {
@@ -83,6 +101,10 @@ public class TiffIFD {
         return entrySet.getEntry(tag);
     }
 
+    public TiffDirectoryEntry[] getEntries() {
+        return entrySet.getEntries();
+    }
+
     public long getRequiredIfdSize() {
         final TiffDirectoryEntry[] entries = entrySet.getEntries();
         return BYTES_FOR_NUMBER_OF_ENTRIES + entries.length * TiffDirectoryEntry.BYTES_PER_ENTRY + BYTES_FOR_NEXT_IFD_OFFSET;
@@ -159,10 +181,6 @@ public class TiffIFD {
         setEntry(new TiffDirectoryEntry(TiffTag.IMAGE_DESCRIPTION, new TiffAscii(product.getName())));
         setEntry(new TiffDirectoryEntry(TiffTag.SAMPLES_PER_PIXEL, new TiffShort(getNumBands(product))));
 
-        setEntry(new TiffDirectoryEntry(TiffTag.STRIP_OFFSETS, calculateStripOffsets()));
-        setEntry(new TiffDirectoryEntry(TiffTag.ROWS_PER_STRIP, new TiffUInt(height)));
-        setEntry(new TiffDirectoryEntry(TiffTag.STRIP_BYTE_COUNTS, calculateStripByteCounts()));
-
         setEntry(new TiffDirectoryEntry(TiffTag.X_RESOLUTION, new TiffRational(1, 1)));
         setEntry(new TiffDirectoryEntry(TiffTag.Y_RESOLUTION, new TiffRational(1, 1)));
         setEntry(new TiffDirectoryEntry(TiffTag.RESOLUTION_UNIT, new TiffShort(1)));
@@ -185,6 +203,12 @@ public class TiffIFD {
         addGeoTiffTags(product);
     }
 
+    private void initStripEntrys() {
+        setEntry(new TiffDirectoryEntry(TiffTag.STRIP_OFFSETS, calculateStripOffsets()));
+        setEntry(new TiffDirectoryEntry(TiffTag.ROWS_PER_STRIP, new TiffUInt(getHeight())));
+        setEntry(new TiffDirectoryEntry(TiffTag.STRIP_BYTE_COUNTS, calculateStripByteCounts()));
+    }
+
     private static int getNumBands(Product product) {
         final Band[] bands = product.getBands();
         final List<Band> bandList = new ArrayList<>(bands.length);
@@ -427,11 +451,11 @@ public class TiffIFD {
         return getEntry(TiffTag.BITS_PER_SAMPLE).getValues();
     }
 
-    private long getHeight() {
+    long getHeight() {
         return ((TiffUInt) getEntry(TiffTag.IMAGE_LENGTH).getValues()[0]).getValue();
     }
 
-    private long getWidth() {
+    long getWidth() {
         return ((TiffUInt) getEntry(TiffTag.IMAGE_WIDTH).getValues()[0]).getValue();
     }
 
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.bigtiff.internal;
+
+import java.io.IOException;
+
+/**
+ * A decoder for the LZW compression of TIFF, the counterpart of {@link TiffLzwEncoder}. Instances are not
+ * thread safe.
+ */
+final class TiffLzwDecoder {
+
+    private static final int CLEAR_CODE = 256;
+    private static final int EOI_CODE = 257;
+    private static final int FIRST_CODE = 258;
+    private static final int TABLE_SIZE = 4096;
+
+    private final int[] prefixes;
+    private final byte[] suffixes;
+    private final byte[] firstBytes;
+    private final int[] lengths;
+
+    private byte[] input;
+    private int inputPosition;
+    private int bitBuffer;
+    private int bitCount;
+
+    TiffLzwDecoder() {
+        prefixes = new int[TABLE_SIZE];
+        suffixes = new byte[TABLE_SIZE];
+        firstBytes = new byte[TABLE_SIZE];
+        lengths = new int[TABLE_SIZE];
+        for (int i = 0; i < 256; i++) {
+            suffixes[i] = (byte) i;
+            firstBytes[i] = (byte) i;
+            lengths[i] = 1;
+        }
+    }
+
+    /**
+     * Decodes the given data into the output array. Decoding stops at the end of information code, at the end
+     * of the input, or when the output array is full, whichever comes first.
+     *
+     * @return the number of bytes decoded.
+     *
+     * @throws IOException if the data is not valid LZW.
+     */
+    int decode(byte[] data, byte[] output) throws IOException {
+        input = data;
+        inputPosition = 0;
+        bitBuffer = 0;
+        bitCount = 0;
+
+        int outputLength = 0;
+        int codeLength = 9;
+        int nextCode = FIRST_CODE;
+        int oldCode = -1;
+        while (outputLength < output.length) {
+            final int code = readCode(codeLength);
+            if (code < 0 || code == EOI_CODE) {
+                break;
+            }
+            if (code == CLEAR_CODE) {
+                nextCode = FIRST_CODE;
+                codeLength = 9;
+                oldCode = -1;
+                continue;
+            }
+            if (oldCode == -1) {
+                if (code > 255) {
+                    throw new IOException("Invalid LZW code " + code + " after clear code.");
+                }
+                output[outputLength++] = (byte) code;
+                oldCode = code;
+                continue;
+            }
+            if (code < nextCode) {
+                outputLength = writeString(code, output, outputLength);
+                addEntry(nextCode, oldCode, firstBytes[code]);
+            } else if (code == nextCode) {
+                addEntry(nextCode, oldCode, firstBytes[oldCode]);
+                outputLength = writeString(code, output, outputLength);
+            } else {
+                throw new IOException("Invalid LZW code " + code + ".");
+            }
+            oldCode = code;
+            if (nextCode < TABLE_SIZE - 1) {
+                nextCode++;
+            }
+            codeLength = getCodeLength(nextCode + 1);
+        }
+        return outputLength;
+    }
+
+    private void addEntry(int code, int prefix, byte suffix) {
+        prefixes[code] = prefix;
+        suffixes[code] = suffix;
+        firstBytes[code] = firstBytes[prefix];
+        lengths[code] = lengths[prefix] + 1;
+    }
+
+    private int writeString(int code, byte[] output, int outputLength) {
+        final int length = lengths[code];
+        // the string is collected from its end, bytes beyond the output array are dropped
+        int position = outputLength + length - 1;
+        while (position >= output.length) {
+            code = prefixes[code];
+            position--;
+        }
+        for (; position >= outputLength; position--) {
+            output[position] = suffixes[code];
+            code = prefixes[code];
+        }
+        return Math.min(output.length, outputLength + length);
+    }
+
+    private static int getCodeLength(int nextCode) {
+        if (nextCode < 512) {
+            return 9;
+        } else if (nextCode < 1024) {
+            return 10;
+        } else if (nextCode < 2048) {
+            return 11;
+        }
+        return 12;
+    }
+
+    private int readCode(int codeLength) {
+        while (bitCount < codeLength) {
+            if (inputPosition == input.length) {
+                return -1;
+            }
+            bitBuffer = (bitBuffer << 8) | (input[inputPosition++] & 0xff);
+            bitCount += 8;
+        }
+        bitCount -= codeLength;
+        return (bitBuffer >>> bitCount) & ((1 << codeLength) - 1);
+    }
+}
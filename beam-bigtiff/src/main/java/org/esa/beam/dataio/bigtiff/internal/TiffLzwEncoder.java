@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.bigtiff.internal;
+
+import java.util.Arrays;
+
+/**
+ * An encoder for the LZW compression of TIFF, with codes of 9 to 12 bits, most significant bit first, and the
+ * code length increased one code early, as TIFF readers expect. Instances are not thread safe.
+ */
+final class TiffLzwEncoder {
+
+    private static final int CLEAR_CODE = 256;
+    private static final int EOI_CODE = 257;
+    private static final int FIRST_CODE = 258;
+    private static final int MAX_CODE = 4094;
+    private static final int HASH_SIZE = 8192;
+
+    private final int[] hashKeys;
+    private final short[] hashCodes;
+
+    private byte[] output;
+    private int outputLength;
+    private long bitBuffer;
+    private int bitCount;
+
+    TiffLzwEncoder() {
+        hashKeys = new int[HASH_SIZE];
+        hashCodes = new short[HASH_SIZE];
+    }
+
+    byte[] encode(byte[] data) {
+        output = new byte[data.length / 2 + 16];
+        outputLength = 0;
+        bitBuffer = 0;
+        bitCount = 0;
+
+        int codeLength = 9;
+        int nextCode = FIRST_CODE;
+        Arrays.fill(hashKeys, -1);
+        writeCode(CLEAR_CODE, codeLength);
+        if (data.length > 0) {
+            int prefix = data[0] & 0xff;
+            for (int i = 1; i < data.length; i++) {
+                final int c = data[i] & 0xff;
+                final int key = (prefix << 8) | c;
+                int slot = (key * 0x9E3779B1 >>> 19) & (HASH_SIZE - 1);
+                while (hashKeys[slot] != -1 && hashKeys[slot] != key) {
+                    slot = (slot + 1) & (HASH_SIZE - 1);
+                }
+                if (hashKeys[slot] == key) {
+                    prefix = hashCodes[slot];
+                    continue;
+                }
+                writeCode(prefix, codeLength);
+                hashKeys[slot] = key;
+                hashCodes[slot] = (short) nextCode;
+                nextCode++;
+                if (nextCode == MAX_CODE) {
+                    writeCode(CLEAR_CODE, codeLength);
+                    Arrays.fill(hashKeys, -1);
+                    nextCode = FIRST_CODE;
+                    codeLength = 9;
+                } else {
+                    codeLength = getCodeLength(nextCode);
+                }
+                prefix = c;
+            }
+            writeCode(prefix, codeLength);
+            // the reader adds a table entry for the last code, before it reads the end of information
+            codeLength = getCodeLength(nextCode + 1);
+        }
+        writeCode(EOI_CODE, codeLength);
+        if (bitCount > 0) {
+            writeByte((int) (bitBuffer << (8 - bitCount)));
+        }
+        return Arrays.copyOf(output, outputLength);
+    }
+
+    private static int getCodeLength(int nextCode) {
+        if (nextCode < 512) {
+            return 9;
+        } else if (nextCode < 1024) {
+            return 10;
+        } else if (nextCode < 2048) {
+            return 11;
+        }
+        return 12;
+    }
+
+    private void writeCode(int code, int codeLength) {
+        bitBuffer = (bitBuffer << codeLength) | code;
+        bitCount += codeLength;
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            writeByte((int) (bitBuffer >>> bitCount));
+        }
+    }
+
+    private void writeByte(int b) {
+        if (outputLength == output.length) {
+            output = Arrays.copyOf(output, 2 * output.length);
+        }
+        output[outputLength++] = (byte) b;
+    }
+}
@@ -0,0 +1,576 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.bigtiff.internal;
+
+import org.esa.beam.framework.datamodel.ProductData;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the raster data of the first image of a tiled or stripped TIFF or BigTIFF file.
+ * <p/>
+ * The IFD is parsed once when the reader is opened. Tiles are read with positional reads from a file channel
+ * and decompressed by the calling thread, so concurrent calls of {@link #readRect} do not block each other.
+ * Decoded tiles are kept in a cache shared by all bands, which serves neighbouring requests and, for pixel
+ * interleaved files, the other bands of a tile.
+ * <p/>
+ * Only layouts which can be decoded here are accepted, that are uncompressed, LZW or Deflate compressed
+ * tiles or strips of 8, 16, 32 or 64 bit samples. For any other layout {@link #open} returns {@code null}.
+ */
+public class TiffTileReader {
+
+    private static final int TAG_IMAGE_WIDTH = 256;
+    private static final int TAG_IMAGE_LENGTH = 257;
+    private static final int TAG_BITS_PER_SAMPLE = 258;
+    private static final int TAG_COMPRESSION = 259;
+    private static final int TAG_FILL_ORDER = 266;
+    private static final int TAG_STRIP_OFFSETS = 273;
+    private static final int TAG_SAMPLES_PER_PIXEL = 277;
+    private static final int TAG_ROWS_PER_STRIP = 278;
+    private static final int TAG_STRIP_BYTE_COUNTS = 279;
+    private static final int TAG_PLANAR_CONFIGURATION = 284;
+    private static final int TAG_PREDICTOR = 317;
+    private static final int TAG_TILE_WIDTH = 322;
+    private static final int TAG_TILE_LENGTH = 323;
+    private static final int TAG_TILE_OFFSETS = 324;
+    private static final int TAG_TILE_BYTE_COUNTS = 325;
+    private static final int TAG_SAMPLE_FORMAT = 339;
+
+    private static final int COMPRESSION_NONE = 1;
+    private static final int COMPRESSION_LZW = 5;
+    private static final int COMPRESSION_DEFLATE = 8;
+    private static final int COMPRESSION_DEFLATE_OBSOLETE = 32946;
+
+    private static final int SAMPLE_FORMAT_UINT = 1;
+    private static final int SAMPLE_FORMAT_INT = 2;
+    private static final int SAMPLE_FORMAT_FLOAT = 3;
+
+    private static final long MAX_TILE_SIZE = 64L * 1024 * 1024;
+    private static final long MAX_CACHE_SIZE = 64L * 1024 * 1024;
+    private static final int MIN_CACHED_TILES = 4;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteOrder byteOrder;
+    private final int width;
+    private final int height;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int numXTiles;
+    private final int numYTiles;
+    private final int numBands;
+    private final boolean planar;
+    private final int bytesPerSample;
+    private final int sampleFormat;
+    private final int compression;
+    private final int predictor;
+    private final long[] tileOffsets;
+    private final long[] tileByteCounts;
+    private final Map<Integer, Object> tileCache;
+
+    private TiffTileReader(RandomAccessFile file, ByteOrder byteOrder, int width, int height,
+                           int tileWidth, int tileHeight, int numBands, boolean planar,
+                           int bytesPerSample, int sampleFormat, int compression, int predictor,
+                           long[] tileOffsets, long[] tileByteCounts) {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.byteOrder = byteOrder;
+        this.width = width;
+        this.height = height;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.numXTiles = (width + tileWidth - 1) / tileWidth;
+        this.numYTiles = (height + tileHeight - 1) / tileHeight;
+        this.numBands = numBands;
+        this.planar = planar;
+        this.bytesPerSample = bytesPerSample;
+        this.sampleFormat = sampleFormat;
+        this.compression = compression;
+        this.predictor = predictor;
+        this.tileOffsets = tileOffsets;
+        this.tileByteCounts = tileByteCounts;
+
+        final int maxCachedTiles = (int) Math.max(MIN_CACHED_TILES, MAX_CACHE_SIZE / getTileSize());
+        tileCache = new LinkedHashMap<Integer, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Object> eldest) {
+                return size() > maxCachedTiles;
+            }
+        };
+    }
+
+    /**
+     * Opens a TIFF or BigTIFF file and parses its first IFD.
+     *
+     * @param file The TIFF file.
+     *
+     * @return The reader, or {@code null} if the layout of the image is not supported.
+     *
+     * @throws IOException if the file cannot be read or is not a TIFF file.
+     */
+    public static TiffTileReader open(File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        TiffTileReader reader = null;
+        try {
+            reader = create(raf);
+            return reader;
+        } finally {
+            if (reader == null) {
+                raf.close();
+            }
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getNumBands() {
+        return numBands;
+    }
+
+    /**
+     * Reads a subsampled rectangle of a band into a buffer. The sample at {@code (x, y)} of the buffer is taken
+     * from the pixel at {@code (sourceOffsetX + x * sourceStepX, sourceOffsetY + y * sourceStepY)} of the image.
+     * Samples are converted to the type of the buffer, unless both types have the same size.
+     * <p/>
+     * This method may be called concurrently.
+     */
+    public void readRect(int bandIndex, int sourceOffsetX, int sourceOffsetY, int sourceStepX, int sourceStepY,
+                         int destWidth, int destHeight, ProductData destBuffer) throws IOException {
+        final int lastSourceX = sourceOffsetX + (destWidth - 1) * sourceStepX;
+        final int lastSourceY = sourceOffsetY + (destHeight - 1) * sourceStepY;
+        if (bandIndex < 0 || bandIndex >= numBands || sourceOffsetX < 0 || sourceOffsetY < 0
+            || lastSourceX >= width || lastSourceY >= height) {
+            throw new IllegalArgumentException("Region or band out of image bounds.");
+        }
+        for (int tileY = sourceOffsetY / tileHeight; tileY <= lastSourceY / tileHeight; tileY++) {
+            final int tileY0 = tileY * tileHeight;
+            final int firstDestY = ceilDiv(Math.max(0, tileY0 - sourceOffsetY), sourceStepY);
+            final int lastDestY = Math.min(destHeight - 1, (tileY0 + tileHeight - 1 - sourceOffsetY) / sourceStepY);
+            if (firstDestY > lastDestY) {
+                continue;
+            }
+            for (int tileX = sourceOffsetX / tileWidth; tileX <= lastSourceX / tileWidth; tileX++) {
+                final int tileX0 = tileX * tileWidth;
+                final int firstDestX = ceilDiv(Math.max(0, tileX0 - sourceOffsetX), sourceStepX);
+                final int lastDestX = Math.min(destWidth - 1, (tileX0 + tileWidth - 1 - sourceOffsetX) / sourceStepX);
+                if (firstDestX > lastDestX) {
+                    continue;
+                }
+                final Object tile = getTile(getTileIndex(bandIndex, tileX, tileY));
+                final int sampleStride = planar ? 1 : numBands;
+                final int sampleOffset = planar ? 0 : bandIndex;
+                final int count = lastDestX - firstDestX + 1;
+                for (int destY = firstDestY; destY <= lastDestY; destY++) {
+                    final int tileRow = sourceOffsetY + destY * sourceStepY - tileY0;
+                    final int tileColumn = sourceOffsetX + firstDestX * sourceStepX - tileX0;
+                    final int srcPos = (tileRow * tileWidth + tileColumn) * sampleStride + sampleOffset;
+                    final int destPos = destY * destWidth + firstDestX;
+                    copySamples(tile, srcPos, sourceStepX * sampleStride, destBuffer, destPos, count);
+                }
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        synchronized (tileCache) {
+            tileCache.clear();
+        }
+        file.close();
+    }
+
+    private int getTileIndex(int bandIndex, int tileX, int tileY) {
+        if (planar) {
+            return (bandIndex * numYTiles + tileY) * numXTiles + tileX;
+        }
+        return tileY * numXTiles + tileX;
+    }
+
+    private long getTileSize() {
+        return (long) tileWidth * tileHeight * (planar ? 1 : numBands) * bytesPerSample;
+    }
+
+    private Object getTile(int tileIndex) throws IOException {
+        Object tile;
+        synchronized (tileCache) {
+            tile = tileCache.get(tileIndex);
+        }
+        if (tile == null) {
+            // tiles are decoded outside of the lock, two threads may rarely decode the same tile
+            tile = readTile(tileIndex);
+            synchronized (tileCache) {
+                tileCache.put(tileIndex, tile);
+            }
+        }
+        return tile;
+    }
+
+    private Object readTile(int tileIndex) throws IOException {
+        final byte[] bytes = new byte[(int) getTileSize()];
+        final long byteCount = tileByteCounts[tileIndex];
+        if (byteCount > Integer.MAX_VALUE) {
+            throw new IOException("Invalid byte count of tile " + tileIndex + ".");
+        }
+        // tiles without data are sparse, they are read as zeros
+        if (byteCount > 0) {
+            final byte[] data = new byte[(int) byteCount];
+            read(channel, tileOffsets[tileIndex], ByteBuffer.wrap(data));
+            if (compression == COMPRESSION_NONE) {
+                System.arraycopy(data, 0, bytes, 0, Math.min(data.length, bytes.length));
+            } else if (compression == COMPRESSION_LZW) {
+                new TiffLzwDecoder().decode(data, bytes);
+            } else {
+                inflate(data, bytes);
+            }
+        }
+        return toSamples(bytes);
+    }
+
+    private static void inflate(byte[] data, byte[] bytes) throws IOException {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            int length = 0;
+            while (length < bytes.length && !inflater.finished()) {
+                final int n = inflater.inflate(bytes, length, bytes.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid Deflate compressed tile.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private Object toSamples(byte[] bytes) {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(byteOrder);
+        final int rowLength = tileWidth * (planar ? 1 : numBands);
+        final int pixelStride = planar ? 1 : numBands;
+        if (bytesPerSample == 1) {
+            if (predictor == 2) {
+                for (int row = 0; row < bytes.length; row += rowLength) {
+                    for (int i = row + pixelStride; i < row + rowLength; i++) {
+                        bytes[i] += bytes[i - pixelStride];
+                    }
+                }
+            }
+            return bytes;
+        } else if (bytesPerSample == 2) {
+            final short[] samples = new short[bytes.length / 2];
+            buffer.asShortBuffer().get(samples);
+            if (predictor == 2) {
+                for (int row = 0; row < samples.length; row += rowLength) {
+                    for (int i = row + pixelStride; i < row + rowLength; i++) {
+                        samples[i] += samples[i - pixelStride];
+                    }
+                }
+            }
+            return samples;
+        } else if (bytesPerSample == 4 && sampleFormat == SAMPLE_FORMAT_FLOAT) {
+            final float[] samples = new float[bytes.length / 4];
+            buffer.asFloatBuffer().get(samples);
+            return samples;
+        } else if (bytesPerSample == 4) {
+            final int[] samples = new int[bytes.length / 4];
+            buffer.asIntBuffer().get(samples);
+            if (predictor == 2) {
+                for (int row = 0; row < samples.length; row += rowLength) {
+                    for (int i = row + pixelStride; i < row + rowLength; i++) {
+                        samples[i] += samples[i - pixelStride];
+                    }
+                }
+            }
+            return samples;
+        }
+        final double[] samples = new double[bytes.length / 8];
+        buffer.asDoubleBuffer().get(samples);
+        return samples;
+    }
+
+    private void copySamples(Object tile, int srcPos, int srcStride, ProductData destBuffer, int destPos, int count) {
+        final Object elems = destBuffer.getElems();
+        if (elems.getClass() == tile.getClass()) {
+            if (srcStride == 1) {
+                //noinspection SuspiciousSystemArraycopy
+                System.arraycopy(tile, srcPos, elems, destPos, count);
+            } else if (tile instanceof byte[]) {
+                final byte[] src = (byte[]) tile;
+                final byte[] dest = (byte[]) elems;
+                for (int i = 0; i < count; i++, srcPos += srcStride) {
+                    dest[destPos + i] = src[srcPos];
+                }
+            } else if (tile instanceof short[]) {
+                final short[] src = (short[]) tile;
+                final short[] dest = (short[]) elems;
+                for (int i = 0; i < count; i++, srcPos += srcStride) {
+                    dest[destPos + i] = src[srcPos];
+                }
+            } else if (tile instanceof int[]) {
+                final int[] src = (int[]) tile;
+                final int[] dest = (int[]) elems;
+                for (int i = 0; i < count; i++, srcPos += srcStride) {
+                    dest[destPos + i] = src[srcPos];
+                }
+            } else if (tile instanceof float[]) {
+                final float[] src = (float[]) tile;
+                final float[] dest = (float[]) elems;
+                for (int i = 0; i < count; i++, srcPos += srcStride) {
+                    dest[destPos + i] = src[srcPos];
+                }
+            } else {
+                final double[] src = (double[]) tile;
+                final double[] dest = (double[]) elems;
+                for (int i = 0; i < count; i++, srcPos += srcStride) {
+                    dest[destPos + i] = src[srcPos];
+                }
+            }
+        } else {
+            for (int i = 0; i < count; i++, srcPos += srcStride) {
+                destBuffer.setElemDoubleAt(destPos + i, getSample(tile, srcPos));
+            }
+        }
+    }
+
+    private double getSample(Object tile, int index) {
+        final boolean signed = sampleFormat == SAMPLE_FORMAT_INT;
+        if (tile instanceof byte[]) {
+            final byte value = ((byte[]) tile)[index];
+            return signed ? value : value & 0xff;
+        } else if (tile instanceof short[]) {
+            final short value = ((short[]) tile)[index];
+            return signed ? value : value & 0xffff;
+        } else if (tile instanceof int[]) {
+            final int value = ((int[]) tile)[index];
+            return signed ? value : value & 0xffffffffL;
+        } else if (tile instanceof float[]) {
+            return ((float[]) tile)[index];
+        }
+        return ((double[]) tile)[index];
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+
+    private static TiffTileReader create(RandomAccessFile raf) throws IOException {
+        final FileChannel channel = raf.getChannel();
+        final ByteBuffer header = ByteBuffer.allocate(16);
+        read(channel, 0, header);
+        final ByteOrder byteOrder;
+        if (header.get(0) == 'I' && header.get(1) == 'I') {
+            byteOrder = ByteOrder.LITTLE_ENDIAN;
+        } else if (header.get(0) == 'M' && header.get(1) == 'M') {
+            byteOrder = ByteOrder.BIG_ENDIAN;
+        } else {
+            throw new IOException("Not a TIFF file.");
+        }
+        header.order(byteOrder);
+        final int magic = header.getShort(2) & 0xffff;
+        final boolean bigTiff;
+        final long ifdOffset;
+        if (magic == 42) {
+            bigTiff = false;
+            ifdOffset = header.getInt(4) & 0xffffffffL;
+        } else if (magic == 43) {
+            bigTiff = true;
+            ifdOffset = header.getLong(8);
+        } else {
+            throw new IOException("Not a TIFF file.");
+        }
+        final Map<Integer, long[]> fields = readIfd(channel, byteOrder, bigTiff, ifdOffset);
+
+        final int width = (int) getValue(fields, TAG_IMAGE_WIDTH, 0);
+        final int height = (int) getValue(fields, TAG_IMAGE_LENGTH, 0);
+        final int numBands = (int) getValue(fields, TAG_SAMPLES_PER_PIXEL, 1);
+        final int bitsPerSample = (int) getValue(fields, TAG_BITS_PER_SAMPLE, 1);
+        final int sampleFormat = (int) getValue(fields, TAG_SAMPLE_FORMAT, SAMPLE_FORMAT_UINT);
+        final int compression = (int) getValue(fields, TAG_COMPRESSION, COMPRESSION_NONE);
+        final int predictor = (int) getValue(fields, TAG_PREDICTOR, 1);
+        final boolean planar = getValue(fields, TAG_PLANAR_CONFIGURATION, 1) == 2;
+        if (width <= 0 || height <= 0 || numBands <= 0
+            || !isUniform(fields, TAG_BITS_PER_SAMPLE) || !isUniform(fields, TAG_SAMPLE_FORMAT)
+            || !isSupportedSampleType(bitsPerSample, sampleFormat)
+            || getValue(fields, TAG_FILL_ORDER, 1) != 1
+            || !(compression == COMPRESSION_NONE || compression == COMPRESSION_LZW
+                 || compression == COMPRESSION_DEFLATE || compression == COMPRESSION_DEFLATE_OBSOLETE)
+            || !(predictor == 1 || predictor == 2 && sampleFormat != SAMPLE_FORMAT_FLOAT && bitsPerSample <= 32)) {
+            return null;
+        }
+
+        final long tileWidth;
+        final long tileHeight;
+        final long[] tileOffsets;
+        final long[] tileByteCounts;
+        if (fields.containsKey(TAG_TILE_OFFSETS)) {
+            tileWidth = getValue(fields, TAG_TILE_WIDTH, 0);
+            tileHeight = getValue(fields, TAG_TILE_LENGTH, 0);
+            tileOffsets = fields.get(TAG_TILE_OFFSETS);
+            tileByteCounts = fields.get(TAG_TILE_BYTE_COUNTS);
+        } else {
+            tileWidth = width;
+            tileHeight = Math.min(height, getValue(fields, TAG_ROWS_PER_STRIP, height));
+            tileOffsets = fields.get(TAG_STRIP_OFFSETS);
+            tileByteCounts = fields.get(TAG_STRIP_BYTE_COUNTS);
+        }
+        if (tileWidth <= 0 || tileHeight <= 0 || tileOffsets == null || tileByteCounts == null
+            || tileWidth * tileHeight * (planar ? 1 : numBands) * bitsPerSample / 8 > MAX_TILE_SIZE) {
+            return null;
+        }
+        final long numTiles = ((width + tileWidth - 1) / tileWidth) * ((height + tileHeight - 1) / tileHeight)
+                              * (planar ? numBands : 1);
+        if (tileOffsets.length != numTiles || tileByteCounts.length != numTiles) {
+            return null;
+        }
+        return new TiffTileReader(raf, byteOrder, width, height, (int) tileWidth, (int) tileHeight, numBands,
+                                  planar && numBands > 1, bitsPerSample / 8, sampleFormat, compression, predictor,
+                                  tileOffsets, tileByteCounts);
+    }
+
+    private static boolean isSupportedSampleType(int bitsPerSample, int sampleFormat) {
+        if (sampleFormat == SAMPLE_FORMAT_FLOAT) {
+            return bitsPerSample == 32 || bitsPerSample == 64;
+        } else if (sampleFormat == SAMPLE_FORMAT_UINT || sampleFormat == SAMPLE_FORMAT_INT) {
+            return bitsPerSample == 8 || bitsPerSample == 16 || bitsPerSample == 32;
+        }
+        return false;
+    }
+
+    private static long getValue(Map<Integer, long[]> fields, int tag, long defaultValue) {
+        final long[] values = fields.get(tag);
+        return values != null && values.length > 0 ? values[0] : defaultValue;
+    }
+
+    private static boolean isUniform(Map<Integer, long[]> fields, int tag) {
+        final long[] values = fields.get(tag);
+        if (values != null) {
+            for (long value : values) {
+                if (value != values[0]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Map<Integer, long[]> readIfd(FileChannel channel, ByteOrder byteOrder, boolean bigTiff,
+                                                long ifdOffset) throws IOException {
+        final ByteBuffer countBuffer = ByteBuffer.allocate(bigTiff ? 8 : 2).order(byteOrder);
+        read(channel, ifdOffset, countBuffer);
+        final long numEntries = bigTiff ? countBuffer.getLong(0) : countBuffer.getShort(0) & 0xffff;
+        final int entrySize = bigTiff ? 20 : 12;
+        final int valueFieldSize = bigTiff ? 8 : 4;
+        if (numEntries <= 0 || numEntries > 0xffff) {
+            throw new IOException("Invalid number of IFD entries: " + numEntries);
+        }
+        final ByteBuffer entries = ByteBuffer.allocate((int) numEntries * entrySize).order(byteOrder);
+        read(channel, ifdOffset + countBuffer.capacity(), entries);
+
+        final Map<Integer, long[]> fields = new HashMap<>();
+        for (int i = 0; i < numEntries; i++) {
+            final int entryPosition = i * entrySize;
+            final int tag = entries.getShort(entryPosition) & 0xffff;
+            final int type = entries.getShort(entryPosition + 2) & 0xffff;
+            final long count = bigTiff ? entries.getLong(entryPosition + 4) : entries.getInt(entryPosition + 4) & 0xffffffffL;
+            final int valueSize = getValueSize(type);
+            if (!isLayoutTag(tag) || valueSize == 0 || count <= 0 || count * valueSize > Integer.MAX_VALUE) {
+                continue;
+            }
+            final int valueFieldPosition = entryPosition + (bigTiff ? 12 : 8);
+            final ByteBuffer valueBuffer;
+            if (count * valueSize <= valueFieldSize) {
+                valueBuffer = entries.duplicate().order(byteOrder);
+                valueBuffer.position(valueFieldPosition);
+            } else {
+                final long valueOffset = bigTiff ? entries.getLong(valueFieldPosition) :
+                                         entries.getInt(valueFieldPosition) & 0xffffffffL;
+                valueBuffer = ByteBuffer.allocate((int) count * valueSize).order(byteOrder);
+                read(channel, valueOffset, valueBuffer);
+                valueBuffer.rewind();
+            }
+            final long[] values = new long[(int) count];
+            for (int j = 0; j < values.length; j++) {
+                if (valueSize == 1) {
+                    values[j] = valueBuffer.get() & 0xff;
+                } else if (valueSize == 2) {
+                    values[j] = valueBuffer.getShort() & 0xffff;
+                } else if (valueSize == 4) {
+                    values[j] = valueBuffer.getInt() & 0xffffffffL;
+                } else {
+                    values[j] = valueBuffer.getLong();
+                }
+            }
+            fields.put(tag, values);
+        }
+        return fields;
+    }
+
+    private static boolean isLayoutTag(int tag) {
+        return tag == TAG_IMAGE_WIDTH || tag == TAG_IMAGE_LENGTH || tag == TAG_BITS_PER_SAMPLE
+               || tag == TAG_COMPRESSION || tag == TAG_FILL_ORDER || tag == TAG_STRIP_OFFSETS
+               || tag == TAG_SAMPLES_PER_PIXEL || tag == TAG_ROWS_PER_STRIP || tag == TAG_STRIP_BYTE_COUNTS
+               || tag == TAG_PLANAR_CONFIGURATION || tag == TAG_PREDICTOR || tag == TAG_TILE_WIDTH
+               || tag == TAG_TILE_LENGTH || tag == TAG_TILE_OFFSETS || tag == TAG_TILE_BYTE_COUNTS
+               || tag == TAG_SAMPLE_FORMAT;
+    }
+
+    /**
+     * @return the size of a value of an unsigned integer type, or 0 for any other type.
+     */
+    private static int getValueSize(int type) {
+        switch (type) {
+            case 1:  // BYTE
+                return 1;
+            case 3:  // SHORT
+                return 2;
+            case 4:  // LONG
+            case 13: // IFD
+                return 4;
+            case 16: // LONG8
+            case 18: // IFD8
+                return 8;
+            default:
+                return 0;
+        }
+    }
+
+    private static void read(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of TIFF file.");
+            }
+        }
+    }
+}
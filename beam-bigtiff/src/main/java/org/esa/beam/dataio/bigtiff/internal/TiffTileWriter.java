@@ -0,0 +1,505 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.bigtiff.internal;
+
+import org.esa.beam.framework.datamodel.ProductData;
+
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the bands of a product into a tiled TIFF file, tile by tile.
+ * <p/>
+ * The bands are stored in separate planes, so each tile of a band is written as soon as all of its pixels have
+ * been passed to {@link #writeRect}. Tiles are compressed in parallel and appended to the file in the order in
+ * which they are completed. The number of tiles waiting for compression is bounded, so memory use does not grow
+ * with the image size. The IFD, including the tile offsets and byte counts, is written at the end of the file
+ * when the writer is closed.
+ * <p/>
+ * A BigTIFF file is written if forced, or if the file might exceed the 4 GB limit of a classic TIFF file.
+ */
+public class TiffTileWriter {
+
+    private static final long CLASSIC_TIFF_MAX_SIZE = 0xffffffffL;
+    private static final int MAX_PENDING_TILES_PER_THREAD = 2;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final TiffIFD ifd;
+    private final boolean bigTiff;
+    private final int width;
+    private final int height;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int numXTiles;
+    private final int numYTiles;
+    private final int dataType;
+    private final int compression;
+    private final int compressionLevel;
+    private final long[] tileOffsets;
+    private final long[] tileByteCounts;
+    private final Map<Integer, TileBuffer> partialTiles;
+    private final ExecutorService executor;
+    private final Semaphore pendingTiles;
+    private final int maxPendingTiles;
+    private final Object filePositionLock = new Object();
+    private long filePosition;
+    private volatile IOException failure;
+
+    /**
+     * Creates a writer and writes the file header.
+     *
+     * @param outputFile       the file to write
+     * @param ifd              the IFD of a tiled image, see {@link TiffIFD#TiffIFD(org.esa.beam.framework.datamodel.Product, int, int, int)}
+     * @param forceBigTiff     if {@code true}, a BigTIFF file is written in any case
+     * @param compressionLevel the level of the deflate compression, 1 to 9
+     * @param parallelism      the number of threads compressing tiles
+     *
+     * @throws IOException if the file cannot be created
+     */
+    public TiffTileWriter(File outputFile, TiffIFD ifd, boolean forceBigTiff, int compressionLevel,
+                          int parallelism) throws IOException {
+        this.ifd = ifd;
+        this.compressionLevel = compressionLevel;
+        width = (int) ifd.getWidth();
+        height = (int) ifd.getHeight();
+        tileWidth = (int) getUIntValue(TiffTag.TILE_WIDTH);
+        tileHeight = (int) getUIntValue(TiffTag.TILE_LENGTH);
+        compression = ((TiffShort) ifd.getEntry(TiffTag.COMPRESSION).getValues()[0]).getValue();
+        dataType = ifd.getBandDataType();
+        final int numBands = ((TiffShort) ifd.getEntry(TiffTag.SAMPLES_PER_PIXEL).getValues()[0]).getValue();
+        numXTiles = (width + tileWidth - 1) / tileWidth;
+        numYTiles = (height + tileHeight - 1) / tileHeight;
+        final int numTiles = numBands * numXTiles * numYTiles;
+        tileOffsets = new long[numTiles];
+        tileByteCounts = new long[numTiles];
+        bigTiff = forceBigTiff || getMaxFileSize(numTiles) > CLASSIC_TIFF_MAX_SIZE;
+
+        partialTiles = new HashMap<>();
+        executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "BigGeoTiff tile writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        maxPendingTiles = MAX_PENDING_TILES_PER_THREAD * parallelism;
+        pendingTiles = new Semaphore(maxPendingTiles);
+
+        file = new RandomAccessFile(outputFile, "rw");
+        file.setLength(0);
+        channel = file.getChannel();
+        writeHeader(0);
+    }
+
+    public boolean isBigTiff() {
+        return bigTiff;
+    }
+
+    /**
+     * Writes a rectangle of a band. The tiles completed by the rectangle are compressed and written
+     * asynchronously. This method may be called concurrently.
+     *
+     * @param bandIndex the index of the band among the bands of the image
+     * @param x         the X-offset of the rectangle
+     * @param y         the Y-offset of the rectangle
+     * @param w         the width of the rectangle
+     * @param h         the height of the rectangle
+     * @param data      the samples of the rectangle, line by line
+     *
+     * @throws IOException if a tile cannot be written
+     */
+    public void writeRect(int bandIndex, int x, int y, int w, int h, ProductData data) throws IOException {
+        checkFailure();
+        for (int tileY = y / tileHeight; tileY <= (y + h - 1) / tileHeight; tileY++) {
+            for (int tileX = x / tileWidth; tileX <= (x + w - 1) / tileWidth; tileX++) {
+                final int tileIndex = (bandIndex * numYTiles + tileY) * numXTiles + tileX;
+                final TileBuffer tile = getTileBuffer(tileIndex, tileX, tileY);
+                if (tile.copy(x, y, w, h, data)) {
+                    synchronized (partialTiles) {
+                        partialTiles.remove(tileIndex);
+                    }
+                    submit(tileIndex, tile.data);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the remaining tiles and the IFD, and closes the file. Tiles which have not been written completely
+     * are written as they are, tiles which have not been written at all are filled with zeros.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void close() throws IOException {
+        try {
+            awaitPendingTiles();
+            final List<TileBuffer> remainingTiles;
+            synchronized (partialTiles) {
+                remainingTiles = new ArrayList<>(partialTiles.values());
+                partialTiles.clear();
+            }
+            for (TileBuffer tile : remainingTiles) {
+                if (tileByteCounts[tile.index] == 0) {
+                    submit(tile.index, tile.data);
+                }
+            }
+            awaitPendingTiles();
+            writeEmptyTiles();
+            checkFailure();
+            writeIfd();
+        } finally {
+            executor.shutdownNow();
+            file.close();
+        }
+    }
+
+    private TileBuffer getTileBuffer(int tileIndex, int tileX, int tileY) {
+        synchronized (partialTiles) {
+            TileBuffer tile = partialTiles.get(tileIndex);
+            if (tile == null) {
+                tile = new TileBuffer(tileIndex, tileX * tileWidth, tileY * tileHeight);
+                partialTiles.put(tileIndex, tile);
+            }
+            return tile;
+        }
+    }
+
+    private void submit(final int tileIndex, final ProductData tileData) throws IOException {
+        try {
+            pendingTiles.acquire();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while waiting for tiles to be written.");
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final byte[] bytes = compress(toBytes(tileData));
+                    final long offset = append(bytes);
+                    tileOffsets[tileIndex] = offset;
+                    tileByteCounts[tileIndex] = bytes.length;
+                } catch (IOException e) {
+                    failure = e;
+                } catch (RuntimeException e) {
+                    failure = new IOException(e);
+                } finally {
+                    pendingTiles.release();
+                }
+            }
+        });
+    }
+
+    private void awaitPendingTiles() throws IOException {
+        try {
+            // all permits are available again when all tiles are written, which also publishes their offsets
+            pendingTiles.acquire(maxPendingTiles);
+            pendingTiles.release(maxPendingTiles);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while waiting for tiles to be written.");
+        }
+    }
+
+    private void writeEmptyTiles() throws IOException {
+        long emptyTileOffset = 0;
+        long emptyTileByteCount = 0;
+        for (int i = 0; i < tileOffsets.length; i++) {
+            if (tileByteCounts[i] == 0) {
+                if (emptyTileByteCount == 0) {
+                    final byte[] bytes = compress(toBytes(ProductData.createInstance(dataType, tileWidth * tileHeight)));
+                    emptyTileOffset = append(bytes);
+                    emptyTileByteCount = bytes.length;
+                }
+                // all empty tiles share the same bytes
+                tileOffsets[i] = emptyTileOffset;
+                tileByteCounts[i] = emptyTileByteCount;
+            }
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private long append(byte[] bytes) throws IOException {
+        final long offset;
+        synchronized (filePositionLock) {
+            offset = filePosition;
+            // TIFF requires word aligned offsets for values, keep tiles aligned, too
+            filePosition += bytes.length + (bytes.length & 1);
+        }
+        write(bytes, offset);
+        return offset;
+    }
+
+    private void write(byte[] bytes, long offset) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private byte[] compress(byte[] bytes) {
+        if (compression == TiffCode.COMPRESSION_DEFLATE) {
+            final Deflater deflater = new Deflater(compressionLevel);
+            try {
+                deflater.setInput(bytes);
+                deflater.finish();
+                final ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 2 + 64);
+                final byte[] buffer = new byte[64 * 1024];
+                while (!deflater.finished()) {
+                    final int length = deflater.deflate(buffer);
+                    output.write(buffer, 0, length);
+                }
+                return output.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        } else if (compression == TiffCode.COMPRESSION_LZW) {
+            return new TiffLzwEncoder().encode(bytes);
+        }
+        return bytes;
+    }
+
+    private static byte[] toBytes(ProductData data) {
+        final Object elems = data.getElems();
+        final ByteBuffer buffer = ByteBuffer.allocate(data.getElemSize() * data.getNumElems());
+        if (elems instanceof byte[]) {
+            buffer.put((byte[]) elems);
+        } else if (elems instanceof short[]) {
+            buffer.asShortBuffer().put((short[]) elems);
+        } else if (elems instanceof int[]) {
+            buffer.asIntBuffer().put((int[]) elems);
+        } else if (elems instanceof float[]) {
+            buffer.asFloatBuffer().put((float[]) elems);
+        } else if (elems instanceof double[]) {
+            buffer.asDoubleBuffer().put((double[]) elems);
+        } else {
+            throw new IllegalArgumentException("Unsupported data type " + ProductData.getTypeString(data.getType()));
+        }
+        return buffer.array();
+    }
+
+    private long getMaxFileSize(int numTiles) {
+        final long tileSize = (long) tileWidth * tileHeight * ProductData.getElemSize(dataType);
+        // LZW codes of 12 bits for single bytes are the worst case
+        final double maxExpansion = compression == TiffCode.COMPRESSION_LZW ? 1.5 : 1.01;
+        final long ifdSize = ifd.getRequiredIfdSize() + ifd.getRequiredReferencedValuesSize() + 16L * numTiles;
+        return (long) (maxExpansion * numTiles * (tileSize + 64)) + ifdSize + 1024;
+    }
+
+    private long getUIntValue(TiffShort tag) {
+        return ((TiffUInt) ifd.getEntry(tag).getValues()[0]).getValue();
+    }
+
+    private void writeHeader(long ifdOffset) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(bigTiff ? 16 : 8);
+        header.put((byte) 'M').put((byte) 'M');
+        if (bigTiff) {
+            header.putShort((short) 43).putShort((short) 8).putShort((short) 0).putLong(ifdOffset);
+        } else {
+            header.putShort((short) 42).putInt((int) ifdOffset);
+        }
+        write(header.array(), 0);
+        synchronized (filePositionLock) {
+            filePosition = Math.max(filePosition, header.capacity());
+        }
+    }
+
+    private void writeIfd() throws IOException {
+        final List<IfdField> fields = new ArrayList<>();
+        for (TiffDirectoryEntry entry : ifd.getEntries()) {
+            fields.add(new IfdField(entry.getTag().getValue(), entry.getType().getValue(), entry.getCount(),
+                                    toBytes(entry.getValues())));
+        }
+        final int offsetType = bigTiff ? TiffType.LONG_8_TYPE : TiffType.LONG_TYPE;
+        fields.add(new IfdField(TiffTag.TileOffsets, offsetType, tileOffsets.length, toBytes(tileOffsets)));
+        fields.add(new IfdField(TiffTag.TileByteCounts, offsetType, tileByteCounts.length, toBytes(tileByteCounts)));
+        Collections.sort(fields, new Comparator<IfdField>() {
+            @Override
+            public int compare(IfdField field1, IfdField field2) {
+                return Integer.compare(field1.tag, field2.tag);
+            }
+        });
+
+        final int offsetSize = bigTiff ? 8 : 4;
+        final int entrySize = bigTiff ? 20 : 12;
+        final long ifdOffset;
+        synchronized (filePositionLock) {
+            ifdOffset = filePosition;
+        }
+        final int ifdSize = (bigTiff ? 8 : 2) + fields.size() * entrySize + offsetSize;
+        long valuesSize = 0;
+        for (IfdField field : fields) {
+            if (field.bytes.length > offsetSize) {
+                valuesSize += field.bytes.length + (field.bytes.length & 1);
+            }
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate((int) (ifdSize + valuesSize));
+        if (bigTiff) {
+            buffer.putLong(fields.size());
+        } else {
+            buffer.putShort((short) fields.size());
+        }
+        long valuesOffset = ifdOffset + ifdSize;
+        for (IfdField field : fields) {
+            buffer.putShort((short) field.tag);
+            buffer.putShort((short) field.type);
+            if (bigTiff) {
+                buffer.putLong(field.count);
+            } else {
+                buffer.putInt((int) field.count);
+            }
+            if (field.bytes.length > offsetSize) {
+                final int valuesPosition = (int) (valuesOffset - ifdOffset);
+                buffer.mark();
+                buffer.position(valuesPosition);
+                buffer.put(field.bytes);
+                buffer.reset();
+                if (bigTiff) {
+                    buffer.putLong(valuesOffset);
+                } else {
+                    buffer.putInt((int) valuesOffset);
+                }
+                valuesOffset += field.bytes.length + (field.bytes.length & 1);
+            } else {
+                // values which fit are stored left justified within the entry
+                final int valuePosition = buffer.position();
+                buffer.put(field.bytes);
+                buffer.position(valuePosition + offsetSize);
+            }
+        }
+        if (bigTiff) {
+            buffer.putLong(0);
+        } else {
+            buffer.putInt(0);
+        }
+        if (!bigTiff && ifdOffset + buffer.capacity() > CLASSIC_TIFF_MAX_SIZE) {
+            throw new IOException("The image is too large for a classic TIFF file, a BigTIFF file must be forced.");
+        }
+        write(buffer.array(), ifdOffset);
+        writeHeader(ifdOffset);
+    }
+
+    private static byte[] toBytes(TiffValue[] values) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ImageOutputStream ios = new MemoryCacheImageOutputStream(bytes);
+        for (TiffValue value : values) {
+            value.write(ios);
+        }
+        ios.close();
+        return bytes.toByteArray();
+    }
+
+    private byte[] toBytes(long[] values) {
+        final ByteBuffer buffer = ByteBuffer.allocate(values.length * (bigTiff ? 8 : 4));
+        for (long value : values) {
+            if (bigTiff) {
+                buffer.putLong(value);
+            } else {
+                buffer.putInt((int) value);
+            }
+        }
+        return buffer.array();
+    }
+
+    private static class IfdField {
+
+        private final int tag;
+        private final int type;
+        private final long count;
+        private final byte[] bytes;
+
+        private IfdField(int tag, int type, long count, byte[] bytes) {
+            this.tag = tag;
+            this.type = type;
+            this.count = count;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Collects the samples of a tile until all of its pixels within the image have been written.
+     */
+    private class TileBuffer {
+
+        private final int index;
+        private final int x;
+        private final int y;
+        private final ProductData data;
+        private final int numPixels;
+        private int numPixelsWritten;
+
+        private TileBuffer(int index, int x, int y) {
+            this.index = index;
+            this.x = x;
+            this.y = y;
+            data = ProductData.createInstance(dataType, tileWidth * tileHeight);
+            numPixels = (Math.min(x + tileWidth, width) - x) * (Math.min(y + tileHeight, height) - y);
+        }
+
+        /**
+         * @return {@code true} if the tile has been completed
+         */
+        private synchronized boolean copy(int rectX, int rectY, int rectWidth, int rectHeight, ProductData rectData) {
+            final int minX = Math.max(x, rectX);
+            final int maxX = Math.min(Math.min(x + tileWidth, width), rectX + rectWidth);
+            final int minY = Math.max(y, rectY);
+            final int maxY = Math.min(Math.min(y + tileHeight, height), rectY + rectHeight);
+            if (minX >= maxX || minY >= maxY) {
+                return false;
+            }
+            final int lineLength = maxX - minX;
+            final boolean sameType = rectData.getType() == data.getType();
+            for (int lineY = minY; lineY < maxY; lineY++) {
+                final int sourceIndex = (lineY - rectY) * rectWidth + (minX - rectX);
+                final int targetIndex = (lineY - y) * tileWidth + (minX - x);
+                if (sameType) {
+                    System.arraycopy(rectData.getElems(), sourceIndex, data.getElems(), targetIndex, lineLength);
+                } else {
+                    for (int i = 0; i < lineLength; i++) {
+                        data.setElemDoubleAt(targetIndex + i, rectData.getElemDoubleAt(sourceIndex + i));
+                    }
+                }
+            }
+            numPixelsWritten += lineLength * (maxY - minY);
+            return numPixelsWritten == numPixels;
+        }
+    }
+}
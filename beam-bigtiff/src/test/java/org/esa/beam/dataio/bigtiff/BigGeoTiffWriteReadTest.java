@@ -17,9 +17,13 @@
 package org.esa.beam.dataio.bigtiff;
 
 import com.bc.ceres.core.ProgressMonitor;
+import it.geosolutions.imageio.plugins.tiff.TIFFField;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageMetadata;
 import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageReader;
 import it.geosolutions.imageioimpl.plugins.tiff.TIFFRenderedImage;
+import org.esa.beam.dataio.bigtiff.internal.TiffTag;
 import org.esa.beam.framework.dataio.ProductIO;
+import org.esa.beam.framework.dataio.ProductWriter;
 import org.esa.beam.framework.datamodel.*;
 import org.esa.beam.framework.dataop.maptransf.*;
 import org.esa.beam.jai.ImageManager;
@@ -46,8 +50,18 @@ import javax.imageio.ImageReadParam;
 import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.*;
 
@@ -346,6 +360,28 @@ public class BigGeoTiffWriteReadTest {
         }
     }
 
+    @Test
+    public void testWriteReadTiePointGeoCoding_deflateCompressed() throws IOException {
+        setTiePointGeoCoding(outProduct);
+        Band bandFloat32 = outProduct.addBand("float32_1", ProductData.TYPE_FLOAT32);
+        bandFloat32.setDataElems(createFloats(getProductSize(), 2.343f));
+
+        bandFloat32 = outProduct.addBand("float32_2", ProductData.TYPE_FLOAT32);
+        bandFloat32.setDataElems(createFloats(getProductSize(), 5.66f));
+
+        try {
+            System.setProperty("org.esa.beam.dataio.bigtiff.compression.type", "DEFLATE");
+            System.setProperty("org.esa.beam.dataio.bigtiff.tiling.width", "8");
+            System.setProperty("org.esa.beam.dataio.bigtiff.tiling.height", "8");
+
+            performTest(2.0e-5f);
+        } finally {
+            System.clearProperty("org.esa.beam.dataio.bigtiff.compression.type");
+            System.clearProperty("org.esa.beam.dataio.bigtiff.tiling.width");
+            System.clearProperty("org.esa.beam.dataio.bigtiff.tiling.height");
+        }
+    }
+
     @Test
     public void testWriteReadTransverseMercator() throws IOException, TransformException, FactoryException {
         setGeoCoding(outProduct, NEW_ZEALAND_TRANSVERSE_MERCATOR_2000);
@@ -381,6 +417,134 @@ public class BigGeoTiffWriteReadTest {
         performTest(2.0e-5f);
     }
 
+    @Test
+    public void testWriteRead_concurrentWritesIntoSameTiffTile() throws Exception {
+        outProduct = new Product("P", "T", 50, 40);
+        final Band band = outProduct.addBand("float32", ProductData.TYPE_FLOAT32);
+        band.setDataElems(createFloats(getProductSize(), 0.5f));
+        location = new File(TEST_DIR, "test_product.tif");
+
+        try {
+            // rounded up to TIFF tiles of 16 x 16 pixels, each of which is filled from several source tiles
+            System.setProperty("org.esa.beam.dataio.bigtiff.tiling.width", "10");
+            System.setProperty("org.esa.beam.dataio.bigtiff.tiling.height", "10");
+            System.setProperty("org.esa.beam.dataio.bigtiff.compression.type", "DEFLATE");
+
+            final ProductWriter writer = ProductIO.getProductWriter("BigGeoTiff");
+            writer.writeProductNodes(outProduct, location);
+            writeRectanglesConcurrently(writer, band, 5, 4);
+            writer.close();
+        } finally {
+            System.clearProperty("org.esa.beam.dataio.bigtiff.tiling.width");
+            System.clearProperty("org.esa.beam.dataio.bigtiff.tiling.height");
+            System.clearProperty("org.esa.beam.dataio.bigtiff.compression.type");
+        }
+
+        assertEquals(42, readTiffVersion());
+        final TIFFImageMetadata metadata = readImageMetadata();
+        assertEquals(16, getTiffFieldValues(metadata, TiffTag.TILE_WIDTH.getValue())[0]);
+        assertEquals(16, getTiffFieldValues(metadata, TiffTag.TILE_LENGTH.getValue())[0]);
+        assertEquals(4 * 3, getTiffFieldValues(metadata, TiffTag.TileOffsets).length);
+
+        final Product inProduct = ProductIO.readProduct(location, "BigGeoTiff");
+        try {
+            assertEquality(band, inProduct.getBandAt(0));
+        } finally {
+            inProduct.dispose();
+        }
+    }
+
+    @Test
+    public void testWriteRead_neverWrittenTilesShareEmptyTile() throws Exception {
+        outProduct = new Product("P", "T", 64, 48);
+        final Band band1 = outProduct.addBand("int16_1", ProductData.TYPE_INT16);
+        band1.setDataElems(createShortData(getProductSize(), 23));
+        final Band band2 = outProduct.addBand("int16_2", ProductData.TYPE_INT16);
+        band2.setDataElems(new short[getProductSize()]);
+        location = new File(TEST_DIR, "test_product.tif");
+
+        final short[] firstTileRow = new short[64 * 16];
+        System.arraycopy(band1.getDataElems(), 0, firstTileRow, 0, firstTileRow.length);
+        try {
+            System.setProperty("org.esa.beam.dataio.bigtiff.tiling.width", "16");
+            System.setProperty("org.esa.beam.dataio.bigtiff.tiling.height", "16");
+
+            final ProductWriter writer = ProductIO.getProductWriter("BigGeoTiff");
+            writer.writeProductNodes(outProduct, location);
+            // only the first row of tiles of the first band is written
+            writer.writeBandRasterData(band1, 0, 0, 64, 16, ProductData.createInstance(firstTileRow),
+                                       ProgressMonitor.NULL);
+            writer.close();
+        } finally {
+            System.clearProperty("org.esa.beam.dataio.bigtiff.tiling.width");
+            System.clearProperty("org.esa.beam.dataio.bigtiff.tiling.height");
+        }
+
+        // 4 x 3 tiles per band, the bands are stored in separate planes
+        final TIFFImageMetadata metadata = readImageMetadata();
+        final long[] tileOffsets = getTiffFieldValues(metadata, TiffTag.TileOffsets);
+        final long[] tileByteCounts = getTiffFieldValues(metadata, TiffTag.TileByteCounts);
+        assertEquals(2 * 4 * 3, tileOffsets.length);
+        final long emptyTileOffset = tileOffsets[4];
+        for (int i = 0; i < 4; i++) {
+            assertTrue(tileOffsets[i] != emptyTileOffset);
+        }
+        for (int i = 4; i < tileOffsets.length; i++) {
+            assertEquals(emptyTileOffset, tileOffsets[i]);
+            assertEquals(tileByteCounts[4], tileByteCounts[i]);
+        }
+
+        final Product inProduct = ProductIO.readProduct(location, "BigGeoTiff");
+        try {
+            final Band actualBand1 = inProduct.getBandAt(0);
+            actualBand1.readRasterDataFully(ProgressMonitor.NULL);
+            for (int y = 0; y < 48; y++) {
+                for (int x = 0; x < 64; x++) {
+                    final int expected = y < 16 ? band1.getPixelInt(x, y) : 0;
+                    assertEquals(expected, actualBand1.getPixelInt(x, y));
+                }
+            }
+            assertEquality(band2, inProduct.getBandAt(1));
+        } finally {
+            inProduct.dispose();
+        }
+    }
+
+    @Test
+    public void testWriteRead_forcedBigTiffWithSeveralTiles() throws Exception {
+        outProduct = new Product("P", "T", 40, 36);
+        final Band bandInt16 = outProduct.addBand("int16", ProductData.TYPE_INT16);
+        bandInt16.setDataElems(createShortData(getProductSize(), 23));
+        final Band bandFloat32 = outProduct.addBand("float32", ProductData.TYPE_FLOAT32);
+        bandFloat32.setDataElems(createFloats(getProductSize(), 2.343f));
+
+        try {
+            System.setProperty("org.esa.beam.dataio.bigtiff.force.bigtiff", "true");
+            System.setProperty("org.esa.beam.dataio.bigtiff.compression.type", "LZW");
+            System.setProperty("org.esa.beam.dataio.bigtiff.tiling.width", "16");
+            System.setProperty("org.esa.beam.dataio.bigtiff.tiling.height", "16");
+
+            final Product inProduct = writeReadProduct();
+            try {
+                assertEquals(outProduct.getNumBands(), inProduct.getNumBands());
+                for (int i = 0; i < outProduct.getNumBands(); i++) {
+                    assertEquality(outProduct.getBandAt(i), inProduct.getBandAt(i));
+                }
+            } finally {
+                inProduct.dispose();
+            }
+        } finally {
+            System.clearProperty("org.esa.beam.dataio.bigtiff.force.bigtiff");
+            System.clearProperty("org.esa.beam.dataio.bigtiff.compression.type");
+            System.clearProperty("org.esa.beam.dataio.bigtiff.tiling.width");
+            System.clearProperty("org.esa.beam.dataio.bigtiff.tiling.height");
+        }
+
+        assertEquals(43, readTiffVersion());
+        final long[] tileOffsets = getTiffFieldValues(readImageMetadata(), TiffTag.TileOffsets);
+        assertEquals(2 * 3 * 3, tileOffsets.length);
+    }
+
     private void performTest(float accuracy) throws IOException {
         final Product inProduct = writeReadProduct();
 
@@ -449,6 +613,72 @@ public class BigGeoTiffWriteReadTest {
         }
     }
 
+    private static void writeRectanglesConcurrently(final ProductWriter writer, final Band band,
+                                                    int numXRects, int numYRects) throws Exception {
+        final int width = band.getRasterWidth();
+        final int height = band.getRasterHeight();
+        final int rectWidth = width / numXRects;
+        final int rectHeight = height / numYRects;
+        final float[] elems = (float[]) band.getDataElems();
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        for (int rectY = 0; rectY < height; rectY += rectHeight) {
+            for (int rectX = 0; rectX < width; rectX += rectWidth) {
+                final int x = rectX;
+                final int y = rectY;
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        final float[] rect = new float[rectWidth * rectHeight];
+                        for (int i = 0; i < rectHeight; i++) {
+                            System.arraycopy(elems, (y + i) * width + x, rect, i * rectWidth, rectWidth);
+                        }
+                        writer.writeBandRasterData(band, x, y, rectWidth, rectHeight,
+                                                   ProductData.createInstance(rect), ProgressMonitor.NULL);
+                        return null;
+                    }
+                });
+            }
+        }
+        Collections.shuffle(tasks, new Random(5));
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private int readTiffVersion() throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(new FileInputStream(location))) {
+            assertEquals('M', inputStream.readByte());
+            assertEquals('M', inputStream.readByte());
+            return inputStream.readShort();
+        }
+    }
+
+    private TIFFImageMetadata readImageMetadata() throws IOException {
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(location)) {
+            final TIFFImageReader imageReader = BigGeoTiffProductReaderPlugIn.getTiffImageReader(imageInputStream);
+            if (imageReader == null) {
+                throw new IOException("GeoTiff imageReader not found");
+            }
+            imageReader.setInput(imageInputStream);
+            return (TIFFImageMetadata) imageReader.getImageMetadata(0);
+        }
+    }
+
+    private static long[] getTiffFieldValues(TIFFImageMetadata metadata, int tag) {
+        final TIFFField field = metadata.getRootIFD().getTIFFField(tag);
+        assertNotNull(field);
+        final long[] values = new long[field.getCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = field.getAsLong(i);
+        }
+        return values;
+    }
+
     private static short[] createShortData(final int size, final int offset) {
         final short[] shorts = new short[size];
         for (int i = 0; i < shorts.length; i++) {
@@ -0,0 +1,42 @@
+package org.esa.beam.dataio.bigtiff.internal;
+
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TiffLzwDecoderTest {
+
+    @Test
+    public void testDecodeEncodedData() throws IOException {
+        final byte[] data = new byte[100000];
+        final Random random = new Random(42);
+        for (int i = 0; i < data.length; i++) {
+            // a small alphabet with runs, so that the code table is filled and cleared several times
+            data[i] = (byte) (i % 1000 < 500 ? random.nextInt(16) : i / 1000);
+        }
+
+        final byte[] encoded = new TiffLzwEncoder().encode(data);
+        final byte[] decoded = new byte[data.length];
+        final int length = new TiffLzwDecoder().decode(encoded, decoded);
+
+        assertEquals(data.length, length);
+        assertArrayEquals(data, decoded);
+    }
+
+    @Test
+    public void testDecodeStopsWhenOutputIsFull() throws IOException {
+        final byte[] data = "TOBEORNOTTOBEORTOBEORNOT".getBytes();
+
+        final byte[] encoded = new TiffLzwEncoder().encode(data);
+        final byte[] decoded = new byte[10];
+        final int length = new TiffLzwDecoder().decode(encoded, decoded);
+
+        assertEquals(10, length);
+        assertEquals("TOBEORNOTT", new String(decoded));
+    }
+}
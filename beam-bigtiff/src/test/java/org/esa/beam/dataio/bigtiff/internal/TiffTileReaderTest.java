@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.bigtiff.internal;
+
+import org.esa.beam.framework.datamodel.ProductData;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.*;
+
+public class TiffTileReaderTest {
+
+    private static final int WIDTH = 10;
+    private static final int HEIGHT = 7;
+    private static final int NUM_BANDS = 2;
+
+    private static final int COMPRESSION_NONE = 1;
+    private static final int COMPRESSION_LZW = 5;
+    private static final int COMPRESSION_DEFLATE = 8;
+
+    private File file;
+    private TiffTileReader reader;
+
+    @After
+    public void tearDown() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+        if (file != null && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    @Test
+    public void testChunkyStripsLittleEndian() throws IOException {
+        file = writeTiff(ByteOrder.LITTLE_ENDIAN, 2, false, false, WIDTH, 3, COMPRESSION_NONE, false);
+        reader = TiffTileReader.open(file);
+
+        assertNotNull(reader);
+        assertEquals(WIDTH, reader.getWidth());
+        assertEquals(HEIGHT, reader.getHeight());
+        assertEquals(NUM_BANDS, reader.getNumBands());
+        assertRect(reader, 2, 0, 0, 0, 1, 1, WIDTH, HEIGHT);
+        assertRect(reader, 2, 1, 0, 0, 1, 1, WIDTH, HEIGHT);
+        assertRect(reader, 2, 1, 1, 2, 3, 2, 3, 3);
+    }
+
+    @Test
+    public void testPlanarTilesBigEndian() throws IOException {
+        file = writeTiff(ByteOrder.BIG_ENDIAN, 2, true, true, 4, 4, COMPRESSION_NONE, false);
+        reader = TiffTileReader.open(file);
+
+        assertNotNull(reader);
+        assertRect(reader, 2, 0, 0, 0, 1, 1, WIDTH, HEIGHT);
+        assertRect(reader, 2, 1, 0, 0, 1, 1, WIDTH, HEIGHT);
+        assertRect(reader, 2, 1, 3, 2, 2, 2, 4, 3);
+    }
+
+    @Test
+    public void testChunkyTilesDeflateWithPredictor() throws IOException {
+        file = writeTiff(ByteOrder.LITTLE_ENDIAN, 2, false, true, 4, 4, COMPRESSION_DEFLATE, true);
+        reader = TiffTileReader.open(file);
+
+        assertNotNull(reader);
+        assertRect(reader, 2, 0, 0, 0, 1, 1, WIDTH, HEIGHT);
+        assertRect(reader, 2, 1, 0, 0, 1, 1, WIDTH, HEIGHT);
+        assertRect(reader, 2, 1, 5, 1, 1, 3, 5, 2);
+    }
+
+    @Test
+    public void testByteStripsLzwWithPredictor() throws IOException {
+        file = writeTiff(ByteOrder.BIG_ENDIAN, 1, false, false, WIDTH, 2, COMPRESSION_LZW, true);
+        reader = TiffTileReader.open(file);
+
+        assertNotNull(reader);
+        assertRect(reader, 1, 0, 0, 0, 1, 1, WIDTH, HEIGHT);
+        assertRect(reader, 1, 1, 0, 0, 1, 1, WIDTH, HEIGHT);
+        assertRect(reader, 1, 0, 2, 1, 4, 2, 2, 3);
+    }
+
+    @Test
+    public void testSamplesAreConvertedToBufferType() throws IOException {
+        file = writeTiff(ByteOrder.LITTLE_ENDIAN, 2, false, false, WIDTH, 3, COMPRESSION_NONE, false);
+        reader = TiffTileReader.open(file);
+
+        final ProductData buffer = ProductData.createInstance(ProductData.TYPE_FLOAT32, WIDTH * HEIGHT);
+        reader.readRect(1, 0, 0, 1, 1, WIDTH, HEIGHT, buffer);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(getSample(2, x, y, 1), buffer.getElemFloatAt(y * WIDTH + x), 0.0F);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegionOutOfBounds() throws IOException {
+        file = writeTiff(ByteOrder.LITTLE_ENDIAN, 2, false, false, WIDTH, 3, COMPRESSION_NONE, false);
+        reader = TiffTileReader.open(file);
+
+        reader.readRect(0, 2, 0, 1, 1, WIDTH, 1, ProductData.createInstance(ProductData.TYPE_UINT16, WIDTH));
+    }
+
+    private static void assertRect(TiffTileReader reader, int bytesPerSample, int bandIndex,
+                                   int sourceOffsetX, int sourceOffsetY, int sourceStepX, int sourceStepY,
+                                   int destWidth, int destHeight) throws IOException {
+        final int type = bytesPerSample == 1 ? ProductData.TYPE_UINT8 : ProductData.TYPE_UINT16;
+        final ProductData buffer = ProductData.createInstance(type, destWidth * destHeight);
+        reader.readRect(bandIndex, sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY,
+                        destWidth, destHeight, buffer);
+        for (int y = 0; y < destHeight; y++) {
+            for (int x = 0; x < destWidth; x++) {
+                final int sourceX = sourceOffsetX + x * sourceStepX;
+                final int sourceY = sourceOffsetY + y * sourceStepY;
+                assertEquals("band " + bandIndex + " at " + sourceX + "," + sourceY,
+                             getSample(bytesPerSample, sourceX, sourceY, bandIndex),
+                             buffer.getElemIntAt(y * destWidth + x));
+            }
+        }
+    }
+
+    private static int getSample(int bytesPerSample, int x, int y, int bandIndex) {
+        final int value = 100 * bandIndex + 12 * y + x;
+        // 16 bit samples exceed the range of signed shorts
+        return bytesPerSample == 1 ? value : 257 * value;
+    }
+
+    /**
+     * Writes a classic TIFF with {@link #NUM_BANDS} unsigned integer bands. Image data come first, followed by
+     * the IFD. Tiles are padded to full size, the last strip only contains the remaining rows.
+     */
+    private static File writeTiff(ByteOrder byteOrder, int bytesPerSample, boolean planar, boolean tiled,
+                                  int blockWidth, int blockHeight, int compression, boolean predictor)
+            throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(byteOrder);
+        buffer.put(byteOrder == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M');
+        buffer.put(buffer.get(0));
+        buffer.putShort((short) 42);
+        buffer.putInt(0);
+
+        final int numXBlocks = (WIDTH + blockWidth - 1) / blockWidth;
+        final int numYBlocks = (HEIGHT + blockHeight - 1) / blockHeight;
+        final int numPlanes = planar ? NUM_BANDS : 1;
+        final int samplesPerPixel = planar ? 1 : NUM_BANDS;
+        final long[] offsets = new long[numPlanes * numYBlocks * numXBlocks];
+        final long[] byteCounts = new long[offsets.length];
+        int blockIndex = 0;
+        for (int plane = 0; plane < numPlanes; plane++) {
+            for (int blockY = 0; blockY < numYBlocks; blockY++) {
+                for (int blockX = 0; blockX < numXBlocks; blockX++) {
+                    final int rows = tiled ? blockHeight : Math.min(blockHeight, HEIGHT - blockY * blockHeight);
+                    final int rowLength = blockWidth * samplesPerPixel;
+                    final int[] samples = new int[rows * rowLength];
+                    for (int row = 0; row < rows; row++) {
+                        for (int column = 0; column < blockWidth; column++) {
+                            for (int k = 0; k < samplesPerPixel; k++) {
+                                final int x = blockX * blockWidth + column;
+                                final int y = blockY * blockHeight + row;
+                                final int bandIndex = planar ? plane : k;
+                                final boolean inImage = x < WIDTH && y < HEIGHT;
+                                samples[row * rowLength + column * samplesPerPixel + k] =
+                                        inImage ? getSample(bytesPerSample, x, y, bandIndex) : 0;
+                            }
+                        }
+                        if (predictor) {
+                            for (int i = (row + 1) * rowLength - 1; i >= row * rowLength + samplesPerPixel; i--) {
+                                samples[i] -= samples[i - samplesPerPixel];
+                            }
+                        }
+                    }
+                    final byte[] data = compress(toBytes(samples, bytesPerSample, byteOrder), compression);
+                    offsets[blockIndex] = buffer.position();
+                    byteCounts[blockIndex] = data.length;
+                    buffer.put(data);
+                    blockIndex++;
+                }
+            }
+        }
+
+        final List<long[]> entries = new ArrayList<long[]>();
+        entries.add(new long[]{256, WIDTH});
+        entries.add(new long[]{257, HEIGHT});
+        entries.add(new long[]{258, 8 * bytesPerSample, 8 * bytesPerSample});
+        entries.add(new long[]{259, compression});
+        entries.add(new long[]{262, 1});
+        if (!tiled) {
+            entries.add(concat(273, offsets));
+        }
+        entries.add(new long[]{277, NUM_BANDS});
+        if (!tiled) {
+            entries.add(new long[]{278, blockHeight});
+            entries.add(concat(279, byteCounts));
+        }
+        entries.add(new long[]{284, planar ? 2 : 1});
+        if (predictor) {
+            entries.add(new long[]{317, 2});
+        }
+        if (tiled) {
+            entries.add(new long[]{322, blockWidth});
+            entries.add(new long[]{323, blockHeight});
+            entries.add(concat(324, offsets));
+            entries.add(concat(325, byteCounts));
+        }
+        entries.add(new long[]{339, 1, 1});
+        writeIfd(buffer, entries);
+
+        final File file = File.createTempFile("beam-tiff-tile-reader-", ".tif");
+        final FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write(buffer.array(), 0, buffer.position());
+        } finally {
+            stream.close();
+        }
+        return file;
+    }
+
+    /**
+     * Writes an IFD, with all values of type LONG, except for the bits per sample and sample format.
+     */
+    private static void writeIfd(ByteBuffer buffer, List<long[]> entries) {
+        if (buffer.position() % 2 != 0) {
+            buffer.put((byte) 0);
+        }
+        final int ifdOffset = buffer.position();
+        buffer.putInt(4, ifdOffset);
+        int valueOffset = ifdOffset + 2 + 12 * entries.size() + 4;
+        buffer.putShort((short) entries.size());
+        for (long[] entry : entries) {
+            final int tag = (int) entry[0];
+            final int count = entry.length - 1;
+            final boolean isShort = tag == 258 || tag == 339;
+            final int valueSize = isShort ? 2 : 4;
+            buffer.putShort((short) tag);
+            buffer.putShort((short) (isShort ? 3 : 4));
+            buffer.putInt(count);
+            final int valuePosition;
+            if (count * valueSize <= 4) {
+                valuePosition = buffer.position();
+                buffer.putInt(0);
+            } else {
+                valuePosition = valueOffset;
+                buffer.putInt(valueOffset);
+                valueOffset += count * valueSize;
+            }
+            for (int i = 0; i < count; i++) {
+                if (isShort) {
+                    buffer.putShort(valuePosition + 2 * i, (short) entry[i + 1]);
+                } else {
+                    buffer.putInt(valuePosition + 4 * i, (int) entry[i + 1]);
+                }
+            }
+        }
+        buffer.putInt(0);
+        buffer.position(valueOffset);
+    }
+
+    private static long[] concat(int tag, long[] values) {
+        final long[] entry = new long[values.length + 1];
+        entry[0] = tag;
+        System.arraycopy(values, 0, entry, 1, values.length);
+        return entry;
+    }
+
+    private static byte[] toBytes(int[] samples, int bytesPerSample, ByteOrder byteOrder) {
+        final ByteBuffer bytes = ByteBuffer.allocate(samples.length * bytesPerSample).order(byteOrder);
+        for (int sample : samples) {
+            if (bytesPerSample == 1) {
+                bytes.put((byte) sample);
+            } else {
+                bytes.putShort((short) sample);
+            }
+        }
+        return bytes.array();
+    }
+
+    private static byte[] compress(byte[] data, int compression) {
+        if (compression == COMPRESSION_LZW) {
+            return new TiffLzwEncoder().encode(data);
+        } else if (compression == COMPRESSION_DEFLATE) {
+            final Deflater deflater = new Deflater();
+            deflater.setInput(data);
+            deflater.finish();
+            final byte[] buffer = new byte[data.length + 64];
+            final int length = deflater.deflate(buffer);
+            deflater.end();
+            final byte[] compressed = new byte[length];
+            System.arraycopy(buffer, 0, compressed, 0, length);
+            return compressed;
+        }
+        return data;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.binning;
+
+/**
+ * A {@link PlanetaryGrid} which can transform many geographical points into bin indexes at once.
+ * <p/>
+ * Grids which do not implement this interface are used point by point.
+ *
+ * @see PlanetaryGrid#getBinIndex(double, double)
+ */
+public interface BatchPlanetaryGrid extends PlanetaryGrid {
+
+    /**
+     * Transforms geographical points into unique bin indexes. The result must be the same as calling
+     * {@link #getBinIndex(double, double) getBinIndex(lats[i], lons[i])} for every point.
+     *
+     * @param lats       The latitudes in degrees. Must be in the range -90 to +90.
+     * @param lons       The longitudes in degrees. Must be in the range -180 to +180.
+     * @param offset     The index of the first point.
+     * @param length     The number of points.
+     * @param binIndexes Receives the bin indexes, at the same positions as the points.
+     */
+    void getBinIndexes(double[] lats, double[] lons, int offset, int length, long[] binIndexes);
+}
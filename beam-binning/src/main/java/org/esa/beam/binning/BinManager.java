@@ -17,6 +17,7 @@
 package org.esa.beam.binning;
 
 import org.esa.beam.binning.support.BinTracer;
+import org.esa.beam.binning.support.ColumnarBinStore;
 import org.esa.beam.binning.support.VariableContextImpl;
 import org.esa.beam.binning.support.VectorImpl;
 
@@ -275,6 +276,94 @@ public class BinManager {
         traceTemporal("completeTemporal", null, temporalBin);
     }
 
+    /**
+     * Creates a new temporal bin in a columnar bin store. Unlike {@link #createTemporalBin(long)}, no bin
+     * object is allocated. Bins in columnar stores are not traced.
+     *
+     * @param binStore The bin store, must have {@link #getTemporalFeatureCount()} features.
+     * @param binIndex The bin index.
+     * @return The slot of the new bin.
+     */
+    public int createTemporalBin(ColumnarBinStore binStore, long binIndex) {
+        final int slot = binStore.add(binIndex);
+        final ColumnarBinStore.Cursor cursor = binStore.getCursor(slot);
+        for (int i = 0; i < aggregators.length; i++) {
+            final Aggregator aggregator = aggregators[i];
+            aggregator.initTemporal(cursor, cursor.getVector(temporalFeatureOffsets[i], aggregator.getTemporalFeatureNames().length));
+        }
+        return slot;
+    }
+
+    public void aggregateTemporalBin(SpatialBin inputBin, ColumnarBinStore binStore, int slot) {
+        final ColumnarBinStore.Cursor cursor = binStore.getCursor(slot);
+        for (int i = 0; i < aggregators.length; i++) {
+            final Aggregator aggregator = aggregators[i];
+            aggregator.aggregateTemporal(cursor,
+                                         cursor.getInputVector(inputBin.featureValues, spatialFeatureOffsets[i],
+                                                               aggregator.getSpatialFeatureNames().length),
+                                         inputBin.numObs,
+                                         cursor.getVector(temporalFeatureOffsets[i], aggregator.getTemporalFeatureNames().length));
+        }
+        cursor.setNumObs(cursor.getNumObs() + inputBin.numObs);
+        cursor.setNumPasses(cursor.getNumPasses() + 1);
+    }
+
+    /**
+     * Aggregates a spatial bin held in a columnar bin store into a temporal bin held in another columnar bin
+     * store. No objects are allocated.
+     *
+     * @param spatialBinStore The store of the spatial bin, must have {@link #getSpatialFeatureCount()} features.
+     * @param spatialSlot     The slot of the spatial bin.
+     * @param binStore        The store of the temporal bin, must have {@link #getTemporalFeatureCount()} features.
+     * @param slot            The slot of the temporal bin.
+     */
+    public void aggregateTemporalBin(ColumnarBinStore spatialBinStore, int spatialSlot,
+                                     ColumnarBinStore binStore, int slot) {
+        final ColumnarBinStore.Cursor spatialCursor = spatialBinStore.getCursor(spatialSlot);
+        final int spatialNumObs = spatialCursor.getNumObs();
+        final ColumnarBinStore.Cursor cursor = binStore.getCursor(slot);
+        for (int i = 0; i < aggregators.length; i++) {
+            final Aggregator aggregator = aggregators[i];
+            aggregator.aggregateTemporal(cursor,
+                                         spatialCursor.getVector(spatialFeatureOffsets[i],
+                                                                 aggregator.getSpatialFeatureNames().length),
+                                         spatialNumObs,
+                                         cursor.getVector(temporalFeatureOffsets[i], aggregator.getTemporalFeatureNames().length));
+        }
+        cursor.setNumObs(cursor.getNumObs() + spatialNumObs);
+        cursor.setNumPasses(cursor.getNumPasses() + 1);
+    }
+
+    public void completeTemporalBin(ColumnarBinStore binStore, int slot) {
+        final ColumnarBinStore.Cursor cursor = binStore.getCursor(slot);
+        for (int i = 0; i < aggregators.length; i++) {
+            final Aggregator aggregator = aggregators[i];
+            aggregator.completeTemporal(cursor, cursor.getNumObs(),
+                                        cursor.getVector(temporalFeatureOffsets[i], aggregator.getTemporalFeatureNames().length));
+        }
+        binStore.releaseContext(slot);
+    }
+
+    /**
+     * Computes the output features of a temporal bin in a columnar bin store. Unlike
+     * {@link #computeOutput(TemporalBin, WritableVector)}, no bin is traced.
+     *
+     * @param binStore     The bin store, must have {@link #getTemporalFeatureCount()} features.
+     * @param slot         The slot of the temporal bin.
+     * @param outputVector The output vector, as returned by {@link Bin#toVector()} of an output bin.
+     */
+    public void computeOutput(ColumnarBinStore binStore, int slot, WritableVector outputVector) {
+        final ColumnarBinStore.Cursor cursor = binStore.getCursor(slot);
+        final VectorImpl outputVectorImpl = (VectorImpl) outputVector;
+        for (int i = 0; i < aggregators.length; i++) {
+            final Aggregator aggregator = aggregators[i];
+            outputVectorImpl.setOffsetAndSize(outputFeatureOffsets[i], aggregator.getOutputFeatureNames().length);
+            aggregator.computeOutput(cursor.getVector(temporalFeatureOffsets[i], aggregator.getTemporalFeatureNames().length),
+                                     outputVector);
+        }
+        outputVectorImpl.setOffsetAndSize(0, outputFeatureCount);
+    }
+
     public TemporalBin createOutputBin(long binIndex) {
         return new TemporalBin(binIndex, outputFeatureCount);
     }
@@ -16,11 +16,11 @@ package org.esa.beam.binning;
  * with this program; if not, see http://www.gnu.org/licenses/
  */
 
+import org.esa.beam.binning.support.SpatialBinTable;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * Produces spatial bins by processing a given "slice" of observations.
@@ -33,15 +33,29 @@ import java.util.TreeMap;
  */
 public class SpatialBinner {
 
+    /**
+     * System property which, if set to {@code true}, lets new spatial binners keep the keys of their
+     * bin table in direct (off-heap) memory.
+     */
+    public static final String PROPERTY_KEY_OFF_HEAP_BIN_TABLE = "beam.binning.offHeapBinTable";
+
+    private static final int INITIAL_BIN_TABLE_CAPACITY = 4096;
+    private static final int OBSERVATION_BATCH_SIZE = 1024;
+
     private final BinningContext binningContext;
     private final PlanetaryGrid planetaryGrid;
     private final BinManager binManager;
     private final SpatialBinConsumer consumer;
+    private final BatchPlanetaryGrid batchPlanetaryGrid;
 
     // State variables
-    private final Map<Long, SpatialBin> activeBinMap;
-    private final Map<Long, SpatialBin> finalizedBinMap;
+    private final SpatialBinTable activeBins;
     private final ArrayList<Exception> exceptions;
+    private int generation;
+    private Observation[] observationBatch;
+    private double[] latitudeBatch;
+    private double[] longitudeBatch;
+    private long[] binIndexBatch;
 
     /**
      * Constructs a spatial binner.
@@ -50,13 +64,32 @@ public class SpatialBinner {
      * @param consumer       The consumer that receives the spatial bins processed from observations.
      */
     public SpatialBinner(BinningContext binningContext, SpatialBinConsumer consumer) {
+        this(binningContext, consumer, Boolean.getBoolean(PROPERTY_KEY_OFF_HEAP_BIN_TABLE));
+    }
+
+    /**
+     * Constructs a spatial binner.
+     *
+     * @param binningContext The binning context.
+     * @param consumer       The consumer that receives the spatial bins processed from observations.
+     * @param offHeap        If {@code true}, the keys of the active bin table are held in direct (off-heap) memory.
+     */
+    public SpatialBinner(BinningContext binningContext, SpatialBinConsumer consumer, boolean offHeap) {
         this.binningContext = binningContext;
         this.planetaryGrid = binningContext.getPlanetaryGrid();
         this.binManager = binningContext.getBinManager();
         this.consumer = consumer;
-        this.activeBinMap = new TreeMap<Long, SpatialBin>();
-        this.finalizedBinMap = new TreeMap<Long, SpatialBin>();
+        this.activeBins = new SpatialBinTable(INITIAL_BIN_TABLE_CAPACITY, offHeap);
         this.exceptions = new ArrayList<Exception>();
+        if (planetaryGrid instanceof BatchPlanetaryGrid) {
+            this.batchPlanetaryGrid = (BatchPlanetaryGrid) planetaryGrid;
+            this.observationBatch = new Observation[OBSERVATION_BATCH_SIZE];
+            this.latitudeBatch = new double[OBSERVATION_BATCH_SIZE];
+            this.longitudeBatch = new double[OBSERVATION_BATCH_SIZE];
+            this.binIndexBatch = new long[OBSERVATION_BATCH_SIZE];
+        } else {
+            this.batchPlanetaryGrid = null;
+        }
     }
 
     /**
@@ -83,27 +116,35 @@ public class SpatialBinner {
      */
     public long processObservationSlice(Iterable<Observation> observations) {
 
-        finalizedBinMap.putAll(activeBinMap);
+        // All bins not stamped with the new generation during this slice are finalized afterwards
+        generation++;
 
         long observationCounter = 0;
-        for (Observation observation : observations) {
-            observationCounter++;
-            Long binIndex = planetaryGrid.getBinIndex(observation.getLatitude(), observation.getLongitude());
-            SpatialBin bin = activeBinMap.get(binIndex);
-            if (bin == null) {
-                bin = binManager.createSpatialBin(binIndex);
-                activeBinMap.put(binIndex, bin);
+        if (batchPlanetaryGrid != null) {
+            // bin indexes are computed for a batch of consecutive observations at once
+            int batchSize = 0;
+            for (Observation observation : observations) {
+                observationCounter++;
+                observationBatch[batchSize] = observation;
+                latitudeBatch[batchSize] = observation.getLatitude();
+                longitudeBatch[batchSize] = observation.getLongitude();
+                if (++batchSize == OBSERVATION_BATCH_SIZE) {
+                    aggregateObservationBatch(batchSize);
+                    batchSize = 0;
+                }
+            }
+            aggregateObservationBatch(batchSize);
+        } else {
+            for (Observation observation : observations) {
+                observationCounter++;
+                long binIndex = planetaryGrid.getBinIndex(observation.getLatitude(), observation.getLongitude());
+                aggregateObservation(observation, binIndex);
             }
-            binManager.aggregateSpatialBin(observation, bin);
-            finalizedBinMap.remove(binIndex);
         }
 
-        if (!finalizedBinMap.isEmpty()) {
-            for (Long key : finalizedBinMap.keySet()) {
-                activeBinMap.remove(key);
-            }
-            emitSliceBins(finalizedBinMap);
-            finalizedBinMap.clear();
+        List<SpatialBin> finalizedBins = activeBins.removeStale(generation);
+        if (!finalizedBins.isEmpty()) {
+            emitSliceBins(finalizedBins);
         }
 
         return observationCounter;
@@ -126,15 +167,31 @@ public class SpatialBinner {
      * Calling this method multiple times has no further effect.
      */
     public void complete() {
-        if (!activeBinMap.isEmpty()) {
-            emitSliceBins(activeBinMap);
-            activeBinMap.clear();
+        if (!activeBins.isEmpty()) {
+            emitSliceBins(activeBins.removeAll());
+        }
+    }
+
+    private void aggregateObservationBatch(int batchSize) {
+        if (batchSize > 0) {
+            batchPlanetaryGrid.getBinIndexes(latitudeBatch, longitudeBatch, 0, batchSize, binIndexBatch);
+            for (int i = 0; i < batchSize; i++) {
+                aggregateObservation(observationBatch[i], binIndexBatch[i]);
+                observationBatch[i] = null;
+            }
+        }
+    }
+
+    private void aggregateObservation(Observation observation, long binIndex) {
+        SpatialBin bin = activeBins.get(binIndex, generation);
+        if (bin == null) {
+            bin = binManager.createSpatialBin(binIndex);
+            activeBins.put(bin, generation);
         }
-        finalizedBinMap.clear();
+        binManager.aggregateSpatialBin(observation, bin);
     }
 
-    private void emitSliceBins(Map<Long, SpatialBin> binMap) {
-        List<SpatialBin> bins = new ArrayList<SpatialBin>(binMap.values());
+    private void emitSliceBins(List<SpatialBin> bins) {
         for (SpatialBin bin : bins) {
             binManager.completeSpatialBin(bin);
         }
@@ -16,6 +16,8 @@
 
 package org.esa.beam.binning;
 
+import org.esa.beam.binning.support.ColumnarBinStore;
+
 import java.io.IOException;
 
 /**
@@ -36,6 +38,56 @@ public class TemporalBinner {
         return binManager.createTemporalBin(binIndex, spatialBins);
     }
 
+    /**
+     * Processes multiple spatial bins to a single temporal bin held in a columnar bin store. Other than
+     * {@link #processSpatialBins(long, Iterable)}, this allocates no objects per bin, so a single store
+     * can be cleared and re-used for many bins. Bins in columnar stores are not traced.
+     *
+     * @param binIndex         The bin index.
+     * @param spatialBins      The spatial bins.
+     * @param temporalBinStore The store receiving the temporal bin.
+     *
+     * @return The slot of the temporal bin.
+     */
+    public int processSpatialBins(long binIndex, Iterable<? extends SpatialBin> spatialBins,
+                                  ColumnarBinStore temporalBinStore) {
+        final int slot = binManager.createTemporalBin(temporalBinStore, binIndex);
+        for (SpatialBin spatialBin : spatialBins) {
+            binManager.aggregateTemporalBin(spatialBin, temporalBinStore, slot);
+        }
+        binManager.completeTemporalBin(temporalBinStore, slot);
+        return slot;
+    }
+
+    /**
+     * Processes the spatial bins of a range of slots of a columnar bin store to a single temporal bin held in
+     * another columnar bin store. Neither bin objects nor lists of them are created.
+     *
+     * @param spatialBinStore  The store of the spatial bins.
+     * @param firstSlot        The slot of the first spatial bin.
+     * @param endSlot          The slot after the last spatial bin. All bins in between have the same bin index.
+     * @param temporalBinStore The store receiving the temporal bin.
+     *
+     * @return The slot of the temporal bin.
+     */
+    public int processSpatialBins(ColumnarBinStore spatialBinStore, int firstSlot, int endSlot,
+                                  ColumnarBinStore temporalBinStore) {
+        final int slot = binManager.createTemporalBin(temporalBinStore, spatialBinStore.getIndex(firstSlot));
+        for (int spatialSlot = firstSlot; spatialSlot < endSlot; spatialSlot++) {
+            binManager.aggregateTemporalBin(spatialBinStore, spatialSlot, temporalBinStore, slot);
+        }
+        binManager.completeTemporalBin(temporalBinStore, slot);
+        return slot;
+    }
+
+    public TemporalBin computeOutput(ColumnarBinStore temporalBinStore, int slot) {
+        TemporalBin outputBin = binManager.createOutputBin(temporalBinStore.getIndex(slot));
+        binManager.computeOutput(temporalBinStore, slot, outputBin.toVector());
+        outputBin.setNumObs(temporalBinStore.getNumObs(slot));
+        outputBin.setNumPasses(temporalBinStore.getNumPasses(slot));
+        return outputBin;
+    }
+
     public TemporalBin computeOutput(long binIndex, TemporalBin temporalBin) {
         TemporalBin outputBin = binManager.createOutputBin(binIndex);
         binManager.computeOutput(temporalBin, outputBin.toVector());
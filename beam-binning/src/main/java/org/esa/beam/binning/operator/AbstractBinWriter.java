@@ -155,9 +155,13 @@ public abstract class AbstractBinWriter implements BinWriter {
         private final Array buffer;
 
         protected BinListVar(Variable variable, BinListElementSetter setter) {
+            this(variable, setter, BUFFER_SIZE);
+        }
+
+        protected BinListVar(Variable variable, BinListElementSetter setter, int bufferSize) {
             this.variable = variable;
             this.setter = setter;
-            this.buffer = Array.factory(variable.getDataType(), new int[]{BUFFER_SIZE});
+            this.buffer = Array.factory(variable.getDataType(), new int[]{bufferSize});
         }
     }
 }
@@ -128,6 +128,13 @@ public class BinningConfig {
             defaultValue = "NONE")
     private BinningOp.TimeFilterMethod timeFilterMethod;
 
+    @Parameter(description = "The number of worker threads used for binning. If greater than 1, several source products " +
+            "are binned concurrently, and the slices of each source product are read ahead concurrently " +
+            "while its slices are binned one at a time. " +
+            "A value less than 1 means that the number of available processors is used.",
+            defaultValue = "1")
+    private int numWorkers = 1;
+
     @Parameter
     private String outputFile;
 
@@ -241,6 +248,22 @@ public class BinningConfig {
         this.timeFilterMethod = timeFilterMethod;
     }
 
+    public int getNumWorkers() {
+        return numWorkers;
+    }
+
+    public void setNumWorkers(int numWorkers) {
+        this.numWorkers = numWorkers;
+    }
+
+    /**
+     * @return The number of worker threads to be used, which is {@link #getNumWorkers() numWorkers} or the number of
+     *         available processors, if {@code numWorkers} is less than 1.
+     */
+    public int getEffectiveNumWorkers() {
+        return numWorkers > 0 ? numWorkers : Runtime.getRuntime().availableProcessors();
+    }
+
     public String getOutputFile() {
         return outputFile;
     }
@@ -25,6 +25,7 @@ import org.esa.beam.binning.CellProcessorConfig;
 import org.esa.beam.binning.DataPeriod;
 import org.esa.beam.binning.ProductCustomizerConfig;
 import org.esa.beam.binning.SpatialBin;
+import org.esa.beam.binning.SpatialBinConsumer;
 import org.esa.beam.binning.SpatialBinner;
 import org.esa.beam.binning.TemporalBin;
 import org.esa.beam.binning.TemporalBinSource;
@@ -33,6 +34,7 @@ import org.esa.beam.binning.cellprocessor.CellProcessorChain;
 import org.esa.beam.binning.operator.metadata.GlobalMetadata;
 import org.esa.beam.binning.operator.metadata.MetadataAggregator;
 import org.esa.beam.binning.operator.metadata.MetadataAggregatorFactory;
+import org.esa.beam.binning.support.ColumnarBinStore;
 import org.esa.beam.binning.support.SpatialDataPeriod;
 import org.esa.beam.framework.dataio.ProductIO;
 import org.esa.beam.framework.datamodel.Band;
@@ -59,13 +61,22 @@ import java.awt.geom.GeneralPath;
 import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.logging.Level;
 
 /*
@@ -113,6 +124,8 @@ public class BinningOp extends Operator {
     public static final String DATETIME_INPUT_PATTERN = "yyyy-MM-dd HH:mm:ss";
     public static final String DATETIME_OUTPUT_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSS";
 
+    private static final int TEMPORAL_BINNING_BATCH_SIZE = 4096;
+
     @SourceProducts(description = "The source products to be binned. Must be all of the same structure. " +
             "If not given, the parameter 'sourceProductPaths' must be provided.")
     Product[] sourceProducts;
@@ -205,6 +218,13 @@ public class BinningOp extends Operator {
             defaultValue = "true")
     private boolean outputTargetProduct;
 
+    @Parameter(description = "The number of worker threads used for spatial binning. If greater than 1, several source " +
+            "products are binned concurrently, and the slices of each source product are read ahead concurrently " +
+            "while its slices are binned one at a time. " +
+            "A value less than 1 means that the number of available processors is used.",
+            defaultValue = "1")
+    private int numWorkers;
+
     @Parameter(description = "The name of the file containing metadata key-value pairs (google \"Java Properties file format\").",
             defaultValue = "./metadata.properties")
     File metadataPropertiesFile;
@@ -231,12 +251,16 @@ public class BinningOp extends Operator {
     private transient Area regionArea;
     private transient MetadataAggregator metadataAggregator;
     private transient String planetaryGridClass;
+    private transient int effectiveNumWorkers;
+    private transient GeneralSpatialBinCollector spatialBinCollector;
 
     private final Map<Product, List<Band>> addedVariableBands;
+    private final Object sourceBookkeepingLock;
     private Product writtenProduct;
 
     public BinningOp() throws OperatorException {
-        addedVariableBands = new HashMap<>();
+        addedVariableBands = Collections.synchronizedMap(new HashMap<Product, List<Band>>());
+        sourceBookkeepingLock = new Object();
     }
 
     public Geometry getRegion() {
@@ -335,6 +359,14 @@ public class BinningOp extends Operator {
         return postProcessorConfig;
     }
 
+    public int getNumWorkers() {
+        return numWorkers;
+    }
+
+    public void setNumWorkers(int numWorkers) {
+        this.numWorkers = numWorkers;
+    }
+
     public void setPostProcessorConfig(CellProcessorConfig postProcessorConfig) {
         this.postProcessorConfig = postProcessorConfig;
     }
@@ -402,6 +434,7 @@ public class BinningOp extends Operator {
 
         final BinningConfig binningConfig = createConfig();
         binningContext = binningConfig.createBinningContext(region, startDateUtc, periodDuration);
+        effectiveNumWorkers = binningConfig.getEffectiveNumWorkers();
 
         BinningProductFilter productFilter = createSourceProductFilter(binningContext.getDataPeriod(),
                 startDateUtc,
@@ -420,7 +453,15 @@ public class BinningOp extends Operator {
                     region = JTS.shapeToGeometry(regionArea, new GeometryFactory());
                 }
                 // Step 2: Temporal binning - creates a list of temporal bins, sorted by bin ID
-                TemporalBinList temporalBins = doTemporalBinning(spatialBinMap);
+                // The temporal bins are stored in a temporary file, from which both the bin writer and the
+                // formatter stream them. The bin writer walks the grid rows in the reverse order of the bin IDs.
+                TemporalBinStore temporalBins;
+                try {
+                    temporalBins = doTemporalBinning(spatialBinMap.size());
+                } finally {
+                    // the spatial bins are not needed anymore
+                    closeSpatialBinCollector();
+                }
                 // Step 3: Formatting
                 try {
                     if (startDateTime != null) {
@@ -440,6 +481,7 @@ public class BinningOp extends Operator {
         } catch (Exception e) {
             throw new OperatorException(e);
         } finally {
+            closeSpatialBinCollector();
             cleanSourceProducts();
         }
 
@@ -471,6 +513,7 @@ public class BinningOp extends Operator {
         config.setTimeFilterMethod(timeFilterMethod);
         config.setOutputFile(outputFile);
         config.setRegion(region);
+        config.setNumWorkers(numWorkers);
         if (planetaryGridClass != null) {
             config.setPlanetaryGrid(planetaryGridClass);
         }
@@ -542,6 +585,17 @@ public class BinningOp extends Operator {
         }
     }
 
+    private void closeSpatialBinCollector() {
+        if (spatialBinCollector != null) {
+            try {
+                spatialBinCollector.close();
+            } catch (IOException e) {
+                getLogger().warning("Failed to delete temporary spatial bin files: " + e.getMessage());
+            }
+            spatialBinCollector = null;
+        }
+    }
+
     private void initMetadataProperties() {
         globalMetadata = GlobalMetadata.create(this);
         globalMetadata.load(metadataPropertiesFile, getLogger());
@@ -566,66 +620,138 @@ public class BinningOp extends Operator {
     }
 
     private SpatialBinCollection doSpatialBinning(BinningProductFilter productFilter) throws IOException {
-        SpatialBinCollector spatialBinCollector = new GeneralSpatialBinCollector(binningContext.getPlanetaryGrid().getNumBins());
-        final SpatialBinner spatialBinner = new SpatialBinner(binningContext, spatialBinCollector);
-        if (sourceProducts != null) {
-            for (Product sourceProduct : sourceProducts) {
-                if (productFilter.accept(sourceProduct)) {
-                    processSource(sourceProduct, spatialBinner);
-                } else {
-                    getLogger().warning("Filtered out product '" + sourceProduct.getFileLocation() + "'");
-                    getLogger().warning("              reason: " + productFilter.getReason());
+        spatialBinCollector = new GeneralSpatialBinCollector(binningContext.getPlanetaryGrid().getNumBins());
+        if (effectiveNumWorkers > 1) {
+            doParallelSpatialBinning(productFilter, spatialBinCollector);
+        } else {
+            final SpatialBinner spatialBinner = new SpatialBinner(binningContext, spatialBinCollector);
+            if (sourceProducts != null) {
+                for (Product sourceProduct : sourceProducts) {
+                    processAcceptedSource(sourceProduct, productFilter, spatialBinner, null, null);
                 }
             }
-        }
-        if (sourceProductPaths != null) {
-            SortedSet<File> fileSet = new TreeSet<>();
-            for (String filePattern : sourceProductPaths) {
-                WildcardMatcher.glob(filePattern, fileSet);
-            }
-            if (fileSet.isEmpty()) {
-                getLogger().warning("The given source file patterns did not match any files");
+            if (sourceProductPaths != null) {
+                for (File file : getSourceProductFiles()) {
+                    processSourceFile(file, productFilter, spatialBinner, null, null);
+                }
             }
-            for (File file : fileSet) {
-                Product sourceProduct = null;
-                try {
-                    if (sourceProductFormat != null) {
-                        sourceProduct = ProductIO.readProduct(file, sourceProductFormat);
-                    } else {
-                        sourceProduct = ProductIO.readProduct(file);
-                    }
-                } catch (Exception e) {
-                    String msgPattern = "Failed to read file '%s'. %s: %s";
-                    getLogger().severe(String.format(msgPattern, file, e.getClass().getSimpleName(), e.getMessage()));
+        }
+        spatialBinCollector.consumingCompleted();
+        return spatialBinCollector.getSpatialBinCollection();
+    }
+
+    /*
+     * Every source product is binned by its own spatial binner on a worker thread. The slices of each product are
+     * read concurrently on a second pool, so that also few large products keep all workers busy. Spatial bins of
+     * different products are independent, hence the spatial bin collector only needs to be synchronised.
+     */
+    private void doParallelSpatialBinning(final BinningProductFilter productFilter,
+                                          SpatialBinCollector spatialBinCollector) throws IOException {
+        getLogger().info(String.format("Spatial binning using %d worker threads", effectiveNumWorkers));
+        final SpatialBinConsumer consumer = new SynchronizedSpatialBinConsumer(spatialBinCollector);
+        final ExecutorService productExecutor = Executors.newFixedThreadPool(effectiveNumWorkers);
+        final ExecutorService sliceExecutor = Executors.newFixedThreadPool(effectiveNumWorkers);
+        // shared by all products, so that at most one slice per worker is read ahead in total
+        final Semaphore slicePermits = new Semaphore(effectiveNumWorkers);
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+            if (sourceProducts != null) {
+                for (final Product sourceProduct : sourceProducts) {
+                    futures.add(productExecutor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            SpatialBinner spatialBinner = new SpatialBinner(binningContext, consumer);
+                            processAcceptedSource(sourceProduct, productFilter, spatialBinner, sliceExecutor,
+                                                  slicePermits);
+                            return null;
+                        }
+                    }));
                 }
-                if (sourceProduct != null) {
-                    try {
-                        if (productFilter.accept(sourceProduct)) {
-                            processSource(sourceProduct, spatialBinner);
-                        } else {
-                            getLogger().warning("Filtered out product '" + sourceProduct.getFileLocation() + "'");
-                            getLogger().warning("              reason: " + productFilter.getReason());
+            }
+            if (sourceProductPaths != null) {
+                for (final File file : getSourceProductFiles()) {
+                    futures.add(productExecutor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            SpatialBinner spatialBinner = new SpatialBinner(binningContext, consumer);
+                            processSourceFile(file, productFilter, spatialBinner, sliceExecutor, slicePermits);
+                            return null;
                         }
-                    } finally {
-                        sourceProduct.dispose();
-                    }
-                } else {
-                    String msgPattern = "Failed to read file '%s' (not a data product or reader missing)";
-                    getLogger().severe(String.format(msgPattern, file));
+                    }));
                 }
             }
+            for (Future<Void> future : futures) {
+                getTaskResult(future, "spatial binning");
+            }
+        } finally {
+            productExecutor.shutdownNow();
+            sliceExecutor.shutdownNow();
         }
-        spatialBinCollector.consumingCompleted();
-        return spatialBinCollector.getSpatialBinCollection();
     }
 
+    private SortedSet<File> getSourceProductFiles() throws IOException {
+        SortedSet<File> fileSet = new TreeSet<>();
+        for (String filePattern : sourceProductPaths) {
+            WildcardMatcher.glob(filePattern, fileSet);
+        }
+        if (fileSet.isEmpty()) {
+            getLogger().warning("The given source file patterns did not match any files");
+        }
+        return fileSet;
+    }
 
-    private void processSource(Product sourceProduct, SpatialBinner spatialBinner) throws IOException {
+    private void processSourceFile(File file, BinningProductFilter productFilter, SpatialBinner spatialBinner,
+                                   ExecutorService sliceExecutor, Semaphore slicePermits) throws IOException {
+        Product sourceProduct = null;
+        try {
+            if (sourceProductFormat != null) {
+                sourceProduct = ProductIO.readProduct(file, sourceProductFormat);
+            } else {
+                sourceProduct = ProductIO.readProduct(file);
+            }
+        } catch (Exception e) {
+            String msgPattern = "Failed to read file '%s'. %s: %s";
+            getLogger().severe(String.format(msgPattern, file, e.getClass().getSimpleName(), e.getMessage()));
+        }
+        if (sourceProduct != null) {
+            try {
+                processAcceptedSource(sourceProduct, productFilter, spatialBinner, sliceExecutor, slicePermits);
+            } finally {
+                sourceProduct.dispose();
+            }
+        } else {
+            String msgPattern = "Failed to read file '%s' (not a data product or reader missing)";
+            getLogger().severe(String.format(msgPattern, file));
+        }
+    }
+
+    private void processAcceptedSource(Product sourceProduct, BinningProductFilter productFilter,
+                                       SpatialBinner spatialBinner, ExecutorService sliceExecutor,
+                                       Semaphore slicePermits) throws IOException {
+        final boolean accepted;
+        final String reason;
+        // product filters keep the reason of the last rejection as state
+        synchronized (productFilter) {
+            accepted = productFilter.accept(sourceProduct);
+            reason = accepted ? null : productFilter.getReason();
+        }
+        if (accepted) {
+            processSource(sourceProduct, spatialBinner, sliceExecutor, slicePermits);
+        } else {
+            getLogger().warning("Filtered out product '" + sourceProduct.getFileLocation() + "'");
+            getLogger().warning("              reason: " + reason);
+        }
+    }
+
+    private void processSource(Product sourceProduct, SpatialBinner spatialBinner,
+                               ExecutorService sliceExecutor, Semaphore slicePermits) throws IOException {
         final StopWatch stopWatch = new StopWatch();
         stopWatch.start();
 
-        updateDateRangeUtc(sourceProduct);
-        metadataAggregator.aggregateMetadata(sourceProduct);
+        synchronized (sourceBookkeepingLock) {
+            updateDateRangeUtc(sourceProduct);
+            metadataAggregator.aggregateMetadata(sourceProduct);
+        }
 
         final String productName = sourceProduct.getName();
         getLogger().info(String.format("Spatial binning of product '%s'...", productName));
@@ -643,53 +769,90 @@ public class BinningOp extends Operator {
         final long numObs = SpatialProductBinner.processProduct(sourceProduct,
                 spatialBinner,
                 addedVariableBands,
+                sliceExecutor,
+                slicePermits,
                 ProgressMonitor.NULL);
         stopWatch.stop();
 
         getLogger().info(String.format("Spatial binning of product '%s' done, %d observations seen, took %s", productName, numObs, stopWatch));
 
-        if (region == null && regionArea != null) {
-            for (GeneralPath generalPath : ProductUtils.createGeoBoundaryPaths(sourceProduct)) {
-                try {
-                    Area area = new Area(generalPath);
-                    regionArea.add(area);
-                } catch (Throwable e) {
-                    getLogger().log(Level.SEVERE, String.format("Failed to handle product boundary: %s", e.getMessage()), e);
-                    // sometimes the Area constructor throw an "java.lang.InternalError: Odd number of new curves!"
-                    // then just ignore this geometry
+        synchronized (sourceBookkeepingLock) {
+            if (region == null && regionArea != null) {
+                for (GeneralPath generalPath : ProductUtils.createGeoBoundaryPaths(sourceProduct)) {
+                    try {
+                        Area area = new Area(generalPath);
+                        regionArea.add(area);
+                    } catch (Throwable e) {
+                        getLogger().log(Level.SEVERE, String.format("Failed to handle product boundary: %s", e.getMessage()), e);
+                        // sometimes the Area constructor throw an "java.lang.InternalError: Odd number of new curves!"
+                        // then just ignore this geometry
+                    }
                 }
             }
-        }
 
-        ++numProductsAggregated;
+            ++numProductsAggregated;
+        }
     }
 
-    private TemporalBinList doTemporalBinning(SpatialBinCollection spatialBinMap) throws IOException {
+    private TemporalBinStore doTemporalBinning(long numberOfBins) throws IOException {
         StopWatch stopWatch = new StopWatch();
         stopWatch.start();
 
-        long numberOfBins = spatialBinMap.size();
-        final TemporalBinner temporalBinner = new TemporalBinner(binningContext);
-        final CellProcessorChain cellChain = new CellProcessorChain(binningContext);
-        final TemporalBinList temporalBins = new TemporalBinList((int) numberOfBins);
-        Iterable<List<SpatialBin>> spatialBinListCollection = spatialBinMap.getBinCollection();
-        int binCounter = 0;
+        final TemporalBinStore temporalBins = new TemporalBinStore();
+        // the bin tracer writes to a single stream, so tracing is done sequentially
+        final boolean tracing = binningContext.getBinManager().getBinTracer() != null;
+        final int numWorkers = tracing ? 1 : effectiveNumWorkers;
+        long binCounter = 0;
         int percentCounter = 0;
-        long hundredthOfNumBins = numberOfBins / 100;
-        for (List<SpatialBin> spatialBinList : spatialBinListCollection) {
-            binCounter += spatialBinList.size();
-
-            SpatialBin spatialBin = spatialBinList.get(0);
-            long spatialBinIndex = spatialBin.getIndex();
-            TemporalBin temporalBin = temporalBinner.processSpatialBins(spatialBinIndex, spatialBinList);
-
-            temporalBin = temporalBinner.computeOutput(spatialBinIndex, temporalBin);
-            temporalBin = cellChain.process(temporalBin);
-
-            temporalBins.add(temporalBin);
-            if (binCounter >= hundredthOfNumBins) {
-                binCounter = 0;
-                getLogger().info(String.format("Finished %d%% of temporal bins", ++percentCounter));
+        // the spatial bins are read in batches as records into columnar bin stores, no bin objects are created
+        final SortedRunSpatialBinCollector.MergeCursor cursor = spatialBinCollector.openCursor();
+        boolean completed = false;
+        try {
+            boolean hasRecord = cursor.next();
+            if (numWorkers <= 1) {
+                final TemporalBinner temporalBinner = new TemporalBinner(binningContext);
+                final CellProcessorChain cellChain = new CellProcessorChain(binningContext);
+                final ColumnarBinStore spatialBinStore = createSpatialBinStore(binningContext);
+                // bins are only traced if they are not aggregated in a columnar bin store
+                final ColumnarBinStore temporalBinStore = tracing ? null : createTemporalBinStore(binningContext);
+                while (hasRecord) {
+                    hasRecord = cursor.readBins(spatialBinStore, TEMPORAL_BINNING_BATCH_SIZE);
+                    processTemporalBins(temporalBinner, cellChain, spatialBinStore, temporalBinStore, temporalBins);
+                    binCounter += spatialBinStore.size();
+                    percentCounter = logTemporalBinningProgress(binCounter, numberOfBins, percentCounter);
+                }
+            } else {
+                getLogger().info(String.format("Temporal binning using %d worker threads", numWorkers));
+                final ExecutorService executor = Executors.newFixedThreadPool(numWorkers);
+                try {
+                    final LinkedList<Future<TemporalBinningTask>> pendingTasks = new LinkedList<>();
+                    final LinkedList<ColumnarBinStore> freeBinStores = new LinkedList<>();
+                    while (hasRecord) {
+                        final ColumnarBinStore spatialBinStore = freeBinStores.isEmpty() ?
+                                                                 createSpatialBinStore(binningContext) :
+                                                                 freeBinStores.removeFirst();
+                        hasRecord = cursor.readBins(spatialBinStore, TEMPORAL_BINNING_BATCH_SIZE);
+                        pendingTasks.add(executor.submit(new TemporalBinningTask(binningContext, spatialBinStore)));
+                        // limits the number of bins held in memory, the stores of completed tasks are re-used
+                        while (pendingTasks.size() > 2 * numWorkers || (!hasRecord && !pendingTasks.isEmpty())) {
+                            // results are appended in the order of submission, hence sorted by bin index
+                            final TemporalBinningTask task = getTaskResult(pendingTasks.removeFirst(),
+                                                                           "temporal binning");
+                            temporalBins.addAll(task.temporalBins);
+                            binCounter += task.spatialBinStore.size();
+                            percentCounter = logTemporalBinningProgress(binCounter, numberOfBins, percentCounter);
+                            freeBinStores.add(task.spatialBinStore);
+                        }
+                    }
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+            completed = true;
+        } finally {
+            cursor.close();
+            if (!completed) {
+                temporalBins.close();
             }
         }
         stopWatch.stop();
@@ -698,6 +861,88 @@ public class BinningOp extends Operator {
         return temporalBins;
     }
 
+    private int logTemporalBinningProgress(long binCounter, long numberOfBins, int percentCounter) {
+        final int percent = (int) (100 * binCounter / numberOfBins);
+        if (percent > percentCounter) {
+            getLogger().info(String.format("Finished %d%% of temporal bins", percent));
+        }
+        return Math.max(percent, percentCounter);
+    }
+
+    private static ColumnarBinStore createSpatialBinStore(BinningContext binningContext) {
+        return new ColumnarBinStore(binningContext.getBinManager().getSpatialFeatureCount(),
+                                    TEMPORAL_BINNING_BATCH_SIZE);
+    }
+
+    private static ColumnarBinStore createTemporalBinStore(BinningContext binningContext) {
+        return new ColumnarBinStore(binningContext.getBinManager().getTemporalFeatureCount(), 1);
+    }
+
+    /**
+     * Computes a temporal bin for every bin index of a spatial bin store and appends them to the given list.
+     *
+     * @param temporalBinStore A store which is re-used for aggregating the temporal bins, or {@code null} if
+     *                         temporal bin objects shall be aggregated instead, e.g. for tracing.
+     */
+    private static void processTemporalBins(TemporalBinner temporalBinner, CellProcessorChain cellChain,
+                                            ColumnarBinStore spatialBinStore, ColumnarBinStore temporalBinStore,
+                                            List<TemporalBin> temporalBins) throws IOException {
+        int spatialSlot = 0;
+        while (spatialSlot < spatialBinStore.size()) {
+            final long binIndex = spatialBinStore.getIndex(spatialSlot);
+            int endSpatialSlot = spatialSlot + 1;
+            while (endSpatialSlot < spatialBinStore.size() && spatialBinStore.getIndex(endSpatialSlot) == binIndex) {
+                endSpatialSlot++;
+            }
+            TemporalBin temporalBin;
+            if (temporalBinStore != null) {
+                temporalBinStore.clear();
+                final int temporalSlot = temporalBinner.processSpatialBins(spatialBinStore, spatialSlot,
+                                                                           endSpatialSlot, temporalBinStore);
+                temporalBin = temporalBinner.computeOutput(temporalBinStore, temporalSlot);
+            } else {
+                final List<SpatialBin> spatialBinList = createSpatialBins(spatialBinStore, spatialSlot,
+                                                                          endSpatialSlot);
+                temporalBin = temporalBinner.processSpatialBins(binIndex, spatialBinList);
+                temporalBin = temporalBinner.computeOutput(binIndex, temporalBin);
+            }
+            temporalBins.add(cellChain.process(temporalBin));
+            spatialSlot = endSpatialSlot;
+        }
+    }
+
+    private static List<SpatialBin> createSpatialBins(ColumnarBinStore spatialBinStore, int firstSlot, int endSlot) {
+        final List<SpatialBin> spatialBins = new ArrayList<>(endSlot - firstSlot);
+        for (int slot = firstSlot; slot < endSlot; slot++) {
+            final SpatialBin spatialBin = new SpatialBin(spatialBinStore.getIndex(slot),
+                                                         spatialBinStore.getNumFeatures());
+            spatialBin.setNumObs(spatialBinStore.getNumObs(slot));
+            final float[] featureValues = spatialBin.getFeatureValues();
+            for (int i = 0; i < featureValues.length; i++) {
+                featureValues[i] = spatialBinStore.getFeatureValue(slot, i);
+            }
+            spatialBins.add(spatialBin);
+        }
+        return spatialBins;
+    }
+
+    private static <T> T getTaskResult(Future<T> future, String taskName) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OperatorException("Interrupted while waiting for " + taskName, e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new OperatorException(cause);
+        }
+    }
+
     private void writeOutput(List<TemporalBin> temporalBins, ProductData.UTC startTime, ProductData.UTC stopTime) throws
             Exception {
         StopWatch stopWatch = new StopWatch();
@@ -803,6 +1048,48 @@ public class BinningOp extends Operator {
         }
     }
 
+    private static class SynchronizedSpatialBinConsumer implements SpatialBinConsumer {
+
+        private final SpatialBinConsumer delegate;
+
+        private SynchronizedSpatialBinConsumer(SpatialBinConsumer delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized void consumeSpatialBins(BinningContext binningContext, List<SpatialBin> spatialBins) throws Exception {
+            delegate.consumeSpatialBins(binningContext, spatialBins);
+        }
+    }
+
+    /**
+     * Computes the temporal bins of the spatial bins of a columnar bin store. Returns itself, so that the
+     * temporal bins can be collected and the spatial bin store can be re-used.
+     */
+    private static class TemporalBinningTask implements Callable<TemporalBinningTask> {
+
+        private final TemporalBinner temporalBinner;
+        private final CellProcessorChain cellChain;
+        private final ColumnarBinStore spatialBinStore;
+        private final ColumnarBinStore temporalBinStore;
+        private final List<TemporalBin> temporalBins;
+
+        private TemporalBinningTask(BinningContext binningContext, ColumnarBinStore spatialBinStore) {
+            this.temporalBinner = new TemporalBinner(binningContext);
+            this.cellChain = new CellProcessorChain(binningContext);
+            this.spatialBinStore = spatialBinStore;
+            // tasks are only used if no bins are traced
+            this.temporalBinStore = createTemporalBinStore(binningContext);
+            this.temporalBins = new ArrayList<>();
+        }
+
+        @Override
+        public TemporalBinningTask call() throws Exception {
+            processTemporalBins(temporalBinner, cellChain, spatialBinStore, temporalBinStore, temporalBins);
+            return this;
+        }
+    }
+
     private static class SimpleTemporalBinSource implements TemporalBinSource {
 
         private final List<TemporalBin> temporalBins;
@@ -23,23 +23,22 @@ import java.io.IOException;
 import java.util.List;
 
 /**
- * An implementation of {@link SpatialBinCollector} which combines a {@link MapBackedSpatialBinCollector}
- * and a {@link FileBackedSpatialBinCollector} to one spatial bin collector.
- * This means that all data is kept in memory. There are other implementations which consume less memory.
+ * An implementation of {@link SpatialBinCollector} which is used by default by the {@link BinningOp}.
+ * The consumed bins are written as sorted runs into temporary files, which are merged when the
+ * spatial bin collection is read. This means that only a bounded number of bins is kept in memory.
  *
+ * @see SortedRunSpatialBinCollector
  * @see MapBackedSpatialBinCollector
  * @see FileBackedSpatialBinCollector
  */
 public class GeneralSpatialBinCollector implements SpatialBinCollector {
 
-    private final FileBackedSpatialBinCollector fileBinCollector;
-    private MapBackedSpatialBinCollector mapBinCollector;
+    private final SortedRunSpatialBinCollector runBinCollector;
     private boolean consumingCompleted;
 
 
     public GeneralSpatialBinCollector(long numBins) throws IOException {
-        fileBinCollector = new FileBackedSpatialBinCollector(numBins);
-        mapBinCollector = new MapBackedSpatialBinCollector();
+        runBinCollector = new SortedRunSpatialBinCollector();
         consumingCompleted = false;
     }
 
@@ -48,49 +47,30 @@ public class GeneralSpatialBinCollector implements SpatialBinCollector {
         if (consumingCompleted) {
             throw new IllegalStateException("Consuming of bins has already been completed.");
         }
-        mapBinCollector.consumeSpatialBins(ctx, spatialBins);
-        if (mapBinCollector.getSpatialBinCollection().size() > 12000) {
-            moveBinsToFile(ctx);
-        }
+        runBinCollector.consumeSpatialBins(ctx, spatialBins);
     }
 
     @Override
     public SpatialBinCollection getSpatialBinCollection() throws IOException {
-        return fileBinCollector.getSpatialBinCollection();
+        return runBinCollector.getSpatialBinCollection();
+    }
+
+    /**
+     * Opens a cursor which streams the consumed bins as records in ascending bin index order, without creating
+     * bin objects. The cursor must be closed by the caller.
+     */
+    SortedRunSpatialBinCollector.MergeCursor openCursor() throws IOException {
+        return runBinCollector.openCursor();
     }
 
     @Override
     public void consumingCompleted() throws IOException {
         consumingCompleted = true;
-        moveBinsToFile(null);
-        mapBinCollector.consumingCompleted();
-        mapBinCollector.close();
-        mapBinCollector = null;
-        fileBinCollector.consumingCompleted();
+        runBinCollector.consumingCompleted();
     }
 
     @Override
     public void close() throws IOException {
-        if (fileBinCollector != null) {
-            fileBinCollector.close();
-        }
-        if (mapBinCollector != null) {
-            mapBinCollector.close();
-        }
-    }
-
-    private void moveBinsToFile(BinningContext ignored) throws IOException {
-        SpatialBinCollection spatialBinCollection = mapBinCollector.getSpatialBinCollection();
-
-        Iterable<List<SpatialBin>> values = spatialBinCollection.getBinCollection();
-        for (List<SpatialBin> value : values) {
-            try {
-                fileBinCollector.consumeSpatialBins(ignored, value);
-            } catch (Exception e) {
-                throw new IOException(e);
-            }
-
-        }
-        mapBinCollector.clearMap();
+        runBinCollector.close();
     }
 }
@@ -34,7 +34,6 @@ import ucar.nc2.Variable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -45,7 +44,12 @@ import java.util.Map;
  */
 class SeaDASLevel3BinWriter extends AbstractBinWriter {
 
-    private final static int BUFFER_SIZE = 4096;
+    /**
+     * The number of bins written to the bin list variables at once, and thus the size of the buffer
+     * allocated for each bin list variable.
+     */
+    static final String PROPERTY_KEY_BUFFER_SIZE = "beam.binning.binListBufferSize";
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
 
     private BinningContext binningContext;
     private SeadasGrid seadasGrid;
@@ -186,6 +190,8 @@ class SeaDASLevel3BinWriter extends AbstractBinWriter {
                                        final Variable extendVar,
                                        final List<TemporalBin> temporalBins) throws IOException, InvalidRangeException {
 
+        // bin values are read from the given list, the writer only buffers a block of them per variable
+        final int bufferSize = Math.max(1, Math.min(getBufferSize(), temporalBins.size()));
         ArrayList<BinListVar> binListVars = new ArrayList<BinListVar>();
 
         binListVars.add(new BinListVar(binNumVar, new BinListElementSetter() {
@@ -193,21 +199,21 @@ class SeaDASLevel3BinWriter extends AbstractBinWriter {
             public void setArray(Array array, int binIndex, TemporalBin bin) {
                 array.setInt(binIndex, seadasGrid.convertBinIndex(bin.getIndex()));
             }
-        }));
+        }, bufferSize));
 
         binListVars.add(new BinListVar(numObsVar, new BinListElementSetter() {
             @Override
             public void setArray(Array array, int binIndex, TemporalBin bin) {
                 array.setInt(binIndex, bin.getNumObs());
             }
-        }));
+        }, bufferSize));
 
         binListVars.add(new BinListVar(numScenesVar, new BinListElementSetter() {
             @Override
             public void setArray(Array array, int binIndex, TemporalBin bin) {
                 array.setInt(binIndex, bin.getNumPasses());
             }
-        }));
+        }, bufferSize));
 
         for (int featureIndex = 0; featureIndex < featureVars.size(); featureIndex++) {
             final int k = featureIndex;
@@ -216,16 +222,19 @@ class SeaDASLevel3BinWriter extends AbstractBinWriter {
                 public void setArray(Array array, int binIndex, TemporalBin bin) {
                     array.setFloat(binIndex, bin.getFeatureValues()[k]);
                 }
-            }));
+            }, bufferSize));
         }
 
-        final int[] binRowBeginOffsets = new int[planetaryGrid.getNumRows()];
-        final long[] binRowBegins = new long[planetaryGrid.getNumRows()];
-        final int[] binRowExtends = new int[planetaryGrid.getNumRows()];
+        final int numRows = planetaryGrid.getNumRows();
+        final int[] binRowListIndexes = new int[numRows];
+        final int[] binRowBeginOffsets = new int[numRows];
+        final long[] binRowBegins = new long[numRows];
+        final int[] binRowExtends = new int[numRows];
         Arrays.fill(binRowBeginOffsets, -1);
         Arrays.fill(binRowBegins, -1);
         Arrays.fill(binRowExtends, 0);
-        writeBinListVariable0(netcdfFile, temporalBins, binListVars, binRowBeginOffsets, binRowBegins, binRowExtends);
+        indexBinRows(temporalBins, binRowListIndexes, binRowExtends);
+        writeBinListVariable0(netcdfFile, temporalBins, binListVars, bufferSize, binRowListIndexes, binRowBeginOffsets, binRowBegins, binRowExtends);
 
         writeBinIndexVariable(netcdfFile, beginOffsetVar, new BinIndexElementSetter() {
             @Override
@@ -267,9 +276,42 @@ class SeaDASLevel3BinWriter extends AbstractBinWriter {
         netcdfFile.write(variable.getFullName(), array);
     }
 
+    /**
+     * Finds the bins of each row of the planetary grid. The bins must be sorted by bin index, as they are
+     * delivered by the temporal binning, so that the bins of a row are contiguous.
+     *
+     * @param temporalBins      The temporal bins, sorted by bin index.
+     * @param binRowListIndexes Receives the index in {@code temporalBins} of the first bin of each row.
+     * @param binRowExtends     Receives the number of bins of each row.
+     */
+    private void indexBinRows(List<TemporalBin> temporalBins,
+                              int[] binRowListIndexes,
+                              int[] binRowExtends) throws IOException {
+        int lastRowIndex = -1;
+        for (int i = 0; i < temporalBins.size(); i++) {
+            final int rowIndex = planetaryGrid.getRowIndex(temporalBins.get(i).getIndex());
+            if (rowIndex != lastRowIndex) {
+                if (binRowExtends[rowIndex] > 0) {
+                    throw new IOException("Temporal bins are not sorted by bin index");
+                }
+                binRowListIndexes[rowIndex] = i;
+                lastRowIndex = rowIndex;
+            }
+            binRowExtends[rowIndex]++;
+        }
+    }
+
+    /**
+     * Writes the bins row by row, starting with the southernmost row. The bin list variables are written
+     * sequentially in blocks of {@code bufferSize} bins. The rows are written in the reverse order of the
+     * bin indexes, but the bins of each row in their order, so the temporal bins are walked backwards row by row.
+     * A list which holds only a window of the bins, like the {@link TemporalBinStore}, is read efficiently.
+     */
     private void writeBinListVariable0(NetcdfFileWriteable netcdfFile,
                                        List<TemporalBin> temporalBins,
                                        List<BinListVar> vars,
+                                       int bufferSize,
+                                       int[] binRowListIndexes,
                                        int[] binRowBeginOffsets,
                                        long[] binRowBegins,
                                        int[] binRowExtends) throws IOException, InvalidRangeException {
@@ -277,62 +319,37 @@ class SeaDASLevel3BinWriter extends AbstractBinWriter {
 
         final int[] origin = new int[1];
         int bufferIndex = 0;
-        int lastRowIndex = -1;
-        int rowIndex = -1;
-        ArrayList<TemporalBin> rowBins = new ArrayList<TemporalBin>(2 * planetaryGrid.getNumRows());
-
-        // Reverse-iterate through the bins
-        for (int i = temporalBins.size() - 1; i >= 0; i--) {
-            final TemporalBin temporalBin = temporalBins.get(i);
-
-            final long id = temporalBin.getIndex();
-
-            rowIndex = planetaryGrid.getRowIndex(id);
-            // Row change? If so we can write the bins of the same row.
-            if (rowIndex == lastRowIndex) {
-                rowBins.add(temporalBin);
-            } else {
-                if (!rowBins.isEmpty()) {
-                    bufferIndex = writeRowBins(netcdfFile, rowBins, vars, origin, bufferIndex, rowIndex,
-                            binRowBeginOffsets, binRowBegins, binRowExtends);
-                    rowBins.clear();
+        for (int seadasRowIndex = 0; seadasRowIndex < seadasGrid.getNumRows(); seadasRowIndex++) {
+            final int rowIndex = seadasGrid.convertRowIndex(seadasRowIndex);
+            final int rowExtent = binRowExtends[rowIndex];
+            if (rowExtent == 0) {
+                continue;
+            }
+            final int firstListIndex = binRowListIndexes[rowIndex];
+            binRowBeginOffsets[rowIndex] = origin[0] + bufferIndex;
+            for (int i = firstListIndex; i < firstListIndex + rowExtent; i++) {
+                if (bufferIndex == bufferSize) {
+                    writeBinListVars(netcdfFile, vars, origin);
+                    bufferIndex = 0;
+                    origin[0] += bufferSize;
                 }
-                rowBins.add(temporalBin);
-                lastRowIndex = rowIndex;
+                final TemporalBin temporalBin = temporalBins.get(i);
+                if (i == firstListIndex) {
+                    binRowBegins[rowIndex] = temporalBin.getIndex();
+                }
+                setBinListVarsArrayElement(vars, temporalBin, bufferIndex);
+                bufferIndex++;
             }
         }
-        if (!rowBins.isEmpty()) {
-            bufferIndex = writeRowBins(netcdfFile, rowBins, vars, origin, bufferIndex, rowIndex,
-                    binRowBeginOffsets, binRowBegins, binRowExtends);
-        }
         if (bufferIndex > 0) {
             writeBinListVars(netcdfFile, vars, origin, bufferIndex);
         }
     }
 
-    private int writeRowBins(NetcdfFileWriteable netcdfFile,
-                             ArrayList<TemporalBin> rowBins,
-                             List<BinListVar> vars,
-                             int[] origin,
-                             int bufferIndex,
-                             int rowIndex,
-                             int[] binRowBeginOffsets,
-                             long[] binRowBegins,
-                             int[] binRowExtends) throws IOException, InvalidRangeException {
-        int offset = origin[0] + bufferIndex;
-        Collections.reverse(rowBins);
-        for (TemporalBin rowBin : rowBins) {
-            if (bufferIndex == BUFFER_SIZE) {
-                writeBinListVars(netcdfFile, vars, origin);
-                bufferIndex = 0;
-                origin[0] += BUFFER_SIZE;
-            }
-            setBinListVarsArrayElement(vars, rowBin, bufferIndex);
-            bufferIndex++;
-        }
-        binRowBeginOffsets[rowIndex] = offset;
-        binRowBegins[rowIndex] = rowBins.get(0).getIndex();
-        binRowExtends[rowIndex] = rowBins.size();
-        return bufferIndex;
+    /**
+     * @return the number of bins written to the bin list variables at once.
+     */
+    static int getBufferSize() {
+        return Integer.getInteger(PROPERTY_KEY_BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
     }
 }
@@ -0,0 +1,565 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.binning.operator;
+
+import com.bc.ceres.core.Assert;
+import com.bc.ceres.core.VirtualDir;
+import org.esa.beam.binning.BinningContext;
+import org.esa.beam.binning.SpatialBin;
+import org.esa.beam.binning.support.ColumnarBinStore;
+import org.esa.beam.util.io.FileUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An implementation of {@link SpatialBinCollector} which writes the consumed
+ * {@link SpatialBin spatial bins} as immutable, sorted runs into temporary files.
+ * <p/>
+ * Consumed bins are buffered in memory. Whenever the buffer is full, it is sorted by bin index and appended as a
+ * new run to the current run file. When consuming is completed, the runs are k-way merged through memory-mapped
+ * files. If there are too many runs to be merged at once, groups of runs are merged into larger runs beforehand.
+ * <p/>
+ * Every bin is stored as a fixed-width record: the bin index ({@code long}), the number of observations
+ * ({@code int}) and the feature values ({@code float} each). The {@link MergeCursor} gives access to the records
+ * without creating bin objects.
+ *
+ * @see FileBackedSpatialBinCollector
+ * @see GeneralSpatialBinCollector
+ */
+class SortedRunSpatialBinCollector implements SpatialBinCollector {
+
+    static final int DEFAULT_MAX_BINS_PER_RUN = 500000;
+
+    private static final int MAX_RUNS_PER_MERGE = 64;
+    private static final int MAPPED_WINDOW_SIZE = 4 * 1024 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final String FILE_NAME_PATTERN = "runs-%05d.tmp"; // at least 5 digits; zero padded
+
+    private static final Comparator<SpatialBin> BIN_INDEX_COMPARATOR = new Comparator<SpatialBin>() {
+        @Override
+        public int compare(SpatialBin b1, SpatialBin b2) {
+            return Long.compare(b1.getIndex(), b2.getIndex());
+        }
+    };
+
+    private final int maxBinsPerRun;
+    private final File tempDir;
+    private final List<SpatialBin> runBuffer;
+    private final AtomicBoolean consumingCompleted;
+    private List<SortedRun> runs;
+    private RunWriter runWriter;
+    private int fileCounter;
+    private int numFeatures;
+    private long numBinsConsumed;
+
+    public SortedRunSpatialBinCollector() throws IOException {
+        this(DEFAULT_MAX_BINS_PER_RUN);
+    }
+
+    public SortedRunSpatialBinCollector(int maxBinsPerRun) throws IOException {
+        Assert.argument(maxBinsPerRun > 0, "maxBinsPerRun > 0");
+        this.maxBinsPerRun = maxBinsPerRun;
+        tempDir = VirtualDir.createUniqueTempDir();
+        Runtime.getRuntime().addShutdownHook(new DeleteDirThread(tempDir));
+        runBuffer = new ArrayList<SpatialBin>();
+        consumingCompleted = new AtomicBoolean(false);
+        runs = new ArrayList<SortedRun>();
+        numFeatures = -1;
+        numBinsConsumed = 0;
+    }
+
+    @Override
+    public void consumeSpatialBins(BinningContext ignored, List<SpatialBin> spatialBins) throws Exception {
+        if (consumingCompleted.get()) {
+            throw new IllegalStateException("Consuming of bins has already been completed.");
+        }
+        synchronized (runBuffer) {
+            for (SpatialBin spatialBin : spatialBins) {
+                final int binNumFeatures = spatialBin.getFeatureValues().length;
+                if (numFeatures == -1) {
+                    numFeatures = binNumFeatures;
+                } else if (numFeatures != binNumFeatures) {
+                    throw new IllegalArgumentException(String.format("Spatial bin %d has %d features, expected %d",
+                                                                     spatialBin.getIndex(), binNumFeatures, numFeatures));
+                }
+                runBuffer.add(spatialBin);
+                numBinsConsumed++;
+                if (runBuffer.size() >= maxBinsPerRun) {
+                    writeRun();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void consumingCompleted() throws IOException {
+        consumingCompleted.set(true);
+        synchronized (runBuffer) {
+            writeRun();
+            if (runWriter != null) {
+                runWriter.close();
+                runWriter = null;
+            }
+            while (runs.size() > MAX_RUNS_PER_MERGE) {
+                mergeRuns();
+            }
+        }
+    }
+
+    @Override
+    public SpatialBinCollection getSpatialBinCollection() throws IOException {
+        return new SortedRunBinCollection(numBinsConsumed);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (runWriter != null) {
+            runWriter.close();
+            runWriter = null;
+        }
+        FileUtils.deleteTree(tempDir);
+    }
+
+    /**
+     * Opens a cursor which streams all consumed bins in ascending bin index order.
+     * Bins with equal index are streamed in the order they have been consumed.
+     *
+     * @return A new cursor, must be closed after use.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    MergeCursor openCursor() throws IOException {
+        if (!consumingCompleted.get()) {
+            throw new IllegalStateException("Consuming of bins has not been completed yet.");
+        }
+        return new MergeCursor(runs, numFeatures);
+    }
+
+    int getNumRuns() {
+        return runs.size();
+    }
+
+    private void writeRun() throws IOException {
+        if (runBuffer.isEmpty()) {
+            return;
+        }
+        // sorting is stable, bins with equal index keep their order of consumption
+        Collections.sort(runBuffer, BIN_INDEX_COMPARATOR);
+        if (runWriter == null) {
+            runWriter = new RunWriter(createRunFile(), numFeatures);
+        }
+        final long runPosition = runWriter.getPosition();
+        for (SpatialBin spatialBin : runBuffer) {
+            runWriter.write(spatialBin);
+        }
+        runWriter.flush();
+        runs.add(new SortedRun(runWriter.file, runPosition, runBuffer.size()));
+        runBuffer.clear();
+    }
+
+    private void mergeRuns() throws IOException {
+        final List<SortedRun> mergedRuns = new ArrayList<SortedRun>();
+        final RunWriter mergeWriter = new RunWriter(createRunFile(), numFeatures);
+        try {
+            for (int i = 0; i < runs.size(); i += MAX_RUNS_PER_MERGE) {
+                final List<SortedRun> group = runs.subList(i, Math.min(i + MAX_RUNS_PER_MERGE, runs.size()));
+                final long runPosition = mergeWriter.getPosition();
+                long numBins = 0;
+                final MergeCursor cursor = new MergeCursor(group, numFeatures);
+                try {
+                    while (cursor.next()) {
+                        mergeWriter.write(cursor);
+                        numBins++;
+                    }
+                } finally {
+                    cursor.close();
+                }
+                mergedRuns.add(new SortedRun(mergeWriter.file, runPosition, numBins));
+            }
+            mergeWriter.flush();
+        } finally {
+            mergeWriter.close();
+        }
+        for (SortedRun run : runs) {
+            if (run.file.exists() && !run.file.delete()) {
+                run.file.deleteOnExit();
+            }
+        }
+        runs = mergedRuns;
+    }
+
+    private File createRunFile() {
+        return new File(tempDir, String.format(FILE_NAME_PATTERN, fileCounter++));
+    }
+
+    private static int getRecordSize(int numFeatures) {
+        return 8 + 4 + 4 * numFeatures;
+    }
+
+    /**
+     * A contiguous region of a run file which contains bin records sorted by bin index.
+     */
+    private static class SortedRun {
+
+        private final File file;
+        private final long position;
+        private final long numBins;
+
+        private SortedRun(File file, long position, long numBins) {
+            this.file = file;
+            this.position = position;
+            this.numBins = numBins;
+        }
+    }
+
+    private static class RunWriter {
+
+        private final File file;
+        private final FileOutputStream stream;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long position;
+
+        private RunWriter(File file, int numFeatures) throws IOException {
+            this.file = file;
+            final int recordSize = getRecordSize(numFeatures);
+            stream = new FileOutputStream(file);
+            channel = stream.getChannel();
+            buffer = ByteBuffer.allocate(Math.max(1, WRITE_BUFFER_SIZE / recordSize) * recordSize);
+            buffer.order(ByteOrder.nativeOrder());
+            position = 0;
+        }
+
+        long getPosition() {
+            return position + buffer.position();
+        }
+
+        void write(SpatialBin spatialBin) throws IOException {
+            final float[] featureValues = spatialBin.getFeatureValues();
+            ensureRemaining(getRecordSize(featureValues.length));
+            buffer.putLong(spatialBin.getIndex());
+            buffer.putInt(spatialBin.getNumObs());
+            for (float featureValue : featureValues) {
+                buffer.putFloat(featureValue);
+            }
+        }
+
+        void write(MergeCursor cursor) throws IOException {
+            final int numFeatures = cursor.getNumFeatures();
+            ensureRemaining(getRecordSize(numFeatures));
+            buffer.putLong(cursor.getBinIndex());
+            buffer.putInt(cursor.getNumObs());
+            for (int i = 0; i < numFeatures; i++) {
+                buffer.putFloat(cursor.getFeatureValue(i));
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                stream.close();
+            }
+        }
+
+        private void ensureRemaining(int recordSize) throws IOException {
+            if (buffer.remaining() < recordSize) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Reads the records of a single run through a memory-mapped window which is moved along the run.
+     */
+    private static class RunCursor {
+
+        private final SortedRun run;
+        private final int order;
+        private final int recordSize;
+        private final int numWindowRecords;
+        private MappedFile mappedFile;
+        private ByteBuffer window;
+        private long nextWindowPosition;
+        private long numUnmappedRecords;
+        private int recordOffset;
+        private long binIndex;
+
+        private RunCursor(SortedRun run, int order, int numFeatures) {
+            this.run = run;
+            this.order = order;
+            this.recordSize = getRecordSize(numFeatures);
+            this.numWindowRecords = Math.max(1, MAPPED_WINDOW_SIZE / recordSize);
+            this.nextWindowPosition = run.position;
+            this.numUnmappedRecords = run.numBins;
+        }
+
+        boolean next() throws IOException {
+            if (window != null) {
+                recordOffset += recordSize;
+                if (recordOffset < window.limit()) {
+                    binIndex = window.getLong(recordOffset);
+                    return true;
+                }
+            }
+            if (numUnmappedRecords == 0) {
+                return false;
+            }
+            final int numRecords = (int) Math.min(numWindowRecords, numUnmappedRecords);
+            final long size = (long) numRecords * recordSize;
+            if (mappedFile == null) {
+                mappedFile = MappedFile.open(run.file, FileChannel.MapMode.READ_ONLY, nextWindowPosition, size);
+            } else {
+                mappedFile.remap(nextWindowPosition, size);
+            }
+            window = mappedFile.getBuffer().order(ByteOrder.nativeOrder());
+            nextWindowPosition += size;
+            numUnmappedRecords -= numRecords;
+            recordOffset = 0;
+            binIndex = window.getLong(recordOffset);
+            return true;
+        }
+
+        void close() throws IOException {
+            if (mappedFile != null) {
+                mappedFile.close();
+                mappedFile = null;
+            }
+            window = null;
+        }
+    }
+
+    /**
+     * Streams the bin records of multiple sorted runs in ascending bin index order.
+     * Records with equal bin index are streamed in the order of their runs.
+     */
+    static final class MergeCursor {
+
+        private final int numFeatures;
+        private final List<RunCursor> runCursors;
+        private final PriorityQueue<RunCursor> queue;
+        private RunCursor current;
+
+        private MergeCursor(List<SortedRun> runs, int numFeatures) throws IOException {
+            this.numFeatures = numFeatures;
+            this.runCursors = new ArrayList<RunCursor>(runs.size());
+            this.queue = new PriorityQueue<RunCursor>(Math.max(1, runs.size()), new Comparator<RunCursor>() {
+                @Override
+                public int compare(RunCursor c1, RunCursor c2) {
+                    final int result = Long.compare(c1.binIndex, c2.binIndex);
+                    return result != 0 ? result : Integer.compare(c1.order, c2.order);
+                }
+            });
+            for (int i = 0; i < runs.size(); i++) {
+                final RunCursor runCursor = new RunCursor(runs.get(i), i, numFeatures);
+                runCursors.add(runCursor);
+                if (runCursor.next()) {
+                    queue.add(runCursor);
+                } else {
+                    runCursor.close();
+                }
+            }
+        }
+
+        /**
+         * Moves this cursor to the next record.
+         *
+         * @return {@code false} if there are no more records.
+         *
+         * @throws IOException If an I/O error occurs.
+         */
+        boolean next() throws IOException {
+            if (current != null) {
+                if (current.next()) {
+                    queue.add(current);
+                } else {
+                    current.close();
+                }
+            }
+            current = queue.poll();
+            return current != null;
+        }
+
+        int getNumFeatures() {
+            return numFeatures;
+        }
+
+        long getBinIndex() {
+            return current.binIndex;
+        }
+
+        int getNumObs() {
+            return current.window.getInt(current.recordOffset + 8);
+        }
+
+        float getFeatureValue(int featureIndex) {
+            return current.window.getFloat(current.recordOffset + 12 + 4 * featureIndex);
+        }
+
+        void readFeatureValues(float[] featureValues) {
+            for (int i = 0; i < numFeatures; i++) {
+                featureValues[i] = getFeatureValue(i);
+            }
+        }
+
+        /**
+         * Copies records into a spatial bin store, beginning with the current record. The store is cleared first.
+         * Copying continues until at least the given number of records has been copied and the bin index of the
+         * next record differs from the last one copied, so that all records of a bin end up in the same store.
+         * Afterwards this cursor is positioned on the first record not copied.
+         *
+         * @param binStore   The store, must have {@link #getNumFeatures()} features.
+         * @param minNumBins The minimum number of records to copy.
+         *
+         * @return {@code false} if there are no more records after the copied ones.
+         *
+         * @throws IOException If an I/O error occurs.
+         */
+        boolean readBins(ColumnarBinStore binStore, int minNumBins) throws IOException {
+            binStore.clear();
+            boolean hasRecord;
+            long binIndex;
+            do {
+                binIndex = getBinIndex();
+                final int slot = binStore.add(binIndex);
+                binStore.setNumObs(slot, getNumObs());
+                for (int i = 0; i < numFeatures; i++) {
+                    binStore.setFeatureValue(slot, i, getFeatureValue(i));
+                }
+                hasRecord = next();
+            } while (hasRecord && (binStore.size() < minNumBins || getBinIndex() == binIndex));
+            return hasRecord;
+        }
+
+        SpatialBin createSpatialBin() {
+            final SpatialBin spatialBin = new SpatialBin(getBinIndex(), numFeatures);
+            spatialBin.setNumObs(getNumObs());
+            readFeatureValues(spatialBin.getFeatureValues());
+            return spatialBin;
+        }
+
+        void close() throws IOException {
+            current = null;
+            queue.clear();
+            for (RunCursor runCursor : runCursors) {
+                runCursor.close();
+            }
+        }
+    }
+
+    private class SortedRunBinCollection implements SpatialBinCollection {
+
+        private final long size;
+
+        private SortedRunBinCollection(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public Iterable<List<SpatialBin>> getBinCollection() {
+            return new Iterable<List<SpatialBin>>() {
+                @Override
+                public Iterator<List<SpatialBin>> iterator() {
+                    try {
+                        return new SortedRunBinIterator(openCursor());
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e.getMessage(), e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            // like the FileBackedSpatialBinCollector: BinningOp still writes a (empty) product if no bins were consumed
+            return false;
+        }
+    }
+
+    private static class SortedRunBinIterator implements Iterator<List<SpatialBin>> {
+
+        private final MergeCursor cursor;
+        private boolean hasRecord;
+
+        private SortedRunBinIterator(MergeCursor cursor) throws IOException {
+            this.cursor = cursor;
+            this.hasRecord = nextRecord();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasRecord;
+        }
+
+        @Override
+        public List<SpatialBin> next() {
+            if (!hasRecord) {
+                throw new NoSuchElementException();
+            }
+            final long binIndex = cursor.getBinIndex();
+            final List<SpatialBin> spatialBins = new ArrayList<SpatialBin>();
+            do {
+                spatialBins.add(cursor.createSpatialBin());
+                hasRecord = nextRecord();
+            } while (hasRecord && cursor.getBinIndex() == binIndex);
+            return spatialBins;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private boolean nextRecord() {
+            try {
+                if (cursor.next()) {
+                    return true;
+                }
+                cursor.close();
+                return false;
+            } catch (IOException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -22,6 +22,7 @@ import com.bc.jexp.ParseException;
 import com.vividsolutions.jts.geom.Geometry;
 import org.esa.beam.binning.BinningContext;
 import org.esa.beam.binning.CompositingType;
+import org.esa.beam.binning.Observation;
 import org.esa.beam.binning.ObservationSlice;
 import org.esa.beam.binning.PlanetaryGrid;
 import org.esa.beam.binning.SpatialBinner;
@@ -45,9 +46,16 @@ import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -78,6 +86,35 @@ public class SpatialProductBinner {
                                       SpatialBinner spatialBinner,
                                       Map<Product, List<Band>> addedVariableBands,
                                       ProgressMonitor progressMonitor) throws IOException {
+        return processProduct(product, spatialBinner, addedVariableBands, null, null, progressMonitor);
+    }
+
+    /**
+     * Processes a source product and generated spatial bins.
+     * <p/>
+     * If a slice executor is given, the observations of slices are read concurrently by the executor's threads.
+     * Every slice read ahead holds one of the given slice permits until its observations have been binned. If
+     * the permits are shared by all products binned concurrently, they bound the number of slices held in memory
+     * in total. The observations are still passed to the spatial binner in slice order, so that the generated
+     * spatial bins are the same as in sequential processing.
+     *
+     * @param product            The source product.
+     * @param spatialBinner      The spatial binner to be used.
+     * @param addedVariableBands A container for the bands that are added during processing.
+     * @param sliceExecutor      The executor used to read slices concurrently, may be {@code null}.
+     * @param slicePermits       The permits for slices read ahead, ignored if {@code sliceExecutor} is {@code null}.
+     * @param progressMonitor    A progress monitor.
+     *
+     * @return The total number of observations processed.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public static long processProduct(Product product,
+                                      SpatialBinner spatialBinner,
+                                      Map<Product, List<Band>> addedVariableBands,
+                                      ExecutorService sliceExecutor,
+                                      Semaphore slicePermits,
+                                      ProgressMonitor progressMonitor) throws IOException {
         if (product.getGeoCoding() == null) {
             throw new IllegalArgumentException("product.getGeoCoding() == null");
         }
@@ -119,19 +156,87 @@ public class SpatialProductBinner {
         }
         progressMonitor.beginTask("Spatially binning of " + productName, sliceRectangles.length);
         final Logger logger = BeamLogManager.getSystemLogger();
-        for (int idx = 0; idx < sliceRectangles.length; idx++) {
-            StopWatch stopWatch = new StopWatch();
-            stopWatch.start();
-            numObsTotal += processSlice(spatialBinner, progressMonitor, superSamplingSteps, maskImage, varImages,
-                                        product, sliceRectangles[idx]);
-            final String label = String.format("Processed slice %d of %d : ", idx + 1, sliceRectangles.length);
-            stopWatch.stop();
-            logger.info(label + stopWatch.getTimeDiffString());
+        if (sliceExecutor == null) {
+            for (int idx = 0; idx < sliceRectangles.length; idx++) {
+                StopWatch stopWatch = new StopWatch();
+                stopWatch.start();
+                numObsTotal += processSlice(spatialBinner, progressMonitor, superSamplingSteps, maskImage, varImages,
+                                            product, sliceRectangles[idx]);
+                final String label = String.format("Processed slice %d of %d : ", idx + 1, sliceRectangles.length);
+                stopWatch.stop();
+                logger.info(label + stopWatch.getTimeDiffString());
+            }
+        } else {
+            final Deque<Future<List<Observation>>> pendingSlices = new ArrayDeque<>();
+            int nextSliceIndex = 0;
+            try {
+                for (int idx = 0; idx < sliceRectangles.length; idx++) {
+                    StopWatch stopWatch = new StopWatch();
+                    stopWatch.start();
+                    // waits for a permit only if no slice of this product is pending, so that products never
+                    // block each other while holding permits
+                    while (nextSliceIndex < sliceRectangles.length &&
+                           (pendingSlices.isEmpty() ? acquirePermit(slicePermits) : slicePermits.tryAcquire())) {
+                        final ObservationSlice observationSlice = new ObservationSlice(varImages, maskImage, product,
+                                                                                       superSamplingSteps,
+                                                                                       sliceRectangles[nextSliceIndex],
+                                                                                       binningContext);
+                        try {
+                            pendingSlices.add(sliceExecutor.submit(new ObservationSliceReader(observationSlice)));
+                        } catch (RuntimeException e) {
+                            slicePermits.release();
+                            throw e;
+                        }
+                        nextSliceIndex++;
+                    }
+                    final Future<List<Observation>> pendingSlice = pendingSlices.removeFirst();
+                    try {
+                        final List<Observation> observations = getObservations(pendingSlice);
+                        numObsTotal += spatialBinner.processObservationSlice(observations);
+                    } finally {
+                        slicePermits.release();
+                    }
+                    progressMonitor.worked(1);
+                    final String label = String.format("Processed slice %d of %d : ", idx + 1, sliceRectangles.length);
+                    stopWatch.stop();
+                    logger.info(label + stopWatch.getTimeDiffString());
+                }
+            } finally {
+                for (Future<List<Observation>> pendingSlice : pendingSlices) {
+                    pendingSlice.cancel(true);
+                    slicePermits.release();
+                }
+            }
         }
         spatialBinner.complete();
         return numObsTotal;
     }
 
+    private static boolean acquirePermit(Semaphore slicePermits) throws IOException {
+        try {
+            slicePermits.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a slice permit", e);
+        }
+    }
+
+    private static List<Observation> getObservations(Future<List<Observation>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading observations", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
     private static MultiLevelImage[] getVariableImages(Product product, VariableContext variableContext) {
         final MultiLevelImage[] varImages = new MultiLevelImage[variableContext.getVariableCount()];
         for (int i = 0; i < variableContext.getVariableCount(); i++) {
@@ -291,4 +396,25 @@ public class SpatialProductBinner {
         }
         return node;
     }
+
+    /**
+     * Reads all observations of a slice, so that this can be done concurrently for multiple slices.
+     */
+    private static class ObservationSliceReader implements Callable<List<Observation>> {
+
+        private final ObservationSlice observationSlice;
+
+        private ObservationSliceReader(ObservationSlice observationSlice) {
+            this.observationSlice = observationSlice;
+        }
+
+        @Override
+        public List<Observation> call() throws Exception {
+            final List<Observation> observations = new ArrayList<>();
+            for (Observation observation : observationSlice) {
+                observations.add(observation);
+            }
+            return observations;
+        }
+    }
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.binning.operator;
+
+import com.bc.ceres.core.VirtualDir;
+import org.esa.beam.binning.TemporalBin;
+import org.esa.beam.util.io.FileUtils;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+
+/**
+ * A list for storing the results of the temporal binning in a temporary file, so that the memory used
+ * is bounded regardless of the number of bins.
+ * <p/>
+ * Bins are appended in the order of their bin indexes. They are written through a buffer and read back
+ * through a window of the file. The window follows forward walks over the list, like the one of the
+ * {@link Formatter}, as well as backward walks, like the row walk of the {@link SeaDASLevel3BinWriter}.
+ * The buffer and the window have a size of {@link #getBufferSize()} bytes each.
+ * <p/>
+ * Every bin is stored as a fixed-width record: the bin index ({@code long}), the number of observations
+ * ({@code int}), the number of passes ({@code int}) and the feature values ({@code float} each). All bins
+ * must have the same number of features.
+ *
+ * @see TemporalBinList
+ */
+class TemporalBinStore extends AbstractList<TemporalBin> {
+
+    /**
+     * The size in bytes of the write buffer and of the read window of the store.
+     */
+    static final String PROPERTY_KEY_BUFFER_SIZE = "beam.binning.temporalBinBufferSize";
+    private static final int DEFAULT_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final String FILE_NAME = "temporal-bins.tmp";
+
+    private final int bufferSize;
+    private final File tempDir;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private int numFeatures;
+    private int recordSize;
+    private ByteBuffer writeBuffer;
+    private ByteBuffer window;
+    private int size;
+    private int numBinsFlushed;
+    private int windowStart;
+    private int windowLength;
+
+    public TemporalBinStore() throws IOException {
+        this(getBufferSize());
+    }
+
+    /**
+     * @param bufferSize The size in bytes of the write buffer and of the read window.
+     */
+    TemporalBinStore(int bufferSize) throws IOException {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize <= 0");
+        }
+        this.bufferSize = bufferSize;
+        tempDir = VirtualDir.createUniqueTempDir();
+        Runtime.getRuntime().addShutdownHook(new DeleteDirThread(tempDir));
+        file = new RandomAccessFile(new File(tempDir, FILE_NAME), "rw");
+        channel = file.getChannel();
+        numFeatures = -1;
+    }
+
+    @Override
+    public synchronized boolean add(TemporalBin temporalBin) {
+        if (numFeatures == -1) {
+            allocateBuffers(temporalBin.getFeatureValues().length);
+        } else if (temporalBin.getFeatureValues().length != numFeatures) {
+            throw new IllegalArgumentException(String.format("Bin has %d features but the store has %d",
+                                                             temporalBin.getFeatureValues().length, numFeatures));
+        }
+        if (writeBuffer.remaining() < recordSize) {
+            flush();
+        }
+        writeBuffer.putLong(temporalBin.getIndex());
+        writeBuffer.putInt(temporalBin.getNumObs());
+        writeBuffer.putInt(temporalBin.getNumPasses());
+        for (float featureValue : temporalBin.getFeatureValues()) {
+            writeBuffer.putFloat(featureValue);
+        }
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public synchronized TemporalBin get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index out of range. Size is %d but was %d", size, index));
+        }
+        if (index >= numBinsFlushed) {
+            flush();
+        }
+        if (index < windowStart || index >= windowStart + windowLength) {
+            moveWindow(index);
+        }
+        final int offset = (index - windowStart) * recordSize;
+        final TemporalBin temporalBin = new TemporalBin(window.getLong(offset), numFeatures);
+        temporalBin.setNumObs(window.getInt(offset + 8));
+        temporalBin.setNumPasses(window.getInt(offset + 12));
+        final float[] featureValues = temporalBin.getFeatureValues();
+        for (int i = 0; i < numFeatures; i++) {
+            featureValues[i] = window.getFloat(offset + 16 + 4 * i);
+        }
+        return temporalBin;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Closes the store and deletes its temporary file.
+     */
+    public synchronized void close() {
+        try {
+            file.close();
+        } catch (IOException e) {
+            // the file is deleted anyway
+        }
+        FileUtils.deleteTree(tempDir);
+        size = 0;
+        numBinsFlushed = 0;
+        windowLength = 0;
+    }
+
+    /**
+     * @return The size in bytes of the write buffer and of the read window.
+     */
+    static int getBufferSize() {
+        return Integer.getInteger(PROPERTY_KEY_BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
+    }
+
+    private void allocateBuffers(int numFeatures) {
+        this.numFeatures = numFeatures;
+        recordSize = 16 + 4 * numFeatures;
+        final int capacity = Math.max(1, bufferSize / recordSize) * recordSize;
+        writeBuffer = ByteBuffer.allocate(capacity).order(ByteOrder.nativeOrder());
+        window = ByteBuffer.allocate(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    private void flush() {
+        writeBuffer.flip();
+        try {
+            long position = (long) numBinsFlushed * recordSize;
+            while (writeBuffer.hasRemaining()) {
+                position += channel.write(writeBuffer, position);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write temporal bins: " + e.getMessage(), e);
+        }
+        numBinsFlushed += writeBuffer.limit() / recordSize;
+        writeBuffer.clear();
+    }
+
+    /**
+     * Moves the window so that it contains the bin at the given index. When walking backwards, the window ends
+     * where it started before, so that the bins preceding the given index are read with the same window.
+     */
+    private void moveWindow(int index) {
+        final int capacity = window.capacity() / recordSize;
+        int start;
+        if (index < windowStart) {
+            start = Math.max(0, Math.min(windowStart, index + capacity) - capacity);
+        } else {
+            start = index;
+        }
+        final int length = Math.min(capacity, numBinsFlushed - start);
+        window.clear();
+        window.limit(length * recordSize);
+        try {
+            long position = (long) start * recordSize;
+            while (window.hasRemaining()) {
+                final int n = channel.read(window, position);
+                if (n < 0) {
+                    throw new EOFException();
+                }
+                position += n;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read temporal bins: " + e.getMessage(), e);
+        }
+        windowStart = start;
+        windowLength = length;
+    }
+}
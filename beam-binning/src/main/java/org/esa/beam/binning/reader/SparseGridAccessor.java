@@ -16,27 +16,38 @@
 
 package org.esa.beam.binning.reader;
 
+import org.esa.beam.dataio.netcdf.util.NetcdfChunkReader;
 import org.esa.beam.framework.datamodel.Band;
 import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.Variable;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
+/**
+ * Accesses the bins of a sparse grid, where only the bins containing data are stored in the bin list.
+ * <p/>
+ * If the file can be opened once per thread, the values are read in blocks of {@link #ROWS_PER_BLOCK} rows
+ * without a lock and kept in the chunk cache of {@link NetcdfChunkReader}, which is bounded in bytes.
+ */
 class SparseGridAccessor extends AbstractGridAccessor {
 
+    static final int ROWS_PER_BLOCK = 32;
+
     private final NetcdfFile netcdfFile;
+    private final NetcdfChunkReader chunkReader;
     private final int[] binIndexes;
-    private final int[] binOffsets;
     private final int[] binExtents;
 
     /**
-     * Key: BinIndex in PlanetaryGrid
-     * Value: BinIndex in bin_list
+     * For each row, the index in bin_list of the first bin of the row, or -1 if the row is empty.
      */
-    private final Map<Integer, Integer> indexMap;
+    private final int[] rowBinListIndexes;
+    private final int rowsPerBlock;
+    private final int[] blockBinListIndexes;
+    private final int[] blockLengths;
 
     SparseGridAccessor(NetcdfFile netcdfFile) throws IOException {
         this.netcdfFile = netcdfFile;
@@ -45,36 +56,71 @@ class SparseGridAccessor extends AbstractGridAccessor {
         final Variable bi_begin = netcdfFile.findVariable("bi_begin");
         final Variable bi_extent = netcdfFile.findVariable("bi_extent");
 
+        final int[] binOffsets;
         synchronized (this.netcdfFile) {
-            final Object storage = bl_bin_num.read().getStorage();
-
-            binIndexes = (int[]) storage;
-            indexMap = new HashMap<Integer, Integer>(binIndexes.length);
-            for (int i = 0; i < binIndexes.length; i++) {
-                indexMap.put(binIndexes[i], i);
-            }
+            binIndexes = (int[]) bl_bin_num.read().getStorage();
             binOffsets = (int[]) bi_begin.read().getStorage();
             binExtents = (int[]) bi_extent.read().getStorage();
         }
+
+        final boolean sorted = isSorted(binIndexes);
+        rowBinListIndexes = findRowBinListIndexes(binIndexes, sorted, binOffsets, binExtents);
+        chunkReader = NetcdfChunkReader.create(netcdfFile);
+        // the rows of a block are contiguous in the bin list only if it is sorted
+        rowsPerBlock = chunkReader != null && sorted ? ROWS_PER_BLOCK : 1;
+
+        final int blockCount = (rowBinListIndexes.length + rowsPerBlock - 1) / rowsPerBlock;
+        blockBinListIndexes = new int[blockCount];
+        blockLengths = new int[blockCount];
+        for (int block = 0; block < blockCount; block++) {
+            int start = Integer.MAX_VALUE;
+            int end = 0;
+            final int lastRow = Math.min(rowBinListIndexes.length, (block + 1) * rowsPerBlock);
+            for (int row = block * rowsPerBlock; row < lastRow; row++) {
+                if (rowBinListIndexes[row] >= 0) {
+                    start = Math.min(start, rowBinListIndexes[row]);
+                    end = Math.max(end, rowBinListIndexes[row] + binExtents[row]);
+                }
+            }
+            blockBinListIndexes[block] = start < end ? start : -1;
+            blockLengths[block] = start < end ? end - start : 0;
+        }
     }
 
     @Override
     void dispose() {
-        indexMap.clear();
+        if (chunkReader != null) {
+            try {
+                chunkReader.close();
+            } catch (IOException ignore) {
+                // nothing to do
+            }
+        }
     }
 
     @Override
     Array getLineValues(Band destBand, VariableReader variableReader, int lineIndex) throws IOException {
-        Array lineValues = null;
-        final int binOffset = binOffsets[lineIndex];
-        if (binOffset > 0) {
-            int firstIndex = indexMap.get(binOffset);
-            int length = binExtents[lineIndex];
+        final int firstIndex = rowBinListIndexes[lineIndex];
+        if (firstIndex < 0) {
+            return null;
+        }
+        final int length = binExtents[lineIndex];
+        if (chunkReader == null) {
             synchronized (netcdfFile) {
-                lineValues = variableReader.read(firstIndex, length);
+                return variableReader.read(firstIndex, length);
             }
         }
-        return lineValues;
+        final int block = lineIndex / rowsPerBlock;
+        final int blockStart = blockBinListIndexes[block];
+        final Array blockValues = variableReader.read(chunkReader, blockStart, blockLengths[block]);
+        if (blockStart == firstIndex && blockLengths[block] == length) {
+            return blockValues;
+        }
+        try {
+            return blockValues.section(new int[]{firstIndex - blockStart}, new int[]{length});
+        } catch (InvalidRangeException e) {
+            throw new IOException(e.getMessage());
+        }
     }
 
     @Override
@@ -84,12 +130,62 @@ class SparseGridAccessor extends AbstractGridAccessor {
 
     @Override
     int getEndBinIndex(int sourceOffsetX, int sourceWidth, int lineIndex) {
-        return binExtents[lineIndex];
+        return rowBinListIndexes[lineIndex] >= 0 ? binExtents[lineIndex] : 0;
     }
 
     @Override
     int getBinIndexInGrid(int binIndex, int lineIndex) {
-        final int binOffset = binOffsets[lineIndex];
-        return binIndexes[indexMap.get(binOffset) + binIndex];
+        return binIndexes[rowBinListIndexes[lineIndex] + binIndex];
+    }
+
+    /**
+     * Finds the index in the bin list of the first bin of each row.
+     *
+     * @param binIndexes The bin indexes of the bin list (bl_bin_num).
+     * @param sorted     Whether the bin indexes are sorted in ascending order.
+     * @param binOffsets The bin index of the first bin of each row (bi_begin).
+     * @param binExtents The number of bins of each row (bi_extent).
+     *
+     * @return for each row, the index in the bin list, or -1 if the row is empty.
+     */
+    static int[] findRowBinListIndexes(int[] binIndexes, boolean sorted, int[] binOffsets, int[] binExtents) {
+        long[] sortedEntries = null;
+        if (!sorted) {
+            // bin index in the upper, position in the lower half, so that both are sorted by bin index
+            sortedEntries = new long[binIndexes.length];
+            for (int i = 0; i < binIndexes.length; i++) {
+                sortedEntries[i] = ((long) binIndexes[i] << 32) | i;
+            }
+            Arrays.sort(sortedEntries);
+        }
+        final int[] rowBinListIndexes = new int[binOffsets.length];
+        for (int row = 0; row < binOffsets.length; row++) {
+            final int binOffset = binOffsets[row];
+            int index = -1;
+            if (binOffset > 0 && binExtents[row] > 0) {
+                if (sorted) {
+                    index = Arrays.binarySearch(binIndexes, binOffset);
+                } else {
+                    final int pos = Arrays.binarySearch(sortedEntries, (long) binOffset << 32);
+                    // the search key is the smallest possible entry for the bin index
+                    final int insertionPoint = pos >= 0 ? pos : -pos - 1;
+                    if (insertionPoint < sortedEntries.length
+                        && (int) (sortedEntries[insertionPoint] >>> 32) == binOffset) {
+                        index = (int) sortedEntries[insertionPoint];
+                    }
+                }
+            }
+            rowBinListIndexes[row] = index >= 0 ? index : -1;
+        }
+        return rowBinListIndexes;
+    }
+
+    static boolean isSorted(int[] values) {
+        for (int i = 1; i < values.length; i++) {
+            if (values[i - 1] > values[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 }
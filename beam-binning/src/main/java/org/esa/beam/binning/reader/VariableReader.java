@@ -16,6 +16,7 @@
 
 package org.esa.beam.binning.reader;
 
+import org.esa.beam.dataio.netcdf.util.NetcdfChunkReader;
 import ucar.ma2.Array;
 import ucar.ma2.InvalidRangeException;
 import ucar.nc2.Variable;
@@ -60,6 +61,22 @@ class VariableReader {
         }
     }
 
+    /**
+     * Reads the values through the given chunk reader, without locking the file.
+     * The returned array may be shared and must not be modified.
+     */
+    Array read(NetcdfChunkReader chunkReader, int firstIndex, int length) throws IOException {
+        if (origin == null) {
+            return chunkReader.readChunk(binVariable, new int[]{firstIndex}, new int[]{length});
+        } else {
+            int[] originFull = origin.clone();
+            int[] shapeFull = shape.clone();
+            originFull[binDimIndex] = firstIndex;
+            shapeFull[binDimIndex] = length;
+            return chunkReader.readChunk(binVariable, originFull, shapeFull).reduce();
+        }
+    }
+
     Array read(int firstIndex, int length) throws IOException {
         try {
             if (origin == null) {
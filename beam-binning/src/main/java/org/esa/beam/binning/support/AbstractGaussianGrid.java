@@ -1,6 +1,6 @@
 package org.esa.beam.binning.support;
 
-import org.esa.beam.binning.PlanetaryGrid;
+import org.esa.beam.binning.BatchPlanetaryGrid;
 
 import java.io.IOException;
 
@@ -21,10 +21,16 @@ import java.io.IOException;
  *
  * @author Ralf Quast
  */
-abstract class AbstractGaussianGrid implements PlanetaryGrid {
+abstract class AbstractGaussianGrid implements BatchPlanetaryGrid {
+
+    // number of equally sized latitude buckets of the row lookup table per row
+    private static final int LOOKUP_BUCKETS_PER_ROW = 4;
 
     private final int numRows;
     private final GaussianGridConfig config;
+    private final double bucketScale;
+    // for each latitude bucket the last row whose latitude is not less than the bucket's upper bound
+    private final int[] rowLookup;
 
     protected AbstractGaussianGrid(int numRows) {
         this.numRows = numRows;
@@ -33,6 +39,18 @@ abstract class AbstractGaussianGrid implements PlanetaryGrid {
         } catch (IOException e) {
             throw new IllegalStateException("Could not create gaussian grid: " + e.getMessage(), e);
         }
+        final double[] latitudePoints = config.getLatitudePoints();
+        final int numBuckets = LOOKUP_BUCKETS_PER_ROW * latitudePoints.length;
+        bucketScale = numBuckets / 180.0;
+        rowLookup = new int[numBuckets];
+        int row = -1;
+        for (int bucket = numBuckets - 1; bucket >= 0; bucket--) {
+            final double upperLat = -90.0 + (bucket + 1) / bucketScale;
+            while (row + 1 < latitudePoints.length && latitudePoints[row + 1] >= upperLat) {
+                row++;
+            }
+            rowLookup[bucket] = row;
+        }
     }
 
     protected final GaussianGridConfig getConfig() {
@@ -47,6 +65,16 @@ abstract class AbstractGaussianGrid implements PlanetaryGrid {
         return getFirstBinIndex(rowIndex) + colIndex;
     }
 
+    @Override
+    public final void getBinIndexes(double[] lats, double[] lons, int offset, int length, long[] binIndexes) {
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            final int rowIndex = getRowIndex(lats[i]);
+            final int colIndex = getColIndex(rowIndex, lons[i]);
+            binIndexes[i] = getFirstBinIndexUnchecked(rowIndex) + colIndex;
+        }
+    }
+
     @Override
     public final int getNumRows() {
         return numRows;
@@ -87,7 +115,20 @@ abstract class AbstractGaussianGrid implements PlanetaryGrid {
     protected abstract double getCenterLon(int rowIndex, int colIndex);
 
     private int getRowIndex(double lat) {
-        return findNearest(config.getLatitudePoints(), lat);
+        final double[] latitudePoints = config.getLatitudePoints();
+        if (Double.isNaN(lat)) {
+            return findNearest(latitudePoints, lat);
+        }
+        final int bucket = (int) ((lat + 90.0) * bucketScale);
+        // the lookup table gives a row close to the last row whose latitude is not less than lat
+        int h = rowLookup[bucket < 0 ? 0 : bucket >= rowLookup.length ? rowLookup.length - 1 : bucket];
+        while (h >= 0 && latitudePoints[h] < lat) {
+            h--;
+        }
+        while (h + 1 < latitudePoints.length && latitudePoints[h + 1] >= lat) {
+            h++;
+        }
+        return selectNearest(latitudePoints, lat, h);
     }
 
     private int getColIndex(int rowIndex, double lon) {
@@ -127,6 +168,11 @@ abstract class AbstractGaussianGrid implements PlanetaryGrid {
             }
         }
 
+        return selectNearest(values, value, h);
+    }
+
+    // h is the last index of a value not less than the given value, or -1
+    private static int selectNearest(double[] values, double value, int h) {
         if (h == -1) { // value is less than the least value in the array
             return 0;
         } else if (h == values.length - 1) { // value is greater than the greatest value in the array
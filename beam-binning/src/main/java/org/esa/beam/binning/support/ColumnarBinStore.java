@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.binning.support;
+
+import org.esa.beam.binning.BinContext;
+import org.esa.beam.binning.TemporalBin;
+import org.esa.beam.binning.Vector;
+import org.esa.beam.binning.WritableVector;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A columnar store for bins. Instead of one object per bin, the bin indexes, numbers of observations,
+ * numbers of passes and feature values of all bins are held in parallel primitive arrays, which are
+ * addressed by a bin slot.
+ * <p/>
+ * Aggregators access a bin through a {@link Cursor}, a flyweight which implements {@link BinContext}
+ * and provides a {@link WritableVector} view onto the bin's feature values. Hence
+ * the {@link org.esa.beam.binning.BinManager} can aggregate bins without allocating any objects per bin.
+ * <p/>
+ * This class is not thread-safe.
+ */
+public final class ColumnarBinStore {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final int numFeatures;
+    private final Cursor cursor;
+    private long[] indexes;
+    private int[] numObs;
+    private int[] numPasses;
+    private float[] featureValues;
+    private HashMap<String, Object>[] contexts;
+    private int size;
+
+    /**
+     * Constructs a new store.
+     *
+     * @param numFeatures     The number of features of every bin.
+     * @param initialCapacity The expected number of bins.
+     */
+    public ColumnarBinStore(int numFeatures, int initialCapacity) {
+        if (numFeatures < 0) {
+            throw new IllegalArgumentException("numFeatures < 0");
+        }
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity < 0");
+        }
+        this.numFeatures = numFeatures;
+        this.cursor = new Cursor();
+        allocate(Math.max(MIN_CAPACITY, initialCapacity));
+    }
+
+    public int getNumFeatures() {
+        return numFeatures;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getCapacity() {
+        return indexes.length;
+    }
+
+    /**
+     * Adds a new bin with all counts and feature values set to zero.
+     *
+     * @param binIndex The bin index.
+     *
+     * @return The slot of the new bin.
+     */
+    public int add(long binIndex) {
+        if (size == indexes.length) {
+            grow();
+        }
+        final int slot = size++;
+        indexes[slot] = binIndex;
+        return slot;
+    }
+
+    /**
+     * Removes all bins. The allocated arrays are kept for re-use.
+     */
+    public void clear() {
+        Arrays.fill(numObs, 0, size, 0);
+        Arrays.fill(numPasses, 0, size, 0);
+        Arrays.fill(featureValues, 0, size * numFeatures, 0.0F);
+        if (contexts != null) {
+            Arrays.fill(contexts, 0, size, null);
+        }
+        size = 0;
+    }
+
+    public long getIndex(int slot) {
+        checkSlot(slot);
+        return indexes[slot];
+    }
+
+    public int getNumObs(int slot) {
+        checkSlot(slot);
+        return numObs[slot];
+    }
+
+    public void setNumObs(int slot, int value) {
+        checkSlot(slot);
+        numObs[slot] = value;
+    }
+
+    public int getNumPasses(int slot) {
+        checkSlot(slot);
+        return numPasses[slot];
+    }
+
+    public void setNumPasses(int slot, int value) {
+        checkSlot(slot);
+        numPasses[slot] = value;
+    }
+
+    public float getFeatureValue(int slot, int featureIndex) {
+        checkSlot(slot);
+        return featureValues[slot * numFeatures + featureIndex];
+    }
+
+    public void setFeatureValue(int slot, int featureIndex, float value) {
+        checkSlot(slot);
+        featureValues[slot * numFeatures + featureIndex] = value;
+    }
+
+    /**
+     * Releases the context values which aggregators have put into the context of the given bin.
+     *
+     * @param slot The bin slot.
+     */
+    public void releaseContext(int slot) {
+        checkSlot(slot);
+        if (contexts != null) {
+            contexts[slot] = null;
+        }
+    }
+
+    /**
+     * Moves the cursor of this store to the given bin. The cursor is a flyweight, there is only one instance
+     * per store. It is valid until this method is called again.
+     *
+     * @param slot The bin slot.
+     *
+     * @return The cursor.
+     */
+    public Cursor getCursor(int slot) {
+        checkSlot(slot);
+        cursor.moveTo(slot);
+        return cursor;
+    }
+
+    /**
+     * Copies a bin of this store into a new temporal bin.
+     *
+     * @param slot The bin slot.
+     *
+     * @return The temporal bin.
+     */
+    public TemporalBin toTemporalBin(int slot) {
+        checkSlot(slot);
+        final TemporalBin temporalBin = new TemporalBin(indexes[slot], numFeatures);
+        temporalBin.setNumObs(numObs[slot]);
+        temporalBin.setNumPasses(numPasses[slot]);
+        System.arraycopy(featureValues, slot * numFeatures, temporalBin.getFeatureValues(), 0, numFeatures);
+        return temporalBin;
+    }
+
+    private void checkSlot(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException(String.format("Slot out of range. Size is %d but was %d", size, slot));
+        }
+    }
+
+    private void grow() {
+        final int capacity = indexes.length;
+        final long newCapacity = (long) capacity << 1;
+        if (newCapacity * Math.max(1, numFeatures) > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Maximum capacity of bin store exceeded");
+        }
+        indexes = Arrays.copyOf(indexes, (int) newCapacity);
+        numObs = Arrays.copyOf(numObs, (int) newCapacity);
+        numPasses = Arrays.copyOf(numPasses, (int) newCapacity);
+        featureValues = Arrays.copyOf(featureValues, (int) newCapacity * numFeatures);
+        if (contexts != null) {
+            contexts = Arrays.copyOf(contexts, (int) newCapacity);
+        }
+    }
+
+    private void allocate(int capacity) {
+        if ((long) capacity * numFeatures > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("initialCapacity too large");
+        }
+        indexes = new long[capacity];
+        numObs = new int[capacity];
+        numPasses = new int[capacity];
+        featureValues = new float[capacity * numFeatures];
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private HashMap<String, Object> getContextMap(int slot, boolean create) {
+        if (contexts == null) {
+            if (!create) {
+                return null;
+            }
+            contexts = new HashMap[indexes.length];
+        }
+        HashMap<String, Object> contextMap = contexts[slot];
+        if (contextMap == null && create) {
+            contextMap = new HashMap<String, Object>();
+            contexts[slot] = contextMap;
+        }
+        return contextMap;
+    }
+
+    /**
+     * A flyweight which represents the bin at the current slot of the store.
+     */
+    public final class Cursor implements BinContext {
+
+        private int slot;
+        private float[] vectorElements;
+        private VectorImpl vector;
+        private final VectorImpl inputVector;
+
+        private Cursor() {
+            inputVector = new VectorImpl(new float[0]);
+        }
+
+        public int getSlot() {
+            return slot;
+        }
+
+        @Override
+        public long getIndex() {
+            return indexes[slot];
+        }
+
+        public int getNumObs() {
+            return numObs[slot];
+        }
+
+        public void setNumObs(int value) {
+            numObs[slot] = value;
+        }
+
+        public int getNumPasses() {
+            return numPasses[slot];
+        }
+
+        public void setNumPasses(int value) {
+            numPasses[slot] = value;
+        }
+
+        /**
+         * Gets a view onto a range of the feature values of the current bin.
+         *
+         * @param featureOffset The index of the first feature.
+         * @param numFeatures   The number of features.
+         *
+         * @return The vector view, re-used by subsequent calls.
+         */
+        public WritableVector getVector(int featureOffset, int numFeatures) {
+            vector.setOffsetAndSize(slot * ColumnarBinStore.this.numFeatures + featureOffset, numFeatures);
+            return vector;
+        }
+
+        /**
+         * @return A view onto all feature values of the current bin, re-used by subsequent calls.
+         */
+        public WritableVector getVector() {
+            return getVector(0, ColumnarBinStore.this.numFeatures);
+        }
+
+        /**
+         * Gets a view onto a range of feature values which are not held by this store, e.g. those of a
+         * spatial bin which is aggregated into the current bin.
+         *
+         * @param elements      The feature values.
+         * @param featureOffset The index of the first feature.
+         * @param numFeatures   The number of features.
+         *
+         * @return The vector view, re-used by subsequent calls.
+         */
+        public Vector getInputVector(float[] elements, int featureOffset, int numFeatures) {
+            inputVector.setElements(elements);
+            inputVector.setOffsetAndSize(featureOffset, numFeatures);
+            return inputVector;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T get(String name) {
+            final HashMap<String, Object> contextMap = getContextMap(slot, false);
+            return contextMap != null ? (T) contextMap.get(name) : null;
+        }
+
+        @Override
+        public void put(String name, Object value) {
+            getContextMap(slot, true).put(name, value);
+        }
+
+        private void moveTo(int slot) {
+            this.slot = slot;
+            if (vectorElements != featureValues) {
+                // the feature values have been re-allocated since the last move
+                vectorElements = featureValues;
+                vector = new VectorImpl(featureValues);
+            }
+        }
+    }
+}
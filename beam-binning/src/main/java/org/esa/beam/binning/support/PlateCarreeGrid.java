@@ -22,7 +22,7 @@ import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.Polygon;
 import com.vividsolutions.jts.simplify.DouglasPeuckerSimplifier;
-import org.esa.beam.binning.PlanetaryGrid;
+import org.esa.beam.binning.BatchPlanetaryGrid;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.gpf.operators.standard.reproject.ReprojectionOp;
 import org.esa.beam.util.ProductUtils;
@@ -40,7 +40,7 @@ import java.util.List;
  *
  * @author Marco Zühlke
  */
-public class PlateCarreeGrid implements PlanetaryGrid {
+public class PlateCarreeGrid implements BatchPlanetaryGrid {
 
     private static final int TILE_SIZE = 250; // TODO compute from numRows
 
@@ -84,6 +84,20 @@ public class PlateCarreeGrid implements PlanetaryGrid {
         return row * numCols + col;
     }
 
+    @Override
+    public void getBinIndexes(double[] lats, double[] lons, int offset, int length, long[] binIndexes) {
+        final int maxRow = numRows - 1;
+        final double rowScale = numRows / 180.0;
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            final double lat = lats[i];
+            final long row = lat <= -90.0 ? maxRow : lat >= 90.0 ? 0 : maxRow - (int) ((90.0 + lat) * rowScale);
+            final double lon = lons[i];
+            final long col = lon <= -180.0 ? 0 : lon >= 180.0 ? numCols - 1 : (int) ((180.0 + lon) * numCols / 360.0);
+            binIndexes[i] = row * numCols + col;
+        }
+    }
+
     @Override
     public int getRowIndex(long binIndex) {
         return (int) (binIndex / numCols);
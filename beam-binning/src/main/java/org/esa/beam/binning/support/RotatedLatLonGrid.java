@@ -3,6 +3,8 @@ package org.esa.beam.binning.support;
 import org.esa.beam.binning.PlanetaryGrid;
 import org.esa.beam.framework.datamodel.Rotator;
 
+import java.awt.geom.Point2D;
+
 /**
  * A {@link PlanetaryGrid} implementation representing a rotated Lat/Lon grid.
  */
@@ -23,6 +25,18 @@ public class RotatedLatLonGrid extends PlateCarreeGrid {
         return super.getBinIndex(lats[0], lons[0]);
     }
 
+    @Override
+    public void getBinIndexes(double[] lats, double[] lons, int offset, int length, long[] binIndexes) {
+        // the points are rotated one by one through a single point, so that no arrays are allocated per batch
+        final Point2D.Double point = new Point2D.Double();
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            point.setLocation(lons[i], lats[i]);
+            rotator.transform(point);
+            binIndexes[i] = super.getBinIndex(point.y, point.x);
+        }
+    }
+
 //    @Override
 //    public double getCenterLat(int row) {
 //        throw new NotImplementedException();
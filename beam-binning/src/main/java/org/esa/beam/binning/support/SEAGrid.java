@@ -16,7 +16,7 @@
 
 package org.esa.beam.binning.support;
 
-import org.esa.beam.binning.PlanetaryGrid;
+import org.esa.beam.binning.BatchPlanetaryGrid;
 
 import static java.lang.Math.*;
 
@@ -31,7 +31,7 @@ import static java.lang.Math.*;
  * @see <a href="https://oceancolor.gsfc.nasa.gov/SeaWiFS/TECH_REPORTS/PreLPDF/PreLVol32.pdf">SeaWiFS Technical Report Series Volume 32, Level-3 SeaWiFS Data</a>
  * @see <a href="https://oceancolor.gsfc.nasa.gov/DOCS/Ocean_Level-3_Binned_Data_Products.pdf">Ocean Level-3 Binned Data Products</a>
  */
-public final class SEAGrid implements PlanetaryGrid {
+public final class SEAGrid implements BatchPlanetaryGrid {
 
     /**
      * Default number of rows. This results in a vertical bin cell size of approx. 9.28 km.
@@ -119,6 +119,23 @@ public final class SEAGrid implements PlanetaryGrid {
         return baseBin[row] + col;
     }
 
+    @Override
+    public void getBinIndexes(double[] lats, double[] lons, int offset, int length, long[] binIndexes) {
+        // avoid field access within body of loop
+        final long[] baseBin = this.baseBin;
+        final int[] numBin = this.numBin;
+        final int maxRow = numRows - 1;
+        final double rowScale = numRows / 180.0;
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            final double lat = lats[i];
+            final int row = lat <= -90.0 ? maxRow : lat >= 90.0 ? 0 : maxRow - (int) ((90.0 + lat) * rowScale);
+            final double lon = lons[i];
+            final int col = lon <= -180.0 ? 0 : lon >= 180.0 ? numBin[row] - 1 : (int) ((180.0 + lon) * numBin[row] / 360.0);
+            binIndexes[i] = baseBin[row] + col;
+        }
+    }
+
     /**
      * Pseudo-code:
      * <pre>
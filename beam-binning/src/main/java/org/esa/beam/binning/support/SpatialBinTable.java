@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.binning.support;
+
+import org.esa.beam.binning.SpatialBin;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An open-addressing hash table which maps primitive {@code long} bin indexes to spatial bins.
+ * <p/>
+ * Every entry carries a generation stamp which is updated whenever the entry is accessed.
+ * This allows a {@link org.esa.beam.binning.SpatialBinner} to find all bins that have not been
+ * touched during the current slice by a single sweep through the table, instead of copying them into a
+ * second map.
+ * <p/>
+ * The keys and generation stamps can optionally be held in direct (off-heap) buffers. The bins themselves
+ * are always kept on the Java heap.
+ * <p/>
+ * This class is not thread-safe.
+ */
+public final class SpatialBinTable {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+    private static final Comparator<SpatialBin> INDEX_COMPARATOR = new Comparator<SpatialBin>() {
+        @Override
+        public int compare(SpatialBin b1, SpatialBin b2) {
+            return Long.compare(b1.getIndex(), b2.getIndex());
+        }
+    };
+
+    private final boolean offHeap;
+
+    // Keys are stored as (binIndex + 1), so that a zero-initialised buffer represents an empty table.
+    // Therefore the index -1, which denotes an unset bin index, cannot be stored.
+    private LongBuffer keys;
+    private IntBuffer stamps;
+    private SpatialBin[] bins;
+    private int mask;
+    private int size;
+    private int threshold;
+
+    /**
+     * Constructs a new table.
+     *
+     * @param initialCapacity The expected number of bins.
+     * @param offHeap         If {@code true}, keys and generation stamps are stored in direct buffers.
+     */
+    public SpatialBinTable(int initialCapacity, boolean offHeap) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity < 0");
+        }
+        this.offHeap = offHeap;
+        allocate(tableSizeFor(initialCapacity));
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the bin for the given index and stamps it with the given generation.
+     *
+     * @param binIndex   The bin index, must not be {@code -1}.
+     * @param generation The current generation.
+     *
+     * @return The bin, or {@code null} if the table doesn't contain a bin with the given index.
+     */
+    public SpatialBin get(long binIndex, int generation) {
+        final long key = binIndex + 1;
+        int slot = slotOf(key);
+        while (true) {
+            final long k = keys.get(slot);
+            if (k == key) {
+                stamps.put(slot, generation);
+                return bins[slot];
+            }
+            if (k == 0L) {
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Puts a bin into the table and stamps it with the given generation.
+     * An existing bin with the same index is replaced.
+     *
+     * @param bin        The bin.
+     * @param generation The current generation.
+     */
+    public void put(SpatialBin bin, int generation) {
+        if (bin.getIndex() == -1L) {
+            throw new IllegalArgumentException("bin.getIndex() == -1");
+        }
+        if (size >= threshold) {
+            rehash(bins.length << 1);
+        }
+        final long key = bin.getIndex() + 1;
+        int slot = slotOf(key);
+        while (true) {
+            final long k = keys.get(slot);
+            if (k == 0L) {
+                keys.put(slot, key);
+                size++;
+                break;
+            }
+            if (k == key) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        stamps.put(slot, generation);
+        bins[slot] = bin;
+    }
+
+    /**
+     * Removes all bins whose generation stamp differs from the given generation,
+     * that is all bins which have not been accessed since the given generation started.
+     *
+     * @param generation The current generation.
+     *
+     * @return The removed bins, sorted by bin index.
+     */
+    public List<SpatialBin> removeStale(int generation) {
+        final List<SpatialBin> staleBins = new ArrayList<SpatialBin>();
+        if (size == 0) {
+            return staleBins;
+        }
+        for (int slot = 0; slot < bins.length; slot++) {
+            if (keys.get(slot) != 0L && stamps.get(slot) != generation) {
+                staleBins.add(bins[slot]);
+            }
+        }
+        for (SpatialBin bin : staleBins) {
+            removeSlot(findSlot(bin.getIndex() + 1));
+        }
+        Collections.sort(staleBins, INDEX_COMPARATOR);
+        return staleBins;
+    }
+
+    /**
+     * Removes all bins from this table.
+     *
+     * @return The removed bins, sorted by bin index.
+     */
+    public List<SpatialBin> removeAll() {
+        final List<SpatialBin> allBins = new ArrayList<SpatialBin>(size);
+        if (size == 0) {
+            return allBins;
+        }
+        for (int slot = 0; slot < bins.length; slot++) {
+            if (keys.get(slot) != 0L) {
+                allBins.add(bins[slot]);
+                keys.put(slot, 0L);
+                stamps.put(slot, 0);
+                bins[slot] = null;
+            }
+        }
+        size = 0;
+        Collections.sort(allBins, INDEX_COMPARATOR);
+        return allBins;
+    }
+
+    private int findSlot(long key) {
+        int slot = slotOf(key);
+        while (keys.get(slot) != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Backward-shift deletion, keeps probe sequences intact without tombstones
+    private void removeSlot(int slot) {
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            final long key = keys.get(next);
+            if (key == 0L) {
+                break;
+            }
+            final int home = slotOf(key);
+            final boolean stays = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+            if (!stays) {
+                keys.put(hole, key);
+                stamps.put(hole, stamps.get(next));
+                bins[hole] = bins[next];
+                hole = next;
+            }
+        }
+        keys.put(hole, 0L);
+        stamps.put(hole, 0);
+        bins[hole] = null;
+        size--;
+    }
+
+    private int slotOf(long key) {
+        final long h = key * GOLDEN_RATIO;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void rehash(int newCapacity) {
+        final LongBuffer oldKeys = keys;
+        final IntBuffer oldStamps = stamps;
+        final SpatialBin[] oldBins = bins;
+        allocate(newCapacity);
+        for (int i = 0; i < oldBins.length; i++) {
+            final long key = oldKeys.get(i);
+            if (key != 0L) {
+                int slot = slotOf(key);
+                while (keys.get(slot) != 0L) {
+                    slot = (slot + 1) & mask;
+                }
+                keys.put(slot, key);
+                stamps.put(slot, oldStamps.get(i));
+                bins[slot] = oldBins[i];
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        if (offHeap) {
+            keys = ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+            stamps = ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+        } else {
+            keys = LongBuffer.allocate(capacity);
+            stamps = IntBuffer.allocate(capacity);
+        }
+        bins = new SpatialBin[capacity];
+        mask = capacity - 1;
+        threshold = capacity >> 1;
+        size = 0;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity >> 1 < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -13,7 +13,7 @@ import java.util.Arrays;
  * @author Norman Fomferra
  */
 public final class VectorImpl implements WritableVector {
-    private final float[] elements;
+    private float[] elements;
     private int offset;
     private int size;
 
@@ -49,6 +49,13 @@ public final class VectorImpl implements WritableVector {
         return Arrays.toString(Arrays.copyOfRange(elements, offset, offset + size));
     }
 
+    /**
+     * Lets this vector refer to another array, used by flyweight views which are re-used for many bins.
+     */
+    void setElements(float[] elements) {
+        this.elements = elements;
+    }
+
     public void setOffsetAndSize(int offset, int size) {
         this.offset = offset;
         this.size = size;
@@ -20,7 +20,10 @@ import org.esa.beam.binning.aggregators.AggregatorAverage;
 import org.esa.beam.binning.aggregators.AggregatorAverageML;
 import org.esa.beam.binning.aggregators.AggregatorMinMax;
 import org.esa.beam.binning.aggregators.AggregatorOnMaxSet;
+import org.esa.beam.binning.aggregators.AggregatorPercentile;
 import org.esa.beam.binning.cellprocessor.FeatureSelection;
+import org.esa.beam.binning.support.ColumnarBinStore;
+import org.esa.beam.binning.support.ObservationImpl;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -119,6 +122,88 @@ public class BinManagerTest {
         assertEquals(1, featureCount);
     }
 
+    @Test
+    public void testAggregationInColumnarBinStore() {
+        VariableContext variableContext = createVariableContext();
+        BinManager binManager = new BinManager(variableContext,
+                new AggregatorAverage(variableContext, "c", 0.0),
+                new AggregatorMinMax(variableContext, "a", "a"),
+                new AggregatorPercentile(variableContext, "b", "b", 90));
+
+        ColumnarBinStore temporalStore = new ColumnarBinStore(binManager.getTemporalFeatureCount(), 1);
+        TemporalBin expectedTemporalBin = binManager.createTemporalBin(42);
+        int temporalSlot = binManager.createTemporalBin(temporalStore, 42);
+        for (int pass = 0; pass < 3; pass++) {
+            SpatialBin spatialBin = binManager.createSpatialBin(42);
+            for (int i = 0; i < 5; i++) {
+                Observation observation = new ObservationImpl(0.0, 0.0, 0.0, 0.5F * i, pass + i, 2.0F * pass - i);
+                binManager.aggregateSpatialBin(observation, spatialBin);
+            }
+            binManager.completeSpatialBin(spatialBin);
+
+            binManager.aggregateTemporalBin(spatialBin, expectedTemporalBin);
+            binManager.aggregateTemporalBin(spatialBin, temporalStore, temporalSlot);
+        }
+        binManager.completeTemporalBin(expectedTemporalBin);
+        binManager.completeTemporalBin(temporalStore, temporalSlot);
+
+        TemporalBin temporalBin = temporalStore.toTemporalBin(temporalSlot);
+        assertBinEquals(expectedTemporalBin, temporalBin);
+        assertEquals(3, temporalBin.getNumPasses());
+        assertEquals(1, temporalStore.size());
+
+        TemporalBin expectedOutputBin = binManager.createOutputBin(42);
+        binManager.computeOutput(expectedTemporalBin, expectedOutputBin.toVector());
+        TemporalBin outputBin = binManager.createOutputBin(42);
+        binManager.computeOutput(temporalStore, temporalSlot, outputBin.toVector());
+        assertArrayEquals(expectedOutputBin.getFeatureValues(), outputBin.getFeatureValues(), 1.0e-6F);
+    }
+
+    @Test
+    public void testAggregationFromSpatialColumnarBinStore() {
+        VariableContext variableContext = createVariableContext();
+        BinManager binManager = new BinManager(variableContext,
+                new AggregatorAverage(variableContext, "c", 0.0),
+                new AggregatorMinMax(variableContext, "a", "a"),
+                new AggregatorPercentile(variableContext, "b", "b", 90));
+
+        ColumnarBinStore spatialStore = new ColumnarBinStore(binManager.getSpatialFeatureCount(), 3);
+        TemporalBin expectedTemporalBin = binManager.createTemporalBin(42);
+        for (int pass = 0; pass < 3; pass++) {
+            SpatialBin spatialBin = binManager.createSpatialBin(42);
+            for (int i = 0; i < 5; i++) {
+                Observation observation = new ObservationImpl(0.0, 0.0, 0.0, 0.5F * i, pass + i, 2.0F * pass - i);
+                binManager.aggregateSpatialBin(observation, spatialBin);
+            }
+            binManager.completeSpatialBin(spatialBin);
+            binManager.aggregateTemporalBin(spatialBin, expectedTemporalBin);
+
+            int spatialSlot = spatialStore.add(42);
+            spatialStore.setNumObs(spatialSlot, spatialBin.getNumObs());
+            for (int i = 0; i < spatialStore.getNumFeatures(); i++) {
+                spatialStore.setFeatureValue(spatialSlot, i, spatialBin.getFeatureValues()[i]);
+            }
+        }
+        binManager.completeTemporalBin(expectedTemporalBin);
+
+        ColumnarBinStore temporalStore = new ColumnarBinStore(binManager.getTemporalFeatureCount(), 1);
+        int temporalSlot = binManager.createTemporalBin(temporalStore, 42);
+        for (int spatialSlot = 0; spatialSlot < spatialStore.size(); spatialSlot++) {
+            binManager.aggregateTemporalBin(spatialStore, spatialSlot, temporalStore, temporalSlot);
+        }
+        binManager.completeTemporalBin(temporalStore, temporalSlot);
+
+        TemporalBin temporalBin = temporalStore.toTemporalBin(temporalSlot);
+        assertBinEquals(expectedTemporalBin, temporalBin);
+        assertEquals(3, temporalBin.getNumPasses());
+    }
+
+    private static void assertBinEquals(Bin expected, Bin actual) {
+        assertEquals(expected.getIndex(), actual.getIndex());
+        assertEquals(expected.getNumObs(), actual.getNumObs());
+        assertArrayEquals(expected.getFeatureValues(), actual.getFeatureValues(), 1.0e-6F);
+    }
+
     private VariableContext createVariableContext() {
         return new MyVariableContext("a", "b", "c");
     }
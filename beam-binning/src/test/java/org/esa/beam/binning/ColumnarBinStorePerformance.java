@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.binning;
+
+import org.esa.beam.binning.aggregators.AggregatorAverage;
+import org.esa.beam.binning.aggregators.AggregatorMinMax;
+import org.esa.beam.binning.support.ColumnarBinStore;
+import org.esa.beam.binning.support.SEAGrid;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the heap footprint of one temporal bin object per grid cell with the footprint of a
+ * {@link ColumnarBinStore} holding the same bins, for global 9 km and 4 km SEA grids.
+ * Not enabled by default, as the class does not end in Test.
+ * <p/>
+ * Invoke by running<br/>
+ * {@code mvn test -Dtest=org.esa.beam.binning.ColumnarBinStorePerformance -DargLine="-Xmx6G"}<br/>
+ * or, for the 9 km grid only, by running<br/>
+ * {@code mvn test -Dtest=org.esa.beam.binning.ColumnarBinStorePerformance -DargLine="-Xmx2G -DnumRows=2160"}<br/>
+ */
+public class ColumnarBinStorePerformance {
+
+    private static final String NUM_ROWS = System.getProperty("numRows", "2160,4320");
+
+    @Test
+    public void testMemoryFootprint() throws Exception {
+        MyVariableContext variableContext = new MyVariableContext("a", "b");
+        BinManager binManager = new BinManager(variableContext,
+                                               new AggregatorAverage(variableContext, "a", 0.0),
+                                               new AggregatorMinMax(variableContext, "b", "b"));
+        for (String numRows : NUM_ROWS.split(",")) {
+            SEAGrid grid = new SEAGrid(Integer.parseInt(numRows.trim()));
+            int numBins = (int) grid.getNumBins();
+            String resolution = String.format("%.1f km", SEAGrid.RE * Math.PI / grid.getNumRows());
+
+            long objectBytes = measureObjectBins(binManager, numBins);
+            long columnarBytes = measureColumnarBins(binManager, numBins);
+
+            System.out.println(String.format("%s grid, %d bins, %d features: bin objects %,d MiB (%.1f bytes/bin), " +
+                                             "columnar store %,d MiB (%.1f bytes/bin)",
+                                             resolution, numBins, binManager.getTemporalFeatureCount(),
+                                             objectBytes >> 20, objectBytes / (double) numBins,
+                                             columnarBytes >> 20, columnarBytes / (double) numBins));
+        }
+    }
+
+    private static long measureObjectBins(BinManager binManager, int numBins) {
+        long usedBefore = getUsedMemory();
+        List<TemporalBin> temporalBins = new ArrayList<TemporalBin>(numBins);
+        for (int i = 0; i < numBins; i++) {
+            temporalBins.add(binManager.createTemporalBin(i));
+        }
+        long used = getUsedMemory() - usedBefore;
+        assertEquals(numBins, temporalBins.size());
+        return used;
+    }
+
+    private static long measureColumnarBins(BinManager binManager, int numBins) {
+        long usedBefore = getUsedMemory();
+        ColumnarBinStore binStore = new ColumnarBinStore(binManager.getTemporalFeatureCount(), numBins);
+        for (int i = 0; i < numBins; i++) {
+            binManager.createTemporalBin(binStore, i);
+        }
+        long used = getUsedMemory() - usedBefore;
+        assertEquals(numBins, binStore.size());
+        return used;
+    }
+
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.binning;
+
+import org.esa.beam.binning.aggregators.AggregatorAverage;
+import org.esa.beam.binning.support.BinningContextImpl;
+import org.esa.beam.binning.support.ObservationImpl;
+import org.esa.beam.binning.support.SEAGrid;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the primitive-keyed bin table of the {@link SpatialBinner} with the former
+ * {@code TreeMap} based bookkeeping of active and finalized bins.
+ * Not enabled by default, as the class does not end in Test.
+ * <p/>
+ * Invoke by running<br/>
+ * {@code mvn test -Dtest=org.esa.beam.binning.SpatialBinnerPerformance}<br/>
+ * or by running<br/>
+ * {@code mvn test -Dtest=org.esa.beam.binning.SpatialBinnerPerformance -DargLine="-DtestRuns=10 -server"}<br/>
+ */
+public class SpatialBinnerPerformance {
+
+    private static final int RUNS = Integer.parseInt(System.getProperty("testRuns", "5"));
+
+    // A MODIS-like 1 km swath on a 9 km SEAGrid
+    private static final int NUM_ROWS = 2160;
+    private static final int SWATH_WIDTH = 1354;
+    private static final int SWATH_HEIGHT = 2030;
+    private static final int SLICE_HEIGHT = 64;
+
+    @Test
+    public void testPerformance() throws Exception {
+        for (int i = 0; i < RUNS; i++) {
+            long numBins1 = runTreeMapBinner();
+            long numBins2 = runSpatialBinner(false);
+            long numBins3 = runSpatialBinner(true);
+            assertEquals(numBins1, numBins2);
+            assertEquals(numBins1, numBins3);
+        }
+    }
+
+    private static long runTreeMapBinner() {
+        BinningContext binningContext = createBinningContext();
+        CountingConsumer consumer = new CountingConsumer();
+        TreeMapSpatialBinner binner = new TreeMapSpatialBinner(binningContext, consumer);
+        long t0 = System.nanoTime();
+        for (int y = 0; y < SWATH_HEIGHT; y += SLICE_HEIGHT) {
+            binner.processObservationSlice(new SwathSlice(y));
+        }
+        binner.complete();
+        report("TreeMap", consumer, System.nanoTime() - t0);
+        return consumer.numBins;
+    }
+
+    private static long runSpatialBinner(boolean offHeap) {
+        BinningContext binningContext = createBinningContext();
+        CountingConsumer consumer = new CountingConsumer();
+        SpatialBinner binner = new SpatialBinner(binningContext, consumer, offHeap);
+        long t0 = System.nanoTime();
+        for (int y = 0; y < SWATH_HEIGHT; y += SLICE_HEIGHT) {
+            binner.processObservationSlice(new SwathSlice(y));
+        }
+        binner.complete();
+        report(offHeap ? "SpatialBinTable (off-heap)" : "SpatialBinTable (heap)", consumer, System.nanoTime() - t0);
+        return consumer.numBins;
+    }
+
+    private static BinningContext createBinningContext() {
+        MyVariableContext variableContext = new MyVariableContext("x");
+        BinManager binManager = new BinManager(variableContext, new AggregatorAverage(variableContext, "x", 0.0));
+        return new BinningContextImpl(new SEAGrid(NUM_ROWS), binManager, CompositingType.BINNING, 1, null, null);
+    }
+
+    private static void report(String name, CountingConsumer consumer, long nanos) {
+        System.out.println(String.format("%-28s %10d bins %6d slices %8.1f ms",
+                                         name, consumer.numBins, consumer.numSlices, nanos / 1.0E6));
+    }
+
+    private static class CountingConsumer implements SpatialBinConsumer {
+
+        long numBins;
+        long numSlices;
+
+        @Override
+        public void consumeSpatialBins(BinningContext binningContext, List<SpatialBin> spatialBins) {
+            numBins += spatialBins.size();
+            numSlices++;
+        }
+    }
+
+    /**
+     * Generates the observations of a slice of a swath that runs from south to north and is slightly tilted.
+     */
+    private static class SwathSlice implements Iterable<Observation> {
+
+        private final int y0;
+        private final int y1;
+
+        private SwathSlice(int y0) {
+            this.y0 = y0;
+            this.y1 = Math.min(y0 + SLICE_HEIGHT, SWATH_HEIGHT);
+        }
+
+        @Override
+        public Iterator<Observation> iterator() {
+            return new Iterator<Observation>() {
+                int x = 0;
+                int y = y0;
+
+                @Override
+                public boolean hasNext() {
+                    return y < y1;
+                }
+
+                @Override
+                public Observation next() {
+                    double lat = -10.0 + 0.009 * y + 0.001 * x;
+                    double lon = 20.0 + 0.012 * x - 0.002 * y;
+                    Observation observation = new ObservationImpl(lat, lon, 0.0, 0.5F * x / SWATH_WIDTH);
+                    if (++x == SWATH_WIDTH) {
+                        x = 0;
+                        y++;
+                    }
+                    return observation;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
+    /**
+     * The former implementation of the {@link SpatialBinner} which is based on two {@code TreeMap}s.
+     */
+    private static class TreeMapSpatialBinner {
+
+        private final BinningContext binningContext;
+        private final PlanetaryGrid planetaryGrid;
+        private final BinManager binManager;
+        private final SpatialBinConsumer consumer;
+        private final Map<Long, SpatialBin> activeBinMap;
+        private final Map<Long, SpatialBin> finalizedBinMap;
+
+        private TreeMapSpatialBinner(BinningContext binningContext, SpatialBinConsumer consumer) {
+            this.binningContext = binningContext;
+            this.planetaryGrid = binningContext.getPlanetaryGrid();
+            this.binManager = binningContext.getBinManager();
+            this.consumer = consumer;
+            this.activeBinMap = new TreeMap<Long, SpatialBin>();
+            this.finalizedBinMap = new TreeMap<Long, SpatialBin>();
+        }
+
+        long processObservationSlice(Iterable<Observation> observations) {
+            finalizedBinMap.putAll(activeBinMap);
+            long observationCounter = 0;
+            for (Observation observation : observations) {
+                observationCounter++;
+                Long binIndex = planetaryGrid.getBinIndex(observation.getLatitude(), observation.getLongitude());
+                SpatialBin bin = activeBinMap.get(binIndex);
+                if (bin == null) {
+                    bin = binManager.createSpatialBin(binIndex);
+                    activeBinMap.put(binIndex, bin);
+                }
+                binManager.aggregateSpatialBin(observation, bin);
+                finalizedBinMap.remove(binIndex);
+            }
+            if (!finalizedBinMap.isEmpty()) {
+                for (Long key : finalizedBinMap.keySet()) {
+                    activeBinMap.remove(key);
+                }
+                emitSliceBins(finalizedBinMap);
+                finalizedBinMap.clear();
+            }
+            return observationCounter;
+        }
+
+        void complete() {
+            if (!activeBinMap.isEmpty()) {
+                emitSliceBins(activeBinMap);
+                activeBinMap.clear();
+            }
+            finalizedBinMap.clear();
+        }
+
+        private void emitSliceBins(Map<Long, SpatialBin> binMap) {
+            List<SpatialBin> bins = new ArrayList<SpatialBin>(binMap.values());
+            for (SpatialBin bin : bins) {
+                binManager.completeSpatialBin(bin);
+            }
+            try {
+                consumer.consumeSpatialBins(binningContext, bins);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
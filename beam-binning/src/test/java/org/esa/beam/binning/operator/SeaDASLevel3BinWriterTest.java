@@ -165,6 +165,46 @@ public class SeaDASLevel3BinWriterTest {
         assertEquals(0.89f, bl_test_max.getFloat(1), 1.0e-6);
     }
 
+    @Test
+    public void testWriting_rowsInSeadasOrderWithSmallBuffer() throws Exception {
+        final SEAGrid seaGrid = new SEAGrid(numRows);
+        final ArrayList<TemporalBin> temporalBins = new ArrayList<TemporalBin>();
+        for (int i = 0; i < 3; i++) {
+            temporalBins.add(new TemporalBin(seaGrid.getFirstBinIndex(60) + i, 2));
+        }
+        for (int i = 0; i < 2; i++) {
+            temporalBins.add(new TemporalBin(seaGrid.getFirstBinIndex(61) + i, 2));
+        }
+        for (int i = 0; i < temporalBins.size(); i++) {
+            temporalBins.get(i).setNumObs(i + 1);
+        }
+
+        final String oldBufferSize = System.getProperty(SeaDASLevel3BinWriter.PROPERTY_KEY_BUFFER_SIZE);
+        System.setProperty(SeaDASLevel3BinWriter.PROPERTY_KEY_BUFFER_SIZE, "2");
+        try {
+            binWriter.write(createMetadataProperties(), temporalBins);
+        } finally {
+            if (oldBufferSize != null) {
+                System.setProperty(SeaDASLevel3BinWriter.PROPERTY_KEY_BUFFER_SIZE, oldBufferSize);
+            } else {
+                System.clearProperty(SeaDASLevel3BinWriter.PROPERTY_KEY_BUFFER_SIZE);
+            }
+        }
+
+        final NetcdfFile netcdfFile = NetcdfFileOpener.open(binWriter.getTargetFilePath());
+        // the southern row comes first, the bins of each row are in ascending order
+        final Array bl_nobs = netcdfFile.findVariable("bl_nobs").read();
+        assertArrayEquals(new int[]{4, 5, 1, 2, 3}, (int[]) bl_nobs.getStorage());
+
+        final Array bi_begin_offset = netcdfFile.findVariable("bi_begin_offset").read();
+        assertEquals(0, bi_begin_offset.getInt(numRows - 1 - 61));
+        assertEquals(2, bi_begin_offset.getInt(numRows - 1 - 60));
+
+        final Array bi_extent = netcdfFile.findVariable("bi_extent").read();
+        assertEquals(2, bi_extent.getInt(numRows - 1 - 61));
+        assertEquals(3, bi_extent.getInt(numRows - 1 - 60));
+    }
+
     @Test
     public void testWriting_startAndStopTimeMetadata() throws Exception {
         final HashMap<String, String> metadataProperties = createMetadataProperties();
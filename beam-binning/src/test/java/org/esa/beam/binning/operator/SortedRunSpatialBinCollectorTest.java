@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.binning.operator;
+
+import org.esa.beam.binning.BinningContext;
+import org.esa.beam.binning.SpatialBin;
+import org.esa.beam.binning.support.ColumnarBinStore;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SortedRunSpatialBinCollectorTest {
+
+    @Test
+    public void testCollecting() throws Exception {
+        // 26000 bins with 100 bins per run need more than one merge pass
+        SortedRunSpatialBinCollector binCollector = new SortedRunSpatialBinCollector(100);
+        try {
+            BinningContext ctx = Mockito.mock(BinningContext.class);
+            for (int i = 25; i >= 0; i--) {
+                ArrayList<SpatialBin> spatialBins = new ArrayList<SpatialBin>();
+                int binIndexOffset = i * 1000;
+                for (int j = 999; j >= 0; j--) {
+                    spatialBins.add(new SpatialBin(binIndexOffset + j, 3));
+                }
+                binCollector.consumeSpatialBins(ctx, spatialBins);
+            }
+            binCollector.consumingCompleted();
+            assertTrue(binCollector.getNumRuns() <= 64);
+
+            SpatialBinCollection spatialBinCollection = binCollector.getSpatialBinCollection();
+
+            assertFalse(spatialBinCollection.isEmpty());
+            assertEquals(26000, spatialBinCollection.size());
+            Iterable<List<SpatialBin>> collectedBins = spatialBinCollection.getBinCollection();
+            int counter = 0;
+            for (List<SpatialBin> collectedBin : collectedBins) {
+                assertEquals(1, collectedBin.size());
+                assertEquals(counter++, collectedBin.get(0).getIndex());
+            }
+            assertEquals(26000, counter);
+        } finally {
+            binCollector.close();
+        }
+    }
+
+    @Test
+    public void testBinsWithEqualIndexKeepTheirOrder() throws Exception {
+        SortedRunSpatialBinCollector binCollector = new SortedRunSpatialBinCollector(7);
+        try {
+            BinningContext ctx = Mockito.mock(BinningContext.class);
+            for (int pass = 0; pass < 5; pass++) {
+                ArrayList<SpatialBin> spatialBins = new ArrayList<SpatialBin>();
+                for (int j = 0; j < 20; j++) {
+                    spatialBins.add(createSpatialBin((j * 7) % 20, pass));
+                }
+                binCollector.consumeSpatialBins(ctx, spatialBins);
+            }
+            binCollector.consumingCompleted();
+
+            SpatialBinCollection spatialBinCollection = binCollector.getSpatialBinCollection();
+            assertEquals(100, spatialBinCollection.size());
+
+            // the collection can be iterated more than once
+            for (int iteration = 0; iteration < 2; iteration++) {
+                long expectedIndex = 0;
+                for (List<SpatialBin> collectedBin : spatialBinCollection.getBinCollection()) {
+                    assertEquals(5, collectedBin.size());
+                    for (int pass = 0; pass < 5; pass++) {
+                        SpatialBin spatialBin = collectedBin.get(pass);
+                        assertEquals(expectedIndex, spatialBin.getIndex());
+                        assertEquals(pass + 1, spatialBin.getNumObs());
+                        assertEquals(pass, spatialBin.getFeatureValues()[0], 0.0F);
+                        assertEquals(expectedIndex * 0.5F, spatialBin.getFeatureValues()[1], 0.0F);
+                    }
+                    expectedIndex++;
+                }
+                assertEquals(20, expectedIndex);
+            }
+        } finally {
+            binCollector.close();
+        }
+    }
+
+    @Test
+    public void testReadingBinsIntoBinStore() throws Exception {
+        SortedRunSpatialBinCollector binCollector = new SortedRunSpatialBinCollector(7);
+        try {
+            BinningContext ctx = Mockito.mock(BinningContext.class);
+            for (int pass = 0; pass < 3; pass++) {
+                ArrayList<SpatialBin> spatialBins = new ArrayList<SpatialBin>();
+                for (int j = 0; j < 20; j++) {
+                    spatialBins.add(createSpatialBin(j, pass));
+                }
+                binCollector.consumeSpatialBins(ctx, spatialBins);
+            }
+            binCollector.consumingCompleted();
+
+            SortedRunSpatialBinCollector.MergeCursor cursor = binCollector.openCursor();
+            try {
+                ColumnarBinStore binStore = new ColumnarBinStore(2, 4);
+                assertTrue(cursor.next());
+                // 4 records requested, but the 3 records of a bin are never split
+                assertTrue(cursor.readBins(binStore, 4));
+                assertEquals(6, binStore.size());
+                for (int slot = 0; slot < 6; slot++) {
+                    assertEquals(slot / 3, binStore.getIndex(slot));
+                    assertEquals(slot % 3 + 1, binStore.getNumObs(slot));
+                    assertEquals(slot % 3, binStore.getFeatureValue(slot, 0), 0.0F);
+                    assertEquals(slot / 3 * 0.5F, binStore.getFeatureValue(slot, 1), 0.0F);
+                }
+                int numRecords = binStore.size();
+                long expectedIndex = 2;
+                boolean hasRecord = true;
+                while (hasRecord) {
+                    hasRecord = cursor.readBins(binStore, 1);
+                    assertEquals(3, binStore.size());
+                    assertEquals(expectedIndex, binStore.getIndex(0));
+                    assertEquals(expectedIndex, binStore.getIndex(2));
+                    numRecords += binStore.size();
+                    expectedIndex++;
+                }
+                assertEquals(60, numRecords);
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            binCollector.close();
+        }
+    }
+
+    @Test
+    public void testCollectingNothing() throws Exception {
+        SortedRunSpatialBinCollector binCollector = new SortedRunSpatialBinCollector();
+        try {
+            binCollector.consumingCompleted();
+            SpatialBinCollection spatialBinCollection = binCollector.getSpatialBinCollection();
+            assertEquals(0, spatialBinCollection.size());
+            assertFalse(spatialBinCollection.getBinCollection().iterator().hasNext());
+        } finally {
+            binCollector.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testConsumingAfterCompletion() throws Exception {
+        SortedRunSpatialBinCollector binCollector = new SortedRunSpatialBinCollector();
+        try {
+            binCollector.consumingCompleted();
+            ArrayList<SpatialBin> spatialBins = new ArrayList<SpatialBin>();
+            spatialBins.add(new SpatialBin(1, 3));
+            binCollector.consumeSpatialBins(Mockito.mock(BinningContext.class), spatialBins);
+        } finally {
+            binCollector.close();
+        }
+    }
+
+    private static SpatialBin createSpatialBin(int binIndex, int pass) {
+        SpatialBin bin = new SpatialBin(binIndex, 2);
+        bin.setNumObs(pass + 1);
+        bin.getFeatureValues()[0] = pass;
+        bin.getFeatureValues()[1] = binIndex * 0.5F;
+        return bin;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.binning.operator;
+
+import org.esa.beam.binning.TemporalBin;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TemporalBinStoreTest {
+
+    @Test
+    public void testList() throws Exception {
+        int numberOfBins = 40000;
+        TemporalBinStore binStore = new TemporalBinStore();
+        try {
+            for (int i = 0; i < numberOfBins; i++) {
+                binStore.add(createTemporalBin(i));
+            }
+
+            assertEquals(numberOfBins, binStore.size());
+            assertBinEquals(0, binStore.get(0));
+            assertBinEquals(16384, binStore.get(16384));
+            assertBinEquals(39999, binStore.get(39999));
+        } finally {
+            binStore.close();
+        }
+        assertEquals(0, binStore.size());
+    }
+
+    @Test
+    public void testForwardAndBackwardWalksWithSmallWindow() throws Exception {
+        int numberOfBins = 1000;
+        // the window holds 7 bins of 24 bytes
+        TemporalBinStore binStore = new TemporalBinStore(7 * 24 + 5);
+        try {
+            for (int i = 0; i < numberOfBins; i++) {
+                binStore.add(createTemporalBin(i));
+            }
+
+            int counter = 0;
+            for (TemporalBin temporalBin : binStore) {
+                assertBinEquals(counter++, temporalBin);
+            }
+            assertEquals(numberOfBins, counter);
+
+            // rows of 10 bins in reverse order, the bins of each row in their order
+            for (int rowStart = numberOfBins - 10; rowStart >= 0; rowStart -= 10) {
+                for (int i = rowStart; i < rowStart + 10; i++) {
+                    assertBinEquals(i, binStore.get(i));
+                }
+            }
+        } finally {
+            binStore.close();
+        }
+    }
+
+    @Test
+    public void testGetWhileAdding() throws Exception {
+        TemporalBinStore binStore = new TemporalBinStore(1024);
+        try {
+            for (int i = 0; i < 500; i++) {
+                binStore.add(createTemporalBin(i));
+                assertBinEquals(i, binStore.get(i));
+                assertBinEquals(i / 2, binStore.get(i / 2));
+            }
+            assertEquals(500, binStore.size());
+        } finally {
+            binStore.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBinsMustHaveSameNumberOfFeatures() throws Exception {
+        TemporalBinStore binStore = new TemporalBinStore();
+        try {
+            binStore.add(new TemporalBin(0, 2));
+            binStore.add(new TemporalBin(1, 3));
+        } finally {
+            binStore.close();
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfRange() throws Exception {
+        TemporalBinStore binStore = new TemporalBinStore();
+        try {
+            binStore.add(new TemporalBin(0, 2));
+            binStore.get(1);
+        } finally {
+            binStore.close();
+        }
+    }
+
+    private static TemporalBin createTemporalBin(int index) {
+        TemporalBin temporalBin = new TemporalBin(index, 2);
+        temporalBin.setNumObs(index % 17);
+        temporalBin.setNumPasses(index % 5);
+        temporalBin.getFeatureValues()[0] = 0.5F * index;
+        temporalBin.getFeatureValues()[1] = -index;
+        return temporalBin;
+    }
+
+    private static void assertBinEquals(int expectedIndex, TemporalBin temporalBin) {
+        assertEquals(expectedIndex, temporalBin.getIndex());
+        assertEquals(expectedIndex % 17, temporalBin.getNumObs());
+        assertEquals(expectedIndex % 5, temporalBin.getNumPasses());
+        assertEquals(0.5F * expectedIndex, temporalBin.getFeatureValues()[0], 0.0F);
+        assertEquals(-expectedIndex, temporalBin.getFeatureValues()[1], 0.0F);
+    }
+}
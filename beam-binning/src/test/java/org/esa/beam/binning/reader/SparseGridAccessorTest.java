@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.binning.reader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SparseGridAccessorTest {
+
+    // row 0: bins 3, 4; row 1: empty; row 2: bins 10, 11, 12; row 3: bin 20
+    private static final int[] BIN_OFFSETS = {3, 0, 10, 20};
+    private static final int[] BIN_EXTENTS = {2, 0, 3, 1};
+
+    @Test
+    public void testFindRowBinListIndexes_sorted() {
+        final int[] binIndexes = {3, 4, 10, 11, 12, 20};
+
+        assertTrue(SparseGridAccessor.isSorted(binIndexes));
+        assertArrayEquals(new int[]{0, -1, 2, 5},
+                          SparseGridAccessor.findRowBinListIndexes(binIndexes, true, BIN_OFFSETS, BIN_EXTENTS));
+    }
+
+    @Test
+    public void testFindRowBinListIndexes_unsorted() {
+        final int[] binIndexes = {20, 10, 11, 12, 3, 4};
+
+        assertFalse(SparseGridAccessor.isSorted(binIndexes));
+        assertArrayEquals(new int[]{4, -1, 1, 0},
+                          SparseGridAccessor.findRowBinListIndexes(binIndexes, false, BIN_OFFSETS, BIN_EXTENTS));
+    }
+
+    @Test
+    public void testFindRowBinListIndexes_missingBin() {
+        final int[] binIndexes = {3, 4, 20};
+
+        assertArrayEquals(new int[]{0, -1, -1, 2},
+                          SparseGridAccessor.findRowBinListIndexes(binIndexes, true, BIN_OFFSETS, BIN_EXTENTS));
+        assertArrayEquals(new int[]{0, -1, -1, 2},
+                          SparseGridAccessor.findRowBinListIndexes(binIndexes, false, BIN_OFFSETS, BIN_EXTENTS));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.binning.support;
+
+import org.esa.beam.binning.BatchPlanetaryGrid;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatchPlanetaryGridTest {
+
+    @Test
+    public void testSEAGrid() {
+        assertBatchEqualsPointwise(new SEAGrid(2160));
+        assertBatchEqualsPointwise(new SEAGrid(18));
+    }
+
+    @Test
+    public void testPlateCarreeGrid() {
+        assertBatchEqualsPointwise(new PlateCarreeGrid(2160));
+    }
+
+    @Test
+    public void testRotatedLatLonGrid() {
+        assertBatchEqualsPointwise(new RotatedLatLonGrid(180, 12.0, -40.0));
+    }
+
+    @Test
+    public void testRegularGaussianGrid() {
+        assertBatchEqualsPointwise(new RegularGaussianGrid(64));
+        assertBatchEqualsPointwise(new RegularGaussianGrid(320));
+    }
+
+    @Test
+    public void testReducedGaussianGrid() {
+        assertBatchEqualsPointwise(new ReducedGaussianGrid(64));
+        assertBatchEqualsPointwise(new ReducedGaussianGrid(320));
+    }
+
+    private static void assertBatchEqualsPointwise(BatchPlanetaryGrid grid) {
+        int numRows = grid.getNumRows();
+        int numPoints = 20000 + 2 * numRows;
+        double[] lats = new double[numPoints];
+        double[] lons = new double[numPoints];
+        Random random = new Random(5);
+        int i = 0;
+        // points exactly on the row centers and in between
+        for (int row = 0; row < numRows; row++) {
+            lats[i] = grid.getCenterLat(row);
+            lons[i++] = -180.0;
+            lats[i] = row + 1 < numRows ? 0.5 * (grid.getCenterLat(row) + grid.getCenterLat(row + 1)) : -90.0;
+            lons[i++] = 180.0;
+        }
+        while (i < numPoints) {
+            lats[i] = -90.0 + 180.0 * random.nextDouble();
+            lons[i++] = -180.0 + 360.0 * random.nextDouble();
+        }
+
+        long[] binIndexes = new long[numPoints];
+        grid.getBinIndexes(lats, lons, 0, numPoints, binIndexes);
+        for (int k = 0; k < numPoints; k++) {
+            assertEquals("point " + k, grid.getBinIndex(lats[k], lons[k]), binIndexes[k]);
+        }
+
+        // with an offset, only the given range is written
+        long[] rangeBinIndexes = new long[numPoints];
+        grid.getBinIndexes(lats, lons, 10, 100, rangeBinIndexes);
+        assertEquals(0, rangeBinIndexes[9]);
+        assertEquals(binIndexes[10], rangeBinIndexes[10]);
+        assertEquals(binIndexes[109], rangeBinIndexes[109]);
+        assertEquals(0, rangeBinIndexes[110]);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.binning.support;
+
+import org.esa.beam.binning.TemporalBin;
+import org.esa.beam.binning.Vector;
+import org.esa.beam.binning.WritableVector;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ColumnarBinStoreTest {
+
+    @Test
+    public void testAddAndGrow() {
+        ColumnarBinStore binStore = new ColumnarBinStore(3, 0);
+        assertTrue(binStore.isEmpty());
+        for (int i = 0; i < 1000; i++) {
+            int slot = binStore.add(i * 7L);
+            assertEquals(i, slot);
+            binStore.setNumObs(slot, i);
+            binStore.setFeatureValue(slot, 2, 0.5F * i);
+        }
+        assertEquals(1000, binStore.size());
+        assertTrue(binStore.getCapacity() >= 1000);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i * 7L, binStore.getIndex(i));
+            assertEquals(i, binStore.getNumObs(i));
+            assertEquals(0.0F, binStore.getFeatureValue(i, 0), 0.0F);
+            assertEquals(0.5F * i, binStore.getFeatureValue(i, 2), 0.0F);
+        }
+
+        binStore.clear();
+        assertTrue(binStore.isEmpty());
+        int slot = binStore.add(3);
+        assertEquals(0, binStore.getNumObs(slot));
+        assertEquals(0.0F, binStore.getFeatureValue(slot, 2), 0.0F);
+    }
+
+    @Test
+    public void testCursor() {
+        ColumnarBinStore binStore = new ColumnarBinStore(4, 2);
+        binStore.add(10);
+        binStore.add(11);
+
+        ColumnarBinStore.Cursor cursor = binStore.getCursor(1);
+        assertEquals(11, cursor.getIndex());
+        WritableVector vector = cursor.getVector(2, 2);
+        assertEquals(2, vector.size());
+        vector.set(0, 1.5F);
+        vector.set(1, 2.5F);
+        cursor.setNumObs(4);
+        cursor.setNumPasses(2);
+        cursor.put("list", "value");
+
+        // growing the store must not break the cursor
+        for (int i = 0; i < 100; i++) {
+            binStore.add(100 + i);
+        }
+        cursor = binStore.getCursor(1);
+        assertEquals(1.5F, cursor.getVector().get(2), 0.0F);
+        assertEquals("value", cursor.get("list"));
+        assertNull(binStore.getCursor(0).get("list"));
+
+        TemporalBin temporalBin = binStore.toTemporalBin(1);
+        assertEquals(11, temporalBin.getIndex());
+        assertEquals(4, temporalBin.getNumObs());
+        assertEquals(2, temporalBin.getNumPasses());
+        assertArrayEquals(new float[]{0.0F, 0.0F, 1.5F, 2.5F}, temporalBin.getFeatureValues(), 0.0F);
+
+        Vector inputVector = cursor.getInputVector(new float[]{1.0F, 2.0F, 3.0F}, 1, 2);
+        assertEquals(2, inputVector.size());
+        assertEquals(3.0F, inputVector.get(1), 0.0F);
+
+        binStore.releaseContext(1);
+        assertNull(binStore.getCursor(1).get("list"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSlotOutOfRange() {
+        ColumnarBinStore binStore = new ColumnarBinStore(1, 16);
+        binStore.add(0);
+        binStore.getNumObs(1);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.binning.support;
+
+import org.esa.beam.binning.BatchPlanetaryGrid;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares {@link org.esa.beam.binning.PlanetaryGrid#getBinIndex(double, double)} called point by point with
+ * {@link BatchPlanetaryGrid#getBinIndexes(double[], double[], int, int, long[])} for all planetary grids.
+ * Not enabled by default, as the class does not end in Test.
+ * <p/>
+ * Invoke by running<br/>
+ * {@code mvn test -Dtest=org.esa.beam.binning.support.PlanetaryGridPerformance}<br/>
+ * or by running<br/>
+ * {@code mvn test -Dtest=org.esa.beam.binning.support.PlanetaryGridPerformance -DargLine="-DtestRuns=10 -server"}<br/>
+ */
+public class PlanetaryGridPerformance {
+
+    private static final int RUNS = Integer.parseInt(System.getProperty("testRuns", "5"));
+    private static final int NUM_POINTS = 1354 * 64;
+    private static final int BATCH_SIZE = 1024;
+
+    @Test
+    public void testPerformance() throws Exception {
+        BatchPlanetaryGrid[] grids = {
+                new SEAGrid(2160),
+                new PlateCarreeGrid(2160),
+                new RotatedLatLonGrid(2160, 10.0, 20.0),
+                new RegularGaussianGrid(640),
+                new ReducedGaussianGrid(640),
+        };
+        double[] lats = new double[NUM_POINTS];
+        double[] lons = new double[NUM_POINTS];
+        Random random = new Random(27);
+        for (int i = 0; i < NUM_POINTS; i++) {
+            lats[i] = -90.0 + 180.0 * random.nextDouble();
+            lons[i] = -180.0 + 360.0 * random.nextDouble();
+        }
+        long[] binIndexes1 = new long[NUM_POINTS];
+        long[] binIndexes2 = new long[NUM_POINTS];
+        for (int run = 0; run < RUNS; run++) {
+            for (BatchPlanetaryGrid grid : grids) {
+                long t0 = System.nanoTime();
+                for (int i = 0; i < NUM_POINTS; i++) {
+                    binIndexes1[i] = grid.getBinIndex(lats[i], lons[i]);
+                }
+                long t1 = System.nanoTime();
+                for (int i = 0; i < NUM_POINTS; i += BATCH_SIZE) {
+                    grid.getBinIndexes(lats, lons, i, Math.min(BATCH_SIZE, NUM_POINTS - i), binIndexes2);
+                }
+                long t2 = System.nanoTime();
+                for (int i = 0; i < NUM_POINTS; i++) {
+                    assertEquals(binIndexes1[i], binIndexes2[i]);
+                }
+                System.out.println(String.format("%-22s point by point %8.3f ms, batch %8.3f ms",
+                                                 grid.getClass().getSimpleName(), (t1 - t0) / 1.0E6, (t2 - t1) / 1.0E6));
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.binning.support;
+
+import org.esa.beam.binning.SpatialBin;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SpatialBinTableTest {
+
+    @Test
+    public void testPutAndGet() {
+        testPutAndGet(new SpatialBinTable(0, false));
+        testPutAndGet(new SpatialBinTable(0, true));
+    }
+
+    @Test
+    public void testRemoveStale() {
+        SpatialBinTable table = new SpatialBinTable(4, false);
+        table.put(new SpatialBin(7, 0), 1);
+        table.put(new SpatialBin(3, 0), 1);
+        table.put(new SpatialBin(5, 0), 1);
+
+        assertNotNull(table.get(5, 2));
+        table.put(new SpatialBin(11, 0), 2);
+
+        List<SpatialBin> staleBins = table.removeStale(2);
+        assertEquals(2, staleBins.size());
+        assertEquals(3, staleBins.get(0).getIndex());
+        assertEquals(7, staleBins.get(1).getIndex());
+
+        assertEquals(2, table.size());
+        assertNull(table.get(3, 3));
+        assertNull(table.get(7, 3));
+        assertNotNull(table.get(5, 3));
+        assertNotNull(table.get(11, 3));
+
+        List<SpatialBin> allBins = table.removeAll();
+        assertEquals(2, allBins.size());
+        assertEquals(5, allBins.get(0).getIndex());
+        assertEquals(11, allBins.get(1).getIndex());
+        assertTrue(table.isEmpty());
+    }
+
+    @Test
+    public void testRemoveStaleKeepsProbeSequences() {
+        SpatialBinTable table = new SpatialBinTable(0, true);
+        for (int i = 0; i < 5000; i++) {
+            table.put(new SpatialBin(i * 17L, 0), i % 2 == 0 ? 1 : 2);
+        }
+        List<SpatialBin> staleBins = table.removeStale(2);
+        assertEquals(2500, staleBins.size());
+        assertEquals(2500, table.size());
+        for (int i = 0; i < 5000; i++) {
+            SpatialBin bin = table.get(i * 17L, 3);
+            if (i % 2 == 0) {
+                assertNull(bin);
+            } else {
+                assertNotNull(bin);
+                assertEquals(i * 17L, bin.getIndex());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsetIndexIsRejected() {
+        new SpatialBinTable(0, false).put(new SpatialBin(), 1);
+    }
+
+    private static void testPutAndGet(SpatialBinTable table) {
+        assertTrue(table.isEmpty());
+        assertNull(table.get(0, 1));
+
+        for (int i = 0; i < 1000; i++) {
+            table.put(new SpatialBin(i * 31L, 0), 1);
+        }
+        assertEquals(1000, table.size());
+        for (int i = 0; i < 1000; i++) {
+            SpatialBin bin = table.get(i * 31L, 1);
+            assertNotNull(bin);
+            assertEquals(i * 31L, bin.getIndex());
+        }
+        assertNull(table.get(1, 1));
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.datamodel;
+
+/**
+ * A {@link GeoCoding} which can determine the pixel positions of many geographical positions at once.
+ * <p/>
+ * Geo-codings which do not implement this interface are used position by position.
+ *
+ * @see GeoCoding#getPixelPos(GeoPos, PixelPos)
+ */
+public interface BatchGeoCoding extends GeoCoding {
+
+    /**
+     * Determines the pixel positions of geographical positions. The result must be the same as calling
+     * {@link #getPixelPos(GeoPos, PixelPos) getPixelPos(new GeoPos((float) lats[i], (float) lons[i]), null)}
+     * for every position.
+     *
+     * @param lats    The latitudes in degrees.
+     * @param lons    The longitudes in degrees.
+     * @param offset  The index of the first position.
+     * @param length  The number of positions.
+     * @param pixelXs Receives the pixel X-coordinates, at the same positions as the geographical positions.
+     *                {@code NaN} if a pixel position cannot be determined.
+     * @param pixelYs Receives the pixel Y-coordinates, at the same positions as the geographical positions.
+     *                {@code NaN} if a pixel position cannot be determined.
+     */
+    void getPixelPos(double[] lats, double[] lons, int offset, int length, double[] pixelXs, double[] pixelYs);
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.datamodel;
+
+import org.esa.beam.util.math.CosineDistance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A spatial index for finding the most suitable of many {@link GeoApproximation}s.
+ * <p/>
+ * The globe is divided into cells of one degree. For each cell, the index keeps the approximations whose
+ * circle of validity may intersect the cell, so that only these candidates have to be compared for a given
+ * (lat, lon) point. The candidates of a cell are computed when the cell is used for the first time.
+ * <p/>
+ * The result is the same as the result of
+ * {@link GeoApproximation#findMostSuitable(GeoApproximation[], double, double)}. This relies on the cosine
+ * distance, which is used by all approximations.
+ */
+final class GeoApproximationIndex {
+
+    private static final int LAT_CELL_COUNT = 180;
+    private static final int LON_CELL_COUNT = 360;
+    // tolerance for rounding errors, in radian
+    private static final double EPS = 1.0E-6;
+    private static final GeoApproximation[] NO_CANDIDATES = new GeoApproximation[0];
+
+    private final GeoApproximation[] approximations;
+    private final double[] maxAngles;
+    private final AtomicReferenceArray<GeoApproximation[]> cells;
+
+    GeoApproximationIndex(GeoApproximation[] approximations) {
+        this.approximations = approximations;
+        maxAngles = new double[approximations.length];
+        for (int i = 0; i < approximations.length; i++) {
+            maxAngles[i] = toAngle(approximations[i].getMaxDistance());
+        }
+        cells = new AtomicReferenceArray<>(LAT_CELL_COUNT * LON_CELL_COUNT);
+    }
+
+    /**
+     * Returns the approximation that is most suitable for a given (lat, lon) point.
+     *
+     * @param lat The latitude.
+     * @param lon The longitude.
+     *
+     * @return the approximation that is most suitable for the given (lat, lon) point,
+     * or {@code null}, if none is suitable.
+     */
+    GeoApproximation findMostSuitable(double lat, double lon) {
+        if (!(lat >= -90.0 && lat <= 90.0) || Double.isNaN(lon) || Double.isInfinite(lon)) {
+            return GeoApproximation.findMostSuitable(approximations, lat, lon);
+        }
+        final int latCell = Math.min((int) (lat + 90.0), LAT_CELL_COUNT - 1);
+        final double normalizedLon = lon - 360.0 * Math.floor((lon + 180.0) / 360.0);
+        final int lonCell = Math.max(0, Math.min((int) (normalizedLon + 180.0), LON_CELL_COUNT - 1));
+        final int cellIndex = latCell * LON_CELL_COUNT + lonCell;
+
+        GeoApproximation[] candidates = cells.get(cellIndex);
+        if (candidates == null) {
+            candidates = findCandidates(latCell, lonCell);
+            cells.set(cellIndex, candidates);
+        }
+        if (candidates.length == 0) {
+            return null;
+        }
+        return GeoApproximation.findMostSuitable(candidates, lat, lon);
+    }
+
+    private GeoApproximation[] findCandidates(int latCell, int lonCell) {
+        final double minLat = latCell - 90.0;
+        final double minLon = lonCell - 180.0;
+        final double centerLat = minLat + 0.5;
+        final double centerLon = minLon + 0.5;
+
+        // the largest distance between the center and any point of the cell is found at one of the corners
+        final CosineDistance centerDistance = new CosineDistance(centerLon, centerLat);
+        double cellRadius = 0.0;
+        for (int i = 0; i < 2; i++) {
+            for (int j = 0; j < 2; j++) {
+                cellRadius = Math.max(cellRadius, toAngle(centerDistance.distance(minLon + j, minLat + i)));
+            }
+        }
+
+        final List<GeoApproximation> candidates = new ArrayList<>();
+        for (int i = 0; i < approximations.length; i++) {
+            final double angle = toAngle(approximations[i].getDistance(centerLat, centerLon));
+            if (angle - cellRadius < maxAngles[i] + EPS) {
+                candidates.add(approximations[i]);
+            }
+        }
+        return candidates.isEmpty() ? NO_CANDIDATES : candidates.toArray(new GeoApproximation[candidates.size()]);
+    }
+
+    private static double toAngle(double cosineDistance) {
+        return Math.acos(Math.max(-1.0, Math.min(1.0, 1.0 - cosineDistance)));
+    }
+}
@@ -152,6 +152,10 @@ public class GeoCodingMathTransform extends AbstractMathTransform implements Mat
                               double[] dstPts, int dstOff,
                               int numPts) throws TransformException {
             try {
+                if (geoCoding instanceof BatchGeoCoding) {
+                    transformBatch((BatchGeoCoding) geoCoding, srcPts, srcOff, dstPts, dstOff, numPts);
+                    return;
+                }
                 GeoPos geoPos = new GeoPos();
                 PixelPos pixelPos = new PixelPos();
                 for (int i = 0; i < numPts; i++) {
@@ -171,5 +175,25 @@ public class GeoCodingMathTransform extends AbstractMathTransform implements Mat
                 throw transformException;
             }
         }
+
+        private static void transformBatch(BatchGeoCoding geoCoding,
+                                           double[] srcPts, int srcOff,
+                                           double[] dstPts, int dstOff,
+                                           int numPts) {
+            // the source and destination points may share the same array
+            final double[] lats = new double[numPts];
+            final double[] lons = new double[numPts];
+            for (int i = 0; i < numPts; i++) {
+                lons[i] = srcPts[srcOff + DIMS * i];
+                lats[i] = srcPts[srcOff + DIMS * i + 1];
+            }
+            final double[] pixelXs = new double[numPts];
+            final double[] pixelYs = new double[numPts];
+            geoCoding.getPixelPos(lats, lons, 0, numPts, pixelXs, pixelYs);
+            for (int i = 0; i < numPts; i++) {
+                dstPts[dstOff + DIMS * i] = pixelXs[i];
+                dstPts[dstOff + DIMS * i + 1] = pixelYs[i];
+            }
+        }
     }
 }
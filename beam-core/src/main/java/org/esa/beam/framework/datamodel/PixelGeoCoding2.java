@@ -37,7 +37,7 @@ import java.awt.image.SampleModel;
  *
  * @author Ralf Quast
  */
-public class PixelGeoCoding2 extends AbstractGeoCoding implements BasicPixelGeoCoding {
+public class PixelGeoCoding2 extends AbstractGeoCoding implements BasicPixelGeoCoding, BatchGeoCoding {
 
     private static final String SYSPROP_PIXEL_GEO_CODING_FRACTION_ACCURACY = "beam.pixelGeoCoding.fractionAccuracy";
     private static final String SYSPROP_PIXEL_GEO_CODING_USE_TILING = "beam.pixelGeoCoding.useTiling";
@@ -234,6 +234,33 @@ public class PixelGeoCoding2 extends AbstractGeoCoding implements BasicPixelGeoC
         return pixelPos;
     }
 
+    /**
+     * Determines the pixel positions of many geographical positions. Neighbouring geographical positions
+     * are found faster than by calling {@link #getPixelPos(GeoPos, PixelPos)} for each of them, because the
+     * tiles of the latitude and longitude images used last are kept.
+     */
+    @Override
+    public void getPixelPos(double[] lats, double[] lons, int offset, int length, double[] pixelXs,
+                            double[] pixelYs) {
+        final GeoPos geoPos = new GeoPos();
+        final PixelPos pixelPos = new PixelPos();
+        final DefaultPixelFinder.Search search = pixelFinder.createSearch();
+        for (int i = offset; i < offset + length; i++) {
+            geoPos.setLocation((float) lats[i], (float) lons[i]);
+            if (geoPos.isValid()) {
+                pixelPos.setLocation(0.0f, 0.0f);
+                pixelPosEstimator.getPixelPos(geoPos, pixelPos);
+                if (pixelPos.isValid()) {
+                    search.findPixelPos(geoPos, pixelPos);
+                }
+            } else {
+                pixelPos.setInvalid();
+            }
+            pixelXs[i] = pixelPos.x;
+            pixelYs[i] = pixelPos.y;
+        }
+    }
+
     /**
      * Returns the latitude and longitude value for a given pixel co-ordinate.
      *
@@ -35,11 +35,13 @@ public class PixelPosEstimator {
     private static final boolean EXTRAPOLATE = true;
 
     private final GeoApproximation[] approximations;
+    private final GeoApproximationIndex approximationIndex;
     private final Rectangle bounds;
 
 
     public PixelPosEstimator(GeoApproximation[] approximations, Rectangle bounds) {
         this.approximations = approximations;
+        this.approximationIndex = createIndex(approximations);
         this.bounds = bounds;
     }
 
@@ -50,6 +52,7 @@ public class PixelPosEstimator {
     private PixelPosEstimator(PlanarImage lonImage, PlanarImage latImage, PlanarImage maskImage, double accuracy,
                               SteppingFactory steppingFactory) {
         approximations = createApproximations(lonImage, latImage, maskImage, accuracy, steppingFactory);
+        approximationIndex = createIndex(approximations);
         bounds = lonImage.getBounds();
     }
 
@@ -71,7 +74,11 @@ public class PixelPosEstimator {
             if (g.isValid()) {
                 final double lat = g.getLat();
                 final double lon = g.getLon();
-                approximation = GeoApproximation.findMostSuitable(approximations, lat, lon);
+                if (approximationIndex != null) {
+                    approximation = approximationIndex.findMostSuitable(lat, lon);
+                } else {
+                    approximation = GeoApproximation.findMostSuitable(approximations, lat, lon);
+                }
                 if (approximation != null) {
                     p.setLocation(lon, lat);
                     approximation.g2p(p);
@@ -120,6 +127,15 @@ public class PixelPosEstimator {
         return approximation;
     }
 
+    private static GeoApproximationIndex createIndex(GeoApproximation[] approximations) {
+        // comparing a few approximations is faster than looking them up
+        // the index is created here, only the candidates of its cells are computed on first use
+        if (approximations != null && approximations.length > 4) {
+            return new GeoApproximationIndex(approximations);
+        }
+        return null;
+    }
+
     private static GeoApproximation[] createApproximations(PlanarImage lonImage,
                                                            PlanarImage latImage,
                                                            PlanarImage maskImage,
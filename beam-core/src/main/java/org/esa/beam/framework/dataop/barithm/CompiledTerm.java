@@ -0,0 +1,1407 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.dataop.barithm;
+
+import com.bc.jexp.Function;
+import com.bc.jexp.Symbol;
+import com.bc.jexp.Term;
+import com.bc.jexp.impl.DefaultNamespace;
+import com.bc.jexp.impl.ExtMath;
+import com.bc.jexp.impl.SymbolFactory;
+import org.apache.commons.math3.util.FastMath;
+import org.esa.beam.framework.datamodel.ProductData;
+
+import java.util.Arrays;
+
+/**
+ * A band arithmetic {@link Term} compiled for evaluating many consecutive pixels at once.
+ * <p/>
+ * The term tree is translated into a tree of nodes, each of which evaluates a run of pixels over
+ * primitive arrays, so that the per-pixel cost is a few array loops instead of a virtual call per term node.
+ * Raster data is read directly from the {@link ProductData} which the environment binds to the referenced
+ * {@link RasterDataSymbol}s, or which has been set on the symbols.
+ * <p/>
+ * The results are the same as those of {@link Term#evalB(com.bc.jexp.EvalEnv)} and
+ * {@link Term#evalD(com.bc.jexp.EvalEnv)} called pixel by pixel. Terms which cannot be compiled, e.g. calls to
+ * functions other than the default functions of {@link DefaultNamespace}, are still evaluated pixel by pixel by
+ * the interpreter. The operands guarded by a condition or a logical operator are only evaluated for pixels for
+ * which the interpreter would evaluate them, if their evaluation may fail or have side effects.
+ * <p/>
+ * Compilation can be switched off by setting the system property
+ * {@code beam.bandArithmetic.disableTermCompilation} to {@code true}, terms are then evaluated by the interpreter only.
+ * <p/>
+ * Instances are not thread safe, as each node keeps its own evaluation buffers. Compiling is cheap compared to
+ * parsing, so a term shared by many threads can be compiled by each of them, with the raster data bound by
+ * {@link RasterDataEvalEnv#setData(RasterDataSymbol, ProductData)}.
+ */
+public final class CompiledTerm {
+
+    private static final boolean DISABLED = Boolean.getBoolean("beam.bandArithmetic.disableTermCompilation");
+    private static final int CHUNK_SIZE = 256;
+
+    private static final int OP_EQ = 0;
+    private static final int OP_NE = 1;
+    private static final int OP_LT = 2;
+    private static final int OP_LE = 3;
+    private static final int OP_GT = 4;
+    private static final int OP_GE = 5;
+
+    private static final int OP_NEG = 0;
+    private static final int OP_ADD = 1;
+    private static final int OP_SUB = 2;
+    private static final int OP_MUL = 3;
+    private static final int OP_DIV = 4;
+    private static final int OP_MOD = 5;
+
+    private static final int OP_AND = 0;
+    private static final int OP_OR = 1;
+    private static final int OP_XOR = 2;
+    private static final int OP_NOT = 3;
+
+    private final Term term;
+    private final Node root;
+    private final boolean fullyCompiled;
+    private final double[] doubleBuffer;
+    private final boolean[] booleanBuffer;
+
+    private CompiledTerm(Term term, Node root, boolean fullyCompiled) {
+        this.term = term;
+        this.root = root;
+        this.fullyCompiled = fullyCompiled;
+        this.doubleBuffer = new double[CHUNK_SIZE];
+        this.booleanBuffer = new boolean[CHUNK_SIZE];
+    }
+
+    /**
+     * Compiles the given term.
+     *
+     * @param term The term, usually created by {@link BandArithmetic#parseExpression}.
+     *
+     * @return The compiled term.
+     */
+    public static CompiledTerm compile(Term term) {
+        if (DISABLED || containsAssignment(term)) {
+            // with assignments, the order in which pixels and operands are evaluated must not be changed
+            return new CompiledTerm(term, new InterpretedNode(term), false);
+        }
+        final Compiler compiler = new Compiler();
+        final Node root = compiler.compile(term, false);
+        return new CompiledTerm(term, root, compiler.interpretedCount == 0);
+    }
+
+    /**
+     * @return The term this compiled term has been created from.
+     */
+    public Term getTerm() {
+        return term;
+    }
+
+    /**
+     * @return {@code true}, if no part of the term is evaluated by the interpreter.
+     */
+    public boolean isFullyCompiled() {
+        return fullyCompiled;
+    }
+
+    /**
+     * Evaluates the term as {@code boolean} for a run of consecutive pixels.
+     *
+     * @param env       The environment. Its element index is undefined after the call.
+     * @param elemIndex The element index of the first pixel.
+     * @param length    The number of pixels.
+     * @param values    Receives the values, starting at index 0.
+     */
+    public void evalB(RasterDataEvalEnv env, int elemIndex, int length, boolean[] values) {
+        for (int done = 0; done < length; done += CHUNK_SIZE) {
+            final int n = Math.min(CHUNK_SIZE, length - done);
+            root.evalB(env, elemIndex + done, n, booleanBuffer);
+            System.arraycopy(booleanBuffer, 0, values, done, n);
+        }
+    }
+
+    /**
+     * Evaluates the term as {@code double} for a run of consecutive pixels.
+     *
+     * @param env       The environment. Its element index is undefined after the call.
+     * @param elemIndex The element index of the first pixel.
+     * @param length    The number of pixels.
+     * @param values    Receives the values, starting at index 0.
+     */
+    public void evalD(RasterDataEvalEnv env, int elemIndex, int length, double[] values) {
+        for (int done = 0; done < length; done += CHUNK_SIZE) {
+            final int n = Math.min(CHUNK_SIZE, length - done);
+            root.evalD(env, elemIndex + done, n, doubleBuffer);
+            System.arraycopy(doubleBuffer, 0, values, done, n);
+        }
+    }
+
+    private static boolean containsAssignment(Term term) {
+        if (term instanceof Term.Assign) {
+            return true;
+        }
+        for (Term child : term.getChildren()) {
+            if (containsAssignment(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Compiler {
+
+        private int interpretedCount;
+
+        /**
+         * @param intMode {@code true}, if the node may be evaluated as {@code int}.
+         */
+        private Node compile(Term term, boolean intMode) {
+            final Node node = compileNode(term, intMode);
+            if (node != null) {
+                return node;
+            }
+            interpretedCount++;
+            return new InterpretedNode(term);
+        }
+
+        private Node compileNode(Term term, boolean intMode) {
+            if (term instanceof Term.ConstB || term instanceof Term.ConstI || term instanceof Term.ConstD) {
+                return new ConstNode(term);
+            } else if (term instanceof Term.Ref) {
+                return compileRef((Term.Ref) term);
+            } else if (term instanceof Term.Call) {
+                return compileCall((Term.Call) term);
+            } else if (term instanceof Term.Cond) {
+                final Term[] args = ((Term.Cond) term).getArgs();
+                return new CondNode(term, compile(args[0], false), compile(args[1], intMode),
+                                    compile(args[2], intMode));
+            } else if (term instanceof Term.Op) {
+                return compileOp((Term.Op) term, intMode);
+            }
+            return null;
+        }
+
+        private Node compileRef(Term.Ref ref) {
+            final Symbol symbol = ref.getSymbol();
+            if (symbol.getClass() == RasterDataSymbol.class) {
+                return new RasterNode(ref, (RasterDataSymbol) symbol);
+            } else if (symbol.getClass() == SingleFlagSymbol.class) {
+                return new FlagNode(ref, (SingleFlagSymbol) symbol);
+            } else if (symbol.getClass().getEnclosingClass() == SymbolFactory.class) {
+                return new VariableNode(ref);
+            }
+            return null;
+        }
+
+        private Node compileOp(Term.Op op, boolean intMode) {
+            final Term[] args = op.getArgs();
+            // an int operation evaluates its operands as int, also if it is evaluated as boolean
+            final boolean intArgs = intMode || op.isI() && !(op instanceof Term.Neg);
+            if (op instanceof Term.NotB) {
+                return new LogicalNode(op, OP_NOT, compile(args[0], false), null);
+            } else if (op instanceof Term.AndB) {
+                return new LogicalNode(op, OP_AND, compile(args[0], false), compile(args[1], false));
+            } else if (op instanceof Term.OrB) {
+                return new LogicalNode(op, OP_OR, compile(args[0], false), compile(args[1], false));
+            } else if (op instanceof Term.NotI) {
+                return new BitwiseNode(op, OP_NOT, compile(args[0], true), null);
+            } else if (op instanceof Term.AndI) {
+                return new BitwiseNode(op, OP_AND, compile(args[0], true), compile(args[1], true));
+            } else if (op instanceof Term.OrI) {
+                return new BitwiseNode(op, OP_OR, compile(args[0], true), compile(args[1], true));
+            } else if (op instanceof Term.XOrI) {
+                return new BitwiseNode(op, OP_XOR, compile(args[0], true), compile(args[1], true));
+            } else if (op instanceof Term.Neg) {
+                return new ArithmeticNode(op, OP_NEG, intMode, compile(args[0], intArgs), null);
+            } else if (op instanceof Term.Add) {
+                return new ArithmeticNode(op, OP_ADD, intMode,
+                                          compile(args[0], intArgs), compile(args[1], intArgs));
+            } else if (op instanceof Term.Sub) {
+                return new ArithmeticNode(op, OP_SUB, intMode,
+                                          compile(args[0], intArgs), compile(args[1], intArgs));
+            } else if (op instanceof Term.Mul) {
+                return new ArithmeticNode(op, OP_MUL, intMode,
+                                          compile(args[0], intArgs), compile(args[1], intArgs));
+            } else if (op instanceof Term.Div) {
+                return new ArithmeticNode(op, OP_DIV, intMode,
+                                          compile(args[0], intArgs), compile(args[1], intArgs));
+            } else if (op instanceof Term.Mod) {
+                return new ArithmeticNode(op, OP_MOD, intMode,
+                                          compile(args[0], intArgs), compile(args[1], intArgs));
+            } else if (op instanceof Term.EqB) {
+                return new CompareNode(op, OP_EQ, Term.TYPE_B, compile(args[0], false), compile(args[1], false));
+            } else if (op instanceof Term.NEqB) {
+                return new CompareNode(op, OP_NE, Term.TYPE_B, compile(args[0], false), compile(args[1], false));
+            } else if (op instanceof Term.EqI) {
+                return new CompareNode(op, OP_EQ, Term.TYPE_I, compile(args[0], true), compile(args[1], true));
+            } else if (op instanceof Term.NEqI) {
+                return new CompareNode(op, OP_NE, Term.TYPE_I, compile(args[0], true), compile(args[1], true));
+            } else if (op instanceof Term.LtI) {
+                return new CompareNode(op, OP_LT, Term.TYPE_I, compile(args[0], true), compile(args[1], true));
+            } else if (op instanceof Term.LeI) {
+                return new CompareNode(op, OP_LE, Term.TYPE_I, compile(args[0], true), compile(args[1], true));
+            } else if (op instanceof Term.GtI) {
+                return new CompareNode(op, OP_GT, Term.TYPE_I, compile(args[0], true), compile(args[1], true));
+            } else if (op instanceof Term.GeI) {
+                return new CompareNode(op, OP_GE, Term.TYPE_I, compile(args[0], true), compile(args[1], true));
+            } else if (op instanceof Term.EqD) {
+                return new CompareNode(op, OP_EQ, Term.TYPE_D, compile(args[0], false), compile(args[1], false));
+            } else if (op instanceof Term.NEqD) {
+                return new CompareNode(op, OP_NE, Term.TYPE_D, compile(args[0], false), compile(args[1], false));
+            } else if (op instanceof Term.LtD) {
+                return new CompareNode(op, OP_LT, Term.TYPE_D, compile(args[0], false), compile(args[1], false));
+            } else if (op instanceof Term.LeD) {
+                return new CompareNode(op, OP_LE, Term.TYPE_D, compile(args[0], false), compile(args[1], false));
+            } else if (op instanceof Term.GtD) {
+                return new CompareNode(op, OP_GT, Term.TYPE_D, compile(args[0], false), compile(args[1], false));
+            } else if (op instanceof Term.GeD) {
+                return new CompareNode(op, OP_GE, Term.TYPE_D, compile(args[0], false), compile(args[1], false));
+            }
+            return null;
+        }
+
+        private Node compileCall(Term.Call call) {
+            final Function function = call.getFunction();
+            // only the functions of the default namespace are known to be free of side effects
+            if (function.getClass().getEnclosingClass() != DefaultNamespace.class) {
+                return null;
+            }
+            final int retType = function.getRetType();
+            final String name = function.getName();
+            final Term[] args = call.getArgs();
+            final int functionId = getFunctionId(name, retType, args.length);
+            if (functionId < 0) {
+                return null;
+            }
+            final Node[] argNodes = new Node[args.length];
+            for (int i = 0; i < args.length; i++) {
+                argNodes[i] = compile(args[i], retType == Term.TYPE_I);
+            }
+            return new CallNode(call, functionId, retType, argNodes);
+        }
+    }
+
+    /**
+     * Evaluates a term for up to {@link #CHUNK_SIZE} consecutive pixels. The results are written to the
+     * given array, starting at index 0.
+     */
+    private static abstract class Node {
+
+        final Term term;
+        private final double[][] doubleBuffers = new double[3][];
+        private final int[][] intBuffers = new int[2][];
+        private final boolean[][] booleanBuffers = new boolean[2][];
+
+        protected Node(Term term) {
+            this.term = term;
+        }
+
+        abstract void evalB(RasterDataEvalEnv env, int index, int n, boolean[] out);
+
+        abstract void evalI(RasterDataEvalEnv env, int index, int n, int[] out);
+
+        abstract void evalD(RasterDataEvalEnv env, int index, int n, double[] out);
+
+        /**
+         * @return {@code true}, if the node may also be evaluated for pixels which the interpreter would skip.
+         */
+        boolean isSafe() {
+            return true;
+        }
+
+        final double[] doubleBuffer(int i) {
+            if (doubleBuffers[i] == null) {
+                doubleBuffers[i] = new double[CHUNK_SIZE];
+            }
+            return doubleBuffers[i];
+        }
+
+        final int[] intBuffer(int i) {
+            if (intBuffers[i] == null) {
+                intBuffers[i] = new int[CHUNK_SIZE];
+            }
+            return intBuffers[i];
+        }
+
+        final boolean[] booleanBuffer(int i) {
+            if (booleanBuffers[i] == null) {
+                booleanBuffers[i] = new boolean[CHUNK_SIZE];
+            }
+            return booleanBuffers[i];
+        }
+    }
+
+    /**
+     * A node returning a {@code boolean}, converted like {@link Term.BinaryB}.
+     */
+    private static abstract class BooleanNode extends Node {
+
+        protected BooleanNode(Term term) {
+            super(term);
+        }
+
+        @Override
+        final void evalI(RasterDataEvalEnv env, int index, int n, int[] out) {
+            final boolean[] b = booleanBuffer(1);
+            evalB(env, index, n, b);
+            for (int i = 0; i < n; i++) {
+                out[i] = b[i] ? 1 : 0;
+            }
+        }
+
+        @Override
+        final void evalD(RasterDataEvalEnv env, int index, int n, double[] out) {
+            final boolean[] b = booleanBuffer(1);
+            evalB(env, index, n, b);
+            for (int i = 0; i < n; i++) {
+                out[i] = b[i] ? 1.0 : 0.0;
+            }
+        }
+    }
+
+    /**
+     * A node returning an {@code int}, converted like {@link Term.BinaryI}.
+     */
+    private static abstract class IntNode extends Node {
+
+        protected IntNode(Term term) {
+            super(term);
+        }
+
+        @Override
+        final void evalB(RasterDataEvalEnv env, int index, int n, boolean[] out) {
+            final int[] v = intBuffer(1);
+            evalI(env, index, n, v);
+            for (int i = 0; i < n; i++) {
+                out[i] = v[i] != 0;
+            }
+        }
+
+        @Override
+        final void evalD(RasterDataEvalEnv env, int index, int n, double[] out) {
+            final int[] v = intBuffer(1);
+            evalI(env, index, n, v);
+            for (int i = 0; i < n; i++) {
+                out[i] = v[i];
+            }
+        }
+    }
+
+    private static final class InterpretedNode extends Node {
+
+        private InterpretedNode(Term term) {
+            super(term);
+        }
+
+        @Override
+        boolean isSafe() {
+            return false;
+        }
+
+        @Override
+        void evalB(RasterDataEvalEnv env, int index, int n, boolean[] out) {
+            for (int i = 0; i < n; i++) {
+                env.setElemIndex(index + i);
+                out[i] = term.evalB(env);
+            }
+        }
+
+        @Override
+        void evalI(RasterDataEvalEnv env, int index, int n, int[] out) {
+            for (int i = 0; i < n; i++) {
+                env.setElemIndex(index + i);
+                out[i] = term.evalI(env);
+            }
+        }
+
+        @Override
+        void evalD(RasterDataEvalEnv env, int index, int n, double[] out) {
+            for (int i = 0; i < n; i++) {
+                env.setElemIndex(index + i);
+                out[i] = term.evalD(env);
+            }
+        }
+    }
+
+    private static final class ConstNode extends Node {
+
+        private final boolean valueB;
+        private final int valueI;
+        private final double valueD;
+
+        private ConstNode(Term term) {
+            super(term);
+            valueB = term.evalB(null);
+            valueI = term.evalI(null);
+            valueD = term.evalD(null);
+        }
+
+        @Override
+        void evalB(RasterDataEvalEnv env, int index, int n, boolean[] out) {
+            Arrays.fill(out, 0, n, valueB);
+        }
+
+        @Override
+        void evalI(RasterDataEvalEnv env, int index, int n, int[] out) {
+            Arrays.fill(out, 0, n, valueI);
+        }
+
+        @Override
+        void evalD(RasterDataEvalEnv env, int index, int n, double[] out) {
+            Arrays.fill(out, 0, n, valueD);
+        }
+    }
+
+    /**
+     * A reference to a variable or constant, which cannot change while the term is evaluated,
+     * as the term has no assignments.
+     */
+    private static final class VariableNode extends Node {
+
+        private VariableNode(Term term) {
+            super(term);
+        }
+
+        @Override
+        void evalB(RasterDataEvalEnv env, int index, int n, boolean[] out) {
+            Arrays.fill(out, 0, n, term.evalB(env));
+        }
+
+        @Override
+        void evalI(RasterDataEvalEnv env, int index, int n, int[] out) {
+            Arrays.fill(out, 0, n, term.evalI(env));
+        }
+
+        @Override
+        void evalD(RasterDataEvalEnv env, int index, int n, double[] out) {
+            Arrays.fill(out, 0, n, term.evalD(env));
+        }
+    }
+
+    private static final class RasterNode extends Node {
+
+        private final RasterDataSymbol symbol;
+
+        private RasterNode(Term term, RasterDataSymbol symbol) {
+            super(term);
+            this.symbol = symbol;
+        }
+
+        @Override
+        void evalB(RasterDataEvalEnv env, int index, int n, boolean[] out) {
+            final double[] v = doubleBuffer(0);
+            readDoubles(symbol.getData(env), index, n, v);
+            for (int i = 0; i < n; i++) {
+                out[i] = v[i] != 0.0;
+            }
+        }
+
+        @Override
+        void evalI(RasterDataEvalEnv env, int index, int n, int[] out) {
+            readInts(symbol.getData(env), index, n, out);
+        }
+
+        @Override
+        void evalD(RasterDataEvalEnv env, int index, int n, double[] out) {
+            readDoubles(symbol.getData(env), index, n, out);
+        }
+    }
+
+    private static final class FlagNode extends BooleanNode {
+
+        private final SingleFlagSymbol symbol;
+
+        private FlagNode(Term term, SingleFlagSymbol symbol) {
+            super(term);
+            this.symbol = symbol;
+        }
+
+        @Override
+        void evalB(RasterDataEvalEnv env, int index, int n, boolean[] out) {
+            final int flagMask = symbol.getFlagMask();
+            final int[] v = intBuffer(0);
+            readInts(symbol.getData(env), index, n, v);
+            for (int i = 0; i < n; i++) {
+                out[i] = (v[i] & flagMask) == flagMask;
+            }
+        }
+    }
+
+    /**
+     * The operations {@code !}, {@code &&} and {@code ||}. The second operand is only evaluated by the
+     * interpreter where the first one does not already decide the result, if it is not safe.
+     */
+    private static final class LogicalNode extends BooleanNode {
+
+        private final int op;
+        private final Node arg1;
+        private final Node arg2;
+
+        private LogicalNode(Term term, int op, Node arg1, Node arg2) {
+            super(term);
+            this.op = op;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+        }
+
+        @Override
+        boolean isSafe() {
+            return arg1.isSafe() && (arg2 == null || arg2.isSafe());
+        }
+
+        @Override
+        void evalB(RasterDataEvalEnv env, int index, int n, boolean[] out) {
+            arg1.evalB(env, index, n, out);
+            if (op == OP_NOT) {
+                for (int i = 0; i < n; i++) {
+                    out[i] = !out[i];
+                }
+                return;
+            }
+            final boolean decided = op == OP_OR;
+            if (count(out, n, !decided) == 0) {
+                return;
+            }
+            if (arg2.isSafe()) {
+                final boolean[] b = booleanBuffer(0);
+                arg2.evalB(env, index, n, b);
+                if (op == OP_AND) {
+                    for (int i = 0; i < n; i++) {
+                        out[i] &= b[i];
+                    }
+                } else {
+                    for (int i = 0; i < n; i++) {
+                        out[i] |= b[i];
+                    }
+                }
+            } else {
+                for (int i = 0; i < n; i++) {
+                    if (out[i] != decided) {
+                        env.setElemIndex(index + i);
+                        out[i] = arg2.term.evalB(env);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The operations {@code ~}, {@code &}, {@code |} and {@code ^}.
+     */
+    private static final class BitwiseNode extends IntNode {
+
+        private final int op;
+        private final Node arg1;
+        private final Node arg2;
+
+        private BitwiseNode(Term term, int op, Node arg1, Node arg2) {
+            super(term);
+            this.op = op;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+        }
+
+        @Override
+        boolean isSafe() {
+            return arg1.isSafe() && (arg2 == null || arg2.isSafe());
+        }
+
+        @Override
+        void evalI(RasterDataEvalEnv env, int index, int n, int[] out) {
+            arg1.evalI(env, index, n, out);
+            if (op == OP_NOT) {
+                for (int i = 0; i < n; i++) {
+                    out[i] = ~out[i];
+                }
+                return;
+            }
+            final int[] v = intBuffer(0);
+            arg2.evalI(env, index, n, v);
+            switch (op) {
+                case OP_AND:
+                    for (int i = 0; i < n; i++) {
+                        out[i] &= v[i];
+                    }
+                    break;
+                case OP_OR:
+                    for (int i = 0; i < n; i++) {
+                        out[i] |= v[i];
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < n; i++) {
+                        out[i] ^= v[i];
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * The operations {@code -x}, {@code +}, {@code -}, {@code *}, {@code /} and {@code %}. Like the interpreter,
+     * {@code int} evaluation uses {@code int} arithmetic and {@code double} evaluation uses {@code double}
+     * arithmetic.
+     */
+    private static final class ArithmeticNode extends Node {
+
+        private final int op;
+        private final int type;
+        private final boolean mayFail;
+        private final Node arg1;
+        private final Node arg2;
+
+        private ArithmeticNode(Term term, int op, boolean intMode, Node arg1, Node arg2) {
+            super(term);
+            this.op = op;
+            this.type = term.getRetType();
+            // an int division by zero throws an exception
+            this.mayFail = (op == OP_DIV || op == OP_MOD) && (intMode || type == Term.TYPE_I);
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+        }
+
+        @Override
+        boolean isSafe() {
+            return !mayFail && arg1.isSafe() && (arg2 == null || arg2.isSafe());
+        }
+
+        @Override
+        void evalB(RasterDataEvalEnv env, int index, int n, boolean[] out) {
+            // see Term.UnaryN and Term.BinaryN
+            if (type == Term.TYPE_I && op != OP_NEG) {
+                final int[] v = intBuffer(1);
+                evalI(env, index, n, v);
+                for (int i = 0; i < n; i++) {
+                    out[i] = v[i] != 0;
+                }
+            } else {
+                final double[] v = doubleBuffer(1);
+                evalD(env, index, n, v);
+                for (int i = 0; i < n; i++) {
+                    out[i] = v[i] != 0.0;
+                }
+            }
+        }
+
+        @Override
+        void evalI(RasterDataEvalEnv env, int index, int n, int[] out) {
+            arg1.evalI(env, index, n, out);
+            if (op == OP_NEG) {
+                for (int i = 0; i < n; i++) {
+                    out[i] = -out[i];
+                }
+                return;
+            }
+            final int[] v = intBuffer(0);
+            arg2.evalI(env, index, n, v);
+            switch (op) {
+                case OP_ADD:
+                    for (int i = 0; i < n; i++) {
+                        out[i] += v[i];
+                    }
+                    break;
+                case OP_SUB:
+                    for (int i = 0; i < n; i++) {
+                        out[i] -= v[i];
+                    }
+                    break;
+                case OP_MUL:
+                    for (int i = 0; i < n; i++) {
+                        out[i] *= v[i];
+                    }
+                    break;
+                case OP_DIV:
+                    for (int i = 0; i < n; i++) {
+                        out[i] /= v[i];
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < n; i++) {
+                        out[i] %= v[i];
+                    }
+                    break;
+            }
+        }
+
+        @Override
+        void evalD(RasterDataEvalEnv env, int index, int n, double[] out) {
+            arg1.evalD(env, index, n, out);
+            if (op == OP_NEG) {
+                for (int i = 0; i < n; i++) {
+                    out[i] = -out[i];
+                }
+                return;
+            }
+            final double[] v = doubleBuffer(0);
+            arg2.evalD(env, index, n, v);
+            switch (op) {
+                case OP_ADD:
+                    for (int i = 0; i < n; i++) {
+                        out[i] += v[i];
+                    }
+                    break;
+                case OP_SUB:
+                    for (int i = 0; i < n; i++) {
+                        out[i] -= v[i];
+                    }
+                    break;
+                case OP_MUL:
+                    for (int i = 0; i < n; i++) {
+                        out[i] *= v[i];
+                    }
+                    break;
+                case OP_DIV:
+                    for (int i = 0; i < n; i++) {
+                        out[i] /= v[i];
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < n; i++) {
+                        out[i] %= v[i];
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * The comparison operations, comparing {@code boolean}, {@code int} or {@code double} operands.
+     */
+    private static final class CompareNode extends BooleanNode {
+
+        private final int op;
+        private final int argType;
+        private final Node arg1;
+        private final Node arg2;
+
+        private CompareNode(Term term, int op, int argType, Node arg1, Node arg2) {
+            super(term);
+            this.op = op;
+            this.argType = argType;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+        }
+
+        @Override
+        boolean isSafe() {
+            return arg1.isSafe() && arg2.isSafe();
+        }
+
+        @Override
+        void evalB(RasterDataEvalEnv env, int index, int n, boolean[] out) {
+            if (argType == Term.TYPE_B) {
+                compareB(env, index, n, out);
+            } else if (argType == Term.TYPE_I) {
+                compareI(env, index, n, out);
+            } else {
+                compareD(env, index, n, out);
+            }
+        }
+
+        private void compareB(RasterDataEvalEnv env, int index, int n, boolean[] out) {
+            final boolean[] v1 = booleanBuffer(0);
+            arg1.evalB(env, index, n, v1);
+            arg2.evalB(env, index, n, out);
+            if (op == OP_EQ) {
+                for (int i = 0; i < n; i++) {
+                    out[i] = v1[i] == out[i];
+                }
+            } else {
+                for (int i = 0; i < n; i++) {
+                    out[i] = v1[i] != out[i];
+                }
+            }
+        }
+
+        private void compareI(RasterDataEvalEnv env, int index, int n, boolean[] out) {
+            final int[] v1 = intBuffer(0);
+            final int[] v2 = intBuffer(1);
+            arg1.evalI(env, index, n, v1);
+            arg2.evalI(env, index, n, v2);
+            switch (op) {
+                case OP_EQ:
+                    for (int i = 0; i < n; i++) {
+                        out[i] = v1[i] == v2[i];
+                    }
+                    break;
+                case OP_NE:
+                    for (int i = 0; i < n; i++) {
+                        out[i] = v1[i] != v2[i];
+                    }
+                    break;
+                case OP_LT:
+                    for (int i = 0; i < n; i++) {
+                        out[i] = v1[i] < v2[i];
+                    }
+                    break;
+                case OP_LE:
+                    for (int i = 0; i < n; i++) {
+                        out[i] = v1[i] <= v2[i];
+                    }
+                    break;
+                case OP_GT:
+                    for (int i = 0; i < n; i++) {
+                        out[i] = v1[i] > v2[i];
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < n; i++) {
+                        out[i] = v1[i] >= v2[i];
+                    }
+                    break;
+            }
+        }
+
+        private void compareD(RasterDataEvalEnv env, int index, int n, boolean[] out) {
+            final double[] v1 = doubleBuffer(0);
+            final double[] v2 = doubleBuffer(1);
+            arg1.evalD(env, index, n, v1);
+            arg2.evalD(env, index, n, v2);
+            switch (op) {
+                case OP_EQ:
+                    for (int i = 0; i < n; i++) {
+                        out[i] = v1[i] == v2[i];
+                    }
+                    break;
+                case OP_NE:
+                    for (int i = 0; i < n; i++) {
+                        out[i] = v1[i] != v2[i];
+                    }
+                    break;
+                case OP_LT:
+                    for (int i = 0; i < n; i++) {
+                        out[i] = v1[i] < v2[i];
+                    }
+                    break;
+                case OP_LE:
+                    for (int i = 0; i < n; i++) {
+                        out[i] = v1[i] <= v2[i];
+                    }
+                    break;
+                case OP_GT:
+                    for (int i = 0; i < n; i++) {
+                        out[i] = v1[i] > v2[i];
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < n; i++) {
+                        out[i] = v1[i] >= v2[i];
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * The conditional operation. If an operand is not safe, the interpreter only evaluates it where it is selected.
+     */
+    private static final class CondNode extends Node {
+
+        private final Node arg1;
+        private final Node arg2;
+        private final Node arg3;
+
+        private CondNode(Term term, Node arg1, Node arg2, Node arg3) {
+            super(term);
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+            this.arg3 = arg3;
+        }
+
+        @Override
+        boolean isSafe() {
+            return arg1.isSafe() && arg2.isSafe() && arg3.isSafe();
+        }
+
+        @Override
+        void evalB(RasterDataEvalEnv env, int index, int n, boolean[] out) {
+            final boolean[] c = booleanBuffer(0);
+            arg1.evalB(env, index, n, c);
+            final int selected = count(c, n, true);
+            final boolean[] v2 = arg2.isSafe() && selected > 0 ? booleanBuffer(1) : null;
+            final boolean[] v3 = arg3.isSafe() && selected < n ? out : null;
+            if (v2 != null) {
+                arg2.evalB(env, index, n, v2);
+            }
+            if (v3 != null) {
+                arg3.evalB(env, index, n, v3);
+            }
+            if (v2 != null && v3 != null) {
+                for (int i = 0; i < n; i++) {
+                    out[i] = c[i] ? v2[i] : out[i];
+                }
+                return;
+            }
+            for (int i = 0; i < n; i++) {
+                if (c[i]) {
+                    out[i] = v2 != null ? v2[i] : interpretB(arg2, env, index + i);
+                } else if (v3 == null) {
+                    out[i] = interpretB(arg3, env, index + i);
+                }
+            }
+        }
+
+        @Override
+        void evalI(RasterDataEvalEnv env, int index, int n, int[] out) {
+            final boolean[] c = booleanBuffer(0);
+            arg1.evalB(env, index, n, c);
+            final int selected = count(c, n, true);
+            final int[] v2 = arg2.isSafe() && selected > 0 ? intBuffer(0) : null;
+            final int[] v3 = arg3.isSafe() && selected < n ? out : null;
+            if (v2 != null) {
+                arg2.evalI(env, index, n, v2);
+            }
+            if (v3 != null) {
+                arg3.evalI(env, index, n, v3);
+            }
+            if (v2 != null && v3 != null) {
+                for (int i = 0; i < n; i++) {
+                    out[i] = c[i] ? v2[i] : out[i];
+                }
+                return;
+            }
+            for (int i = 0; i < n; i++) {
+                if (c[i]) {
+                    out[i] = v2 != null ? v2[i] : interpretI(arg2, env, index + i);
+                } else if (v3 == null) {
+                    out[i] = interpretI(arg3, env, index + i);
+                }
+            }
+        }
+
+        @Override
+        void evalD(RasterDataEvalEnv env, int index, int n, double[] out) {
+            final boolean[] c = booleanBuffer(0);
+            arg1.evalB(env, index, n, c);
+            final int selected = count(c, n, true);
+            final double[] v2 = arg2.isSafe() && selected > 0 ? doubleBuffer(0) : null;
+            final double[] v3 = arg3.isSafe() && selected < n ? out : null;
+            if (v2 != null) {
+                arg2.evalD(env, index, n, v2);
+            }
+            if (v3 != null) {
+                arg3.evalD(env, index, n, v3);
+            }
+            if (v2 != null && v3 != null) {
+                for (int i = 0; i < n; i++) {
+                    out[i] = c[i] ? v2[i] : out[i];
+                }
+                return;
+            }
+            for (int i = 0; i < n; i++) {
+                if (c[i]) {
+                    out[i] = v2 != null ? v2[i] : interpretD(arg2, env, index + i);
+                } else if (v3 == null) {
+                    out[i] = interpretD(arg3, env, index + i);
+                }
+            }
+        }
+
+        private static boolean interpretB(Node node, RasterDataEvalEnv env, int elemIndex) {
+            env.setElemIndex(elemIndex);
+            return node.term.evalB(env);
+        }
+
+        private static int interpretI(Node node, RasterDataEvalEnv env, int elemIndex) {
+            env.setElemIndex(elemIndex);
+            return node.term.evalI(env);
+        }
+
+        private static double interpretD(Node node, RasterDataEvalEnv env, int elemIndex) {
+            env.setElemIndex(elemIndex);
+            return node.term.evalD(env);
+        }
+    }
+
+    private static final int F_SIN = 0;
+    private static final int F_COS = 1;
+    private static final int F_TAN = 2;
+    private static final int F_ASIN = 3;
+    private static final int F_ACOS = 4;
+    private static final int F_ATAN = 5;
+    private static final int F_LOG = 6;
+    private static final int F_LOG10 = 7;
+    private static final int F_EXP = 8;
+    private static final int F_EXP10 = 9;
+    private static final int F_SQR = 10;
+    private static final int F_SQRT = 11;
+    private static final int F_FLOOR = 12;
+    private static final int F_ROUND = 13;
+    private static final int F_CEIL = 14;
+    private static final int F_RINT = 15;
+    private static final int F_SIGN = 16;
+    private static final int F_ABS = 17;
+    private static final int F_DEG = 18;
+    private static final int F_RAD = 19;
+    private static final int F_ATAN2 = 20;
+    private static final int F_POW = 21;
+    private static final int F_MIN = 22;
+    private static final int F_MAX = 23;
+    private static final int F_AMPL = 24;
+    private static final int F_PHASE = 25;
+    private static final int F_FEQ = 26;
+    private static final int F_FNEQ = 27;
+    private static final int F_INF = 28;
+    private static final int F_NAN = 29;
+
+    private static final String[] UNARY_D_FUNCTIONS = {
+            "sin", "cos", "tan", "asin", "acos", "atan", "log", "log10", "exp", "exp10",
+            "sqr", "sqrt", "floor", "round", "ceil", "rint", "sign", "abs", "deg", "rad"
+    };
+    private static final String[] BINARY_D_FUNCTIONS = {"atan2", "pow", "min", "max", "ampl", "phase"};
+
+    private static final double FEQ_EPS = 1e-6;
+
+    private static int getFunctionId(String name, int retType, int numArgs) {
+        if (retType == Term.TYPE_D) {
+            final String[] names = numArgs == 1 ? UNARY_D_FUNCTIONS : numArgs == 2 ? BINARY_D_FUNCTIONS : null;
+            if (names != null) {
+                final int i = Arrays.asList(names).indexOf(name);
+                if (i >= 0) {
+                    return numArgs == 1 ? F_SIN + i : F_ATAN2 + i;
+                }
+            }
+        } else if (retType == Term.TYPE_I) {
+            if (numArgs == 1 && "sign".equals(name)) {
+                return F_SIGN;
+            } else if (numArgs == 1 && "abs".equals(name)) {
+                return F_ABS;
+            } else if (numArgs == 2 && "min".equals(name)) {
+                return F_MIN;
+            } else if (numArgs == 2 && "max".equals(name)) {
+                return F_MAX;
+            }
+        } else if (retType == Term.TYPE_B) {
+            if ((numArgs == 2 || numArgs == 3) && "feq".equals(name)) {
+                return F_FEQ;
+            } else if ((numArgs == 2 || numArgs == 3) && "fneq".equals(name)) {
+                return F_FNEQ;
+            } else if (numArgs == 1 && "inf".equals(name)) {
+                return F_INF;
+            } else if (numArgs == 1 && "nan".equals(name)) {
+                return F_NAN;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A call to one of the default functions. The arguments are evaluated and the results converted
+     * like {@link com.bc.jexp.impl.AbstractFunction} does.
+     */
+    private static final class CallNode extends Node {
+
+        private final int functionId;
+        private final int retType;
+        private final Node[] args;
+
+        private CallNode(Term term, int functionId, int retType, Node[] args) {
+            super(term);
+            this.functionId = functionId;
+            this.retType = retType;
+            this.args = args;
+        }
+
+        @Override
+        boolean isSafe() {
+            for (Node arg : args) {
+                if (!arg.isSafe()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        void evalB(RasterDataEvalEnv env, int index, int n, boolean[] out) {
+            if (retType == Term.TYPE_B) {
+                callB(env, index, n, out);
+            } else if (retType == Term.TYPE_I) {
+                final int[] v = intBuffer(0);
+                callI(env, index, n, v);
+                for (int i = 0; i < n; i++) {
+                    out[i] = v[i] != 0;
+                }
+            } else {
+                final double[] v = doubleBuffer(2);
+                callD(env, index, n, v);
+                for (int i = 0; i < n; i++) {
+                    out[i] = v[i] != 0.0;
+                }
+            }
+        }
+
+        @Override
+        void evalI(RasterDataEvalEnv env, int index, int n, int[] out) {
+            if (retType == Term.TYPE_I) {
+                callI(env, index, n, out);
+            } else if (retType == Term.TYPE_B) {
+                final boolean[] v = booleanBuffer(0);
+                callB(env, index, n, v);
+                for (int i = 0; i < n; i++) {
+                    out[i] = v[i] ? 1 : 0;
+                }
+            } else {
+                final double[] v = doubleBuffer(2);
+                callD(env, index, n, v);
+                for (int i = 0; i < n; i++) {
+                    out[i] = (int) v[i];
+                }
+            }
+        }
+
+        @Override
+        void evalD(RasterDataEvalEnv env, int index, int n, double[] out) {
+            if (retType == Term.TYPE_D) {
+                callD(env, index, n, out);
+            } else if (retType == Term.TYPE_I) {
+                final int[] v = intBuffer(0);
+                callI(env, index, n, v);
+                for (int i = 0; i < n; i++) {
+                    out[i] = v[i];
+                }
+            } else {
+                final boolean[] v = booleanBuffer(0);
+                callB(env, index, n, v);
+                for (int i = 0; i < n; i++) {
+                    out[i] = v[i] ? 1.0 : 0.0;
+                }
+            }
+        }
+
+        private void callD(RasterDataEvalEnv env, int index, int n, double[] out) {
+            final double[] x = doubleBuffer(0);
+            args[0].evalD(env, index, n, x);
+            if (args.length == 1) {
+                for (int i = 0; i < n; i++) {
+                    out[i] = apply(functionId, x[i]);
+                }
+            } else {
+                final double[] y = doubleBuffer(1);
+                args[1].evalD(env, index, n, y);
+                for (int i = 0; i < n; i++) {
+                    out[i] = apply(functionId, x[i], y[i]);
+                }
+            }
+        }
+
+        private void callI(RasterDataEvalEnv env, int index, int n, int[] out) {
+            final int[] x = intBuffer(1);
+            args[0].evalI(env, index, n, x);
+            if (functionId == F_SIGN) {
+                for (int i = 0; i < n; i++) {
+                    out[i] = ExtMath.sign(x[i]);
+                }
+            } else if (functionId == F_ABS) {
+                for (int i = 0; i < n; i++) {
+                    out[i] = Math.abs(x[i]);
+                }
+            } else {
+                args[1].evalI(env, index, n, out);
+                if (functionId == F_MIN) {
+                    for (int i = 0; i < n; i++) {
+                        out[i] = Math.min(x[i], out[i]);
+                    }
+                } else {
+                    for (int i = 0; i < n; i++) {
+                        out[i] = Math.max(x[i], out[i]);
+                    }
+                }
+            }
+        }
+
+        private void callB(RasterDataEvalEnv env, int index, int n, boolean[] out) {
+            final double[] x = doubleBuffer(0);
+            args[0].evalD(env, index, n, x);
+            if (functionId == F_INF) {
+                for (int i = 0; i < n; i++) {
+                    out[i] = Double.isInfinite(x[i]);
+                }
+            } else if (functionId == F_NAN) {
+                for (int i = 0; i < n; i++) {
+                    out[i] = Double.isNaN(x[i]);
+                }
+            } else {
+                final double[] y = doubleBuffer(1);
+                args[1].evalD(env, index, n, y);
+                final double[] eps;
+                if (args.length == 3) {
+                    eps = doubleBuffer(2);
+                    args[2].evalD(env, index, n, eps);
+                } else {
+                    eps = null;
+                }
+                final boolean equal = functionId == F_FEQ;
+                for (int i = 0; i < n; i++) {
+                    final double e = eps != null ? eps[i] : FEQ_EPS;
+                    out[i] = equal ? ExtMath.feq(x[i], y[i], e) : ExtMath.fneq(x[i], y[i], e);
+                }
+            }
+        }
+
+        private static double apply(int functionId, double x) {
+            switch (functionId) {
+                case F_SIN:
+                    return FastMath.sin(x);
+                case F_COS:
+                    return FastMath.cos(x);
+                case F_TAN:
+                    return FastMath.tan(x);
+                case F_ASIN:
+                    return FastMath.asin(x);
+                case F_ACOS:
+                    return FastMath.acos(x);
+                case F_ATAN:
+                    return FastMath.atan(x);
+                case F_LOG:
+                    return Math.log(x);
+                case F_LOG10:
+                    return Math.log10(x);
+                case F_EXP:
+                    return FastMath.exp(x);
+                case F_EXP10:
+                    return FastMath.pow(10.0, x);
+                case F_SQR:
+                    return x * x;
+                case F_SQRT:
+                    return Math.sqrt(x);
+                case F_FLOOR:
+                    return Math.floor(x);
+                case F_ROUND:
+                    return Math.round(x);
+                case F_CEIL:
+                    return Math.ceil(x);
+                case F_RINT:
+                    return Math.rint(x);
+                case F_SIGN:
+                    return ExtMath.sign(x);
+                case F_ABS:
+                    return Math.abs(x);
+                case F_DEG:
+                    return Math.toDegrees(x);
+                default:
+                    return Math.toRadians(x);
+            }
+        }
+
+        private static double apply(int functionId, double x, double y) {
+            switch (functionId) {
+                case F_ATAN2:
+                    return Math.atan2(x, y);
+                case F_POW:
+                    return FastMath.pow(x, y);
+                case F_MIN:
+                    return Math.min(x, y);
+                case F_MAX:
+                    return Math.max(x, y);
+                case F_AMPL:
+                    return Math.sqrt(x * x + y * y);
+                default:
+                    return Math.atan2(y, x);
+            }
+        }
+    }
+
+    private static int count(boolean[] values, int n, boolean value) {
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            count += values[i] ? 1 : 0;
+        }
+        return value ? count : n - count;
+    }
+
+    /**
+     * Reads raster data like {@link ProductData#getElemDoubleAt(int)}.
+     */
+    private static void readDoubles(ProductData data, int index, int n, double[] out) {
+        final Class<?> dataClass = data.getClass();
+        if (dataClass == ProductData.Float.class) {
+            final float[] elems = (float[]) data.getElems();
+            for (int i = 0; i < n; i++) {
+                out[i] = elems[index + i];
+            }
+        } else if (dataClass == ProductData.Double.class) {
+            System.arraycopy(data.getElems(), index, out, 0, n);
+        } else if (dataClass == ProductData.Int.class) {
+            final int[] elems = (int[]) data.getElems();
+            for (int i = 0; i < n; i++) {
+                out[i] = elems[index + i];
+            }
+        } else if (dataClass == ProductData.UInt.class) {
+            final int[] elems = (int[]) data.getElems();
+            for (int i = 0; i < n; i++) {
+                out[i] = elems[index + i] & 0xffffffffL;
+            }
+        } else if (dataClass == ProductData.Short.class) {
+            final short[] elems = (short[]) data.getElems();
+            for (int i = 0; i < n; i++) {
+                out[i] = elems[index + i];
+            }
+        } else if (dataClass == ProductData.UShort.class) {
+            final short[] elems = (short[]) data.getElems();
+            for (int i = 0; i < n; i++) {
+                out[i] = elems[index + i] & 0xffff;
+            }
+        } else if (dataClass == ProductData.Byte.class) {
+            final byte[] elems = (byte[]) data.getElems();
+            for (int i = 0; i < n; i++) {
+                out[i] = elems[index + i];
+            }
+        } else if (dataClass == ProductData.UByte.class) {
+            final byte[] elems = (byte[]) data.getElems();
+            for (int i = 0; i < n; i++) {
+                out[i] = elems[index + i] & 0xff;
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                out[i] = data.getElemDoubleAt(index + i);
+            }
+        }
+    }
+
+    /**
+     * Reads raster data like {@link ProductData#getElemIntAt(int)}.
+     */
+    private static void readInts(ProductData data, int index, int n, int[] out) {
+        final Class<?> dataClass = data.getClass();
+        if (dataClass == ProductData.Int.class || dataClass == ProductData.UInt.class) {
+            System.arraycopy(data.getElems(), index, out, 0, n);
+        } else if (dataClass == ProductData.Short.class) {
+            final short[] elems = (short[]) data.getElems();
+            for (int i = 0; i < n; i++) {
+                out[i] = elems[index + i];
+            }
+        } else if (dataClass == ProductData.UShort.class) {
+            final short[] elems = (short[]) data.getElems();
+            for (int i = 0; i < n; i++) {
+                out[i] = elems[index + i] & 0xffff;
+            }
+        } else if (dataClass == ProductData.Byte.class) {
+            final byte[] elems = (byte[]) data.getElems();
+            for (int i = 0; i < n; i++) {
+                out[i] = elems[index + i];
+            }
+        } else if (dataClass == ProductData.UByte.class) {
+            final byte[] elems = (byte[]) data.getElems();
+            for (int i = 0; i < n; i++) {
+                out[i] = elems[index + i] & 0xff;
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                out[i] = data.getElemIntAt(index + i);
+            }
+        }
+    }
+}
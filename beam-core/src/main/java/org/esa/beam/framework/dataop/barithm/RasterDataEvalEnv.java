@@ -16,9 +16,12 @@
 package org.esa.beam.framework.dataop.barithm;
 
 import com.bc.jexp.EvalEnv;
+import org.esa.beam.framework.datamodel.ProductData;
 import org.esa.beam.jai.LevelImageSupport;
 import org.esa.beam.jai.ResolutionLevel;
 
+import java.util.Arrays;
+
 /**
  * Represents an evaluation environment for {@link com.bc.jexp.Term Terms} which are operating on raster data.
  * <p>The evaluation environment is passed to the {@link com.bc.jexp.Term#evalB(com.bc.jexp.EvalEnv) evalB},
@@ -28,6 +31,8 @@ import org.esa.beam.jai.ResolutionLevel;
  * <p>Special implementations of the {@link com.bc.jexp.Symbol Symbol} and {@link com.bc.jexp.Function Function}
  * interfaces, such as {@link RasterDataSymbol}, can then use the environment in order to perform
  * raster data specific evaluations.
+ * <p>The environment can also bind raster data to the {@link RasterDataSymbol}s of a term, so that a single
+ * term can be evaluated by many threads at once, each of them using its own environment and data.
  */
 public class RasterDataEvalEnv implements EvalEnv {
 
@@ -37,6 +42,8 @@ public class RasterDataEvalEnv implements EvalEnv {
     private final int regionHeight;
     private int elemIndex;
     private LevelImageSupport levelImageSupport;
+    private RasterDataSymbol[] boundSymbols;
+    private ProductData[] boundData;
 
     /**
      * Constructs a new environment for the given raster data region.
@@ -71,6 +78,8 @@ public class RasterDataEvalEnv implements EvalEnv {
         this.regionWidth = regionWidth;
         this.regionHeight = regionHeight;
         this.levelImageSupport = levelImageSupport;
+        this.boundSymbols = new RasterDataSymbol[0];
+        this.boundData = new ProductData[0];
     }
 
     /**
@@ -144,4 +153,39 @@ public class RasterDataEvalEnv implements EvalEnv {
     public void setElemIndex(int elemIndex) {
         this.elemIndex = elemIndex;
     }
+
+    /**
+     * Binds raster data to a symbol. Within this environment, the symbol evaluates the given data instead
+     * of the data set by {@link RasterDataSymbol#setData(Object)}.
+     *
+     * @param symbol The symbol.
+     * @param data   The raster data of the region of this environment.
+     */
+    public void setData(RasterDataSymbol symbol, ProductData data) {
+        for (int i = 0; i < boundSymbols.length; i++) {
+            if (boundSymbols[i] == symbol) {
+                boundData[i] = data;
+                return;
+            }
+        }
+        final int n = boundSymbols.length;
+        boundSymbols = Arrays.copyOf(boundSymbols, n + 1);
+        boundData = Arrays.copyOf(boundData, n + 1);
+        boundSymbols[n] = symbol;
+        boundData[n] = data;
+    }
+
+    /**
+     * @param symbol The symbol.
+     *
+     * @return The raster data bound to the symbol, or {@code null} if no data is bound to it.
+     */
+    public final ProductData getData(RasterDataSymbol symbol) {
+        for (int i = 0; i < boundSymbols.length; i++) {
+            if (boundSymbols[i] == symbol) {
+                return boundData[i];
+            }
+        }
+        return null;
+    }
 }
@@ -123,22 +123,34 @@ public class RasterDataSymbol implements Symbol {
         }
     }
 
+    /**
+     * Gets the raster data evaluated by this symbol in the given environment.
+     *
+     * @param env The environment.
+     *
+     * @return The data bound to this symbol by the environment, or the data set by {@link #setData(Object)}.
+     */
+    public final ProductData getData(RasterDataEvalEnv env) {
+        final ProductData boundData = env.getData(this);
+        return boundData != null ? boundData : data;
+    }
+
     @Override
     public boolean evalB(final EvalEnv env) throws EvalException {
-        final int elemIndex = ((RasterDataEvalEnv) env).getElemIndex();
-        return Term.toB(data.getElemDoubleAt(elemIndex));
+        final RasterDataEvalEnv rasterEnv = (RasterDataEvalEnv) env;
+        return Term.toB(getData(rasterEnv).getElemDoubleAt(rasterEnv.getElemIndex()));
     }
 
     @Override
     public int evalI(final EvalEnv env) throws EvalException {
-        final int elemIndex = ((RasterDataEvalEnv) env).getElemIndex();
-        return data.getElemIntAt(elemIndex);
+        final RasterDataEvalEnv rasterEnv = (RasterDataEvalEnv) env;
+        return getData(rasterEnv).getElemIntAt(rasterEnv.getElemIndex());
     }
 
     @Override
     public double evalD(final EvalEnv env) throws EvalException {
-        final int elemIndex = ((RasterDataEvalEnv) env).getElemIndex();
-        return data.getElemDoubleAt(elemIndex);
+        final RasterDataEvalEnv rasterEnv = (RasterDataEvalEnv) env;
+        return getData(rasterEnv).getElemDoubleAt(rasterEnv.getElemIndex());
     }
 
     @Override
@@ -24,6 +24,7 @@ import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
 import org.esa.beam.framework.datamodel.RasterDataNode;
 import org.esa.beam.framework.dataop.barithm.BandArithmetic;
+import org.esa.beam.framework.dataop.barithm.CompiledTerm;
 import org.esa.beam.framework.dataop.barithm.RasterDataEvalEnv;
 import org.esa.beam.framework.dataop.barithm.RasterDataSymbol;
 import org.esa.beam.util.ImageUtils;
@@ -55,8 +56,9 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
     private final boolean mask;
     private final Product[] products;
     private final int defaultProductIndex;
-    private final Map<Point, Term> termMap = new ConcurrentHashMap<Point, Term>();
+    private final Map<Point, ProductData[]> tileDataMap = new ConcurrentHashMap<Point, ProductData[]>();
 
+    private volatile ParsedExpression parsedExpression;
     private volatile NoDataRaster noDataRaster;
 
     public static VirtualBandOpImage createMask(String expression,
@@ -196,14 +198,16 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
 
     @Override
     public synchronized void dispose() {
-        termMap.clear();
+        tileDataMap.clear();
+        parsedExpression = null;
     }
 
     @Override
     public Raster computeTile(int tileX, int tileY) {
-        final Term term = parseExpression();
-        if (addDataToReferredRasterDataSymbols(getTileRect(tileX, tileY), term)) {
-            termMap.put(new Point(tileX, tileY), term);
+        final RasterDataSymbol[] symbols = getParsedExpression().symbols;
+        final ProductData[] tileData = getReferredRasterData(getTileRect(tileX, tileY), symbols);
+        if (tileData != null) {
+            tileDataMap.put(new Point(tileX, tileY), tileData);
             return super.computeTile(tileX, tileY);
         } else {
             if (noDataRaster == null) {
@@ -219,7 +223,8 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
 
     @Override
     protected void computeRect(PlanarImage[] planarImages, WritableRaster writableRaster, Rectangle destRect) {
-        final Term term = termMap.remove(getTileIndices(destRect)[0]);
+        final ParsedExpression parsedExpression = getParsedExpression();
+        final ProductData[] tileData = tileDataMap.remove(getTileIndices(destRect)[0]);
         final ProductData productData = ProductData.createInstance(dataType,
                                                                    ImageUtils.getPrimitiveArray(
                                                                            writableRaster.getDataBuffer()));
@@ -233,21 +238,28 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
         final RasterDataEvalEnv env = new RasterDataEvalEnv(destRect.x, destRect.y,
                                                             colCount, rowCount,
                                                             getLevelImageSupport());
+        for (int i = 0; i < tileData.length; i++) {
+            env.setData(parsedExpression.symbols[i], tileData[i]);
+        }
 
+        // the parsed term is shared by all tiles, the compiled one is only used by this thread
+        final CompiledTerm compiledTerm = CompiledTerm.compile(parsedExpression.term);
         if (mask) {
+            final boolean[] values = new boolean[colCount];
             for (int i = 0, k = w * y; i < pixelCount; i += colCount, k += w) {
+                compiledTerm.evalB(env, i, colCount, values);
                 for (int j = 0, l = x; j < colCount; j++, l++) {
-                    env.setElemIndex(i + j);
-                    productData.setElemUIntAt(k + l, term.evalB(env) ? TRUE : FALSE);
+                    productData.setElemUIntAt(k + l, values[j] ? TRUE : FALSE);
                 }
             }
         } else {
+            final double[] values = new double[colCount];
             if (fillValue != null) {
                 final double fv = fillValue.doubleValue();
                 for (int i = 0, k = w * y; i < pixelCount; i += colCount, k += w) {
+                    compiledTerm.evalD(env, i, colCount, values);
                     for (int j = 0, l = x; j < colCount; j++, l++) {
-                        env.setElemIndex(i + j);
-                        final double v = term.evalD(env);
+                        final double v = values[j];
                         if (Double.isNaN(v) || Double.isInfinite(v)) {
                             productData.setElemDoubleAt(k + l, fv);
                         } else {
@@ -257,16 +269,30 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
                 }
             } else {
                 for (int i = 0, k = w * y; i < pixelCount; i += colCount, k += w) {
+                    compiledTerm.evalD(env, i, colCount, values);
                     for (int j = 0, l = x; j < colCount; j++, l++) {
-                        env.setElemIndex(i + j);
-                        productData.setElemDoubleAt(k + l, term.evalD(env));
+                        productData.setElemDoubleAt(k + l, values[j]);
                     }
                 }
             }
         }
     }
 
-    private Term parseExpression() {
+    private ParsedExpression getParsedExpression() {
+        ParsedExpression result = parsedExpression;
+        if (result == null) {
+            synchronized (this) {
+                result = parsedExpression;
+                if (result == null) {
+                    result = parseExpression();
+                    parsedExpression = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private ParsedExpression parseExpression() {
         final Term term;
         try {
             term = BandArithmetic.parseExpression(expression, products, defaultProductIndex);
@@ -275,17 +301,20 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
                     "Could not parse expression: ''{0}''.", expression), e);
         }
         final ImageManager imageManager = ImageManager.getInstance();
-        for (final RasterDataSymbol symbol : BandArithmetic.getRefRasterDataSymbols(term)) {
+        final RasterDataSymbol[] symbols = BandArithmetic.getRefRasterDataSymbols(term);
+        for (final RasterDataSymbol symbol : symbols) {
             if (imageManager.getSourceImage(symbol.getRaster(), getLevel()) == this) {
                 throw new RuntimeException(MessageFormat.format(
                         "Invalid reference ''{0}''.", symbol.getName()));
             }
         }
-        return term;
+        return new ParsedExpression(term, symbols);
     }
 
-    private boolean addDataToReferredRasterDataSymbols(Rectangle destRect, Term term) {
-        for (final RasterDataSymbol symbol : BandArithmetic.getRefRasterDataSymbols(term)) {
+    private ProductData[] getReferredRasterData(Rectangle destRect, RasterDataSymbol[] symbols) {
+        final ProductData[] tileData = new ProductData[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            final RasterDataSymbol symbol = symbols[i];
             final RenderedImage sourceImage;
             final int dataType;
             final RasterDataNode rasterDataNode = symbol.getRaster();
@@ -298,7 +327,7 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
             }
             final Raster sourceRaster = sourceImage.getData(destRect);
             if (sourceRaster instanceof NoDataRaster) {
-                return false;
+                return null;
             }
             DataBuffer dataBuffer = sourceRaster.getDataBuffer();
             if (dataBuffer.getSize() != destRect.width * destRect.height) {
@@ -306,9 +335,24 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
                 sourceImage.copyData(writableRaster);
                 dataBuffer = writableRaster.getDataBuffer();
             }
-            symbol.setData(ProductData.createInstance(dataType, ImageUtils.getPrimitiveArray(dataBuffer)));
+            tileData[i] = ProductData.createInstance(dataType, ImageUtils.getPrimitiveArray(dataBuffer));
+        }
+        return tileData;
+    }
+
+    /**
+     * The expression parsed once for all tiles. The term is not modified by the tile computations, which bind
+     * the tile data of the symbols through their evaluation environment.
+     */
+    private static final class ParsedExpression {
+
+        private final Term term;
+        private final RasterDataSymbol[] symbols;
+
+        private ParsedExpression(Term term, RasterDataSymbol[] symbols) {
+            this.term = term;
+            this.symbols = symbols;
         }
-        return true;
     }
 
 }
\ No newline at end of file
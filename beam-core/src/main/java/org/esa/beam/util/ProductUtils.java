@@ -23,6 +23,7 @@ import com.bc.ceres.glayer.Layer;
 import com.bc.ceres.grender.support.BufferedImageRendering;
 import com.vividsolutions.jts.geom.Geometry;
 import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.BatchGeoCoding;
 import org.esa.beam.framework.datamodel.BitmaskDef;
 import org.esa.beam.framework.datamodel.ColorPaletteDef;
 import org.esa.beam.framework.datamodel.DensityPlot;
@@ -2481,6 +2482,35 @@ public class ProductUtils {
         final GeoPos geoPos = new GeoPos();
         final PixelPos pixelPos = new PixelPos();
 
+        if (sourceGeoCoding instanceof BatchGeoCoding) {
+            final double[] lats = new double[destArea.width];
+            final double[] lons = new double[destArea.width];
+            final double[] pixelXs = new double[destArea.width];
+            final double[] pixelYs = new double[destArea.width];
+            int coordIndex = 0;
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    pixelPos.x = x + 0.5f;
+                    pixelPos.y = y + 0.5f;
+                    destGeoCoding.getGeoPos(pixelPos, geoPos);
+                    lats[x - minX] = geoPos.lat;
+                    lons[x - minX] = geoPos.lon;
+                }
+                ((BatchGeoCoding) sourceGeoCoding).getPixelPos(lats, lons, 0, destArea.width, pixelXs, pixelYs);
+                for (int i = 0; i < destArea.width; i++) {
+                    final float pixelX = (float) pixelXs[i];
+                    final float pixelY = (float) pixelYs[i];
+                    if (pixelX >= 0.0f && pixelX < sourceWidth && pixelY >= 0.0f && pixelY < sourceHeight) {
+                        pixelCoords[coordIndex] = new PixelPos(pixelX, pixelY);
+                    } else {
+                        pixelCoords[coordIndex] = null;
+                    }
+                    coordIndex++;
+                }
+            }
+            return pixelCoords;
+        }
+
         int coordIndex = 0;
         for (int y = minY; y <= maxY; y++) {
             for (int x = minX; x <= maxX; x++) {
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.datamodel;
+
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GeoApproximationIndexTest {
+
+    private static final int TILE_SIZE = 64;
+
+    @Test
+    public void testSameResultAsLinearSearch() {
+        // a swath of 4 x 8 tiles crossing the anti-meridian
+        final GeoApproximation[] approximations = new GeoApproximation[32];
+        for (int tileY = 0; tileY < 8; tileY++) {
+            for (int tileX = 0; tileX < 4; tileX++) {
+                final Rectangle range = new Rectangle(tileX * TILE_SIZE, tileY * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+                approximations[tileY * 4 + tileX] = GeoApproximation.create(createWarpPoints(range), 0.5, range);
+                assertNotNull(approximations[tileY * 4 + tileX]);
+            }
+        }
+        final GeoApproximationIndex index = new GeoApproximationIndex(approximations);
+
+        final Random random = new Random(17);
+        int found = 0;
+        for (int i = 0; i < 100000; i++) {
+            final double lat = 60.0 + 15.0 * random.nextDouble();
+            final double lon = 170.0 + 25.0 * random.nextDouble();
+            final GeoApproximation expected = GeoApproximation.findMostSuitable(approximations, lat, lon);
+            assertSame(expected, index.findMostSuitable(lat, lon));
+            if (expected != null) {
+                found++;
+            }
+        }
+        assertTrue(found > 0);
+
+        assertSame(GeoApproximation.findMostSuitable(approximations, Double.NaN, 175.0),
+                   index.findMostSuitable(Double.NaN, 175.0));
+        assertNull(index.findMostSuitable(-45.0, 0.0));
+    }
+
+    private static double[][] createWarpPoints(Rectangle range) {
+        final double[][] data = new double[(TILE_SIZE / 8 + 1) * (TILE_SIZE / 8 + 1)][];
+        int k = 0;
+        for (int y = range.y; y <= range.y + TILE_SIZE; y += 8) {
+            for (int x = range.x; x <= range.x + TILE_SIZE; x += 8) {
+                final double lat = 62.0 + 0.02 * y + 0.002 * x;
+                final double lon = GeoApproximation.normalizeLon(172.0 + 0.05 * x - 0.004 * y);
+                data[k++] = new double[]{lat, lon, x + 0.5, y + 0.5};
+            }
+        }
+        return data;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.datamodel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares {@link PixelGeoCoding2#getPixelPos(GeoPos, PixelPos)} called position by position with
+ * {@link PixelGeoCoding2#getPixelPos(double[], double[], int, int, double[], double[])} for a simulated
+ * swath of the size of a MODIS 1 km granule.
+ * Not enabled by default, as the class does not end in Test.
+ * <p/>
+ * Invoke by running<br/>
+ * {@code mvn test -Dtest=org.esa.beam.framework.datamodel.PixelGeoCoding2Performance}<br/>
+ * or by running<br/>
+ * {@code mvn test -Dtest=org.esa.beam.framework.datamodel.PixelGeoCoding2Performance -DargLine="-DtestRuns=10 -server"}<br/>
+ */
+public class PixelGeoCoding2Performance {
+
+    private static final int RUNS = Integer.parseInt(System.getProperty("testRuns", "5"));
+    private static final int WIDTH = 1354;
+    private static final int HEIGHT = 2030;
+
+    @Test
+    public void testPerformance() throws Exception {
+        final PixelGeoCoding2 geoCoding = createGeoCoding();
+
+        // the geographical positions of a target grid, as used by reprojection and collocation
+        final int targetWidth = 1000;
+        final int targetHeight = 200;
+        final double[] lats = new double[targetWidth * targetHeight];
+        final double[] lons = new double[targetWidth * targetHeight];
+        for (int y = 0; y < targetHeight; y++) {
+            for (int x = 0; x < targetWidth; x++) {
+                lats[y * targetWidth + x] = (float) (50.0 - 0.01 * y);
+                lons[y * targetWidth + x] = (float) (5.0 + 0.012 * x);
+            }
+        }
+        final double[] pixelXs1 = new double[lats.length];
+        final double[] pixelYs1 = new double[lats.length];
+        final double[] pixelXs2 = new double[lats.length];
+        final double[] pixelYs2 = new double[lats.length];
+        final GeoPos geoPos = new GeoPos();
+        for (int run = 0; run < RUNS; run++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < lats.length; i++) {
+                geoPos.setLocation((float) lats[i], (float) lons[i]);
+                final PixelPos pixelPos = geoCoding.getPixelPos(geoPos, null);
+                pixelXs1[i] = pixelPos.x;
+                pixelYs1[i] = pixelPos.y;
+            }
+            long t1 = System.nanoTime();
+            for (int i = 0; i < lats.length; i += targetWidth) {
+                geoCoding.getPixelPos(lats, lons, i, targetWidth, pixelXs2, pixelYs2);
+            }
+            long t2 = System.nanoTime();
+            for (int i = 0; i < lats.length; i++) {
+                assertEquals(Double.doubleToLongBits(pixelXs1[i]), Double.doubleToLongBits(pixelXs2[i]));
+                assertEquals(Double.doubleToLongBits(pixelYs1[i]), Double.doubleToLongBits(pixelYs2[i]));
+            }
+            System.out.println(String.format("%d positions: position by position %8.3f ms, batch %8.3f ms",
+                                             lats.length, (t1 - t0) / 1.0E6, (t2 - t1) / 1.0E6));
+        }
+    }
+
+    private static PixelGeoCoding2 createGeoCoding() {
+        final Product product = new Product("MOD021KM", "MOD021KM", WIDTH, HEIGHT);
+        final float[] lats = new float[WIDTH * HEIGHT];
+        final float[] lons = new float[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                // a descending swath, slightly rotated and widening towards the edges
+                final double across = (x - WIDTH / 2) / (double) WIDTH;
+                lats[y * WIDTH + x] = (float) (55.0 - 0.009 * y - 1.5 * across);
+                lons[y * WIDTH + x] = (float) (8.0 + 18.0 * across + 2.0 * across * across * across - 0.002 * y);
+            }
+        }
+        final Band latBand = product.addBand("latitude", ProductData.TYPE_FLOAT32);
+        latBand.setRasterData(ProductData.createInstance(lats));
+        final Band lonBand = product.addBand("longitude", ProductData.TYPE_FLOAT32);
+        lonBand.setRasterData(ProductData.createInstance(lons));
+        return new PixelGeoCoding2(latBand, lonBand, null);
+    }
+}
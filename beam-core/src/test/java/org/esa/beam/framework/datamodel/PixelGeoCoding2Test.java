@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.datamodel;
+
+import org.esa.beam.util.ProductUtils;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Test;
+
+import java.awt.Rectangle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PixelGeoCoding2Test {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 200;
+
+    @Test
+    public void testBatchPixelPosEqualsPointwisePixelPos() throws Exception {
+        assertBatchPixelPosEqualsPointwisePixelPos(createGeoCoding(null));
+    }
+
+    @Test
+    public void testBatchPixelPosEqualsPointwisePixelPos_WithValidMask() throws Exception {
+        assertBatchPixelPosEqualsPointwisePixelPos(createGeoCoding("X % 13 != 0 && Y % 11 != 0"));
+    }
+
+    @Test
+    public void testComputeSourcePixelCoordinatesEqualsPointwisePixelPos() throws Exception {
+        final PixelGeoCoding2 sourceGeoCoding = createGeoCoding(null);
+        final Rectangle destArea = new Rectangle(3, 2, 70, 50);
+        // the destination grid covers the swath and some area outside of it
+        final CrsGeoCoding destGeoCoding = new CrsGeoCoding(DefaultGeographicCRS.WGS84, 80, 60,
+                                                            3.0, 56.0, 0.12, 0.08);
+
+        final PixelPos[] pixelCoords = ProductUtils.computeSourcePixelCoordinates(sourceGeoCoding, WIDTH, HEIGHT,
+                                                                                  destGeoCoding, destArea);
+
+        assertEquals(destArea.width * destArea.height, pixelCoords.length);
+        int validCount = 0;
+        int invalidCount = 0;
+        int coordIndex = 0;
+        for (int y = destArea.y; y < destArea.y + destArea.height; y++) {
+            for (int x = destArea.x; x < destArea.x + destArea.width; x++) {
+                final GeoPos geoPos = destGeoCoding.getGeoPos(new PixelPos(x + 0.5f, y + 0.5f), null);
+                final PixelPos expected = sourceGeoCoding.getPixelPos(geoPos, null);
+                final PixelPos actual = pixelCoords[coordIndex];
+                if (expected.x >= 0.0f && expected.x < WIDTH && expected.y >= 0.0f && expected.y < HEIGHT) {
+                    assertEquals(Float.floatToIntBits(expected.x), Float.floatToIntBits(actual.x));
+                    assertEquals(Float.floatToIntBits(expected.y), Float.floatToIntBits(actual.y));
+                    validCount++;
+                } else {
+                    assertNull(actual);
+                    invalidCount++;
+                }
+                coordIndex++;
+            }
+        }
+        assertTrue(validCount > 0);
+        assertTrue(invalidCount > 0);
+    }
+
+    private static void assertBatchPixelPosEqualsPointwisePixelPos(PixelGeoCoding2 geoCoding) {
+        // a grid of geographical positions, partly outside of the swath
+        final int gridWidth = 90;
+        final int gridHeight = 70;
+        final double[] lats = new double[gridWidth * gridHeight];
+        final double[] lons = new double[gridWidth * gridHeight];
+        for (int y = 0; y < gridHeight; y++) {
+            for (int x = 0; x < gridWidth; x++) {
+                lats[y * gridWidth + x] = (float) (56.0 - 0.07 * y);
+                lons[y * gridWidth + x] = (float) (3.0 + 0.11 * x);
+            }
+        }
+        final double[] pixelXs = new double[lats.length];
+        final double[] pixelYs = new double[lats.length];
+        for (int i = 0; i < lats.length; i += gridWidth) {
+            geoCoding.getPixelPos(lats, lons, i, gridWidth, pixelXs, pixelYs);
+        }
+
+        int validCount = 0;
+        int invalidCount = 0;
+        for (int i = 0; i < lats.length; i++) {
+            final PixelPos pixelPos = geoCoding.getPixelPos(new GeoPos((float) lats[i], (float) lons[i]), null);
+            assertEquals(Double.doubleToLongBits(pixelPos.x), Double.doubleToLongBits(pixelXs[i]));
+            assertEquals(Double.doubleToLongBits(pixelPos.y), Double.doubleToLongBits(pixelYs[i]));
+            if (pixelPos.isValid()) {
+                validCount++;
+            } else {
+                invalidCount++;
+            }
+        }
+        assertTrue(validCount > 0);
+        assertTrue(invalidCount > 0);
+    }
+
+    private static PixelGeoCoding2 createGeoCoding(String validMaskExpression) {
+        final Product product = new Product("swath", "swath", WIDTH, HEIGHT);
+        // several tiles, so that the pixel position estimator uses its approximation index
+        product.setPreferredTileSize(32, 32);
+        final float[] lats = new float[WIDTH * HEIGHT];
+        final float[] lons = new float[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                // a descending swath, slightly rotated and widening towards the edges
+                final double across = (x - WIDTH / 2) / (double) WIDTH;
+                lats[y * WIDTH + x] = (float) (55.0 - 0.02 * y - 1.5 * across);
+                lons[y * WIDTH + x] = (float) (8.0 + 6.0 * across + 1.0 * across * across * across - 0.005 * y);
+            }
+        }
+        final Band latBand = product.addBand("latitude", ProductData.TYPE_FLOAT32);
+        latBand.setRasterData(ProductData.createInstance(lats));
+        final Band lonBand = product.addBand("longitude", ProductData.TYPE_FLOAT32);
+        lonBand.setRasterData(ProductData.createInstance(lons));
+        return new PixelGeoCoding2(latBand, lonBand, validMaskExpression);
+    }
+}
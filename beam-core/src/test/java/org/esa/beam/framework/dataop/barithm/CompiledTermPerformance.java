@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.dataop.barithm;
+
+import com.bc.jexp.Term;
+import com.bc.jexp.impl.DefaultNamespace;
+import com.bc.jexp.impl.ParserImpl;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the interpreter with {@link CompiledTerm} for a flag expression and a valid-pixel expression
+ * of the size typically found in L2 products.
+ * Not enabled by default, as the class does not end in Test.
+ * <p/>
+ * Invoke by running<br/>
+ * {@code mvn test -Dtest=org.esa.beam.framework.dataop.barithm.CompiledTermPerformance}<br/>
+ * or by running<br/>
+ * {@code mvn test -Dtest=org.esa.beam.framework.dataop.barithm.CompiledTermPerformance -DargLine="-DtestRuns=10 -server"}<br/>
+ */
+public class CompiledTermPerformance {
+
+    private static final int RUNS = Integer.parseInt(System.getProperty("testRuns", "5"));
+    private static final int WIDTH = 1121;
+    private static final int HEIGHT = 512;
+
+    private static final String[] EXPRESSIONS = {
+            "!flags.LAND && !flags.CLOUD && !flags.GLINT && (flags.CASE2_S || flags.CASE2_ANOM) " +
+            "&& !flags.HIGH_SOLZEN && !flags.BRIGHT && !flags.INVALID",
+            "flags.LAND || flags.INVALID ? NaN : " +
+            "(reflec_1 > 0.0 && reflec_2 > 0.0 && reflec_2 < 0.8 ? log(reflec_1 / reflec_2) * 0.5 + 0.1 : NaN)",
+    };
+
+    @Test
+    public void testPerformance() throws Exception {
+        final DefaultNamespace namespace = createNamespace();
+        final RasterDataEvalEnv env = new RasterDataEvalEnv(0, 0, WIDTH, HEIGHT);
+        final double[] interpreted = new double[WIDTH * HEIGHT];
+        final double[] compiled = new double[WIDTH * HEIGHT];
+        final double[] values = new double[WIDTH];
+        for (int run = 0; run < RUNS; run++) {
+            for (String expression : EXPRESSIONS) {
+                final Term term = new ParserImpl(namespace, true).parse(expression);
+                long t0 = System.nanoTime();
+                for (int i = 0; i < interpreted.length; i++) {
+                    env.setElemIndex(i);
+                    interpreted[i] = term.evalD(env);
+                }
+                long t1 = System.nanoTime();
+                final CompiledTerm compiledTerm = CompiledTerm.compile(term);
+                for (int i = 0; i < compiled.length; i += WIDTH) {
+                    compiledTerm.evalD(env, i, WIDTH, values);
+                    System.arraycopy(values, 0, compiled, i, WIDTH);
+                }
+                long t2 = System.nanoTime();
+                for (int i = 0; i < compiled.length; i++) {
+                    assertEquals(Double.doubleToLongBits(interpreted[i]), Double.doubleToLongBits(compiled[i]));
+                }
+                System.out.println(String.format("%d nodes: interpreted %8.3f ms, compiled %8.3f ms",
+                                                 countNodes(term), (t1 - t0) / 1.0E6, (t2 - t1) / 1.0E6));
+            }
+        }
+    }
+
+    private static DefaultNamespace createNamespace() {
+        final int n = WIDTH * HEIGHT;
+        final Random random = new Random(5);
+        final short[] flags = new short[n];
+        final float[] reflec1 = new float[n];
+        final float[] reflec2 = new float[n];
+        for (int i = 0; i < n; i++) {
+            flags[i] = (short) random.nextInt(1 << 9);
+            reflec1[i] = random.nextFloat();
+            reflec2[i] = random.nextFloat();
+        }
+        final DefaultNamespace namespace = new DefaultNamespace();
+        final Band flagBand = new Band("flags", ProductData.TYPE_UINT16, WIDTH, HEIGHT);
+        final String[] flagNames = {"LAND", "CLOUD", "GLINT", "CASE2_S", "CASE2_ANOM", "HIGH_SOLZEN", "BRIGHT", "INVALID"};
+        for (int i = 0; i < flagNames.length; i++) {
+            final SingleFlagSymbol symbol = new SingleFlagSymbol("flags." + flagNames[i], flagBand, 1 << i);
+            symbol.setData(ProductData.createInstance(ProductData.TYPE_UINT16, flags));
+            namespace.registerSymbol(symbol);
+        }
+        registerSymbol(namespace, "reflec_1", reflec1);
+        registerSymbol(namespace, "reflec_2", reflec2);
+        return namespace;
+    }
+
+    private static void registerSymbol(DefaultNamespace namespace, String name, float[] data) {
+        final Band band = new Band(name, ProductData.TYPE_FLOAT32, WIDTH, HEIGHT);
+        final RasterDataSymbol symbol = new RasterDataSymbol(name, band, RasterDataSymbol.RAW);
+        symbol.setData(data);
+        namespace.registerSymbol(symbol);
+    }
+
+    private static int countNodes(Term term) {
+        int count = 1;
+        for (Term child : term.getChildren()) {
+            count += countNodes(child);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.dataop.barithm;
+
+import com.bc.jexp.EvalEnv;
+import com.bc.jexp.Term;
+import com.bc.jexp.impl.AbstractFunction;
+import com.bc.jexp.impl.DefaultNamespace;
+import com.bc.jexp.impl.ParserImpl;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CompiledTermTest {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 3;
+
+    private DefaultNamespace namespace;
+
+    @Before
+    public void setUp() throws Exception {
+        final int n = WIDTH * HEIGHT;
+        final Random random = new Random(42);
+        final float[] floats = new float[n];
+        final int[] ints = new int[n];
+        final byte[] bytes = new byte[n];
+        final int[] flags = new int[n];
+        for (int i = 0; i < n; i++) {
+            floats[i] = i % 7 == 0 ? Float.NaN : i % 13 == 0 ? Float.POSITIVE_INFINITY : (float) random.nextGaussian();
+            ints[i] = random.nextInt(7) - 3;
+            bytes[i] = (byte) random.nextInt(256);
+            flags[i] = random.nextInt(16);
+        }
+        namespace = new DefaultNamespace();
+        registerSymbol("a", ProductData.createInstance(floats));
+        registerSymbol("i", ProductData.createInstance(ints));
+        registerSymbol("u", ProductData.createInstance(ProductData.TYPE_UINT8, bytes));
+        final Band flagBand = new Band("flags", ProductData.TYPE_INT32, WIDTH, HEIGHT);
+        final SingleFlagSymbol water = new SingleFlagSymbol("flags.WATER", flagBand, 0x01);
+        final SingleFlagSymbol cloud = new SingleFlagSymbol("flags.CLOUD", flagBand, 0x06);
+        water.setData(flags);
+        cloud.setData(flags);
+        namespace.registerSymbol(water);
+        namespace.registerSymbol(cloud);
+    }
+
+    @Test
+    public void testSameResultsAsInterpreter() throws Exception {
+        final String[] expressions = {
+                "(flags.WATER || flags.CLOUD) && !flags.CLOUD",
+                "flags.WATER ? a : NaN",
+                "a > 0 ? log(a) : -1",
+                "sqrt(a) + 2 * a - u / 3.0",
+                "i * 3 + u % 7",
+                "(i & 3) | (u ^ 5) + ~i",
+                "-i + min(i, u) - max(a, 0.5) + abs(i) + sign(a)",
+                "nan(a) || inf(a) || feq(a, 0.5, 0.1)",
+                "u == 3 || i != -1 && a <= 0.5",
+                "i > 0 ? i : u",
+                "pow(a, 2) + exp10(i) + round(a) + floor(a) + rad(u)",
+        };
+        for (String expression : expressions) {
+            final Term term = parse(expression);
+            final CompiledTerm compiledTerm = CompiledTerm.compile(term);
+            assertTrue(expression, compiledTerm.isFullyCompiled());
+            assertSameResults(expression, term, compiledTerm);
+        }
+    }
+
+    @Test
+    public void testGuardedIntegerDivision() throws Exception {
+        final Term term = parse("i != 0 && 100 / i > 3 ? 100 / i : -1");
+        final CompiledTerm compiledTerm = CompiledTerm.compile(term);
+        assertSameResults("guarded division", term, compiledTerm);
+
+        final CompiledTerm unguardedTerm = CompiledTerm.compile(parse("100 / i > 3"));
+        try {
+            unguardedTerm.evalB(new RasterDataEvalEnv(0, 0, WIDTH, HEIGHT), 0, WIDTH, new boolean[WIDTH]);
+            fail("ArithmeticException expected");
+        } catch (ArithmeticException expected) {
+            // ok
+        }
+    }
+
+    @Test
+    public void testUnknownFunctionIsInterpreted() throws Exception {
+        final int[] callCount = new int[1];
+        namespace.registerFunction(new AbstractFunction.D("twice", 1) {
+            @Override
+            public double evalD(EvalEnv env, Term[] args) {
+                callCount[0]++;
+                return 2.0 * args[0].evalD(env);
+            }
+        });
+        final Term term = parse("u > 200 && twice(a) > 1.0");
+        final CompiledTerm compiledTerm = CompiledTerm.compile(term);
+        assertFalse(compiledTerm.isFullyCompiled());
+
+        final RasterDataEvalEnv env = new RasterDataEvalEnv(0, 0, WIDTH, HEIGHT);
+        int expectedCallCount = 0;
+        for (int i = 0; i < WIDTH; i++) {
+            env.setElemIndex(i);
+            if (namespace.resolveSymbol("u").evalI(env) > 200) {
+                expectedCallCount++;
+            }
+        }
+        compiledTerm.evalB(env, 0, WIDTH, new boolean[WIDTH]);
+        // the guarded function is only called where the interpreter would call it
+        assertEquals(expectedCallCount, callCount[0]);
+        assertSameResults("interpreted function", term, compiledTerm);
+    }
+
+    private Term parse(String expression) throws Exception {
+        return new ParserImpl(namespace, true).parse(expression);
+    }
+
+    private void registerSymbol(String name, ProductData data) {
+        final Band band = new Band(name, data.getType(), WIDTH, HEIGHT);
+        final RasterDataSymbol symbol = new RasterDataSymbol(name, band, RasterDataSymbol.RAW);
+        symbol.setData(data);
+        namespace.registerSymbol(symbol);
+    }
+
+    private static void assertSameResults(String message, Term term, CompiledTerm compiledTerm) {
+        final RasterDataEvalEnv env = new RasterDataEvalEnv(0, 0, WIDTH, HEIGHT);
+        final double[] valuesD = new double[WIDTH];
+        final boolean[] valuesB = new boolean[WIDTH];
+        for (int y = 0; y < HEIGHT; y++) {
+            compiledTerm.evalD(env, y * WIDTH, WIDTH, valuesD);
+            compiledTerm.evalB(env, y * WIDTH, WIDTH, valuesB);
+            for (int x = 0; x < WIDTH; x++) {
+                env.setElemIndex(y * WIDTH + x);
+                assertEquals(message, Double.doubleToLongBits(term.evalD(env)), Double.doubleToLongBits(valuesD[x]));
+                assertEquals(message, term.evalB(env), valuesB[x]);
+            }
+        }
+    }
+}
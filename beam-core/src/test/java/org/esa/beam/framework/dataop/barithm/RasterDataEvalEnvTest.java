@@ -16,6 +16,8 @@
 package org.esa.beam.framework.dataop.barithm;
 
 import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.ProductData;
 
 public class RasterDataEvalEnvTest extends TestCase {
 
@@ -63,4 +65,26 @@ public class RasterDataEvalEnvTest extends TestCase {
         assertEquals(50 + 110, env.getPixelX());
         assertEquals(20 + 70, env.getPixelY());
     }
+
+    public void testBoundDataOverridesSymbolData() {
+        final Band band = new Band("b", ProductData.TYPE_INT32, 2, 1);
+        final RasterDataSymbol symbol = new RasterDataSymbol("b", band, RasterDataSymbol.RAW);
+        symbol.setData(new int[]{1, 2});
+
+        final RasterDataEvalEnv env1 = new RasterDataEvalEnv(0, 0, 2, 1);
+        final RasterDataEvalEnv env2 = new RasterDataEvalEnv(0, 0, 2, 1);
+        assertNull(env1.getData(symbol));
+        env1.setData(symbol, ProductData.createInstance(new int[]{10, 20}));
+        env2.setData(symbol, ProductData.createInstance(new int[]{30, 40}));
+        env2.setData(symbol, ProductData.createInstance(new int[]{50, 60}));
+
+        env1.setElemIndex(1);
+        env2.setElemIndex(1);
+        assertEquals(20, symbol.evalI(env1));
+        assertEquals(60, symbol.evalI(env2));
+
+        final RasterDataEvalEnv unboundEnv = new RasterDataEvalEnv(0, 0, 2, 1);
+        unboundEnv.setElemIndex(1);
+        assertEquals(2, symbol.evalI(unboundEnv));
+    }
 }
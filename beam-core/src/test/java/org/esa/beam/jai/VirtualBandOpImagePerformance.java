@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.jai;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.FlagCoding;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.dataop.barithm.BandArithmetic;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures the tile throughput of {@link VirtualBandOpImage} for typical SeaDAS L2 flag and mask expressions,
+ * computing the tiles of each image with several threads. For comparison, the time needed for parsing the
+ * expression once per tile is printed as well.
+ * Not enabled by default, as the class does not end in Test.
+ * <p/>
+ * Invoke by running<br/>
+ * {@code mvn test -Dtest=org.esa.beam.jai.VirtualBandOpImagePerformance}<br/>
+ * or by running<br/>
+ * {@code mvn test -Dtest=org.esa.beam.jai.VirtualBandOpImagePerformance -DargLine="-DtestRuns=10 -DnumThreads=4 -server"}<br/>
+ */
+public class VirtualBandOpImagePerformance {
+
+    private static final int RUNS = Integer.parseInt(System.getProperty("testRuns", "5"));
+    private static final int NUM_THREADS = Integer.parseInt(System.getProperty("numThreads",
+                                                                               String.valueOf(Runtime.getRuntime().availableProcessors())));
+    private static final int WIDTH = 1354;
+    private static final int HEIGHT = 2030;
+    private static final int TILE_SIZE = 256;
+
+    private static final String[] SEADAS_FLAGS = {
+            "ATMFAIL", "LAND", "PRODWARN", "HIGLINT", "HILT", "HISATZEN", "COASTZ", "SPARE8",
+            "STRAYLIGHT", "CLDICE", "COCCOLITH", "TURBIDW", "HISOLZEN", "SPARE14", "LOWLW", "CHLFAIL",
+            "NAVWARN", "ABSAER", "SPARE19", "MAXAERITER", "MODGLINT", "CHLWARN", "ATMWARN", "SPARE24",
+            "SEAICE", "NAVFAIL", "FILTER", "SPARE28", "BOWTIEDEL", "HIPOL", "PRODFAIL", "SPARE32",
+    };
+
+    private static final String[] EXPRESSIONS = {
+            // the default L3 binning mask
+            "l2_flags.ATMFAIL || l2_flags.LAND || l2_flags.HILT || l2_flags.HISATZEN || l2_flags.STRAYLIGHT " +
+            "|| l2_flags.CLDICE || l2_flags.COCCOLITH || l2_flags.LOWLW || l2_flags.CHLFAIL || l2_flags.NAVWARN " +
+            "|| l2_flags.MAXAERITER || l2_flags.CHLWARN || l2_flags.ATMWARN || l2_flags.NAVFAIL || l2_flags.HIGLINT",
+            "!l2_flags.LAND && !l2_flags.CLDICE && !l2_flags.HIGLINT",
+            "l2_flags.HIGLINT || l2_flags.MODGLINT",
+            "!l2_flags.ATMFAIL && !l2_flags.LAND && !l2_flags.CLDICE && chlor_a > 0.01 && chlor_a < 100.0",
+    };
+
+    @Test
+    public void testTileThroughput() throws Exception {
+        final Product product = createProduct();
+        final int numXTiles = (WIDTH + TILE_SIZE - 1) / TILE_SIZE;
+        final int numYTiles = (HEIGHT + TILE_SIZE - 1) / TILE_SIZE;
+        final int numTiles = numXTiles * numYTiles;
+        final ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        try {
+            for (int run = 0; run < RUNS; run++) {
+                for (String expression : EXPRESSIONS) {
+                    long t0 = System.nanoTime();
+                    for (int i = 0; i < numTiles; i++) {
+                        BandArithmetic.parseExpression(expression, new Product[]{product}, 0);
+                    }
+                    long t1 = System.nanoTime();
+
+                    // a new image for each run, so that no tile is taken from the tile cache
+                    final VirtualBandOpImage image = VirtualBandOpImage.createMask(expression, product,
+                                                                                   ResolutionLevel.MAXRES);
+                    final List<Future<Object>> futures = new ArrayList<Future<Object>>(numTiles);
+                    for (int tileY = 0; tileY < numYTiles; tileY++) {
+                        for (int tileX = 0; tileX < numXTiles; tileX++) {
+                            final int x = tileX;
+                            final int y = tileY;
+                            futures.add(executor.submit(new Callable<Object>() {
+                                @Override
+                                public Object call() throws Exception {
+                                    return image.getTile(x, y);
+                                }
+                            }));
+                        }
+                    }
+                    for (Future<Object> future : futures) {
+                        future.get();
+                    }
+                    long t2 = System.nanoTime();
+                    image.dispose();
+
+                    System.out.println(String.format("%3d tiles in %8.3f ms (%7.1f tiles/s, %d threads), " +
+                                                     "parsing per tile would take %8.3f ms: %s",
+                                                     numTiles, (t2 - t1) / 1.0E6, numTiles / ((t2 - t1) / 1.0E9),
+                                                     NUM_THREADS, (t1 - t0) / 1.0E6, abbreviate(expression)));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Product createProduct() {
+        final Product product = new Product("A2015001000000.L2_LAC_OC", "SeaDAS L2", WIDTH, HEIGHT);
+        product.setPreferredTileSize(TILE_SIZE, TILE_SIZE);
+
+        final FlagCoding flagCoding = new FlagCoding("l2_flags");
+        for (int i = 0; i < SEADAS_FLAGS.length; i++) {
+            flagCoding.addFlag(SEADAS_FLAGS[i], 1 << i, null);
+        }
+        product.getFlagCodingGroup().add(flagCoding);
+
+        final Random random = new Random(12);
+        final int[] flags = new int[WIDTH * HEIGHT];
+        final float[] chlorA = new float[WIDTH * HEIGHT];
+        for (int i = 0; i < flags.length; i++) {
+            // most flags are rarely raised
+            int value = 0;
+            for (int bit = 0; bit < SEADAS_FLAGS.length; bit++) {
+                if (random.nextInt(16) == 0) {
+                    value |= 1 << bit;
+                }
+            }
+            flags[i] = value;
+            chlorA[i] = (float) Math.exp(random.nextGaussian());
+        }
+        final Band flagBand = product.addBand("l2_flags", ProductData.TYPE_INT32);
+        flagBand.setSampleCoding(flagCoding);
+        flagBand.setRasterData(ProductData.createInstance(flags));
+        final Band chlorABand = product.addBand("chlor_a", ProductData.TYPE_FLOAT32);
+        chlorABand.setRasterData(ProductData.createInstance(chlorA));
+        return product;
+    }
+
+    private static String abbreviate(String expression) {
+        return expression.length() > 60 ? expression.substring(0, 57) + "..." : expression;
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.csv.dataio;
+
+import org.esa.beam.framework.datamodel.ProductData;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The values of the numeric columns of a CSV file, stored column by column as primitive values.
+ * <p/>
+ * The columns are filled once while the records are parsed, see {@link CsvSourceParser#parseColumns()}. Small
+ * columns are kept on the heap, the columns of large files are spilled to temporary files and memory-mapped.
+ * Missing or invalid values are stored as {@code NaN} for floating point columns and as {@code 0} for integer
+ * columns. Reading values does not change any state, so concurrent reads need no synchronisation.
+ */
+public class CsvColumns {
+
+    private static final int SPILL_BUFFER_SIZE = 64 * 1024;
+
+    private final Map<String, Column> columns;
+    private final Column[] columnList;
+    private int recordCount;
+
+    /**
+     * @param names Names of the columns.
+     * @param types Value types of the columns, any of {@code Float}, {@code Double}, {@code Byte}, {@code Short}
+     *              or {@code Integer}.
+     * @param spill Whether the columns shall be spilled to temporary files.
+     */
+    CsvColumns(String[] names, Class<?>[] types, boolean spill) throws IOException {
+        columns = new HashMap<String, Column>(names.length);
+        columnList = new Column[names.length];
+        try {
+            for (int i = 0; i < names.length; i++) {
+                columnList[i] = new Column(getProductDataType(types[i]), spill);
+                columns.put(names[i], columnList[i]);
+            }
+        } catch (IOException e) {
+            dispose();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of records.
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return whether the values of the named column are available.
+     */
+    public boolean hasColumn(String name) {
+        return columns.containsKey(name);
+    }
+
+    /**
+     * Reads values of a column into a buffer. Records beyond the last record are read as missing values.
+     *
+     * @param name         The name of the column.
+     * @param recordOffset The index of the first record to read.
+     * @param recordStep   The increment of the record index from one value to the next.
+     * @param destBuffer   The buffer receiving the values.
+     * @param destPos      The index of the first value within the buffer.
+     * @param count        The number of values to read.
+     */
+    public void readValues(String name, int recordOffset, int recordStep,
+                           ProductData destBuffer, int destPos, int count) {
+        final Column column = columns.get(name);
+        if (column == null) {
+            throw new IllegalArgumentException("No column '" + name + "'.");
+        }
+        final int available = recordOffset < recordCount ?
+                              Math.min(count, (recordCount - recordOffset + recordStep - 1) / recordStep) : 0;
+        if (available > 0) {
+            column.read(recordOffset, recordStep, destBuffer, destPos, available);
+        }
+        for (int i = destPos + Math.max(0, available); i < destPos + count; i++) {
+            destBuffer.setElemDoubleAt(i, column.isFloatingPoint() ? Double.NaN : 0);
+        }
+    }
+
+    /**
+     * Releases the temporary files of spilled columns.
+     */
+    public void dispose() {
+        for (Column column : columnList) {
+            if (column != null) {
+                column.dispose();
+            }
+        }
+    }
+
+    /**
+     * Appends a value to a column.
+     *
+     * @return {@code false} if the token is not a valid number, the value is stored as missing then.
+     */
+    boolean addValue(int columnIndex, String token) throws IOException {
+        final Column column = columnList[columnIndex];
+        if (token == null || token.isEmpty()) {
+            column.addMissingValue();
+            return true;
+        }
+        try {
+            column.addValue(token);
+            return true;
+        } catch (NumberFormatException e) {
+            column.addMissingValue();
+            return false;
+        }
+    }
+
+    /**
+     * Completes the columns after all records have been added.
+     */
+    void complete(int recordCount) throws IOException {
+        this.recordCount = recordCount;
+        for (Column column : columnList) {
+            column.complete();
+        }
+    }
+
+    private static int getProductDataType(Class<?> type) {
+        if (type == Float.class) {
+            return ProductData.TYPE_FLOAT32;
+        } else if (type == Double.class) {
+            return ProductData.TYPE_FLOAT64;
+        } else if (type == Byte.class) {
+            return ProductData.TYPE_INT8;
+        } else if (type == Short.class) {
+            return ProductData.TYPE_INT16;
+        } else if (type == Integer.class) {
+            return ProductData.TYPE_INT32;
+        }
+        throw new IllegalArgumentException("Unsupported type '" + type + "'.");
+    }
+
+    private static class Column {
+
+        private final int dataType;
+        private final int elemSize;
+        private File spillFile;
+        private FileChannel spillChannel;
+        private ByteBuffer buffer;
+
+        Column(int dataType, boolean spill) throws IOException {
+            this.dataType = dataType;
+            this.elemSize = ProductData.getElemSize(dataType);
+            if (spill) {
+                spillFile = File.createTempFile("beam-csv-column-", ".bin");
+                spillFile.deleteOnExit();
+                spillChannel = new RandomAccessFile(spillFile, "rw").getChannel();
+                buffer = ByteBuffer.allocateDirect(SPILL_BUFFER_SIZE);
+            } else {
+                buffer = ByteBuffer.allocate(1024 * elemSize);
+            }
+        }
+
+        boolean isFloatingPoint() {
+            return dataType == ProductData.TYPE_FLOAT32 || dataType == ProductData.TYPE_FLOAT64;
+        }
+
+        void addValue(String token) throws IOException {
+            ensureCapacity();
+            switch (dataType) {
+                case ProductData.TYPE_FLOAT32:
+                    buffer.putFloat(Float.parseFloat(token));
+                    break;
+                case ProductData.TYPE_FLOAT64:
+                    buffer.putDouble(Double.parseDouble(token));
+                    break;
+                case ProductData.TYPE_INT8:
+                    buffer.put(Byte.parseByte(token));
+                    break;
+                case ProductData.TYPE_INT16:
+                    buffer.putShort(Short.parseShort(token));
+                    break;
+                default:
+                    buffer.putInt(Integer.parseInt(token));
+            }
+        }
+
+        void addMissingValue() throws IOException {
+            ensureCapacity();
+            switch (dataType) {
+                case ProductData.TYPE_FLOAT32:
+                    buffer.putFloat(Float.NaN);
+                    break;
+                case ProductData.TYPE_FLOAT64:
+                    buffer.putDouble(Double.NaN);
+                    break;
+                case ProductData.TYPE_INT8:
+                    buffer.put((byte) 0);
+                    break;
+                case ProductData.TYPE_INT16:
+                    buffer.putShort((short) 0);
+                    break;
+                default:
+                    buffer.putInt(0);
+            }
+        }
+
+        private void ensureCapacity() throws IOException {
+            if (buffer.remaining() >= elemSize) {
+                return;
+            }
+            if (spillChannel != null) {
+                flush();
+            } else {
+                if (buffer.capacity() > Integer.MAX_VALUE / 2) {
+                    throw new IOException("Too many records for a column held in memory.");
+                }
+                final ByteBuffer newBuffer = ByteBuffer.allocate(2 * buffer.capacity());
+                buffer.flip();
+                newBuffer.put(buffer);
+                buffer = newBuffer;
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                spillChannel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void complete() throws IOException {
+            if (spillChannel != null) {
+                flush();
+                final long size = spillChannel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Too many records for a memory-mapped column.");
+                }
+                // the mapping stays valid after the channel is closed
+                buffer = spillChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                spillChannel.close();
+                spillChannel = null;
+            } else {
+                buffer.flip();
+            }
+        }
+
+        void read(int recordOffset, int recordStep, ProductData destBuffer, int destPos, int count) {
+            final ByteBuffer values = buffer.duplicate();
+            values.position(recordOffset * elemSize);
+            final Object elems = destBuffer.getElems();
+            if (recordStep == 1 && destBuffer.getType() == dataType) {
+                switch (dataType) {
+                    case ProductData.TYPE_FLOAT32:
+                        values.asFloatBuffer().get((float[]) elems, destPos, count);
+                        break;
+                    case ProductData.TYPE_FLOAT64:
+                        values.asDoubleBuffer().get((double[]) elems, destPos, count);
+                        break;
+                    case ProductData.TYPE_INT8:
+                        values.get((byte[]) elems, destPos, count);
+                        break;
+                    case ProductData.TYPE_INT16:
+                        values.asShortBuffer().get((short[]) elems, destPos, count);
+                        break;
+                    default:
+                        values.asIntBuffer().get((int[]) elems, destPos, count);
+                }
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                final int position = (recordOffset + i * recordStep) * elemSize;
+                switch (dataType) {
+                    case ProductData.TYPE_FLOAT32:
+                        destBuffer.setElemDoubleAt(destPos + i, values.getFloat(position));
+                        break;
+                    case ProductData.TYPE_FLOAT64:
+                        destBuffer.setElemDoubleAt(destPos + i, values.getDouble(position));
+                        break;
+                    case ProductData.TYPE_INT8:
+                        destBuffer.setElemIntAt(destPos + i, values.get(position));
+                        break;
+                    case ProductData.TYPE_INT16:
+                        destBuffer.setElemIntAt(destPos + i, values.getShort(position));
+                        break;
+                    default:
+                        destBuffer.setElemIntAt(destPos + i, values.getInt(position));
+                }
+            }
+        }
+
+        void dispose() {
+            try {
+                if (spillChannel != null) {
+                    spillChannel.close();
+                }
+            } catch (IOException ignore) {
+            }
+            // a mapped file cannot be deleted on every platform, it is deleted on exit then
+            if (spillFile != null) {
+                //noinspection ResultOfMethodCallIgnored
+                spillFile.delete();
+            }
+        }
+    }
+}
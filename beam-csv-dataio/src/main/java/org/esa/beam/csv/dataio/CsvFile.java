@@ -20,7 +20,9 @@ import com.bc.ceres.binding.ConversionException;
 import com.bc.ceres.binding.Converter;
 import com.bc.ceres.binding.ConverterRegistry;
 import com.sun.media.imageio.stream.FileChannelImageInputStream;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.text.SimpleDateFormat;
@@ -29,7 +31,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
+import java.util.NavigableMap;
 import java.util.TreeMap;
 import javax.imageio.stream.ImageInputStream;
 import org.esa.beam.dataio.geometry.VectorDataNodeIO;
@@ -60,9 +62,18 @@ public class CsvFile implements CsvSourceParser, CsvSource {
 
     public static final String DEFAULT_HEADER_NAME = "csv";
 
+    /**
+     * The number of records between two entries of the index of byte positions.
+     */
+    private static final int INDEX_INTERVAL = 1024;
+    /**
+     * The size of a file, above which its columns are spilled to temporary files.
+     */
+    private static final long MAX_HEAP_COLUMNS_FILE_SIZE = 256L * 1024 * 1024;
+
     private final Map<String, String> properties = new HashMap<String, String>();
     private final File csv;
-    private final SortedMap<Long, Long> bytePositionForOffset = new TreeMap<Long, Long>();
+    private final NavigableMap<Long, Long> bytePositionForOffset = new TreeMap<Long, Long>();
 
     private SimpleFeatureType simpleFeatureType;
     private FeatureCollection<SimpleFeatureType, SimpleFeature> featureCollection;
@@ -144,7 +155,9 @@ public class CsvFile implements CsvSourceParser, CsvSource {
                 BeamLogManager.getSystemLogger().warning(String.format("Problem in '%s': %s",
                         csv.getPath(), e.getMessage()));
             }
-            bytePositionForOffset.put(featureCount, stream.getStreamPosition());
+            if (featureCount % INDEX_INTERVAL == 0) {
+                bytePositionForOffset.put(featureCount, stream.getStreamPosition());
+            }
         }
         return values.toArray();
     }
@@ -190,11 +203,70 @@ public class CsvFile implements CsvSourceParser, CsvSource {
             }
             SimpleFeature simpleFeature = builder.buildFeature(featureId);
             featureCollection.add(simpleFeature);
-            bytePositionForOffset.put(featureCount, stream.getStreamPosition());
+            if (featureCount % INDEX_INTERVAL == 0) {
+                bytePositionForOffset.put(featureCount, stream.getStreamPosition());
+            }
         }
         recordsParsed = true;
     }
 
+    @Override
+    public CsvColumns parseColumns() throws IOException {
+        if (simpleFeatureType == null) {
+            throw new IllegalStateException("The metadata have not been parsed yet.");
+        }
+        final List<AttributeDescriptor> descriptors = simpleFeatureType.getAttributeDescriptors();
+        final List<String> names = new ArrayList<String>();
+        final List<Class<?>> types = new ArrayList<Class<?>>();
+        final List<Integer> tokenIndexes = new ArrayList<Integer>();
+        for (int i = 0; i < descriptors.size(); i++) {
+            final Class<?> type = descriptors.get(i).getType().getBinding();
+            if (type == Float.class || type == Double.class || type == Byte.class || type == Short.class ||
+                type == Integer.class) {
+                names.add(descriptors.get(i).getLocalName());
+                types.add(type);
+                tokenIndexes.add(i + (hasFeatureId ? 1 : 0));
+            }
+        }
+        final int expectedTokenCount = simpleFeatureType.getAttributeCount() + (hasFeatureId ? 1 : 0);
+
+        final CsvColumns columns = new CsvColumns(names.toArray(new String[names.size()]),
+                                                  types.toArray(new Class<?>[types.size()]),
+                                                  csv.length() > MAX_HEAP_COLUMNS_FILE_SIZE);
+        boolean completed = false;
+        try (LineReader reader = new LineReader(csv, propertiesByteSize + headerByteSize)) {
+            int recordCount = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] tokens = getTokens(line);
+                if (tokens.length != expectedTokenCount) {
+                    continue;
+                }
+                if (recordCount % INDEX_INTERVAL == 0) {
+                    bytePositionForOffset.put((long) recordCount, reader.getLineStart());
+                }
+                for (int i = 0; i < tokenIndexes.size(); i++) {
+                    String token = tokens[tokenIndexes.get(i)];
+                    if (VectorDataNodeIO.NULL_TEXT.equals(token)) {
+                        token = null;
+                    }
+                    if (!columns.addValue(i, token)) {
+                        BeamLogManager.getSystemLogger().warning(String.format("Problem in '%s': invalid number '%s'",
+                                csv.getPath(), token));
+                    }
+                }
+                recordCount++;
+            }
+            columns.complete(recordCount);
+            completed = true;
+            return columns;
+        } finally {
+            if (!completed) {
+                columns.dispose();
+            }
+        }
+    }
+
     @Override
     public CsvSource parseMetadata() throws IOException {
         parseProperties();
@@ -306,15 +378,11 @@ public class CsvFile implements CsvSourceParser, CsvSource {
     }
 
     private Map.Entry<Long, Long> getBestOffset(long lineOffset) {
-        Map.Entry<Long, Long> result = new AbstractMap.SimpleEntry<java.lang.Long, java.lang.Long>(0L, (long) propertiesByteSize + headerByteSize);
-        for (Map.Entry<Long, Long> entry : bytePositionForOffset.entrySet()) {
-            if (entry.getKey() > lineOffset) {
-                return result;
-            } else {
-                result = entry;
-            }
+        final Map.Entry<Long, Long> entry = bytePositionForOffset.floorEntry(lineOffset);
+        if (entry != null) {
+            return entry;
         }
-        return result;
+        return new AbstractMap.SimpleEntry<java.lang.Long, java.lang.Long>(0L, (long) propertiesByteSize + headerByteSize);
     }
 
     private void createFeatureType(String[] headerLine) throws IOException {
@@ -424,6 +492,75 @@ public class CsvFile implements CsvSourceParser, CsvSource {
         }
     }
 
+    /**
+     * Reads the lines of a file sequentially and keeps track of their byte positions. Characters are decoded
+     * like {@link ImageInputStream#readLine()} does.
+     */
+    private static class LineReader implements Closeable {
+
+        private final FileInputStream stream;
+        private final byte[] buffer = new byte[64 * 1024];
+        private final StringBuilder line = new StringBuilder();
+        private int bufferLength;
+        private int bufferPos;
+        private long position;
+        private long lineStart;
+
+        LineReader(File file, long position) throws IOException {
+            stream = new FileInputStream(file);
+            stream.getChannel().position(position);
+            this.position = position;
+        }
+
+        String readLine() throws IOException {
+            line.setLength(0);
+            lineStart = position;
+            int b;
+            while ((b = read()) != -1) {
+                if (b == '\n') {
+                    return line.toString();
+                }
+                if (b == '\r') {
+                    if (peek() == '\n') {
+                        read();
+                    }
+                    return line.toString();
+                }
+                line.append((char) b);
+            }
+            return position > lineStart ? line.toString() : null;
+        }
+
+        long getLineStart() {
+            return lineStart;
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+
+        private int read() throws IOException {
+            final int b = peek();
+            if (b != -1) {
+                bufferPos++;
+                position++;
+            }
+            return b;
+        }
+
+        private int peek() throws IOException {
+            if (bufferPos == bufferLength) {
+                bufferLength = Math.max(0, stream.read(buffer));
+                bufferPos = 0;
+                if (bufferLength == 0) {
+                    return -1;
+                }
+            }
+            return buffer[bufferPos] & 0xff;
+        }
+    }
+
     private class CsvJavaTypeConverter extends JavaTypeConverter {
 
         @Override
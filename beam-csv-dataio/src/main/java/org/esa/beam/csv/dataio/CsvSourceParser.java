@@ -51,6 +51,17 @@ public interface CsvSourceParser {
      */
     void parseRecords(int offset, int numRecords) throws IOException;
 
+    /**
+     * Parses all records once and stores the values of the numeric attributes column by column. Before calling
+     * this method, {@link CsvSourceParser#parseMetadata()} must have been called.
+     *
+     * @return The values of the numeric attributes. The caller has to dispose them.
+     * @throws IllegalStateException if this method is called before {@link CsvSourceParser#parseMetadata()} has
+     *                               been called.
+     * @throws IOException           if something goes wrong.
+     */
+    CsvColumns parseColumns() throws IOException;
+
     /**
      * @return A view on the {@link CsvSource} parsed using this interface.
      * @throws IOException if something goes wrong.
@@ -17,6 +17,7 @@
 package org.esa.beam.csv.dataio.reader;
 
 import com.bc.ceres.core.ProgressMonitor;
+import org.esa.beam.csv.dataio.CsvColumns;
 import org.esa.beam.csv.dataio.CsvFile;
 import org.esa.beam.csv.dataio.CsvSource;
 import org.esa.beam.csv.dataio.CsvSourceParser;
@@ -44,6 +45,7 @@ public class CsvProductReader extends AbstractProductReader {
     private static final String PROPERTY_NAME_SCENE_RASTER_WIDTH = "sceneRasterWidth";
 
     private CsvSourceParser parser;
+    private CsvColumns columns;
 
     /**
      * Constructs a new abstract product reader.
@@ -58,6 +60,12 @@ public class CsvProductReader extends AbstractProductReader {
     @Override
     public void close() throws IOException {
         super.close();
+        synchronized (this) {
+            if (columns != null) {
+                columns.dispose();
+                columns = null;
+            }
+        }
         if (parser != null) {
             parser.close();
         }
@@ -110,68 +118,30 @@ public class CsvProductReader extends AbstractProductReader {
         BeamLogManager.getSystemLogger().log(Level.FINEST, MessageFormat.format(
                 "reading band data (" + destBand.getName() + ") from {0} to {1}",
                 destOffsetY * destWidth, sourceOffsetY * destWidth + destWidth * destHeight));
-        pm.beginTask("reading band data...", destWidth * destHeight);
-
-        Object[] values;
-        synchronized (parser) {
-            values = parser.parseRecords(destOffsetY * destWidth, destWidth * destHeight, destBand.getName());
+        pm.beginTask("reading band data...", destHeight);
+        try {
+            final CsvColumns columns = getColumns();
+            final int sceneRasterWidth = destBand.getProduct().getSceneRasterWidth();
+            for (int y = 0; y < destHeight; y++) {
+                final int recordOffset = (sourceOffsetY + y * sourceStepY) * sceneRasterWidth + sourceOffsetX;
+                columns.readValues(destBand.getName(), recordOffset, sourceStepX, destBuffer, y * destWidth, destWidth);
+                pm.worked(1);
+            }
+        } finally {
+            pm.done();
         }
-        getProductData(values, destBuffer);
-        pm.done();
     }
 
-    void getProductData(Object[] elems, ProductData destBuffer) {
-        switch (destBuffer.getType()) {
-            case ProductData.TYPE_FLOAT32: {
-                for (int i = 0; i < destBuffer.getNumElems(); i++) {
-                    final Object elem;
-                    if (i < elems.length) {
-                        elem = elems[i] != null ? elems[i]  : Float.NaN;
-                    } else {
-                        elem = Float.NaN;
-                    }
-                    destBuffer.setElemFloatAt(i, (Float) elem);
-                }
-                break;
-            }
-            case ProductData.TYPE_FLOAT64: {
-                for (int i = 0; i < destBuffer.getNumElems(); i++) {
-                    final Object elem;
-                    if (i < elems.length) {
-                        elem = elems[i] != null ? elems[i]  : Double.NaN;
-                    } else {
-                        elem = Double.NaN;
-                    }
-                    destBuffer.setElemDoubleAt(i, (Double) elem);
-                }
-                break;
-            }
-            case ProductData.TYPE_INT8: {
-                for (int i = 0; i < elems.length; i++) {
-                    final Object elem = elems[i] != null ? elems[i]  : 0;
-                    destBuffer.setElemIntAt(i, (Byte) elem);
-                }
-                break;
-            }
-            case ProductData.TYPE_INT16: {
-                for (int i = 0; i < elems.length; i++) {
-                    final Object elem = elems[i] != null ? elems[i]  : 0;
-                    destBuffer.setElemIntAt(i, (Short) elem);
-                }
-                break;
-            }
-            case ProductData.TYPE_INT32: {
-                for (int i = 0; i < elems.length; i++) {
-                    final Object elem = elems[i] != null ? elems[i]  : 0;
-                    destBuffer.setElemIntAt(i, (Integer) elem);
-                }
-                break;
-            }
-            default: {
-                throw new IllegalArgumentException(
-                        "Unsupported type '" + ProductData.getTypeString(destBuffer.getType()) + "'.");
+    /**
+     * The records are parsed into columns once, when the data of the first band is read.
+     */
+    private synchronized CsvColumns getColumns() throws IOException {
+        if (columns == null) {
+            synchronized (parser) {
+                columns = parser.parseColumns();
             }
         }
+        return columns;
     }
 
     int getProductDataType(Class<?> type) {
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.csv.dataio;
+
+import org.esa.beam.framework.datamodel.ProductData;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class CsvColumnsTest {
+
+    @Test
+    public void testReadValues() throws IOException {
+        final CsvColumns columns = createColumns(false);
+        try {
+            assertValues(columns);
+        } finally {
+            columns.dispose();
+        }
+    }
+
+    @Test
+    public void testReadValues_spilled() throws IOException {
+        final CsvColumns columns = createColumns(true);
+        try {
+            assertValues(columns);
+        } finally {
+            columns.dispose();
+        }
+    }
+
+    private static CsvColumns createColumns(boolean spill) throws IOException {
+        final CsvColumns columns = new CsvColumns(new String[]{"radiance", "class"},
+                                                  new Class<?>[]{Float.class, Short.class}, spill);
+        for (int i = 0; i < 3000; i++) {
+            assertTrue(columns.addValue(0, String.valueOf(i * 0.5f)));
+            assertTrue(columns.addValue(1, String.valueOf(i % 100)));
+        }
+        assertTrue(columns.addValue(0, null));
+        assertFalse(columns.addValue(1, "abc"));
+        columns.complete(3001);
+        return columns;
+    }
+
+    private static void assertValues(CsvColumns columns) {
+        assertEquals(3001, columns.getRecordCount());
+        assertTrue(columns.hasColumn("radiance"));
+        assertFalse(columns.hasColumn("lat"));
+
+        final ProductData floats = ProductData.createInstance(ProductData.TYPE_FLOAT32, 4);
+        columns.readValues("radiance", 2998, 1, floats, 0, 4);
+        assertEquals(1499.0f, floats.getElemFloatAt(0), 1.0e-6f);
+        assertEquals(1499.5f, floats.getElemFloatAt(1), 1.0e-6f);
+        assertTrue(Float.isNaN(floats.getElemFloatAt(2)));
+        assertTrue(Float.isNaN(floats.getElemFloatAt(3)));
+
+        final ProductData shorts = ProductData.createInstance(ProductData.TYPE_INT16, 3);
+        columns.readValues("class", 99, 100, shorts, 0, 3);
+        assertEquals(99, shorts.getElemIntAt(0));
+        assertEquals(99, shorts.getElemIntAt(1));
+        assertEquals(99, shorts.getElemIntAt(2));
+
+        final ProductData ints = ProductData.createInstance(ProductData.TYPE_INT32, 2);
+        columns.readValues("class", 2999, 1, ints, 0, 2);
+        assertEquals(99, ints.getElemIntAt(0));
+        assertEquals(0, ints.getElemIntAt(1));
+    }
+}
@@ -324,6 +324,37 @@ public class CsvFileTest {
         assertTrue(propertyDescriptors[6].getType().getBinding().getSimpleName().matches(".*UTC"));
     }
 
+    @Test
+    public void testParseColumns() throws Exception {
+        final String simpleFormatExample = getClass().getResource("reader/simple_format_example.txt").getFile();
+        final CsvSourceParser parser = CsvFile.createCsvSourceParser(simpleFormatExample);
+        parser.parseMetadata();
+        final CsvColumns columns = parser.parseColumns();
+        try {
+            assertEquals(4, columns.getRecordCount());
+            assertTrue(columns.hasColumn("radiance_1"));
+            assertFalse(columns.hasColumn("station"));
+            assertFalse(columns.hasColumn("date_time"));
+
+            final ProductData data = ProductData.createInstance(ProductData.TYPE_FLOAT32, 5);
+            columns.readValues("radiance_1", 0, 1, data, 0, 5);
+            assertEquals(Float.NaN, data.getElemFloatAt(0), 1.0E-6);
+            assertEquals(18.3f, data.getElemFloatAt(1), 1.0E-6);
+            assertEquals(10.5f, data.getElemFloatAt(2), 1.0E-6);
+            assertEquals(11.5f, data.getElemFloatAt(3), 1.0E-6);
+            assertEquals(Float.NaN, data.getElemFloatAt(4), 1.0E-6);
+
+            // the columns are parsed once, records are still accessible through the parser
+            final Object[] values = parser.parseRecords(2, 2, "lat");
+            assertEquals(2, values.length);
+            assertEquals(40.0f, (Float) values[0], 1.0E-6);
+            assertEquals(41.0f, (Float) values[1], 1.0E-6);
+        } finally {
+            columns.dispose();
+            parser.close();
+        }
+    }
+
     private PropertyDescriptor[] toPropertyDescriptorArray(Collection<PropertyDescriptor> descriptors) {
         final Object[] objects = descriptors.toArray(new Object[descriptors.size()]);
         final PropertyDescriptor[] propertyDescriptors = new PropertyDescriptor[objects.length];
@@ -148,16 +148,6 @@ public class CsvProductReaderTest {
         return reader.readProductNodes(getClass().getResource(name).getFile(), null);
     }
 
-    @Test
-    public void testInvalidInput() throws Exception {
-        try {
-            ((CsvProductReader)reader).getProductData(null, new ProductData.UTC());
-            fail();
-        } catch (IllegalArgumentException expected) {
-            assertTrue(expected.getMessage().matches("Unsupported type.*"));
-        }
-    }
-
     @Test
     public void testGetDataType() throws Exception {
         assertEquals(ProductData.TYPE_ASCII, ((CsvProductReader)reader).getProductDataType(String.class));
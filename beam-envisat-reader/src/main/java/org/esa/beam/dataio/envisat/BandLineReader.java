@@ -257,12 +257,31 @@ public class BandLineReader {
      * @param destRasterPos the current line offset within the destination raster
      * @throws java.io.IOException if an I/O error occurs
      */
-    public synchronized void readRasterLine(final int sourceMinX,
-                                            final int sourceMaxX,
-                                            final int sourceStepX,
-                                            final int sourceY,
-                                            final ProductData destRaster,
-                                            final int destRasterPos) throws IOException {
+    public void readRasterLine(final int sourceMinX,
+                                final int sourceMaxX,
+                                final int sourceStepX,
+                                final int sourceY,
+                                final ProductData destRaster,
+                                final int destRasterPos) throws IOException {
+        final boolean measurement = getPixelDataReader().getDSD().getDatasetType() == EnvisatConstants.DS_TYPE_MEASUREMENT;
+        final MappedMds mappedMds = measurement && !isTiePointBased() ? getProductFile().getMappedMds() : null;
+        if (mappedMds != null) {
+            readRasterLine(sourceMinX, sourceMaxX, sourceStepX, sourceY, destRaster, destRasterPos, mappedMds);
+        } else {
+            // the pixel data field is shared
+            synchronized (this) {
+                readRasterLine(sourceMinX, sourceMaxX, sourceStepX, sourceY, destRaster, destRasterPos, null);
+            }
+        }
+    }
+
+    private void readRasterLine(final int sourceMinX,
+                                final int sourceMaxX,
+                                final int sourceStepX,
+                                final int sourceY,
+                                final ProductData destRaster,
+                                final int destRasterPos,
+                                final MappedMds mappedMds) throws IOException {
         final ProductFile productFile = getProductFile();
         final int mappedMdsrIndex = productFile.getMappedMDSRIndex(sourceY);
         if (mappedMdsrIndex >= 0 && mappedMdsrIndex <= _maxRecordIndex) {
@@ -284,10 +303,17 @@ public class BandLineReader {
                 sMaxX = _bandInfo.getWidth() - 1 - sourceMinX;
             }
 
-            readDataFieldSegment(sourceY, sMinX, sMaxX);
+            final Object sourceElems;
+            if (mappedMds != null) {
+                sourceElems = getPixelDataReader().readFieldElems(sourceY, fieldOffset, getPixelDataField(),
+                                                                  mappedMds);
+            } else {
+                readDataFieldSegment(sourceY, sMinX, sMaxX);
+                sourceElems = getPixelDataField().getElems();
+            }
 
             ensureBandLineDecoder().computeLine(
-                    getPixelDataField().getElems(),
+                    sourceElems,
                     sMinX,
                     sMaxX,
                     sourceStepX,
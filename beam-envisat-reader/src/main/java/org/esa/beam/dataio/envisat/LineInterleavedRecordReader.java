@@ -87,7 +87,7 @@ class LineInterleavedRecordReader extends RecordReader {
         if (getDSD().getDatasetType() == 'M') {
             index = productFile.getMappedMDSRIndex(index);
         }
-        long pos = headerSize + index * recordLength + recordOffset;
+        long pos = getRecordPosition(index);
         final ImageInputStream istream = productFile.getDataInputStream();
         synchronized (istream) {
             istream.seek(pos);
@@ -96,6 +96,11 @@ class LineInterleavedRecordReader extends RecordReader {
         return record;
     }
 
+    @Override
+    long getRecordPosition(int index) {
+        return headerSize + index * recordLength + recordOffset;
+    }
+
     /**
      * Reads a segment of a single field from the record with the given zero-based index from from the product file.
      * <p/>
@@ -117,9 +122,7 @@ class LineInterleavedRecordReader extends RecordReader {
         if (getDSD().getDatasetType() == 'M') {
             sourceY = getProductFile().getMappedMDSRIndex(sourceY);
         }
-        long pos = headerSize +
-                    sourceY * recordLength +
-                    recordOffset +
+        long pos = getRecordPosition(sourceY) +
                     fieldOffset +
                     minX * dataFieldSampleSize * field.getData().getElemSize();
 //        System.out.println("sourceY = " + sourceY+"; pos = " + pos);
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.envisat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The measurement datasets (MDS) of an ENVISAT product file, mapped into memory.
+ * <p/>
+ * The file is mapped from the first MDS to its end, in chunks which overlap by the size of the largest record.
+ * So any segment of a record lies completely within one chunk. Reading does not change any state, so
+ * concurrent reads need no synchronisation.
+ */
+class MappedMds {
+
+    private static final long CHUNK_SIZE = 1L << 30;
+
+    private final long startPosition;
+    private final ByteBuffer[] chunks;
+
+    private MappedMds(long startPosition, ByteBuffer[] chunks) {
+        this.startPosition = startPosition;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Maps the measurement datasets of a product file.
+     *
+     * @param file          The product file.
+     * @param startPosition The position of the first MDS in the file.
+     * @param maxRecordSize The size of the largest MDS record.
+     *
+     * @return The mapped datasets.
+     *
+     * @throws IOException if the file cannot be mapped.
+     */
+    static MappedMds create(File file, long startPosition, int maxRecordSize) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            final FileChannel channel = raf.getChannel();
+            final long size = channel.size() - startPosition;
+            final int numChunks = (int) Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            final ByteBuffer[] chunks = new ByteBuffer[numChunks];
+            for (int i = 0; i < numChunks; i++) {
+                final long position = startPosition + i * CHUNK_SIZE;
+                final long length = Math.min(CHUNK_SIZE + maxRecordSize, channel.size() - position);
+                // the mapping stays valid after the channel is closed
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.max(0, length));
+            }
+            return new MappedMds(startPosition, chunks);
+        }
+    }
+
+    /**
+     * Reads elements stored in big endian byte order.
+     *
+     * @param position The position of the first element in the file.
+     * @param elems    Receives the elements, an array of a primitive number type.
+     *
+     * @throws IOException if the elements are not within the mapped datasets.
+     */
+    void read(long position, Object elems) throws IOException {
+        if (position < startPosition) {
+            throw new IOException("Position " + position + " is not within a measurement dataset.");
+        }
+        final long offset = position - startPosition;
+        final int chunkIndex = (int) Math.min(chunks.length - 1, offset / CHUNK_SIZE);
+        final ByteBuffer chunk = chunks[chunkIndex].duplicate();
+        final long chunkOffset = offset - chunkIndex * CHUNK_SIZE;
+        if (chunkOffset > chunk.limit()) {
+            throw new IOException("Position " + position + " is not within a measurement dataset.");
+        }
+        chunk.position((int) chunkOffset);
+        try {
+            if (elems instanceof byte[]) {
+                chunk.get((byte[]) elems);
+            } else if (elems instanceof short[]) {
+                chunk.asShortBuffer().get((short[]) elems);
+            } else if (elems instanceof int[]) {
+                chunk.asIntBuffer().get((int[]) elems);
+            } else if (elems instanceof float[]) {
+                chunk.asFloatBuffer().get((float[]) elems);
+            } else if (elems instanceof long[]) {
+                chunk.asLongBuffer().get((long[]) elems);
+            } else if (elems instanceof double[]) {
+                chunk.asDoubleBuffer().get((double[]) elems);
+            } else {
+                throw new IllegalArgumentException("Unsupported element type " + elems.getClass());
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Position " + position + " is not within a measurement dataset.", e);
+        }
+    }
+}
@@ -57,6 +57,12 @@ public abstract class ProductFile {
      */
     public static final String KEY_SENSING_STOP = "SENSING_STOP";
 
+    /**
+     * The system property which, if set to <code>false</code>, disables reading the measurement datasets from
+     * memory mapped files.
+     */
+    public static final String PROPERTY_KEY_MAPPED_MDS = "beam.envisat.mappedMds";
+
     /**
      * The abstract file path representation.
      */
@@ -161,6 +167,12 @@ public abstract class ProductFile {
 
     private final boolean lineInterleaved;
 
+    /**
+     * The mapped measurement datasets, created on demand.
+     */
+    private volatile MappedMds mappedMds;
+    private volatile boolean mappedMdsInitialized;
+
     /**
      * Constructs a <code>ProductFile</code> for the given seekable data input stream.
      *
@@ -842,6 +854,54 @@ public abstract class ProductFile {
         synchronized (dataInputStream) {
             dataInputStream.close();
         }
+        synchronized (this) {
+            // subsequent reads fail on the closed stream instead
+            mappedMds = null;
+            mappedMdsInitialized = true;
+        }
+    }
+
+    /**
+     * Gets the measurement datasets mapped into memory. Reading from them needs no synchronisation.
+     * <p/>
+     * <p> Mapping is only possible if the product is read directly from a file and if it is not disabled by the
+     * system property {@link #PROPERTY_KEY_MAPPED_MDS}.
+     *
+     * @return the mapped measurement datasets, or <code>null</code> if they cannot be mapped.
+     */
+    MappedMds getMappedMds() {
+        if (!mappedMdsInitialized) {
+            synchronized (this) {
+                if (!mappedMdsInitialized) {
+                    mappedMds = createMappedMds();
+                    mappedMdsInitialized = true;
+                }
+            }
+        }
+        return mappedMds;
+    }
+
+    private MappedMds createMappedMds() {
+        if (file == null || !(dataInputStream instanceof FileImageInputStream)
+            || !Boolean.parseBoolean(System.getProperty(PROPERTY_KEY_MAPPED_MDS, "true"))) {
+            return null;
+        }
+        final DSD[] mdsDsds = getValidDSDs(EnvisatConstants.DS_TYPE_MEASUREMENT);
+        if (mdsDsds.length == 0) {
+            return null;
+        }
+        long startPosition = Long.MAX_VALUE;
+        int maxRecordSize = 0;
+        for (DSD dsd : mdsDsds) {
+            startPosition = Math.min(startPosition, dsd.getDatasetOffset());
+            maxRecordSize = Math.max(maxRecordSize, dsd.getRecordSize());
+        }
+        try {
+            return MappedMds.create(file, startPosition, maxRecordSize);
+        } catch (IOException e) {
+            logger.warning("Cannot map measurement datasets of '" + file.getPath() + "': " + e.getMessage());
+            return null;
+        }
     }
 
     /**
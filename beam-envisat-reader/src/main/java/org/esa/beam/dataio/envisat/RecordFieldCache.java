@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.envisat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small cache of the raw elements of a record field, record by record. The elements are cached as stored in
+ * the product, before they are converted into band samples. The least recently used record is dropped when the
+ * cache is full. Bands whose samples are stored in the same field, such as the flags and detector index of
+ * MERIS L1b, are served by the same cached elements.
+ */
+class RecordFieldCache {
+
+    private static final long MAX_CACHE_SIZE = 4L * 1024 * 1024;
+    private static final int MIN_NUM_RECORDS = 16;
+
+    private final Map<Integer, Object> records;
+
+    /**
+     * @param fieldSize The size of the field elements of a record in bytes.
+     */
+    RecordFieldCache(int fieldSize) {
+        final int maxNumRecords = (int) Math.max(MIN_NUM_RECORDS, MAX_CACHE_SIZE / Math.max(1, fieldSize));
+        records = new LinkedHashMap<Integer, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Object> eldest) {
+                return size() > maxNumRecords;
+            }
+        };
+    }
+
+    /**
+     * @return the raw field elements of the record with the given index, or {@code null} if they are not cached.
+     */
+    synchronized Object get(int recordIndex) {
+        return records.get(recordIndex);
+    }
+
+    synchronized void put(int recordIndex, Object elems) {
+        records.put(recordIndex, elems);
+    }
+}
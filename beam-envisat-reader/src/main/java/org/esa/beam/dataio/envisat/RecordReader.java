@@ -17,8 +17,12 @@ package org.esa.beam.dataio.envisat;
 
 import org.esa.beam.util.Debug;
 
+import org.esa.beam.framework.datamodel.ProductData;
+
 import javax.imageio.stream.ImageInputStream;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * A <code>RecordReader</code> instance is used read records of for a particular dataset contained in an ENVISAT product
@@ -63,6 +67,11 @@ public class RecordReader {
      */
     private final RecordInfo _recordInfo;
 
+    /**
+     * The caches of raw field elements, by field offset.
+     */
+    private final Map<Long, RecordFieldCache> _recordFieldCaches = new HashMap<Long, RecordFieldCache>();
+
     /**
      * Constructs a new dataset reader for ENVISAT products.
      *
@@ -164,7 +173,7 @@ public class RecordReader {
         if (_dsd.getDatasetType() == 'M') {
             index = _productFile.getMappedMDSRIndex(index);
         }
-        final long pos = _dsd.getDatasetOffset() + (index * _dsd.getRecordSize());
+        final long pos = getRecordPosition(index);
         final ImageInputStream istream = _productFile.getDataInputStream();
         synchronized (istream) {
             istream.seek(pos);
@@ -173,6 +182,18 @@ public class RecordReader {
         return record;
     }
 
+    /**
+     * Gets the position of a record in the product file.
+     *
+     * @param index the index of the record in the file, that is after mapping it with
+     *              {@link ProductFile#getMappedMDSRIndex(int)}.
+     *
+     * @return the position in bytes
+     */
+    long getRecordPosition(int index) {
+        return _dsd.getDatasetOffset() + ((long) index * _dsd.getRecordSize());
+    }
+
     /**
      * Factory method which creates a new record wich is compatible to the record description which was passed to the
      * constructor. <p> The method is a shortcut for <code>getRecordInfo().createRecord()</code>.
@@ -204,8 +225,7 @@ public class RecordReader {
         if (_dsd.getDatasetType() == 'M') {
             sourceY = _productFile.getMappedMDSRIndex(sourceY);
         }
-        final long pos = _dsd.getDatasetOffset() + 
-        					sourceY * _dsd.getRecordSize() + 
+        final long pos = getRecordPosition(sourceY) +
         					fieldOffset + 
         					minX * dataFieldSampleSize * field.getData().getElemSize();
         final ImageInputStream istream = _productFile.getDataInputStream();
@@ -216,5 +236,45 @@ public class RecordReader {
         
     }
 
-}
+    /**
+     * Gets the raw elements of a field of the record with the given zero-based index from the mapped
+     * measurement datasets.
+     * <p/>
+     * <p> Unlike {@link #readFieldSegment}, the method does not modify the given field, it is only used as a template.
+     * The returned array is shared with other callers and must not be modified. The method is thread-safe.
+     *
+     * @param sourceY     the record index, must be <code>&gt;=0</code> and <code>&lt;getDSD().getDatasetOffset()</code>
+     * @param fieldOffset the offset in byte the field has in its containing record
+     * @param field       the field
+     * @param mappedMds   the mapped measurement datasets of the product file
+     *
+     * @return the elements of the field, an array of the type of <code>field.getData().getElems()</code>
+     *
+     * @throws java.io.IOException if an I/O error occurs
+     */
+    Object readFieldElems(int sourceY, long fieldOffset, Field field, MappedMds mappedMds) throws IOException {
+        if (_dsd.getDatasetType() == 'M') {
+            sourceY = _productFile.getMappedMDSRIndex(sourceY);
+        }
+        final ProductData data = field.getData();
+        final RecordFieldCache cache = getRecordFieldCache(fieldOffset, data.getElemSize() * data.getNumElems());
+        Object elems = cache.get(sourceY);
+        if (elems == null) {
+            elems = ProductData.createInstance(data.getType(), data.getNumElems()).getElems();
+            mappedMds.read(getRecordPosition(sourceY) + fieldOffset, elems);
+            cache.put(sourceY, elems);
+        }
+        return elems;
+    }
 
+    private RecordFieldCache getRecordFieldCache(long fieldOffset, int fieldSize) {
+        synchronized (_recordFieldCaches) {
+            RecordFieldCache cache = _recordFieldCaches.get(fieldOffset);
+            if (cache == null) {
+                cache = new RecordFieldCache(fieldSize);
+                _recordFieldCaches.put(fieldOffset, cache);
+            }
+            return cache;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.envisat;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.beam.GlobalTestConfig;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.datamodel.VirtualBand;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class MappedMdsTest {
+
+    private static final int HEADER_SIZE = 100;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("mds", ".N1");
+        try (DataOutputStream output = new DataOutputStream(new FileOutputStream(file))) {
+            output.write(new byte[HEADER_SIZE]);
+            for (int i = 0; i < 10; i++) {
+                output.writeShort(i);
+            }
+            output.writeFloat(1.5f);
+            output.writeFloat(-2.25f);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        final MappedMds mappedMds = MappedMds.create(file, HEADER_SIZE, 20);
+
+        final short[] shorts = new short[4];
+        mappedMds.read(HEADER_SIZE + 6, shorts);
+        assertArrayEquals(new short[]{3, 4, 5, 6}, shorts);
+
+        final float[] floats = new float[2];
+        mappedMds.read(HEADER_SIZE + 20, floats);
+        assertArrayEquals(new float[]{1.5f, -2.25f}, floats, 0.0f);
+
+        final byte[] bytes = new byte[2];
+        mappedMds.read(HEADER_SIZE + 18, bytes);
+        assertArrayEquals(new byte[]{0, 9}, bytes);
+    }
+
+    @Test
+    public void testReadOutsideOfDatasets() throws IOException {
+        final MappedMds mappedMds = MappedMds.create(file, HEADER_SIZE, 20);
+        try {
+            mappedMds.read(HEADER_SIZE - 2, new short[1]);
+            fail();
+        } catch (IOException expected) {
+        }
+        try {
+            mappedMds.read(HEADER_SIZE + 26, new float[1]);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testRecordFieldCache() {
+        final RecordFieldCache cache = new RecordFieldCache(1024 * 1024);
+        for (int i = 0; i < 20; i++) {
+            cache.put(i, new short[]{(short) i});
+        }
+        assertNull(cache.get(0));
+        assertNull(cache.get(3));
+        assertArrayEquals(new short[]{4}, (short[]) cache.get(4));
+        assertArrayEquals(new short[]{19}, (short[]) cache.get(19));
+    }
+
+    @Test
+    public void testMappedAndStreamedRasterLinesAreEqual() throws IOException {
+        final File productFile = GlobalTestConfig.getBeamTestDataInputFile(
+                "Envisat/data/MERIS/L1b/MER_RR__1PNPDK20020421_104345_000002702005_00180_00735_1618.N1");
+        Assume.assumeTrue(productFile.exists());
+
+        final EnvisatProductReaderPlugIn plugIn = new EnvisatProductReaderPlugIn();
+        final EnvisatProductReader mappedReader = (EnvisatProductReader) plugIn.createReaderInstance();
+        final EnvisatProductReader streamedReader = (EnvisatProductReader) plugIn.createReaderInstance();
+        try {
+            // the property is evaluated when the mapping is requested for the first time
+            System.setProperty(ProductFile.PROPERTY_KEY_MAPPED_MDS, "true");
+            final Product mappedProduct = mappedReader.readProductNodes(productFile, null);
+            assertNotNull(mappedReader.getProductFile().getMappedMds());
+            System.setProperty(ProductFile.PROPERTY_KEY_MAPPED_MDS, "false");
+            final Product streamedProduct = streamedReader.readProductNodes(productFile, null);
+            assertNull(streamedReader.getProductFile().getMappedMds());
+
+            final int width = mappedProduct.getSceneRasterWidth();
+            final int height = mappedProduct.getSceneRasterHeight();
+            for (int i = 0; i < mappedProduct.getNumBands(); i++) {
+                final Band mappedBand = mappedProduct.getBandAt(i);
+                if (mappedBand instanceof VirtualBand) {
+                    continue;
+                }
+                final Band streamedBand = streamedProduct.getBand(mappedBand.getName());
+                final ProductData mappedLine = mappedBand.createCompatibleRasterData(width, 1);
+                final ProductData streamedLine = streamedBand.createCompatibleRasterData(width, 1);
+                for (int y = 0; y < height; y += 7) {
+                    mappedReader.readBandRasterData(mappedBand, 0, y, width, 1, mappedLine, ProgressMonitor.NULL);
+                    streamedReader.readBandRasterData(streamedBand, 0, y, width, 1, streamedLine,
+                                                      ProgressMonitor.NULL);
+                    for (int x = 0; x < width; x++) {
+                        assertEquals(mappedBand.getName() + " at " + x + ", " + y,
+                                     streamedLine.getElemDoubleAt(x), mappedLine.getElemDoubleAt(x), 0.0);
+                    }
+                }
+            }
+        } finally {
+            System.clearProperty(ProductFile.PROPERTY_KEY_MAPPED_MDS);
+            mappedReader.close();
+            streamedReader.close();
+        }
+    }
+}
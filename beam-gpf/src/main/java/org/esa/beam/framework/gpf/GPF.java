@@ -51,6 +51,7 @@ public class GPF {
     public static final String DISABLE_TILE_CACHE_PROPERTY = "beam.gpf.disableTileCache";
     public static final String USE_FILE_TILE_CACHE_PROPERTY = "beam.gpf.useFileTileCache";
     public static final String TILE_COMPUTATION_OBSERVER_PROPERTY = "beam.gpf.tileComputationObserver";
+    public static final String USE_WORK_STEALING_TILE_SCHEDULER_PROPERTY = "beam.gpf.useWorkStealingTileScheduler";
 
     public static final String SOURCE_PRODUCT_FIELD_NAME = "sourceProduct";
     public static final String TARGET_PRODUCT_FIELD_NAME = "targetProduct";
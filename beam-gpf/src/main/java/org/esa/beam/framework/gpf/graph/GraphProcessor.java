@@ -20,8 +20,10 @@ import com.bc.ceres.core.ProgressMonitor;
 import com.bc.ceres.core.SubProgressMonitor;
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.gpf.GPF;
 import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.framework.gpf.internal.OperatorContext;
+import org.esa.beam.framework.gpf.internal.WorkStealingTileScheduler;
 import org.esa.beam.util.logging.BeamLogManager;
 import org.esa.beam.util.math.MathUtils;
 
@@ -42,6 +44,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -166,6 +169,18 @@ public class GraphProcessor {
 
         final TileScheduler tileScheduler = JAI.getDefaultInstance().getTileScheduler();
         final int parallelism = tileScheduler.getParallelism();
+        if (Boolean.getBoolean(GPF.USE_WORK_STEALING_TILE_SCHEDULER_PROPERTY)) {
+            try {
+                pm.beginTask("Computing raster data...", numPmTicks);
+                computeTilesWorkStealing(graphContext, dimList, tileDimMap, parallelism, pm);
+            } finally {
+                pm.done();
+                JAI.getDefaultInstance().setImagingListener(imagingListener);
+                fireProcessingStopped(graphContext);
+            }
+            return graphContext.getOutputProducts();
+        }
+
         final Semaphore semaphore = new Semaphore(parallelism, true);
         final TileComputationListener tcl = new GraphTileComputationListener(semaphore, parallelism);
         final TileComputationListener[] listeners = new TileComputationListener[]{tcl};
@@ -189,48 +204,10 @@ public class GraphProcessor {
                                                                 tileSize.height);
                         fireTileStarted(graphContext, tileRectangle);
                         for (NodeContext nodeContext : nodeContextList) {
-                            Product targetProduct = nodeContext.getTargetProduct();
-                            if (nodeContext.canComputeTileStack()) {
-
-                                // (1) Pull tile from first OperatorImage we find. This will trigger pulling
-                                // tiles of all other OperatorImage computed stack-wise.
-                                //
-                                for (Band band : targetProduct.getBands()) {
-                                    PlanarImage image = nodeContext.getTargetImage(band);
-                                    if (image != null) {
-                                        forceTileComputation(image, tileX, tileY, semaphore, tileScheduler, listeners,
-                                                             parallelism);
-                                        break;
-                                    }
-                                }
-
-                                // (2) Pull tile from source images of other regular bands.
-                                //
-                                for (Band band : targetProduct.getBands()) {
-                                    PlanarImage image = nodeContext.getTargetImage(band);
-                                    if (image == null) {
-                                        if (OperatorContext.isRegularBand(band) && band.isSourceImageSet()) {
-                                            forceTileComputation(band.getSourceImage(), tileX, tileY, semaphore,
-                                                                 tileScheduler, listeners, parallelism);
-                                        }
-                                    }
-                                }
-                            } else {
-
-                                // Simply pull tile from source images of regular bands.
-                                //
-                                for (Band band : targetProduct.getBands()) {
-                                    PlanarImage image = nodeContext.getTargetImage(band);
-                                    if (image != null) {
-                                        forceTileComputation(image, tileX, tileY, semaphore, tileScheduler, listeners,
-                                                             parallelism);
-                                    } else if (OperatorContext.isRegularBand(band) && band.isSourceImageSet()) {
-                                        forceTileComputation(band.getSourceImage(), tileX, tileY, semaphore,
-                                                             tileScheduler, listeners, parallelism);
-                                    }
-                                }
+                            for (PlanarImage image : getTileImages(nodeContext)) {
+                                forceTileComputation(image, tileX, tileY, semaphore, tileScheduler, listeners,
+                                                     parallelism);
                             }
-
                             pm.worked(1);
                         }
                         fireTileStopped(graphContext, tileRectangle);
@@ -270,6 +247,131 @@ public class GraphProcessor {
         return tileSizeMap;
     }
 
+    private void computeTilesWorkStealing(GraphContext graphContext, List<Dimension> dimList,
+                                          Map<Dimension, List<NodeContext>> tileDimMap, int parallelism,
+                                          ProgressMonitor pm) {
+        final WorkStealingTileScheduler scheduler = new WorkStealingTileScheduler(parallelism);
+        try {
+            for (Dimension dimension : dimList) {
+                List<NodeContext> nodeContextList = tileDimMap.get(dimension);
+                final List<List<PlanarImage>> nodeImages = new ArrayList<List<PlanarImage>>(nodeContextList.size());
+                for (NodeContext nodeContext : nodeContextList) {
+                    nodeImages.add(getTileImages(nodeContext));
+                }
+                final int numXTiles = dimension.width;
+                final int numYTiles = dimension.height;
+                Dimension tileSize = nodeContextList.get(0).getTargetProduct().getPreferredTileSize();
+                for (int tileY = 0; tileY < numYTiles; tileY++) {
+                    if (pm.isCanceled()) {
+                        return;
+                    }
+                    if (error != null) {
+                        throw error;
+                    }
+                    final List<Runnable> tiles = new ArrayList<Runnable>();
+                    final Rectangle[] tileRectangles = new Rectangle[numXTiles];
+                    for (int tileX = 0; tileX < numXTiles; tileX++) {
+                        tileRectangles[tileX] = new Rectangle(tileX * tileSize.width,
+                                                              tileY * tileSize.height,
+                                                              tileSize.width,
+                                                              tileSize.height);
+                        fireTileStarted(graphContext, tileRectangles[tileX]);
+                        addTileTasks(nodeImages, tileX, tileY, pm, tiles);
+                    }
+                    scheduler.scheduleRow(tiles.toArray(new Runnable[tiles.size()]));
+                    for (Rectangle tileRectangle : tileRectangles) {
+                        fireTileStopped(graphContext, tileRectangle);
+                    }
+                }
+            }
+            scheduler.awaitCompletion();
+            if (error != null) {
+                throw error;
+            }
+            logger.info(scheduler.getStatistics());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * Adds a task for the tile of each image of each output node, so that the bands of a tile are computed in
+     * parallel, as with the JAI tile scheduler. The progress monitor is advanced when all images of a node
+     * have been computed.
+     */
+    private static void addTileTasks(List<List<PlanarImage>> nodeImages, final int tileX, final int tileY,
+                                     final ProgressMonitor pm, List<Runnable> tasks) {
+        for (List<PlanarImage> images : nodeImages) {
+            if (images.isEmpty()) {
+                pm.worked(1);
+                continue;
+            }
+            final AtomicInteger remainingImages = new AtomicInteger(images.size());
+            for (final PlanarImage image : images) {
+                tasks.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        /////////////////////////////////////////////////////////////////////
+                        //
+                        // Note: GPF pull-processing is triggered here!!!
+                        //
+                        image.getTile(tileX, tileY);
+                        //
+                        /////////////////////////////////////////////////////////////////////
+                        if (remainingImages.decrementAndGet() == 0) {
+                            pm.worked(1);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Gets the images whose tiles are pulled for the given output node, in the order they are pulled.
+     */
+    private static List<PlanarImage> getTileImages(NodeContext nodeContext) {
+        final Product targetProduct = nodeContext.getTargetProduct();
+        final List<PlanarImage> images = new ArrayList<PlanarImage>();
+        if (nodeContext.canComputeTileStack()) {
+
+            // (1) Pull tile from first OperatorImage we find. This will trigger pulling
+            // tiles of all other OperatorImage computed stack-wise.
+            //
+            for (Band band : targetProduct.getBands()) {
+                PlanarImage image = nodeContext.getTargetImage(band);
+                if (image != null) {
+                    images.add(image);
+                    break;
+                }
+            }
+
+            // (2) Pull tile from source images of other regular bands.
+            //
+            for (Band band : targetProduct.getBands()) {
+                PlanarImage image = nodeContext.getTargetImage(band);
+                if (image == null) {
+                    if (OperatorContext.isRegularBand(band) && band.isSourceImageSet()) {
+                        images.add(band.getSourceImage());
+                    }
+                }
+            }
+        } else {
+
+            // Simply pull tile from source images of regular bands.
+            //
+            for (Band band : targetProduct.getBands()) {
+                PlanarImage image = nodeContext.getTargetImage(band);
+                if (image != null) {
+                    images.add(image);
+                } else if (OperatorContext.isRegularBand(band) && band.isSourceImageSet()) {
+                    images.add(band.getSourceImage());
+                }
+            }
+        }
+        return images;
+    }
+
     private void forceTileComputation(PlanarImage image, int tileX, int tileY, Semaphore semaphore,
                                       TileScheduler tileScheduler, TileComputationListener[] listeners,
                                       int parallelism) {
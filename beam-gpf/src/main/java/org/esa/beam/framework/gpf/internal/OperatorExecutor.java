@@ -18,6 +18,7 @@ package org.esa.beam.framework.gpf.internal;
 import com.bc.ceres.core.ProgressMonitor;
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.gpf.GPF;
 import org.esa.beam.framework.gpf.Operator;
 import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.util.logging.BeamLogManager;
@@ -41,7 +42,8 @@ import java.util.concurrent.Semaphore;
  * This executor triggers the computation of all tiles that the bands of the
  * target product of the given operator have. The computation of these tiles is
  * parallelized to use all available CPUs (cores) using the JAI
- * {@link TileScheduler}.
+ * {@link TileScheduler}, or using a {@link WorkStealingTileScheduler} if the System property
+ * {@link GPF#USE_WORK_STEALING_TILE_SCHEDULER_PROPERTY} is set to {@code true}.
  *
  * @author Marco Zuehlke
  * @since BEAM 4.7
@@ -122,6 +124,17 @@ public class OperatorExecutor {
 
         ExecutionOrder effectiveExecutionOrder = getEffectiveExecutionOrder(executionOrder);
 
+        if (Boolean.getBoolean(GPF.USE_WORK_STEALING_TILE_SCHEDULER_PROPERTY)
+            && effectiveExecutionOrder != ExecutionOrder.PULL_ROW_BAND_COLUMN) {
+            try {
+                executeWorkStealing(effectiveExecutionOrder, pm);
+            } finally {
+                pm.done();
+                JAI.getDefaultInstance().setImagingListener(imagingListener);
+            }
+            return;
+        }
+
         try {
             if (effectiveExecutionOrder == ExecutionOrder.SCHEDULE_ROW_BAND_COLUMN) {
                 scheduleRowBandColumn(semaphore, listeners, pm);
@@ -206,6 +219,86 @@ public class OperatorExecutor {
         }
     }
 
+    private void executeWorkStealing(ExecutionOrder executionOrder, ProgressMonitor pm) {
+        final WorkStealingTileScheduler scheduler = new WorkStealingTileScheduler(parallelism);
+        if (scheduleRowsSeparate) {
+            // rows are separated when the writer flushes the whole tile cache after each row, so the tiles
+            // of a next row in progress would be flushed, too
+            scheduler.setMaxRowsInProgress(1);
+        }
+        try {
+            if (executionOrder == ExecutionOrder.SCHEDULE_ROW_BAND_COLUMN) {
+                for (int tileY = 0; tileY < tileCountY; tileY++) {
+                    final Runnable[] tiles = new Runnable[images.length * tileCountX];
+                    for (int i = 0; i < images.length; i++) {
+                        for (int tileX = 0; tileX < tileCountX; tileX++) {
+                            tiles[i * tileCountX + tileX] = createTileTask(new PlanarImage[]{images[i]},
+                                                                           tileX, tileY, pm);
+                        }
+                    }
+                    scheduleRow(scheduler, tiles, pm);
+                }
+            } else if (executionOrder == ExecutionOrder.SCHEDULE_ROW_COLUMN_BAND) {
+                for (int tileY = 0; tileY < tileCountY; tileY++) {
+                    final Runnable[] tiles = new Runnable[images.length > 0 ? tileCountX : 0];
+                    for (int tileX = 0; tileX < tiles.length; tileX++) {
+                        // the first image triggers the computation of the tile stack
+                        tiles[tileX] = createTileTask(images, tileX, tileY, pm);
+                    }
+                    scheduleRow(scheduler, tiles, pm);
+                }
+            } else if (executionOrder == ExecutionOrder.SCHEDULE_BAND_ROW_COLUMN) {
+                for (final PlanarImage image : images) {
+                    for (int tileY = 0; tileY < tileCountY; tileY++) {
+                        final Runnable[] tiles = new Runnable[tileCountX];
+                        for (int tileX = 0; tileX < tileCountX; tileX++) {
+                            tiles[tileX] = createTileTask(new PlanarImage[]{image}, tileX, tileY, pm);
+                        }
+                        scheduleRow(scheduler, tiles, pm);
+                    }
+                }
+            } else {
+                throw new IllegalArgumentException("executionOrder");
+            }
+            scheduler.awaitCompletion();
+            if (error != null) {
+                throw error;
+            }
+            BeamLogManager.getSystemLogger().info(scheduler.getStatistics());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private void scheduleRow(WorkStealingTileScheduler scheduler, Runnable[] tiles, ProgressMonitor pm) {
+        checkForCancelation(pm);
+        if (error != null) {
+            throw error;
+        }
+        scheduler.scheduleRow(tiles);
+    }
+
+    private Runnable createTileTask(final PlanarImage[] tileImages, final int tileX, final int tileY,
+                                    final ProgressMonitor pm) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                for (PlanarImage image : tileImages) {
+                    BeamLogManager.getSystemLogger().finest(String.format("Computing tile x=%d/%d y=%d/%d for %s",
+                                                                          tileX + 1, tileCountX, tileY + 1, tileCountY, image));
+                    /////////////////////////////////////////////////////////////////////
+                    //
+                    // Note: GPF pull-processing is triggered here!!!
+                    //
+                    image.getTile(tileX, tileY);
+                    //
+                    /////////////////////////////////////////////////////////////////////
+                    pm.worked(1);
+                }
+            }
+        };
+    }
+
     private void scheduleTile(final PlanarImage image, int tileX, int tileY, Semaphore semaphore,
                               TileComputationListener[] listeners, ProgressMonitor pm) {
 
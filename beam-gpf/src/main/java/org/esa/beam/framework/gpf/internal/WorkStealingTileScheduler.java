@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.gpf.internal;
+
+import org.esa.beam.framework.gpf.OperatorException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes tiles on a work-stealing {@link ForkJoinPool}, as an alternative to gating the JAI
+ * {@link javax.media.jai.TileScheduler TileScheduler} with a semaphore.
+ * <p/>
+ * Tiles are scheduled row by row. The tiles of a row are split recursively, so that idle workers steal
+ * the tiles of rows that are still in progress instead of waiting at row boundaries. The number of rows
+ * in progress can be limited by {@link #setMaxRowsInProgress(int)}, for example to keep only a bounded
+ * number of tile rows in memory while writing, and the number of tiles waiting for a worker is limited by
+ * {@link #setMaxQueueDepth(int)}.
+ * <p/>
+ * A tile is a {@link Runnable} which usually pulls the tile of an image by calling
+ * {@link javax.media.jai.PlanarImage#getTile(int, int)}. The first failure of a tile is rethrown as an
+ * {@link OperatorException} by {@link #scheduleRow(Runnable[])} or {@link #awaitCompletion()}; tiles which
+ * have not yet been started are skipped after a failure.
+ */
+public class WorkStealingTileScheduler {
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    private final List<Worker> workers;
+    private final long startNanos;
+
+    private int maxRowsInProgress;
+    private int maxQueueDepth;
+
+    // all guarded by 'this'
+    private int rowsInProgress;
+    private int tilesInProgress;
+    private int queueDepth;
+    private int peakQueueDepth;
+    private int tilesComputed;
+    private long stopNanos;
+
+    private volatile OperatorException error;
+
+    /**
+     * Creates a new scheduler.
+     *
+     * @param parallelism The number of worker threads.
+     */
+    public WorkStealingTileScheduler(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism < 1");
+        }
+        this.parallelism = parallelism;
+        this.workers = new CopyOnWriteArrayList<>();
+        this.maxRowsInProgress = Integer.MAX_VALUE;
+        this.maxQueueDepth = 4 * parallelism;
+        this.pool = new ForkJoinPool(parallelism, new WorkerFactory(), null, true);
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return The number of worker threads.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Limits the number of tile rows being computed at the same time. With a value of {@code 1}, a row is
+     * not started before the previous one has completely been computed. The default is no limit.
+     *
+     * @param maxRowsInProgress The maximum number of rows in progress, must be greater than zero.
+     */
+    public void setMaxRowsInProgress(int maxRowsInProgress) {
+        if (maxRowsInProgress < 1) {
+            throw new IllegalArgumentException("maxRowsInProgress < 1");
+        }
+        this.maxRowsInProgress = maxRowsInProgress;
+    }
+
+    /**
+     * Limits the number of scheduled tiles which are waiting for a worker. A row is not scheduled before
+     * the queue depth has fallen below this limit. The default is four times the parallelism.
+     *
+     * @param maxQueueDepth The maximum queue depth, must be greater than zero.
+     */
+    public void setMaxQueueDepth(int maxQueueDepth) {
+        if (maxQueueDepth < 1) {
+            throw new IllegalArgumentException("maxQueueDepth < 1");
+        }
+        this.maxQueueDepth = maxQueueDepth;
+    }
+
+    /**
+     * Schedules the tiles of a row. Blocks while the limits for the rows in progress or the queue depth
+     * are reached.
+     *
+     * @param tiles The tiles of the row.
+     *
+     * @throws OperatorException if a previously scheduled tile has failed or the current thread is interrupted.
+     */
+    public void scheduleRow(Runnable[] tiles) {
+        checkForError();
+        if (tiles.length == 0) {
+            return;
+        }
+        synchronized (this) {
+            while (error == null && (rowsInProgress >= maxRowsInProgress || queueDepth >= maxQueueDepth)) {
+                waitForChange();
+            }
+            checkForError();
+            rowsInProgress++;
+            tilesInProgress += tiles.length;
+            queueDepth += tiles.length;
+            peakQueueDepth = Math.max(peakQueueDepth, queueDepth);
+        }
+        pool.execute(new RowTask(tiles));
+    }
+
+    /**
+     * Waits until all scheduled tiles have been computed.
+     *
+     * @throws OperatorException if a tile has failed or the current thread is interrupted.
+     */
+    public void awaitCompletion() {
+        synchronized (this) {
+            while (tilesInProgress > 0) {
+                waitForChange();
+            }
+            stopNanos = System.nanoTime();
+        }
+        checkForError();
+    }
+
+    /**
+     * Stops the worker threads. Tiles which have not yet been started are not computed anymore.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (error == null) {
+                error = new OperatorException("Operation cancelled.");
+            }
+            notifyAll();
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return The number of scheduled tiles which are waiting for a worker.
+     */
+    public synchronized int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return The maximum number of scheduled tiles which have been waiting for a worker at the same time.
+     */
+    public synchronized int getPeakQueueDepth() {
+        return peakQueueDepth;
+    }
+
+    /**
+     * @return The number of tiles computed so far.
+     */
+    public synchronized int getTileCount() {
+        return tilesComputed;
+    }
+
+    /**
+     * @return The time in seconds since this scheduler has been created, or until {@link #awaitCompletion()}
+     *         has returned the last time.
+     */
+    public synchronized double getElapsedSeconds() {
+        return ((stopNanos != 0 ? stopNanos : System.nanoTime()) - startNanos) / 1.0E9;
+    }
+
+    /**
+     * Gets the utilization of each worker thread, that is the time spent for computing tiles divided by
+     * the elapsed time.
+     *
+     * @return The utilization of the workers in the range 0 to 1.
+     */
+    public double[] getWorkerUtilization() {
+        final double elapsedNanos = getElapsedSeconds() * 1.0E9;
+        final Worker[] workerArray = workers.toArray(new Worker[workers.size()]);
+        final double[] utilization = new double[workerArray.length];
+        for (int i = 0; i < workerArray.length; i++) {
+            utilization[i] = elapsedNanos > 0 ? Math.min(1.0, workerArray[i].busyNanos / elapsedNanos) : 0.0;
+        }
+        return utilization;
+    }
+
+    /**
+     * @return A one-line summary of the tile throughput and the worker utilization.
+     */
+    public String getStatistics() {
+        final double seconds = getElapsedSeconds();
+        final int tileCount = getTileCount();
+        final double[] utilization = getWorkerUtilization();
+        double sum = 0.0;
+        for (double value : utilization) {
+            sum += value;
+        }
+        return String.format("Computed %d tiles in %.3f sec. (%.1f tiles/sec.) using %d workers, " +
+                             "mean worker utilization %.1f%%, peak queue depth %d",
+                             tileCount, seconds, seconds > 0 ? tileCount / seconds : 0.0, parallelism,
+                             utilization.length > 0 ? 100.0 * sum / utilization.length : 0.0, getPeakQueueDepth());
+    }
+
+    private void checkForError() {
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void waitForChange() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            throw new OperatorException(e);
+        }
+    }
+
+    private void computeTile(Runnable tile) {
+        synchronized (this) {
+            queueDepth--;
+        }
+        if (error == null) {
+            final long t0 = System.nanoTime();
+            try {
+                tile.run();
+            } catch (Throwable t) {
+                synchronized (this) {
+                    if (error == null) {
+                        error = t instanceof OperatorException ? (OperatorException) t
+                                                               : new OperatorException("Operation failed.", t);
+                    }
+                }
+            } finally {
+                final Thread thread = Thread.currentThread();
+                if (thread instanceof Worker) {
+                    ((Worker) thread).busyNanos += System.nanoTime() - t0;
+                }
+            }
+        }
+        synchronized (this) {
+            tilesInProgress--;
+            if (error == null) {
+                tilesComputed++;
+            }
+            notifyAll();
+        }
+    }
+
+    private synchronized void rowCompleted() {
+        rowsInProgress--;
+        notifyAll();
+    }
+
+    private class RowTask extends RecursiveAction {
+
+        private final Runnable[] tiles;
+
+        RowTask(Runnable[] tiles) {
+            this.tiles = tiles;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                new TileRangeTask(tiles, 0, tiles.length).compute();
+            } finally {
+                rowCompleted();
+            }
+        }
+    }
+
+    private class TileRangeTask extends RecursiveAction {
+
+        private final Runnable[] tiles;
+        private final int start;
+        private final int end;
+
+        TileRangeTask(Runnable[] tiles, int start, int end) {
+            this.tiles = tiles;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                computeTile(tiles[start]);
+            } else {
+                // the upper half may be stolen by an idle worker, the lower half is computed here
+                final int mid = (start + end) >>> 1;
+                invokeAll(new TileRangeTask(tiles, start, mid), new TileRangeTask(tiles, mid, end));
+            }
+        }
+    }
+
+    private class WorkerFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            final Worker worker = new Worker(pool);
+            worker.setName("gpf-tile-worker-" + workers.size());
+            workers.add(worker);
+            return worker;
+        }
+    }
+
+    private static class Worker extends ForkJoinWorkerThread {
+
+        // only written by the worker itself
+        volatile long busyNanos;
+
+        Worker(ForkJoinPool pool) {
+            super(pool);
+        }
+    }
+}
@@ -29,6 +29,7 @@ import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
 import org.esa.beam.framework.dataop.barithm.BandArithmetic;
 import org.esa.beam.framework.dataop.barithm.BandArithmetic.ProductPrefixProvider;
+import org.esa.beam.framework.dataop.barithm.CompiledTerm;
 import org.esa.beam.framework.dataop.barithm.RasterDataEvalEnv;
 import org.esa.beam.framework.dataop.barithm.RasterDataSymbol;
 import org.esa.beam.framework.gpf.Operator;
@@ -220,6 +221,7 @@ public class BandMathsOp extends Operator {
     private Variable[] variables;
 
     private Map<Band, BandDescriptor> descriptorMap;
+    private Map<Band, Term> termMap;
 
     public BandMathsOp() {
     }
@@ -265,6 +267,11 @@ public class BandMathsOp extends Operator {
         for (BandDescriptor bandDescriptor : targetBandDescriptors) {
             createBand(bandDescriptor, verificationParser);
         }
+        // the terms are shared by all tiles, the tile data is bound by the evaluation environments
+        termMap = new HashMap<Band, Term>(descriptorMap.size());
+        for (Map.Entry<Band, BandDescriptor> entry : descriptorMap.entrySet()) {
+            termMap.put(entry.getKey(), createTerm(entry.getValue().expression));
+        }
 
         ProductUtils.copyMetadata(sourceProducts[0], targetProduct);
         ProductUtils.copyGeoCoding(sourceProducts[0], targetProduct);
@@ -280,9 +287,10 @@ public class BandMathsOp extends Operator {
     @Override
     public void computeTile(Band band, Tile targetTile, ProgressMonitor pm) throws OperatorException {
         Rectangle rect = targetTile.getRectangle();
-        Term term = createTerm(descriptorMap.get(band).expression);
+        Term term = termMap.get(band);
         RasterDataSymbol[] refRasterDataSymbols = BandArithmetic.getRefRasterDataSymbols(term);
 
+        final RasterDataEvalEnv env = new RasterDataEvalEnv(rect.x, rect.y, rect.width, rect.height);
         for (RasterDataSymbol symbol : refRasterDataSymbols) {
             Tile tile = getSourceTile(symbol.getRaster(), rect);
             if (tile.getRasterDataNode().isScalingApplied()) {
@@ -295,35 +303,36 @@ public class BandMathsOp extends Operator {
                         dataBufferIndex++;
                     }
                 }
-                symbol.setData(dataBuffer);
+                env.setData(symbol, dataBuffer);
             } else {
                 ProductData dataBuffer = tile.getRawSamples();
-                symbol.setData(dataBuffer);
+                env.setData(symbol, dataBuffer);
             }
         }
 
-        final RasterDataEvalEnv env = new RasterDataEvalEnv(rect.x, rect.y, rect.width, rect.height);
         pm.beginTask("Evaluating expression", rect.height);
         try {
             float fv = Float.NaN;
             if (band.isNoDataValueUsed()) {
                 fv = (float) band.getNoDataValue();
             }
+            final CompiledTerm compiledTerm = CompiledTerm.compile(term);
+            final double[] values = new double[rect.width];
             int pixelIndex = 0;
             for (int y = rect.y; y < rect.y + rect.height; y++) {
                 if (pm.isCanceled()) {
                     break;
                 }
-                for (int x = rect.x; x < rect.x + rect.width; x++) {
-                    env.setElemIndex(pixelIndex);
-                    final double v = term.evalD(env);
+                compiledTerm.evalD(env, pixelIndex, rect.width, values);
+                for (int x = rect.x, i = 0; x < rect.x + rect.width; x++, i++) {
+                    final double v = values[i];
                     if (Double.isNaN(v) || Double.isInfinite(v)) {
                         targetTile.setSample(x, y, fv);
                     } else {
                         targetTile.setSample(x, y, v);
                     }
-                    pixelIndex++;
                 }
+                pixelIndex += rect.width;
                 pm.worked(1);
             }
         } finally {
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.gpf.operators.standard;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Sums and counts of a mosaic, kept tile by tile in a file.
+ * <p/>
+ * Each tile of the mosaic has a block in the file, which holds the sums ({@code double}) and counts ({@code int})
+ * of all bands of the tile, plane by plane. Adding to a tile reads and writes only the planes of the bands
+ * which are added to, using a buffer of one plane per thread. Tiles nobody added to are never written, so the
+ * file stays sparse. Additions to different tiles may happen concurrently, additions to the same tile are
+ * serialised.
+ */
+class MosaicAccumulator implements Closeable {
+
+    private final File file;
+    private final int width;
+    private final int height;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int numXTiles;
+    private final int numYTiles;
+    private final int numSumBands;
+    private final int numCountBands;
+    private final int tileSize;
+    private final long blockSize;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final Object[] tileLocks;
+    private final ThreadLocal<ByteBuffer> planeBuffer;
+
+    MosaicAccumulator(File file, int width, int height, Dimension tileSize, int numSumBands,
+                      int numCountBands) throws IOException {
+        this.file = file;
+        this.width = width;
+        this.height = height;
+        this.tileWidth = tileSize.width;
+        this.tileHeight = tileSize.height;
+        this.numSumBands = numSumBands;
+        this.numCountBands = numCountBands;
+        numXTiles = (width + tileWidth - 1) / tileWidth;
+        numYTiles = (height + tileHeight - 1) / tileHeight;
+        this.tileSize = tileWidth * tileHeight;
+        blockSize = (long) this.tileSize * (8L * numSumBands + 4L * numCountBands);
+        tileLocks = new Object[numXTiles * numYTiles];
+        for (int i = 0; i < tileLocks.length; i++) {
+            tileLocks[i] = new Object();
+        }
+        raf = new RandomAccessFile(file, "rw");
+        raf.setLength(blockSize * tileLocks.length);
+        channel = raf.getChannel();
+        planeBuffer = new ThreadLocal<ByteBuffer>() {
+            @Override
+            protected ByteBuffer initialValue() {
+                return ByteBuffer.allocate(MosaicAccumulator.this.tileSize * 8);
+            }
+        };
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    int getTileWidth() {
+        return tileWidth;
+    }
+
+    int getTileHeight() {
+        return tileHeight;
+    }
+
+    int getNumXTiles() {
+        return numXTiles;
+    }
+
+    int getNumYTiles() {
+        return numYTiles;
+    }
+
+    Rectangle getTileRectangle(int tileX, int tileY) {
+        final int x = tileX * tileWidth;
+        final int y = tileY * tileHeight;
+        return new Rectangle(x, y, Math.min(tileWidth, width - x), Math.min(tileHeight, height - y));
+    }
+
+    /**
+     * Adds to the sums and counts of a tile.
+     *
+     * @param tileX  The tile index in X-direction.
+     * @param tileY  The tile index in Y-direction.
+     * @param sums   For each sum band the values to add, row by row within the tile rectangle, or {@code null}.
+     * @param counts For each count band the values to add, row by row within the tile rectangle, or {@code null}.
+     *
+     * @throws IOException if the file cannot be read or written.
+     */
+    void add(int tileX, int tileY, double[][] sums, int[][] counts) throws IOException {
+        final int tileIndex = tileY * numXTiles + tileX;
+        final Rectangle tileRectangle = getTileRectangle(tileX, tileY);
+        final int numPixels = tileRectangle.width * tileRectangle.height;
+        final ByteBuffer buffer = planeBuffer.get();
+        synchronized (tileLocks[tileIndex]) {
+            for (int band = 0; band < numSumBands; band++) {
+                final double[] values = sums[band];
+                if (values != null) {
+                    final long offset = getSumOffset(band);
+                    buffer.clear().limit(numPixels * 8);
+                    read(tileIndex, offset, buffer);
+                    final DoubleBuffer sumBuffer = buffer.asDoubleBuffer();
+                    for (int i = 0; i < numPixels; i++) {
+                        sumBuffer.put(i, sumBuffer.get(i) + values[i]);
+                    }
+                    write(tileIndex, offset, buffer);
+                }
+            }
+            for (int band = 0; band < numCountBands; band++) {
+                final int[] values = counts[band];
+                if (values != null) {
+                    final long offset = getCountOffset(band);
+                    buffer.clear().limit(numPixels * 4);
+                    read(tileIndex, offset, buffer);
+                    final IntBuffer countBuffer = buffer.asIntBuffer();
+                    for (int i = 0; i < numPixels; i++) {
+                        countBuffer.put(i, countBuffer.get(i) + values[i]);
+                    }
+                    write(tileIndex, offset, buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the sums of a band of a tile.
+     *
+     * @param values Receives the sums, row by row within the tile rectangle.
+     */
+    void readSums(int tileX, int tileY, int band, double[] values) throws IOException {
+        final ByteBuffer buffer = planeBuffer.get();
+        buffer.clear().limit(values.length * 8);
+        read(tileY * numXTiles + tileX, getSumOffset(band), buffer);
+        buffer.asDoubleBuffer().get(values);
+    }
+
+    /**
+     * Reads the counts of a band of a tile.
+     *
+     * @param values Receives the counts, row by row within the tile rectangle.
+     */
+    void readCounts(int tileX, int tileY, int band, int[] values) throws IOException {
+        final ByteBuffer buffer = planeBuffer.get();
+        buffer.clear().limit(values.length * 4);
+        read(tileY * numXTiles + tileX, getCountOffset(band), buffer);
+        buffer.asIntBuffer().get(values);
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+
+    private long getSumOffset(int band) {
+        return (long) band * tileSize * 8;
+    }
+
+    private long getCountOffset(int band) {
+        return (long) numSumBands * tileSize * 8 + (long) band * tileSize * 4;
+    }
+
+    private void read(int tileIndex, long offset, ByteBuffer buffer) throws IOException {
+        long position = tileIndex * blockSize + offset;
+        while (buffer.hasRemaining()) {
+            final int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of file '" + file.getPath() + "'.");
+            }
+            position += n;
+        }
+        buffer.flip();
+    }
+
+    private void write(int tileIndex, long offset, ByteBuffer buffer) throws IOException {
+        long position = tileIndex * blockSize + offset;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
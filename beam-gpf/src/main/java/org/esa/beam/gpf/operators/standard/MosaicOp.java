@@ -22,8 +22,11 @@ import com.bc.ceres.glevel.MultiLevelImage;
 import com.bc.jexp.ParseException;
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.CrsGeoCoding;
+import org.esa.beam.framework.datamodel.GeoCoding;
+import org.esa.beam.framework.datamodel.GeoPos;
 import org.esa.beam.framework.datamodel.MetadataAttribute;
 import org.esa.beam.framework.datamodel.MetadataElement;
+import org.esa.beam.framework.datamodel.PixelPos;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
 import org.esa.beam.framework.dataop.barithm.BandArithmetic;
@@ -38,6 +41,7 @@ import org.esa.beam.framework.gpf.annotations.SourceProducts;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
 import org.esa.beam.jai.ImageManager;
 import org.esa.beam.jai.ResolutionLevel;
+import org.esa.beam.jai.SingleBandedOpImage;
 import org.esa.beam.jai.VirtualBandOpImage;
 import org.esa.beam.util.jai.JAIUtils;
 import org.esa.beam.util.math.MathUtils;
@@ -56,16 +60,25 @@ import javax.media.jai.operator.AddDescriptor;
 import javax.media.jai.operator.FormatDescriptor;
 import javax.media.jai.operator.MosaicDescriptor;
 import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.DataBuffer;
 import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Creates a mosaic out of a set of source products.
@@ -82,6 +95,13 @@ import java.util.Map;
 @SuppressWarnings({"PackageVisibleField"})
 public class MosaicOp extends Operator {
 
+    /**
+     * The system property which sets the number of source products added in parallel in accumulation mode.
+     */
+    static final String PROPERTY_KEY_PARALLELISM = "beam.mosaic.parallelism";
+
+    private static final int BOUNDS_SAMPLES = 32;
+
     @SourceProducts(count = -1, description = "The source products to be used for mosaicking.")
     Product[] sourceProducts;
 
@@ -128,18 +148,35 @@ public class MosaicOp extends Operator {
     @Parameter(description = "Size of a pixel in Y-direction in map units.", defaultValue = "0.05")
     double pixelSizeY;
 
-    private Product[] reprojectedProducts;
+    @Parameter(description = "Whether the sources are added one by one into sums and counts on disk, " +
+                             "instead of being mosaicked by a single image chain.", defaultValue = "false")
+    boolean accumulate;
 
+    private Product[] reprojectedProducts;
+    private MosaicAccumulator accumulator;
+    private List<Condition> outputConditions;
+    private RenderedImage[] updateMeanImages;
+    private RenderedImage[] updateCountImages;
+    private final Object accumulationLock = new Object();
+    private boolean accumulationStarted;
+    private OperatorException accumulationFailure;
 
     @Override
     public void initialize() throws OperatorException {
         if (isUpdateMode()) {
+            // the way of mosaicking is not a property of the mosaic, so it is taken from this operator
+            final boolean accumulateRequested = accumulate;
             initFields();
+            accumulate = accumulateRequested;
             targetProduct = updateProduct;
             updateMetadata(targetProduct);
         } else {
             targetProduct = createTargetProduct();
         }
+        if (accumulate) {
+            accumulateSources();
+            return;
+        }
         reprojectedProducts = createReprojectedProducts();
 
         // for each variable and each product one 'alpha' image is created.
@@ -156,6 +193,326 @@ public class MosaicOp extends Operator {
         reprojectedProducts = null;
     }
 
+    @Override
+    public void dispose() {
+        if (accumulator != null) {
+            try {
+                accumulator.close();
+            } catch (IOException e) {
+                getLogger().warning("Cannot close mosaic accumulator: " + e.getMessage());
+            }
+            if (!accumulator.getFile().delete()) {
+                getLogger().warning("Cannot delete file '" + accumulator.getFile().getPath() + "'.");
+            }
+            accumulator = null;
+        }
+        super.dispose();
+    }
+
+    /**
+     * Creates the {@link MosaicAccumulator} the target bands read their values from. The sources are added to
+     * the accumulator when the first tile of a target band is computed, see {@link #ensureSourcesAccumulated()}.
+     */
+    private void accumulateSources() {
+        outputConditions = getOutputConditions();
+        try {
+            final File file = File.createTempFile("beam-mosaic-", ".acc");
+            file.deleteOnExit();
+            accumulator = new MosaicAccumulator(file,
+                                                targetProduct.getSceneRasterWidth(),
+                                                targetProduct.getSceneRasterHeight(),
+                                                ImageManager.getPreferredTileSize(targetProduct),
+                                                variables.length,
+                                                variables.length + outputConditions.size());
+        } catch (IOException e) {
+            throw new OperatorException(e);
+        }
+        if (isUpdateMode()) {
+            // the images of the update product are replaced by the accumulator images below
+            updateMeanImages = new RenderedImage[variables.length];
+            updateCountImages = new RenderedImage[variables.length + outputConditions.size()];
+            for (int i = 0; i < variables.length; i++) {
+                updateMeanImages[i] = updateProduct.getBand(variables[i].getName()).getSourceImage();
+                updateCountImages[i] = updateProduct.getBand(getCountBandName(variables[i])).getSourceImage();
+            }
+            for (int k = 0; k < outputConditions.size(); k++) {
+                updateCountImages[variables.length + k] =
+                        updateProduct.getBand(outputConditions.get(k).getName()).getSourceImage();
+            }
+        }
+        setAccumulatorImages(targetProduct, outputConditions);
+    }
+
+    /**
+     * Reprojects each source product on its own and adds the target tiles it intersects into the
+     * {@link MosaicAccumulator}. In update mode the accumulator starts with the sums and counts of the
+     * update product. This is done once, by the first thread computing a tile of a target band, all other
+     * threads wait for it. A failure or cancellation is kept and rethrown for every further tile, because
+     * the accumulator holds partial sums then.
+     */
+    private void ensureSourcesAccumulated() {
+        synchronized (accumulationLock) {
+            if (accumulationFailure != null) {
+                throw accumulationFailure;
+            }
+            if (accumulationStarted) {
+                return;
+            }
+            accumulationStarted = true;
+            try {
+                if (isUpdateMode()) {
+                    addUpdateProduct();
+                }
+                addSourceProducts(outputConditions);
+            } catch (IOException e) {
+                accumulationFailure = new OperatorException(e);
+                throw accumulationFailure;
+            } catch (OperatorException e) {
+                accumulationFailure = e;
+                throw e;
+            }
+        }
+    }
+
+    private List<Condition> getOutputConditions() {
+        final List<Condition> outputConditions = new ArrayList<Condition>();
+        if (conditions != null) {
+            for (Condition condition : conditions) {
+                if (condition.isOutput()) {
+                    outputConditions.add(condition);
+                }
+            }
+        }
+        return outputConditions;
+    }
+
+    private void addUpdateProduct() throws IOException {
+        for (int tileY = 0; tileY < accumulator.getNumYTiles(); tileY++) {
+            checkForCancellation();
+            for (int tileX = 0; tileX < accumulator.getNumXTiles(); tileX++) {
+                final Rectangle rectangle = accumulator.getTileRectangle(tileX, tileY);
+                final double[][] sums = new double[variables.length][];
+                final int[][] counts = new int[updateCountImages.length][];
+                for (int k = 0; k < updateCountImages.length; k++) {
+                    counts[k] = getIntSamples(updateCountImages[k], rectangle);
+                }
+                for (int i = 0; i < variables.length; i++) {
+                    final float[] means = getFloatSamples(updateMeanImages[i], rectangle);
+                    sums[i] = new double[means.length];
+                    for (int j = 0; j < means.length; j++) {
+                        if (counts[i][j] != 0) {
+                            sums[i][j] = (double) means[j] * counts[i][j];
+                        }
+                    }
+                }
+                accumulator.add(tileX, tileY, sums, counts);
+            }
+        }
+    }
+
+    private void addSourceProducts(final List<Condition> outputConditions) {
+        final int numThreads = Math.max(1, Math.min(getParallelism(), sourceProducts.length));
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            final List<Future<Object>> futures = new ArrayList<Future<Object>>(sourceProducts.length);
+            final AtomicInteger numAdded = new AtomicInteger();
+            for (final Product sourceProduct : sourceProducts) {
+                futures.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        addSourceProduct(sourceProduct, outputConditions);
+                        getLogger().info(String.format("Added source product '%s' to the mosaic (%d of %d).",
+                                                       sourceProduct.getName(), numAdded.incrementAndGet(),
+                                                       sourceProducts.length));
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OperatorException("Interrupted while mosaicking.", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof OperatorException) {
+                throw (OperatorException) cause;
+            }
+            throw new OperatorException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static int getParallelism() {
+        return Integer.getInteger(PROPERTY_KEY_PARALLELISM, Runtime.getRuntime().availableProcessors());
+    }
+
+    private void addSourceProduct(Product sourceProduct, List<Condition> outputConditions) throws IOException {
+        if (sourceProduct.getGeoCoding() == null) {
+            String msg = "Source product: '" + sourceProduct.getName() + "' contains no geo-coding. Skipped for further processing.";
+            getLogger().warning(msg);
+            return;
+        }
+        final Product product = createReprojectedProduct(sourceProduct, createProjectionParameters());
+        final List<PlanarImage> images = new ArrayList<PlanarImage>();
+        try {
+            final PlanarImage[] alphaImages = new PlanarImage[variables.length];
+            final PlanarImage[] valueImages = new PlanarImage[variables.length];
+            for (int i = 0; i < variables.length; i++) {
+                alphaImages[i] = createAlphaImage(variables[i], product);
+                valueImages[i] = createExpressionImage(variables[i].getExpression(), product);
+                images.add(alphaImages[i]);
+                images.add(valueImages[i]);
+            }
+            final PlanarImage[] conditionImages = new PlanarImage[outputConditions.size()];
+            for (int k = 0; k < conditionImages.length; k++) {
+                conditionImages[k] = createConditionImage(outputConditions.get(k), product);
+                images.add(conditionImages[k]);
+            }
+
+            final Rectangle bounds = getTargetBounds(sourceProduct);
+            if (bounds.isEmpty()) {
+                return;
+            }
+            final int tileWidth = accumulator.getTileWidth();
+            final int tileHeight = accumulator.getTileHeight();
+            final int maxTileY = (bounds.y + bounds.height - 1) / tileHeight;
+            final int maxTileX = (bounds.x + bounds.width - 1) / tileWidth;
+            for (int tileY = bounds.y / tileHeight; tileY <= maxTileY; tileY++) {
+                for (int tileX = bounds.x / tileWidth; tileX <= maxTileX; tileX++) {
+                    checkForCancellation();
+                    final Rectangle rectangle = accumulator.getTileRectangle(tileX, tileY);
+                    final double[][] sums = new double[variables.length][];
+                    final int[][] counts = new int[variables.length + conditionImages.length][];
+                    boolean covered = false;
+                    for (int i = 0; i < variables.length; i++) {
+                        final float[] alphas = getFloatSamples(alphaImages[i], rectangle);
+                        if (containsNonZero(alphas)) {
+                            final float[] values = getFloatSamples(valueImages[i], rectangle);
+                            sums[i] = new double[alphas.length];
+                            counts[i] = new int[alphas.length];
+                            for (int j = 0; j < alphas.length; j++) {
+                                if (alphas[j] != 0.0f) {
+                                    sums[i][j] = alphas[j] * values[j];
+                                    counts[i][j] = (int) alphas[j];
+                                }
+                            }
+                            covered = true;
+                        }
+                    }
+                    for (int k = 0; k < conditionImages.length; k++) {
+                        final float[] conditionValues = getFloatSamples(conditionImages[k], rectangle);
+                        if (containsNonZero(conditionValues)) {
+                            final int[] conditionCounts = new int[conditionValues.length];
+                            for (int j = 0; j < conditionValues.length; j++) {
+                                conditionCounts[j] = (int) conditionValues[j];
+                            }
+                            counts[variables.length + k] = conditionCounts;
+                            covered = true;
+                        }
+                    }
+                    if (covered) {
+                        accumulator.add(tileX, tileY, sums, counts);
+                    }
+                }
+            }
+        } finally {
+            for (PlanarImage image : images) {
+                JAI.getDefaultInstance().getTileCache().removeTiles(image);
+                image.dispose();
+            }
+            product.dispose();
+        }
+    }
+
+    /**
+     * Estimates the region of the target product covered by a source product, by locating a grid of source
+     * pixels in the target. If the estimate fails, the whole target region is returned.
+     */
+    private Rectangle getTargetBounds(Product sourceProduct) {
+        final Rectangle targetRectangle = new Rectangle(targetProduct.getSceneRasterWidth(),
+                                                        targetProduct.getSceneRasterHeight());
+        final GeoCoding sourceGeoCoding = sourceProduct.getGeoCoding();
+        final GeoCoding targetGeoCoding = targetProduct.getGeoCoding();
+        final int width = sourceProduct.getSceneRasterWidth();
+        final int height = sourceProduct.getSceneRasterHeight();
+        final PixelPos sourcePixelPos = new PixelPos();
+        final PixelPos targetPixelPos = new PixelPos();
+        final GeoPos geoPos = new GeoPos();
+        final Rectangle2D bounds = new Rectangle2D.Double();
+        boolean empty = true;
+        try {
+            for (int j = 0; j <= BOUNDS_SAMPLES; j++) {
+                for (int i = 0; i <= BOUNDS_SAMPLES; i++) {
+                    sourcePixelPos.setLocation(i * width / (double) BOUNDS_SAMPLES,
+                                               j * height / (double) BOUNDS_SAMPLES);
+                    sourceGeoCoding.getGeoPos(sourcePixelPos, geoPos);
+                    if (!geoPos.isValid()) {
+                        continue;
+                    }
+                    targetGeoCoding.getPixelPos(geoPos, targetPixelPos);
+                    if (!targetPixelPos.isValid()) {
+                        return targetRectangle;
+                    }
+                    if (empty) {
+                        bounds.setRect(targetPixelPos.x, targetPixelPos.y, 0, 0);
+                        empty = false;
+                    } else {
+                        bounds.add(targetPixelPos.x, targetPixelPos.y);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            return targetRectangle;
+        }
+        if (empty) {
+            return targetRectangle;
+        }
+        // the grid may miss the outermost source pixels
+        final double marginX = 0.1 * bounds.getWidth() + 2;
+        final double marginY = 0.1 * bounds.getHeight() + 2;
+        bounds.setRect(bounds.getX() - marginX, bounds.getY() - marginY,
+                       bounds.getWidth() + 2 * marginX, bounds.getHeight() + 2 * marginY);
+        return bounds.getBounds().intersection(targetRectangle);
+    }
+
+    private static boolean containsNonZero(float[] values) {
+        for (float value : values) {
+            if (value != 0.0f) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static float[] getFloatSamples(RenderedImage image, Rectangle rectangle) {
+        return image.getData(rectangle).getSamples(rectangle.x, rectangle.y, rectangle.width, rectangle.height, 0,
+                                                   (float[]) null);
+    }
+
+    private static int[] getIntSamples(RenderedImage image, Rectangle rectangle) {
+        return image.getData(rectangle).getSamples(rectangle.x, rectangle.y, rectangle.width, rectangle.height, 0,
+                                                   (int[]) null);
+    }
+
+    private void setAccumulatorImages(Product product, List<Condition> outputConditions) {
+        final int width = product.getSceneRasterWidth();
+        final int height = product.getSceneRasterHeight();
+        for (int i = 0; i < variables.length; i++) {
+            final Variable variable = variables[i];
+            product.getBand(variable.getName()).setSourceImage(
+                    new AccumulatorImage(accumulator, i, i, DataBuffer.TYPE_FLOAT, width, height));
+            product.getBand(getCountBandName(variable)).setSourceImage(
+                    new AccumulatorImage(accumulator, -1, i, DataBuffer.TYPE_INT, width, height));
+        }
+        for (int k = 0; k < outputConditions.size(); k++) {
+            product.getBand(outputConditions.get(k).getName()).setSourceImage(
+                    new AccumulatorImage(accumulator, -1, variables.length + k, DataBuffer.TYPE_INT, width, height));
+        }
+    }
+
 
     private void updateMetadata(Product product) {
         final MetadataElement graphElement = product.getMetadataRoot().getElement("Processing_Graph");
@@ -201,25 +558,7 @@ public class MosaicOp extends Operator {
             final ArrayList<PlanarImage> list = new ArrayList<PlanarImage>(reprojectedProducts.length);
             alphaImageList.add(list);
             for (final Product product : reprojectedProducts) {
-                final String validMaskExpression;
-                try {
-                    validMaskExpression = createValidMaskExpression(product, variable.getExpression());
-                } catch (ParseException e) {
-                    throw new OperatorException(e);
-                }
-                final StringBuilder combinedExpression = new StringBuilder(validMaskExpression);
-                if (conditions != null && conditions.length > 0) {
-                    combinedExpression.append(" && (");
-                    for (int i = 0; i < conditions.length; i++) {
-                        Condition condition = conditions[i];
-                        if (i != 0) {
-                            combinedExpression.append(" ").append(combine).append(" ");
-                        }
-                        combinedExpression.append(condition.getExpression());
-                    }
-                    combinedExpression.append(")");
-                }
-                list.add(createExpressionImage(combinedExpression.toString(), product));
+                list.add(createAlphaImage(variable, product));
             }
             if (isUpdateMode()) {
                 final RenderedImage updateImage = updateProduct.getBand(getCountBandName(variable)).getSourceImage();
@@ -229,6 +568,28 @@ public class MosaicOp extends Operator {
         return alphaImageList;
     }
 
+    private PlanarImage createAlphaImage(Variable variable, Product product) {
+        final String validMaskExpression;
+        try {
+            validMaskExpression = createValidMaskExpression(product, variable.getExpression());
+        } catch (ParseException e) {
+            throw new OperatorException(e);
+        }
+        final StringBuilder combinedExpression = new StringBuilder(validMaskExpression);
+        if (conditions != null && conditions.length > 0) {
+            combinedExpression.append(" && (");
+            for (int i = 0; i < conditions.length; i++) {
+                Condition condition = conditions[i];
+                if (i != 0) {
+                    combinedExpression.append(" ").append(combine).append(" ");
+                }
+                combinedExpression.append(condition.getExpression());
+            }
+            combinedExpression.append(")");
+        }
+        return createExpressionImage(combinedExpression.toString(), product);
+    }
+
     private static String createValidMaskExpression(Product product, final String expression) throws ParseException {
         return BandArithmetic.getValidMaskExpression(expression, new Product[]{product}, 0, null);
     }
@@ -353,14 +714,18 @@ public class MosaicOp extends Operator {
                 getLogger().warning(msg);
                 continue;
             }
-            HashMap<String, Product> projProducts = new HashMap<String, Product>();
-            projProducts.put("source", sourceProduct);
-            projProducts.put("collocateWith", targetProduct);
-            reprojProductList.add(GPF.createProduct("Reproject", projParameters, projProducts));
+            reprojProductList.add(createReprojectedProduct(sourceProduct, projParameters));
         }
         return reprojProductList.toArray(new Product[reprojProductList.size()]);
     }
 
+    private Product createReprojectedProduct(Product sourceProduct, HashMap<String, Object> projParameters) {
+        HashMap<String, Product> projProducts = new HashMap<String, Product>();
+        projProducts.put("source", sourceProduct);
+        projProducts.put("collocateWith", targetProduct);
+        return GPF.createProduct("Reproject", projParameters, projProducts);
+    }
+
     private HashMap<String, Object> createProjectionParameters() {
         HashMap<String, Object> projParameters = new HashMap<String, Object>();
         projParameters.put("resamplingName", resamplingName);
@@ -427,6 +792,80 @@ public class MosaicOp extends Operator {
     }
 
 
+    /**
+     * A band of a mosaic, read from a {@link MosaicAccumulator}. It is either the mean of the sums divided by
+     * the counts, or the counts.
+     */
+    private class AccumulatorImage extends SingleBandedOpImage {
+
+        private final MosaicAccumulator accumulator;
+        private final int sumBand;
+        private final int countBand;
+
+        /**
+         * @param sumBand   The index of the sum band, or {@code -1} if the image shows the counts.
+         * @param countBand The index of the count band.
+         */
+        private AccumulatorImage(MosaicAccumulator accumulator, int sumBand, int countBand, int dataBufferType,
+                                 int width, int height) {
+            super(dataBufferType, width, height,
+                  new Dimension(accumulator.getTileWidth(), accumulator.getTileHeight()), null,
+                  ResolutionLevel.MAXRES);
+            this.accumulator = accumulator;
+            this.sumBand = sumBand;
+            this.countBand = countBand;
+        }
+
+        @Override
+        protected void computeRect(PlanarImage[] sources, WritableRaster dest, Rectangle destRect) {
+            ensureSourcesAccumulated();
+            final int tileWidth = accumulator.getTileWidth();
+            final int tileHeight = accumulator.getTileHeight();
+            final int maxTileY = (destRect.y + destRect.height - 1) / tileHeight;
+            final int maxTileX = (destRect.x + destRect.width - 1) / tileWidth;
+            for (int tileY = destRect.y / tileHeight; tileY <= maxTileY; tileY++) {
+                for (int tileX = destRect.x / tileWidth; tileX <= maxTileX; tileX++) {
+                    final Rectangle rectangle = accumulator.getTileRectangle(tileX, tileY);
+                    final Rectangle part = rectangle.intersection(destRect);
+                    try {
+                        computePart(tileX, tileY, rectangle, part, dest);
+                    } catch (IOException e) {
+                        throw new OperatorException(e);
+                    }
+                }
+            }
+        }
+
+        private void computePart(int tileX, int tileY, Rectangle rectangle, Rectangle part,
+                                 WritableRaster dest) throws IOException {
+            final int numPixels = rectangle.width * rectangle.height;
+            final int[] counts = new int[numPixels];
+            accumulator.readCounts(tileX, tileY, countBand, counts);
+            if (sumBand < 0) {
+                final int[] samples = new int[part.width * part.height];
+                for (int y = 0, k = 0; y < part.height; y++) {
+                    final int offset = (part.y + y - rectangle.y) * rectangle.width + part.x - rectangle.x;
+                    for (int x = 0; x < part.width; x++, k++) {
+                        samples[k] = counts[offset + x];
+                    }
+                }
+                dest.setSamples(part.x, part.y, part.width, part.height, 0, samples);
+            } else {
+                final double[] sums = new double[numPixels];
+                accumulator.readSums(tileX, tileY, sumBand, sums);
+                final float[] samples = new float[part.width * part.height];
+                for (int y = 0, k = 0; y < part.height; y++) {
+                    final int offset = (part.y + y - rectangle.y) * rectangle.width + part.x - rectangle.x;
+                    for (int x = 0; x < part.width; x++, k++) {
+                        final int count = counts[offset + x];
+                        samples[k] = count != 0 ? (float) (sums[offset + x] / count) : 0.0f;
+                    }
+                }
+                dest.setSamples(part.x, part.y, part.width, part.height, 0, samples);
+            }
+        }
+    }
+
     public static class Variable {
 
         @Parameter(description = "The name of the variable.")
@@ -601,8 +1040,13 @@ public class MosaicOp extends Operator {
                 if (name.isEmpty()) {
                     name = field.getName();
                 }
+                final Object value = params.get(name);
+                if (value == null && field.getType().isPrimitive()) {
+                    // parameters added later are missing in the metadata of older products
+                    continue;
+                }
                 try {
-                    field.set(object, params.get(name));
+                    field.set(object, value);
                 } catch (Exception e) {
                     final String msg = String.format("Cannot initialise operator parameter '%s'", name);
                     throw new OperatorException(msg, e);
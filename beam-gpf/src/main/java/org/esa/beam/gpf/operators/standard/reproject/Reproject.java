@@ -64,17 +64,41 @@ final class Reproject {
      */
     private static final double EPS = 1.0E-6;
 
-    private OpImage[] leveledWarpImages;
+    private Warp[] leveledWarps;
 
     Reproject(int numLevels) {
-        leveledWarpImages = new OpImage[numLevels];
+        leveledWarps = new Warp[numLevels];
     }
 
-    private synchronized Warp getCachingWarp(Warp warp, int width, int height, Dimension tileSize, int level) {
-        if (leveledWarpImages[level] == null) {
-            leveledWarpImages[level] = new WarpSourceCoordinatesOpImage(warp, width, height, tileSize, null);
+    /**
+     * Returns a warp which gives the same source coordinates as the given one, but faster. If the system
+     * property {@link WarpGridCache#PROPERTY_KEY_MAX_ERROR} enables it, non-affine warps are interpolated from
+     * a {@link WarpGrid}, which is computed tile by tile when the tiles are warped. Otherwise the source
+     * coordinates are computed once and kept in the tile cache. The warp is created outside of the lock, if
+     * two threads create it concurrently the first one is kept.
+     */
+    private Warp getCachingWarp(Warp warp, MathTransform transform, int width, int height,
+                                Dimension tileSize, int level) {
+        synchronized (this) {
+            if (leveledWarps[level] != null) {
+                return leveledWarps[level];
+            }
+        }
+        final Warp cachingWarp;
+        final double maxError = WarpGridCache.getMaxError();
+        if (maxError > 0 && !(warp instanceof WarpAffine)) {
+            final WarpGrid grid = WarpGridCache.getGrid(warp, transform, width, height, maxError);
+            cachingWarp = new WarpFromGrid(grid, warp);
+        } else {
+            final OpImage warpImage = new WarpSourceCoordinatesOpImage(warp, width, height, tileSize, null);
+            cachingWarp = new WarpFromSourceCoordinates(warpImage);
+        }
+        synchronized (this) {
+            if (leveledWarps[level] == null) {
+                leveledWarps[level] = cachingWarp;
+            }
+            return leveledWarps[level];
         }
-        return new WarpFromSourceCoordinates(leveledWarpImages[level]);
     }
 
 
@@ -243,7 +267,7 @@ final class Reproject {
                 warp = WarpTransform2D.getWarp(null, allSteps2D);
             }
             Rectangle imageRect = targetGeometry.getImageRect();
-            warp = getCachingWarp(warp, imageRect.width, imageRect.height, tileSize, targetLevel);
+            warp = getCachingWarp(warp, allSteps2D, imageRect.width, imageRect.height, tileSize, targetLevel);
             paramBlk.add(warp).add(interpolation).add(background);
         }
         return JAI.getDefaultInstance().createNS(operation, paramBlk, targetHints);
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.gpf.operators.standard.reproject;
+
+import javax.media.jai.Warp;
+
+/**
+ * Gives the warp coordinates by interpolating a {@link WarpGrid}. In the cells of the grid which are marked
+ * as exact, the coordinates are computed by the original warp. The grid is computed for the requested
+ * region first, see {@link WarpGrid#computeRegion}.
+ * <p/>
+ * Like {@link WarpSourceCoordinatesOpImage}, source coordinates which are {@code NaN} are replaced by
+ * coordinates outside of the source image.
+ */
+class WarpFromGrid extends Warp {
+
+    private static final float INVALID_COORDINATE = -1.0f;
+
+    private final WarpGrid grid;
+    private final Warp warp;
+
+    WarpFromGrid(WarpGrid grid, Warp warp) {
+        this.grid = grid;
+        this.warp = warp;
+    }
+
+    @Override
+    public float[] warpSparseRect(int xmin, int ymin, int width, int height, int periodX, int periodY,
+                                  float[] destRect) {
+        if (periodX < 1) throw new IllegalArgumentException(String.valueOf(periodX));
+        if (periodY < 1) throw new IllegalArgumentException(String.valueOf(periodY));
+
+        final int xmax = xmin + width;
+        final int ymax = ymin + height;
+        final int count = ((width + (periodX - 1)) / periodX) * ((height + (periodY - 1)) / periodY);
+        if (destRect == null) {
+            destRect = new float[2 * count];
+        }
+
+        grid.computeRegion(xmin, ymin, width, height);
+        final int step = grid.getStep();
+        final int numXNodes = grid.getNumXNodes();
+        final int maxCellX = numXNodes - 2;
+        final int maxCellY = grid.getNumYNodes() - 2;
+        final float[] nodes = grid.getNodes();
+
+        int index = 0;
+        for (int y = ymin; y < ymax; y += periodY) {
+            final int cellY = WarpGrid.clamp(WarpGrid.floorDiv(y, step), maxCellY);
+            final float wy = (y - cellY * step) / (float) step;
+            int exactX = xmin;
+            int exactIndex = -1;
+            for (int x = xmin; x < xmax; x += periodX) {
+                final int cellX = WarpGrid.clamp(WarpGrid.floorDiv(x, step), maxCellX);
+                if (grid.isExactCell(cellX, cellY)) {
+                    if (exactIndex < 0) {
+                        exactX = x;
+                        exactIndex = index;
+                    }
+                    index += 2;
+                    continue;
+                }
+                if (exactIndex >= 0) {
+                    warpExactly(exactX, y, x - exactX, periodX, destRect, exactIndex);
+                    exactIndex = -1;
+                }
+                final float wx = (x - cellX * step) / (float) step;
+                final int i0 = 2 * (cellY * numXNodes + cellX);
+                final int i2 = i0 + 2 * numXNodes;
+                final float w0 = (1.0f - wx) * (1.0f - wy);
+                final float w1 = wx * (1.0f - wy);
+                final float w2 = (1.0f - wx) * wy;
+                final float w3 = wx * wy;
+                destRect[index++] = w0 * nodes[i0] + w1 * nodes[i0 + 2] + w2 * nodes[i2] + w3 * nodes[i2 + 2];
+                destRect[index++] = w0 * nodes[i0 + 1] + w1 * nodes[i0 + 3] + w2 * nodes[i2 + 1] + w3 * nodes[i2 + 3];
+            }
+            if (exactIndex >= 0) {
+                warpExactly(exactX, y, xmax - exactX, periodX, destRect, exactIndex);
+            }
+        }
+
+        for (int i = 0; i < 2 * count; i += 2) {
+            // if NaN is forwarded it gets casted to an integer pixel index and
+            // the result would be zero and therefore a valid pixel.
+            if (Float.isNaN(destRect[i]) || Float.isNaN(destRect[i + 1])) {
+                destRect[i] = INVALID_COORDINATE;
+                destRect[i + 1] = INVALID_COORDINATE;
+            }
+        }
+        return destRect;
+    }
+
+    private void warpExactly(int x, int y, int width, int periodX, float[] destRect, int index) {
+        final float[] coordinates = warp.warpSparseRect(x, y, width, 1, periodX, 1, null);
+        System.arraycopy(coordinates, 0, destRect, index, coordinates.length);
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.gpf.operators.standard.reproject;
+
+import javax.media.jai.Warp;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A coarse grid of the source coordinates of a warp, from which the source coordinates in between the grid
+ * nodes are interpolated bilinearly.
+ * <p/>
+ * The nodes are placed every {@code step} target pixels. For each grid cell, the exact source coordinates at the
+ * cell centre and at the midpoints of the cell edges are compared with the interpolated ones. Cells where the
+ * difference exceeds the error bound, or where a coordinate is {@code NaN}, are marked to be computed exactly.
+ * Regions of undefined source coordinates narrower than half a cell may therefore go unnoticed.
+ * <p/>
+ * The grid is computed lazily, in blocks of {@link #BLOCK_CELLS} by {@link #BLOCK_CELLS} cells, when a region
+ * is first requested by {@link #computeRegion}. No lock is held while a block is computed. Threads requesting
+ * the same block concurrently compute it alike, the nodes shared by neighbouring blocks get the same values
+ * from either block.
+ */
+final class WarpGrid {
+
+    static final int BLOCK_CELLS = 16;
+
+    private static final int MAGIC = 0x57475244;
+    private static final int VERSION = 1;
+
+    private final Warp warp;
+    private final int width;
+    private final int height;
+    private final int step;
+    private final double maxError;
+    private final int numXNodes;
+    private final int numYNodes;
+    private final int numXBlocks;
+    private final float[] nodes;
+    private final boolean[] exactCells;
+    private final AtomicIntegerArray computedBlocks;
+    private final AtomicInteger numMissingBlocks;
+    private final Runnable completionHandler;
+
+    private WarpGrid(Warp warp, int width, int height, int step, double maxError, int numXNodes, int numYNodes,
+                     float[] nodes, boolean[] exactCells, boolean computed, Runnable completionHandler) {
+        this.warp = warp;
+        this.width = width;
+        this.height = height;
+        this.step = step;
+        this.maxError = maxError;
+        this.numXNodes = numXNodes;
+        this.numYNodes = numYNodes;
+        this.nodes = nodes;
+        this.exactCells = exactCells;
+        this.completionHandler = completionHandler;
+        numXBlocks = (numXNodes - 1 + BLOCK_CELLS - 1) / BLOCK_CELLS;
+        final int numYBlocks = (numYNodes - 1 + BLOCK_CELLS - 1) / BLOCK_CELLS;
+        computedBlocks = new AtomicIntegerArray(numXBlocks * numYBlocks);
+        if (computed) {
+            for (int i = 0; i < computedBlocks.length(); i++) {
+                computedBlocks.set(i, 1);
+            }
+        }
+        numMissingBlocks = new AtomicInteger(computed ? 0 : computedBlocks.length());
+    }
+
+    /**
+     * Creates the grid of a warp. Nothing is computed yet.
+     *
+     * @param warp     The warp.
+     * @param width    The width of the target image.
+     * @param height   The height of the target image.
+     * @param step     The distance of the grid nodes in target pixels, must be even.
+     * @param maxError The maximum distance, in source pixels, between interpolated and exact source coordinates.
+     *
+     * @return The grid.
+     */
+    static WarpGrid create(Warp warp, int width, int height, int step, double maxError) {
+        return create(warp, width, height, step, maxError, null);
+    }
+
+    /**
+     * Creates the grid of a warp. Nothing is computed yet.
+     *
+     * @param completionHandler Run once by the thread which computes the last block of the grid, or {@code null}.
+     */
+    static WarpGrid create(Warp warp, int width, int height, int step, double maxError,
+                           Runnable completionHandler) {
+        if (step < 2 || step % 2 != 0) {
+            throw new IllegalArgumentException("step");
+        }
+        final int numXNodes = Math.max(1, (width - 1 + step - 1) / step) + 1;
+        final int numYNodes = Math.max(1, (height - 1 + step - 1) / step) + 1;
+        return new WarpGrid(warp, width, height, step, maxError, numXNodes, numYNodes,
+                            new float[2 * numXNodes * numYNodes], new boolean[(numXNodes - 1) * (numYNodes - 1)],
+                            false, completionHandler);
+    }
+
+    /**
+     * Computes the blocks of the grid covering a region of target pixels, unless they are computed already.
+     * The nodes and cells of the region may be accessed afterwards.
+     */
+    void computeRegion(int x, int y, int regionWidth, int regionHeight) {
+        if (regionWidth <= 0 || regionHeight <= 0) {
+            return;
+        }
+        final int numXCells = numXNodes - 1;
+        final int numYCells = numYNodes - 1;
+        final int minCellX = clamp(floorDiv(x, step), numXCells - 1);
+        final int maxCellX = clamp(floorDiv(x + regionWidth - 1, step), numXCells - 1);
+        final int minCellY = clamp(floorDiv(y, step), numYCells - 1);
+        final int maxCellY = clamp(floorDiv(y + regionHeight - 1, step), numYCells - 1);
+        for (int blockY = minCellY / BLOCK_CELLS; blockY <= maxCellY / BLOCK_CELLS; blockY++) {
+            for (int blockX = minCellX / BLOCK_CELLS; blockX <= maxCellX / BLOCK_CELLS; blockX++) {
+                final int blockIndex = blockY * numXBlocks + blockX;
+                if (computedBlocks.get(blockIndex) == 0) {
+                    computeBlock(blockX, blockY);
+                    if (computedBlocks.compareAndSet(blockIndex, 0, 1)
+                        && numMissingBlocks.decrementAndGet() == 0 && completionHandler != null) {
+                        completionHandler.run();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes all blocks of the grid which are not computed yet.
+     */
+    void computeAll() {
+        computeRegion(0, 0, width, height);
+    }
+
+    private void computeBlock(int blockX, int blockY) {
+        final int minCellX = blockX * BLOCK_CELLS;
+        final int minCellY = blockY * BLOCK_CELLS;
+        final int numXCells = Math.min(BLOCK_CELLS, numXNodes - 1 - minCellX);
+        final int numYCells = Math.min(BLOCK_CELLS, numYNodes - 1 - minCellY);
+        // the source coordinates every half step, the nodes are at even indices, the check points in between
+        final int numXSamples = 2 * numXCells + 1;
+        final int half = step / 2;
+        final float[] samples = warp.warpSparseRect(minCellX * step, minCellY * step,
+                                                    numXCells * step + 1, numYCells * step + 1,
+                                                    half, half, null);
+
+        for (int j = 0; j <= numYCells; j++) {
+            for (int i = 0; i <= numXCells; i++) {
+                final int sampleIndex = 2 * (2 * j * numXSamples + 2 * i);
+                final int nodeIndex = 2 * ((minCellY + j) * numXNodes + minCellX + i);
+                nodes[nodeIndex] = samples[sampleIndex];
+                nodes[nodeIndex + 1] = samples[sampleIndex + 1];
+            }
+        }
+
+        for (int j = 0; j < numYCells; j++) {
+            for (int i = 0; i < numXCells; i++) {
+                final int i0 = 2 * ((minCellY + j) * numXNodes + minCellX + i);
+                final int i1 = i0 + 2;
+                final int i2 = i0 + 2 * numXNodes;
+                final int i3 = i2 + 2;
+                final double maxDeviation = Math.max(
+                        Math.max(
+                                deviation(samples, numXSamples, 2 * i + 1, 2 * j, nodes, i0, i1),
+                                deviation(samples, numXSamples, 2 * i, 2 * j + 1, nodes, i0, i2)),
+                        Math.max(
+                                Math.max(
+                                        deviation(samples, numXSamples, 2 * i + 2, 2 * j + 1, nodes, i1, i3),
+                                        deviation(samples, numXSamples, 2 * i + 1, 2 * j + 2, nodes, i2, i3)),
+                                centreDeviation(samples, numXSamples, 2 * i + 1, 2 * j + 1, nodes, i0, i1, i2, i3)));
+                // NaN deviations make the cell exact, too
+                exactCells[(minCellY + j) * (numXNodes - 1) + minCellX + i] = !(maxDeviation <= maxError);
+            }
+        }
+    }
+
+    private static double deviation(float[] samples, int numXSamples, int i, int j,
+                                    float[] nodes, int nodeIndex1, int nodeIndex2) {
+        final double x = 0.5 * (nodes[nodeIndex1] + nodes[nodeIndex2]);
+        final double y = 0.5 * (nodes[nodeIndex1 + 1] + nodes[nodeIndex2 + 1]);
+        final int sampleIndex = 2 * (j * numXSamples + i);
+        return Math.hypot(samples[sampleIndex] - x, samples[sampleIndex + 1] - y);
+    }
+
+    private static double centreDeviation(float[] samples, int numXSamples, int i, int j, float[] nodes,
+                                          int nodeIndex1, int nodeIndex2, int nodeIndex3, int nodeIndex4) {
+        final double x = 0.25 * (nodes[nodeIndex1] + nodes[nodeIndex2] + nodes[nodeIndex3] + nodes[nodeIndex4]);
+        final double y = 0.25 * (nodes[nodeIndex1 + 1] + nodes[nodeIndex2 + 1] +
+                                 nodes[nodeIndex3 + 1] + nodes[nodeIndex4 + 1]);
+        final int sampleIndex = 2 * (j * numXSamples + i);
+        return Math.hypot(samples[sampleIndex] - x, samples[sampleIndex + 1] - y);
+    }
+
+    static int floorDiv(int a, int b) {
+        return a >= 0 ? a / b : -((-a + b - 1) / b);
+    }
+
+    static int clamp(int cell, int maxCell) {
+        return cell < 0 ? 0 : cell > maxCell ? maxCell : cell;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    int getStep() {
+        return step;
+    }
+
+    int getNumXNodes() {
+        return numXNodes;
+    }
+
+    int getNumYNodes() {
+        return numYNodes;
+    }
+
+    /**
+     * @return The source coordinates of the nodes, as (x, y) pairs, row by row. Only the nodes of computed
+     *         regions are valid.
+     */
+    float[] getNodes() {
+        return nodes;
+    }
+
+    boolean isExactCell(int cellX, int cellY) {
+        return exactCells[cellY * (numXNodes - 1) + cellX];
+    }
+
+    /**
+     * @return The number of cells marked as exact, after computing the whole grid.
+     */
+    int getNumExactCells() {
+        computeAll();
+        int count = 0;
+        for (boolean exactCell : exactCells) {
+            if (exactCell) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the grid, after computing it completely.
+     */
+    void writeTo(DataOutput output) throws IOException {
+        computeAll();
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(width);
+        output.writeInt(height);
+        output.writeInt(step);
+        output.writeInt(numXNodes);
+        output.writeInt(numYNodes);
+        for (float node : nodes) {
+            output.writeFloat(node);
+        }
+        for (boolean exactCell : exactCells) {
+            output.writeBoolean(exactCell);
+        }
+    }
+
+    static WarpGrid readFrom(DataInput input) throws IOException {
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+            throw new IOException("Not a warp grid.");
+        }
+        final int width = input.readInt();
+        final int height = input.readInt();
+        final int step = input.readInt();
+        final int numXNodes = input.readInt();
+        final int numYNodes = input.readInt();
+        if (numXNodes < 2 || numYNodes < 2 || step < 2) {
+            throw new IOException("Invalid warp grid.");
+        }
+        final float[] nodes = new float[2 * numXNodes * numYNodes];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = input.readFloat();
+        }
+        final boolean[] exactCells = new boolean[(numXNodes - 1) * (numYNodes - 1)];
+        for (int i = 0; i < exactCells.length; i++) {
+            exactCells[i] = input.readBoolean();
+        }
+        return new WarpGrid(null, width, height, step, Double.NaN, numXNodes, numYNodes, nodes, exactCells, true,
+                            null);
+    }
+}
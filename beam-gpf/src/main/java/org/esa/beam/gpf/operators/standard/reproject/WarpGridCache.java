@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.gpf.operators.standard.reproject;
+
+import org.esa.beam.util.logging.BeamLogManager;
+import org.opengis.referencing.operation.MathTransform;
+
+import javax.media.jai.Warp;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Provides the {@link WarpGrid}s of the reprojections, so that repeated reprojections of the same geometry
+ * reuse them. Interpolating source coordinates from grids is opt-in, see {@link #PROPERTY_KEY_MAX_ERROR}.
+ * <p/>
+ * Grids are kept in memory as long as memory permits, identified by the target to source transform instance,
+ * the target size and the error bound. If the system property {@link #PROPERTY_KEY_CACHE_DIR} names a
+ * directory, completely computed grids are also written to and read from files in that directory.
+ */
+final class WarpGridCache {
+
+    /**
+     * The system property which sets the maximum error, in source pixels, of interpolated source coordinates.
+     * If it is zero or negative, which is the default, source coordinates are computed exactly.
+     */
+    static final String PROPERTY_KEY_MAX_ERROR = "beam.reproject.warpGrid.maxError";
+    /**
+     * The system property which names the directory where warp grids are persisted.
+     * <p/>
+     * Transform instances do not outlive a process, so a file is identified by a digest of the description (WKT)
+     * of the transform, the target size, the error bound and the source coordinates of a set of target pixels.
+     * The latter distinguish source geo-codings whose transforms are described alike, e.g. those based on
+     * tie-point grids. Two transforms which are described alike and agree at these pixels, but differ in between,
+     * share a file though. Only use this directory for geometries which are known to differ in their description.
+     */
+    static final String PROPERTY_KEY_CACHE_DIR = "beam.reproject.warpGrid.cacheDir";
+
+    static final double DEFAULT_MAX_ERROR = 0.0;
+    static final int STEP = 16;
+
+    private static final int NUM_FINGERPRINT_SAMPLES = 9;
+    private static final String FILE_EXTENSION = ".wgrid";
+
+    private static final Map<Key, SoftReference<WarpGrid>> grids = new HashMap<>();
+
+    private WarpGridCache() {
+    }
+
+    static double getMaxError() {
+        final String value = System.getProperty(PROPERTY_KEY_MAX_ERROR);
+        if (value == null) {
+            return DEFAULT_MAX_ERROR;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            BeamLogManager.getSystemLogger().warning("Invalid value of " + PROPERTY_KEY_MAX_ERROR + ": " + value);
+            return DEFAULT_MAX_ERROR;
+        }
+    }
+
+    /**
+     * Gets the grid of a warp. A new grid is computed lazily, region by region, see {@link WarpGrid}.
+     *
+     * @param warp      The warp.
+     * @param transform The target to source transform the warp is based on.
+     * @param width     The width of the target image.
+     * @param height    The height of the target image.
+     * @param maxError  The maximum error of interpolated source coordinates.
+     *
+     * @return The grid.
+     */
+    static WarpGrid getGrid(Warp warp, MathTransform transform, int width, int height, double maxError) {
+        final Key key = new Key(transform, width, height, maxError);
+        synchronized (grids) {
+            final SoftReference<WarpGrid> reference = grids.get(key);
+            final WarpGrid grid = reference != null ? reference.get() : null;
+            if (grid != null) {
+                return grid;
+            }
+        }
+        final File cacheDir = getCacheDir();
+        WarpGrid grid = null;
+        if (cacheDir != null) {
+            final String fileKey = createKey(warp, describe(transform), width, height, maxError);
+            grid = readGrid(new File(cacheDir, fileKey + FILE_EXTENSION));
+            if (grid == null) {
+                final WarpGrid[] newGrid = new WarpGrid[1];
+                newGrid[0] = WarpGrid.create(warp, width, height, STEP, maxError, new Runnable() {
+                    @Override
+                    public void run() {
+                        writeGrid(newGrid[0], cacheDir, fileKey);
+                    }
+                });
+                grid = newGrid[0];
+            }
+        } else {
+            grid = WarpGrid.create(warp, width, height, STEP, maxError);
+        }
+        synchronized (grids) {
+            final SoftReference<WarpGrid> reference = grids.get(key);
+            final WarpGrid cachedGrid = reference != null ? reference.get() : null;
+            if (cachedGrid != null) {
+                return cachedGrid;
+            }
+            removeClearedEntries();
+            grids.put(key, new SoftReference<>(grid));
+        }
+        return grid;
+    }
+
+    private static void removeClearedEntries() {
+        final Iterator<Map.Entry<Key, SoftReference<WarpGrid>>> iterator = grids.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Key, SoftReference<WarpGrid>> entry = iterator.next();
+            if (entry.getKey().transform.get() == null || entry.getValue().get() == null) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static String describe(MathTransform transform) {
+        try {
+            return transform.toWKT();
+        } catch (UnsupportedOperationException e) {
+            return transform.toString();
+        }
+    }
+
+    static String createKey(Warp warp, String transformDescription, int width, int height, double maxError) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(transformDescription.getBytes(Charset.forName("UTF-8")));
+        final StringBuilder parameters = new StringBuilder();
+        parameters.append(width).append(',').append(height).append(',').append(STEP).append(',').append(maxError);
+        final float[] coordinates = new float[2];
+        for (int j = 0; j < NUM_FINGERPRINT_SAMPLES; j++) {
+            for (int i = 0; i < NUM_FINGERPRINT_SAMPLES; i++) {
+                final int x = (int) ((long) (width - 1) * i / (NUM_FINGERPRINT_SAMPLES - 1));
+                final int y = (int) ((long) (height - 1) * j / (NUM_FINGERPRINT_SAMPLES - 1));
+                warp.warpSparseRect(x, y, 1, 1, 1, 1, coordinates);
+                parameters.append(',').append(Float.floatToIntBits(coordinates[0]));
+                parameters.append(',').append(Float.floatToIntBits(coordinates[1]));
+            }
+        }
+        digest.update(parameters.toString().getBytes(Charset.forName("UTF-8")));
+        final StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b & 0xff));
+        }
+        return key.toString();
+    }
+
+    private static File getCacheDir() {
+        final String path = System.getProperty(PROPERTY_KEY_CACHE_DIR);
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+        final File dir = new File(path);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            BeamLogManager.getSystemLogger().warning("Cannot create warp grid cache directory '" + path + "'.");
+            return null;
+        }
+        return dir;
+    }
+
+    private static WarpGrid readGrid(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return WarpGrid.readFrom(input);
+        } catch (IOException e) {
+            BeamLogManager.getSystemLogger().log(Level.WARNING, "Cannot read warp grid '" + file.getPath() + "'.", e);
+            return null;
+        }
+    }
+
+    private static void writeGrid(WarpGrid grid, File dir, String key) {
+        // write to a temporary file first, so that concurrent readers never see a partial grid
+        final File file = new File(dir, key + FILE_EXTENSION);
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(key, ".tmp", dir);
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                grid.writeTo(output);
+            }
+            if (!tempFile.renameTo(file) && !file.isFile()) {
+                throw new IOException("Cannot rename '" + tempFile.getPath() + "'.");
+            }
+        } catch (IOException e) {
+            BeamLogManager.getSystemLogger().log(Level.WARNING, "Cannot write warp grid '" + file.getPath() + "'.", e);
+        } finally {
+            if (tempFile != null && tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Identifies a grid in memory by the instance of its transform, which is referenced weakly.
+     */
+    private static final class Key {
+
+        private final WeakReference<MathTransform> transform;
+        private final int transformHash;
+        private final int width;
+        private final int height;
+        private final double maxError;
+
+        private Key(MathTransform transform, int width, int height, double maxError) {
+            this.transform = new WeakReference<>(transform);
+            this.transformHash = System.identityHashCode(transform);
+            this.width = width;
+            this.height = height;
+            this.maxError = maxError;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            final MathTransform t = transform.get();
+            return t != null && t == key.transform.get() && width == key.width && height == key.height
+                   && Double.compare(maxError, key.maxError) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = transformHash;
+            result = 31 * result + width;
+            result = 31 * result + height;
+            final long bits = Double.doubleToLongBits(maxError);
+            return 31 * result + (int) (bits ^ (bits >>> 32));
+        }
+    }
+}
@@ -19,6 +19,7 @@ import com.bc.ceres.core.ProgressMonitor;
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.GPF;
 import org.esa.beam.framework.gpf.Operator;
 import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
@@ -249,6 +250,28 @@ public class OperatorExecutorTest {
         assertEquals(new Point(1, 1), recordingTileScheduler.requestedTileIndices.get(3));
     }
 
+    @Test
+    public void testManyTilesTwoBands_WorkStealing() {
+        Product sourceProduct = createSourceProduct();
+        Band bandB = sourceProduct.addBand("b", ProductData.TYPE_INT8);
+        bandB.setRasterData(createDataFor(bandB));
+        bandB.setSynthetic(true);
+        sourceProduct.setPreferredTileSize(50, 50);
+        Operator op = new TestOP(sourceProduct);
+        OperatorExecutor operatorExecutor = OperatorExecutor.create(op);
+        System.setProperty(GPF.USE_WORK_STEALING_TILE_SCHEDULER_PROPERTY, "true");
+        try {
+            operatorExecutor.execute(ProgressMonitor.NULL);
+        } finally {
+            System.clearProperty(GPF.USE_WORK_STEALING_TILE_SCHEDULER_PROPERTY);
+        }
+
+        // tiles are pulled by the workers, not scheduled by JAI
+        assertEquals(1, recordingTileScheduler.recordedCalls.size());
+        assertEquals("getParallelism", recordingTileScheduler.recordedCalls.get(0));
+        assertEquals(0, recordingTileScheduler.requestedTileIndices.size());
+    }
+
     private Product createSourceProduct() {
         Product product = new Product("source", "source", 100, 100);
         Band bandA = product.addBand("a", ProductData.TYPE_INT8);
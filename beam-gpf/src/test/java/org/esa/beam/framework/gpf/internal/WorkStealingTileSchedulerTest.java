@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.gpf.internal;
+
+import org.esa.beam.framework.gpf.OperatorException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class WorkStealingTileSchedulerTest {
+
+    private WorkStealingTileScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = new WorkStealingTileScheduler(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testAllTilesAreComputed() {
+        final AtomicInteger[][] counts = new AtomicInteger[10][7];
+        for (int tileY = 0; tileY < counts.length; tileY++) {
+            final Runnable[] tiles = new Runnable[counts[tileY].length];
+            for (int tileX = 0; tileX < tiles.length; tileX++) {
+                final AtomicInteger count = counts[tileY][tileX] = new AtomicInteger();
+                tiles[tileX] = new Runnable() {
+                    @Override
+                    public void run() {
+                        count.incrementAndGet();
+                    }
+                };
+            }
+            scheduler.scheduleRow(tiles);
+        }
+        scheduler.awaitCompletion();
+
+        for (AtomicInteger[] row : counts) {
+            for (AtomicInteger count : row) {
+                assertEquals(1, count.get());
+            }
+        }
+        assertEquals(70, scheduler.getTileCount());
+        assertEquals(0, scheduler.getQueueDepth());
+        assertTrue(scheduler.getPeakQueueDepth() > 0);
+        assertTrue(scheduler.getWorkerUtilization().length > 0);
+    }
+
+    @Test
+    public void testMaxRowsInProgress() {
+        scheduler.setMaxRowsInProgress(2);
+        final int[] rowsCompleted = new int[1];
+        final AtomicInteger violations = new AtomicInteger();
+        for (int tileY = 0; tileY < 20; tileY++) {
+            final int row = tileY;
+            final AtomicInteger remaining = new AtomicInteger(5);
+            final Runnable[] tiles = new Runnable[5];
+            for (int tileX = 0; tileX < tiles.length; tileX++) {
+                tiles[tileX] = new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (rowsCompleted) {
+                            // at most the previous row may still be in progress
+                            if (rowsCompleted[0] < row - 1) {
+                                violations.incrementAndGet();
+                            }
+                        }
+                        sleep(1);
+                        if (remaining.decrementAndGet() == 0) {
+                            synchronized (rowsCompleted) {
+                                rowsCompleted[0]++;
+                            }
+                        }
+                    }
+                };
+            }
+            scheduler.scheduleRow(tiles);
+        }
+        scheduler.awaitCompletion();
+
+        assertEquals(0, violations.get());
+        assertEquals(100, scheduler.getTileCount());
+    }
+
+    @Test
+    public void testFailureIsRethrown() {
+        final IllegalStateException failure = new IllegalStateException("tile failed");
+        scheduler.scheduleRow(new Runnable[]{
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        throw failure;
+                    }
+                }
+        });
+        try {
+            scheduler.awaitCompletion();
+            fail("OperatorException expected");
+        } catch (OperatorException e) {
+            assertSame(failure, e.getCause());
+        }
+        try {
+            scheduler.scheduleRow(new Runnable[]{new Runnable() {
+                @Override
+                public void run() {
+                }
+            }});
+            fail("OperatorException expected");
+        } catch (OperatorException expected) {
+            // ok
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
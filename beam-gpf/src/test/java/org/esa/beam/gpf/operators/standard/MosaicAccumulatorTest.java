@@ -0,0 +1,73 @@
+package org.esa.beam.gpf.operators.standard;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class MosaicAccumulatorTest {
+
+    private MosaicAccumulator accumulator;
+
+    @Before
+    public void setUp() throws IOException {
+        final File file = File.createTempFile("MosaicAccumulatorTest", ".acc");
+        accumulator = new MosaicAccumulator(file, 10, 7, new Dimension(4, 4), 2, 3);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        accumulator.close();
+        assertTrue(accumulator.getFile().delete());
+    }
+
+    @Test
+    public void testTiling() {
+        assertEquals(3, accumulator.getNumXTiles());
+        assertEquals(2, accumulator.getNumYTiles());
+        assertEquals(new Rectangle(0, 0, 4, 4), accumulator.getTileRectangle(0, 0));
+        assertEquals(new Rectangle(8, 4, 2, 3), accumulator.getTileRectangle(2, 1));
+    }
+
+    @Test
+    public void testUntouchedTileIsZero() throws IOException {
+        final double[] sums = new double[16];
+        final int[] counts = new int[16];
+        accumulator.readSums(1, 0, 1, sums);
+        accumulator.readCounts(1, 0, 2, counts);
+        assertArrayEquals(new double[16], sums, 0.0);
+        assertArrayEquals(new int[16], counts);
+    }
+
+    @Test
+    public void testAdd() throws IOException {
+        // the tile at the lower right corner has 2 x 3 pixels
+        accumulator.add(2, 1, new double[][]{{1, 2, 3, 4, 5, 6}, null},
+                        new int[][]{{1, 1, 1, 1, 1, 1}, null, {0, 1, 0, 1, 0, 1}});
+        accumulator.add(2, 1, new double[][]{{0.5, 0, 0, 0, 0, 0.5}, {7, 7, 7, 7, 7, 7}},
+                        new int[][]{{1, 0, 0, 0, 0, 1}, {2, 2, 2, 2, 2, 2}, null});
+
+        final double[] sums = new double[6];
+        final int[] counts = new int[6];
+        accumulator.readSums(2, 1, 0, sums);
+        assertArrayEquals(new double[]{1.5, 2, 3, 4, 5, 6.5}, sums, 0.0);
+        accumulator.readSums(2, 1, 1, sums);
+        assertArrayEquals(new double[]{7, 7, 7, 7, 7, 7}, sums, 0.0);
+        accumulator.readCounts(2, 1, 0, counts);
+        assertArrayEquals(new int[]{2, 1, 1, 1, 1, 2}, counts);
+        accumulator.readCounts(2, 1, 1, counts);
+        assertArrayEquals(new int[]{2, 2, 2, 2, 2, 2}, counts);
+        accumulator.readCounts(2, 1, 2, counts);
+        assertArrayEquals(new int[]{0, 1, 0, 1, 0, 1}, counts);
+
+        // other tiles are not affected
+        accumulator.readCounts(1, 1, 0, counts);
+        assertArrayEquals(new int[6], counts);
+    }
+}
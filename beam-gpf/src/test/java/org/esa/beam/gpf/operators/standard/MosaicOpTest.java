@@ -260,6 +260,85 @@ public class MosaicOpTest {
 
     }
 
+    @Test
+    public void testMosaickingAccumulated() {
+        final MosaicOp op = new MosaicOp();
+        op.setParameterDefaultValues();
+        op.setSourceProducts(new Product[]{product1, product2, product3});
+        op.variables = new MosaicOp.Variable[]{
+                new MosaicOp.Variable("b1", "b1")
+        };
+        op.conditions = new MosaicOp.Condition[]{
+                new MosaicOp.Condition("b1_cond", "b1 != 3", true)
+        };
+        op.westBound = -10.0;
+        op.northBound = 10.0;
+        op.eastBound = 10.0;
+        op.southBound = -10.0;
+        op.pixelSizeX = 1.0;
+        op.pixelSizeY = 1.0;
+        op.accumulate = true;
+
+        try {
+            final Product product = op.getTargetProduct();
+
+            final GeoPos[] geoPositions = {
+                    new GeoPos(8, -8), new GeoPos(4, -4), new GeoPos(-1, 1), new GeoPos(-4, 4), new GeoPos(-8, 8)
+            };
+
+            Band b1Band = product.getBand("b1");
+            assertSampleValuesFloat(b1Band, geoPositions, new float[]{0.0f, 5.0f, 3.5f, 3.5f, 2.0f});
+
+            Band countBand = product.getBand("b1_count");
+            assertSampleValuesInt(countBand, geoPositions, new int[]{0, 1, 2, 2, 1});
+
+            Band condBand = product.getBand("b1_cond");
+            assertSampleValuesInt(condBand, geoPositions, new int[]{0, 1, 2, 2, 1});
+        } finally {
+            op.dispose();
+        }
+    }
+
+    @Test
+    public void testMosaickingAccumulatedUpdate() {
+        final MosaicOp mosaicOp = new MosaicOp();
+        mosaicOp.setParameterDefaultValues();
+        mosaicOp.setSourceProducts(new Product[]{product1, product2});
+        mosaicOp.variables = new MosaicOp.Variable[]{
+                new MosaicOp.Variable("b1", "b1"),
+        };
+        mosaicOp.westBound = -10.0;
+        mosaicOp.northBound = 10.0;
+        mosaicOp.eastBound = 10.0;
+        mosaicOp.southBound = -10.0;
+        mosaicOp.pixelSizeX = 1.0;
+        mosaicOp.pixelSizeY = 1.0;
+        mosaicOp.accumulate = true;
+
+        final MosaicOp mosaicUpdateOp = new MosaicOp();
+        try {
+            mosaicUpdateOp.setParameterDefaultValues();
+            mosaicUpdateOp.setSourceProducts(new Product[]{product3});
+            mosaicUpdateOp.updateProduct = mosaicOp.getTargetProduct();
+            mosaicUpdateOp.accumulate = true;
+
+            final Product product = mosaicUpdateOp.getTargetProduct();
+
+            final GeoPos[] geoPositions = {
+                    new GeoPos(8, -8), new GeoPos(4, -4), new GeoPos(-1, 1), new GeoPos(-4, 4), new GeoPos(-8, 8)
+            };
+
+            Band b1Band = product.getBand("b1");
+            assertSampleValuesFloat(b1Band, geoPositions, new float[]{0.0f, 5.0f, 3.5f, 3.333333f, 2.5f});
+
+            Band countBand = product.getBand("b1_count");
+            assertSampleValuesInt(countBand, geoPositions, new int[]{0, 1, 2, 3, 2});
+        } finally {
+            mosaicUpdateOp.dispose();
+            mosaicOp.dispose();
+        }
+    }
+
     private MetadataElement getSourcesElement(MosaicOp mosaicUpdateOp, MetadataElement mosaicMetadata) {
         for (MetadataElement element : mosaicMetadata.getElements()) {
             if (mosaicUpdateOp.getSpi().getOperatorAlias().equals(element.getAttributeString("operator"))) {
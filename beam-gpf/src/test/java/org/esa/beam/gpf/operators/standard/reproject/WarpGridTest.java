@@ -0,0 +1,218 @@
+package org.esa.beam.gpf.operators.standard.reproject;
+
+import org.junit.Test;
+import org.opengis.referencing.operation.MathTransform;
+
+import javax.media.jai.Warp;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import static org.junit.Assert.*;
+
+public class WarpGridTest {
+
+    private static final int WIDTH = 301;
+    private static final int HEIGHT = 170;
+    private static final double MAX_ERROR = 0.01;
+
+    @Test
+    public void testInterpolatedCoordinatesAreWithinErrorBound() {
+        final Warp exactWarp = new CurvedWarp(1.0e-4, Double.NaN);
+        final WarpGrid grid = WarpGrid.create(exactWarp, WIDTH, HEIGHT, 16, MAX_ERROR);
+        assertEquals(0, grid.getNumExactCells());
+
+        final Warp gridWarp = new WarpFromGrid(grid, exactWarp);
+        assertMaxError(exactWarp, gridWarp, 0, 0, WIDTH, HEIGHT, 1, 1);
+        assertMaxError(exactWarp, gridWarp, 7, 3, 50, 60, 3, 2);
+    }
+
+    @Test
+    public void testCellsExceedingErrorBoundAreExact() {
+        final Warp exactWarp = new CurvedWarp(1.0e-2, Double.NaN);
+        final WarpGrid grid = WarpGrid.create(exactWarp, WIDTH, HEIGHT, 16, MAX_ERROR);
+        assertTrue(grid.getNumExactCells() > 0);
+
+        final Warp gridWarp = new WarpFromGrid(grid, exactWarp);
+        assertMaxError(exactWarp, gridWarp, 0, 0, WIDTH, HEIGHT, 1, 1);
+    }
+
+    @Test
+    public void testUndefinedSourceCoordinates() {
+        final Warp exactWarp = new CurvedWarp(1.0e-4, 150);
+        final WarpGrid grid = WarpGrid.create(exactWarp, WIDTH, HEIGHT, 16, MAX_ERROR);
+        final Warp gridWarp = new WarpFromGrid(grid, exactWarp);
+
+        final float[] exact = exactWarp.warpRect(0, 0, WIDTH, HEIGHT, null);
+        final float[] interpolated = gridWarp.warpRect(0, 0, WIDTH, HEIGHT, null);
+        for (int i = 0; i < exact.length; i += 2) {
+            if (Float.isNaN(exact[i])) {
+                assertEquals(-1.0f, interpolated[i], 0.0f);
+                assertEquals(-1.0f, interpolated[i + 1], 0.0f);
+            } else {
+                assertTrue(Math.hypot(exact[i] - interpolated[i], exact[i + 1] - interpolated[i + 1]) <= MAX_ERROR);
+            }
+        }
+    }
+
+    @Test
+    public void testGridIsComputedForRequestedRegionsOnly() {
+        final CountingWarp exactWarp = new CountingWarp(new CurvedWarp(1.0e-4, Double.NaN));
+        final WarpGrid grid = WarpGrid.create(exactWarp, 2000, 1500, 16, MAX_ERROR);
+        assertEquals(0, exactWarp.count);
+
+        final Warp gridWarp = new WarpFromGrid(grid, exactWarp);
+        gridWarp.warpRect(300, 400, 64, 64, null);
+        final int regionCount = exactWarp.count;
+        assertTrue(regionCount > 0);
+        // one block of 16 x 16 cells, sampled every half step
+        assertTrue(regionCount <= (2 * WarpGrid.BLOCK_CELLS + 1) * (2 * WarpGrid.BLOCK_CELLS + 1));
+
+        gridWarp.warpRect(310, 410, 32, 32, null);
+        assertEquals(regionCount, exactWarp.count);
+        assertMaxError(exactWarp, gridWarp, 300, 400, 64, 64, 1, 1);
+    }
+
+    @Test
+    public void testMaxErrorIsOptIn() {
+        final String value = System.getProperty(WarpGridCache.PROPERTY_KEY_MAX_ERROR);
+        System.clearProperty(WarpGridCache.PROPERTY_KEY_MAX_ERROR);
+        try {
+            assertTrue(WarpGridCache.getMaxError() <= 0.0);
+        } finally {
+            if (value != null) {
+                System.setProperty(WarpGridCache.PROPERTY_KEY_MAX_ERROR, value);
+            }
+        }
+    }
+
+    @Test
+    public void testGridIsCachedPerTransformInstance() {
+        final Warp warp = new CurvedWarp(1.0e-4, Double.NaN);
+        final MathTransform transform1 = createTransform();
+        final MathTransform transform2 = createTransform();
+        final WarpGrid grid = WarpGridCache.getGrid(warp, transform1, WIDTH, HEIGHT, MAX_ERROR);
+        assertSame(grid, WarpGridCache.getGrid(warp, transform1, WIDTH, HEIGHT, MAX_ERROR));
+        assertNotSame(grid, WarpGridCache.getGrid(warp, transform2, WIDTH, HEIGHT, MAX_ERROR));
+        assertNotSame(grid, WarpGridCache.getGrid(warp, transform1, WIDTH, HEIGHT + 1, MAX_ERROR));
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        final WarpGrid grid = WarpGrid.create(new CurvedWarp(1.0e-2, 150), WIDTH, HEIGHT, 16, MAX_ERROR);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        grid.writeTo(new DataOutputStream(bytes));
+
+        final WarpGrid readGrid = WarpGrid.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(WIDTH, readGrid.getWidth());
+        assertEquals(HEIGHT, readGrid.getHeight());
+        assertEquals(16, readGrid.getStep());
+        assertEquals(20, readGrid.getNumXNodes());
+        assertEquals(12, readGrid.getNumYNodes());
+        assertArrayEquals(grid.getNodes(), readGrid.getNodes(), 0.0f);
+        assertEquals(grid.getNumExactCells(), readGrid.getNumExactCells());
+        for (int j = 0; j < readGrid.getNumYNodes() - 1; j++) {
+            for (int i = 0; i < readGrid.getNumXNodes() - 1; i++) {
+                assertEquals(grid.isExactCell(i, j), readGrid.isExactCell(i, j));
+            }
+        }
+    }
+
+    @Test
+    public void testKeyDistinguishesGeometries() {
+        final CurvedWarp warp1 = new CurvedWarp(1.0e-4, Double.NaN);
+        final CurvedWarp warp2 = new CurvedWarp(2.0e-4, Double.NaN);
+        final String key = WarpGridCache.createKey(warp1, "T", WIDTH, HEIGHT, MAX_ERROR);
+        assertEquals(key, WarpGridCache.createKey(new CurvedWarp(1.0e-4, Double.NaN), "T", WIDTH, HEIGHT, MAX_ERROR));
+        assertFalse(key.equals(WarpGridCache.createKey(warp2, "T", WIDTH, HEIGHT, MAX_ERROR)));
+        assertFalse(key.equals(WarpGridCache.createKey(warp1, "T", WIDTH, HEIGHT + 1, MAX_ERROR)));
+        assertFalse(key.equals(WarpGridCache.createKey(warp1, "U", WIDTH, HEIGHT, MAX_ERROR)));
+    }
+
+    private static void assertMaxError(Warp exactWarp, Warp gridWarp, int x, int y, int width, int height,
+                                       int periodX, int periodY) {
+        final float[] exact = exactWarp.warpSparseRect(x, y, width, height, periodX, periodY, null);
+        final float[] interpolated = gridWarp.warpSparseRect(x, y, width, height, periodX, periodY, null);
+        assertEquals(exact.length, interpolated.length);
+        for (int i = 0; i < exact.length; i += 2) {
+            final double error = Math.hypot(exact[i] - interpolated[i], exact[i + 1] - interpolated[i + 1]);
+            assertTrue("error at " + i / 2 + " is " + error, error <= MAX_ERROR);
+        }
+    }
+
+    /**
+     * A transform which is described alike as any other one.
+     */
+    private static MathTransform createTransform() {
+        return (MathTransform) Proxy.newProxyInstance(MathTransform.class.getClassLoader(),
+                                                      new Class[]{MathTransform.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("toWKT")) {
+                            return "T";
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * Counts the source coordinates computed by a warp.
+     */
+    private static class CountingWarp extends Warp {
+
+        private final Warp warp;
+        private int count;
+
+        private CountingWarp(Warp warp) {
+            this.warp = warp;
+        }
+
+        @Override
+        public float[] warpSparseRect(int xmin, int ymin, int width, int height, int periodX, int periodY,
+                                      float[] destRect) {
+            count += ((width + periodX - 1) / periodX) * ((height + periodY - 1) / periodY);
+            return warp.warpSparseRect(xmin, ymin, width, height, periodX, periodY, destRect);
+        }
+    }
+
+    /**
+     * A warp with curved source lines, which is undefined right of a given target X.
+     */
+    private static class CurvedWarp extends Warp {
+
+        private final double curvature;
+        private final double maxX;
+
+        private CurvedWarp(double curvature, double maxX) {
+            this.curvature = curvature;
+            this.maxX = maxX;
+        }
+
+        @Override
+        public float[] warpSparseRect(int xmin, int ymin, int width, int height, int periodX, int periodY,
+                                      float[] destRect) {
+            final int count = ((width + periodX - 1) / periodX) * ((height + periodY - 1) / periodY);
+            if (destRect == null) {
+                destRect = new float[2 * count];
+            }
+            int index = 0;
+            for (int y = ymin; y < ymin + height; y += periodY) {
+                for (int x = xmin; x < xmin + width; x += periodX) {
+                    final double sourceX = 0.5 * x + curvature * y * y + 3.0;
+                    final double sourceY = 0.8 * y + curvature * x * x - 0.1 * x;
+                    final boolean valid = Double.isNaN(maxX) || x <= maxX;
+                    destRect[index++] = valid ? (float) sourceX : Float.NaN;
+                    destRect[index++] = valid ? (float) sourceY : Float.NaN;
+                }
+            }
+            return destRect;
+        }
+    }
+}
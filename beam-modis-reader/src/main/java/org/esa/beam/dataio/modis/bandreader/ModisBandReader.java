@@ -21,10 +21,21 @@ import com.bc.ceres.core.ProgressMonitor;
 import org.esa.beam.dataio.modis.ModisConstants;
 import org.esa.beam.framework.datamodel.ProductData;
 import org.esa.beam.util.math.Range;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+import ucar.nc2.Group;
 import ucar.nc2.Variable;
 
 import java.io.IOException;
 
+/**
+ * Reads the samples of a band from a MODIS variable.
+ * <p/>
+ * Band readers may be used concurrently. Only reading from the file is synchronised, on the root group of the
+ * variable, since all variables of a file share its random access file. Validating and scaling the samples are
+ * done outside of the lock.
+ */
 abstract public class ModisBandReader {
 
     public static final int SCALE_UNKNOWN = 0;
@@ -33,6 +44,8 @@ abstract public class ModisBandReader {
     public static final int SCALE_POW_10 = 3;
     public static final int SCALE_SLOPE_INTERCEPT = 4;
 
+    private static final int MAX_SAMPLES_PER_READ = 1 << 18;
+
     protected int layer;
     protected float scale;
     protected float offset;
@@ -45,6 +58,7 @@ abstract public class ModisBandReader {
     protected Range validRange;
     protected double fillValue;
     protected Variable variable;
+    private final Object fileLock;
 
     /**
      * Creates a band reader with given scientific dataset identifier
@@ -56,6 +70,7 @@ abstract public class ModisBandReader {
     public ModisBandReader(Variable variable, final int layer, final boolean is3d) {
         this.variable = variable;
         this.layer = layer;
+        fileLock = getFileLock(variable);
 
         if (is3d) {
             count = new int[3];
@@ -141,16 +156,15 @@ abstract public class ModisBandReader {
         this.validRange = validRange;
     }
 
-    abstract protected void prepareForReading(final int sourceOffsetX, final int sourceOffsetY,
-                                              final int sourceWidth, final int sourceHeight,
-                                              final int sourceStepX, final int sourceStepY,
-                                              final ProductData destBuffer);
-
-    abstract protected void readLine() throws IOException;
-
-    abstract protected void validate(final int x);
-
-    abstract protected void assign(final int x);
+    /**
+     * Validates and scales samples and stores them in the destination buffer. Samples which are not within the
+     * valid range are replaced by the fill value.
+     *
+     * @param samples    the samples read, a Java array of the element type of the variable
+     * @param destBuffer the destination buffer
+     * @param destOffset the index of the destination element receiving the first sample
+     */
+    abstract protected void assign(final Object samples, final ProductData destBuffer, final int destOffset);
 
     /**
      * Sets the fill value, i.e. the value set where the measurement data is out-of-scope
@@ -187,33 +201,54 @@ abstract public class ModisBandReader {
      */
     public void readBandData(int sourceOffsetX, int sourceOffsetY, int sourceWidth, int sourceHeight,
                              int sourceStepX, int sourceStepY, ProductData destBuffer, ProgressMonitor pm) throws IOException {
-        start[yCoord] = sourceOffsetY;
+        final int[] start = this.start.clone();
+        final int[] count = this.count.clone();
+        final int[] stride = this.stride.clone();
         start[xCoord] = sourceOffsetX;
-        count[yCoord] = 1;
         count[xCoord] = sourceWidth;
         stride[yCoord] = sourceStepY;
         stride[xCoord] = sourceStepX;
 
-        prepareForReading(sourceOffsetX, sourceOffsetY, sourceWidth, sourceHeight,
-                          sourceStepX, sourceStepY, destBuffer);
-
-        pm.beginTask("Reading band '" + getName() + "'...", sourceHeight);
-        // loop over lines
+        final int numLines = (sourceHeight + sourceStepY - 1) / sourceStepY;
+        final int linesPerRead = Math.max(1, MAX_SAMPLES_PER_READ / Math.max(1, sourceWidth));
+        pm.beginTask("Reading band '" + getName() + "'...", numLines);
+        // read blocks of lines, instead of line by line
         try {
-            for (int y = 0; y < sourceHeight; y += sourceStepY) {
+            int destOffset = 0;
+            for (int line = 0; line < numLines; line += linesPerRead) {
                 if (pm.isCanceled()) {
                     break;
                 }
-                readLine();
-                for (int x = 0; x < sourceWidth; x++) {
-                    validate(x);
-                    assign(x);
-                }
-                start[yCoord] += sourceStepY;
-                pm.worked(1);
+                final int blockLines = Math.min(linesPerRead, numLines - line);
+                start[yCoord] = sourceOffsetY + line * sourceStepY;
+                // the section counts source lines, of which every sourceStepY-th line is read
+                count[yCoord] = (blockLines - 1) * sourceStepY + 1;
+                final Array array = read(new Section(start, count, stride));
+                assign(array.get1DJavaArray(array.getElementType()), destBuffer, destOffset);
+                destOffset += (int) array.getSize();
+                pm.worked(blockLines);
             }
+        } catch (InvalidRangeException e) {
+            throw new IOException(e.getMessage());
         } finally {
             pm.done();
         }
     }
+
+    private Array read(Section section) throws IOException, InvalidRangeException {
+        synchronized (fileLock) {
+            return variable.read(section);
+        }
+    }
+
+    private static Object getFileLock(Variable variable) {
+        Group group = variable.getParentGroup();
+        if (group == null) {
+            return variable;
+        }
+        while (group.getParentGroup() != null) {
+            group = group.getParentGroup();
+        }
+        return group;
+    }
 }
@@ -17,22 +17,10 @@
 package org.esa.beam.dataio.modis.bandreader;
 
 import org.esa.beam.framework.datamodel.ProductData;
-import ucar.ma2.Array;
-import ucar.ma2.InvalidRangeException;
-import ucar.ma2.Section;
 import ucar.nc2.Variable;
 
-import java.io.IOException;
-
 public class ModisInt16BandReader extends ModisBandReader {
 
-    private short[] line;
-    private short min;
-    private short max;
-    private short fill;
-    private short[] targetData;
-    private int targetIdx;
-
     public ModisInt16BandReader(Variable variable, final int layer, final boolean is3d) {
         super(variable, layer, is3d);
     }
@@ -48,10 +36,12 @@ public class ModisInt16BandReader extends ModisBandReader {
     }
 
     @Override
-    protected void prepareForReading(final int sourceOffsetX, final int sourceOffsetY, final int sourceWidth,
-                                     final int sourceHeight, final int sourceStepX, final int sourceStepY,
-                                     final ProductData destBuffer) {
-        fill = (short) Math.round(fillValue);
+    protected void assign(final Object samples, final ProductData destBuffer, final int destOffset) {
+        final short[] data = (short[]) samples;
+        final short[] targetData = (short[]) destBuffer.getElems();
+        final short fill = (short) Math.round(fillValue);
+        final short min;
+        final short max;
         if (validRange == null) {
             min = Short.MIN_VALUE;
             max = Short.MAX_VALUE;
@@ -59,40 +49,9 @@ public class ModisInt16BandReader extends ModisBandReader {
             min = (short) Math.round(validRange.getMin());
             max = (short) Math.round(validRange.getMax());
         }
-        targetData = (short[]) destBuffer.getElems();
-        targetIdx = 0;
-        ensureLineWidth(sourceWidth);
-    }
-
-    @Override
-    protected void readLine() throws IOException {
-        try {
-            final Section section = new Section(start, count, stride);
-            final Array array = variable.read(section);
-            for (int i = 0; i < line.length; i++) {
-                line[i] = array.getShort(i);
-            }
-        } catch (InvalidRangeException e) {
-            throw new IOException(e.getMessage());
-        }
-    }
-
-    @Override
-    protected void validate(final int x) {
-        final short value = line[x];
-        if (value < min || value > max) {
-            line[x] = fill;
-        }
-    }
-
-    @Override
-    protected void assign(final int x) {
-        targetData[targetIdx++] = line[x];
-    }
-
-    private void ensureLineWidth(final int sourceWidth) {
-        if ((line == null) || (line.length != sourceWidth)) {
-            line = new short[sourceWidth];
+        for (int i = 0; i < data.length; i++) {
+            final short value = data[i];
+            targetData[destOffset + i] = value < min || value > max ? fill : value;
         }
     }
-}
\ No newline at end of file
+}
@@ -16,23 +16,10 @@
 package org.esa.beam.dataio.modis.bandreader;
 
 import org.esa.beam.framework.datamodel.ProductData;
-import ucar.ma2.Array;
-import ucar.ma2.InvalidRangeException;
-import ucar.ma2.Section;
 import ucar.nc2.Variable;
 
-import java.io.IOException;
-
-
 public class ModisInt8BandReader extends ModisBandReader {
 
-    private byte[] line;
-    private byte min;
-    private byte max;
-    private byte fill;
-    private byte[] targetData;
-    private int targetIdx;
-
     public ModisInt8BandReader(Variable variable, final int layer, final boolean is3d) {
         super(variable, layer, is3d);
     }
@@ -48,10 +35,12 @@ public class ModisInt8BandReader extends ModisBandReader {
     }
 
     @Override
-    protected void prepareForReading(final int sourceOffsetX, final int sourceOffsetY, final int sourceWidth,
-                                     final int sourceHeight, final int sourceStepX, final int sourceStepY,
-                                     final ProductData destBuffer) {
-        fill = (byte) Math.floor(fillValue + 0.5);
+    protected void assign(final Object samples, final ProductData destBuffer, final int destOffset) {
+        final byte[] data = (byte[]) samples;
+        final byte[] targetData = (byte[]) destBuffer.getElems();
+        final byte fill = (byte) Math.floor(fillValue + 0.5);
+        final byte min;
+        final byte max;
         if (validRange == null) {
             min = Byte.MIN_VALUE;
             max = Byte.MAX_VALUE;
@@ -59,40 +48,9 @@ public class ModisInt8BandReader extends ModisBandReader {
             min = (byte) Math.floor(validRange.getMin() + 0.5);
             max = (byte) Math.floor(validRange.getMax() + 0.5);
         }
-        targetData = (byte[]) destBuffer.getElems();
-        targetIdx = 0;
-        ensureLineWidth(sourceWidth);
-    }
-
-    @Override
-    protected void readLine() throws IOException {
-        try {
-            final Section section = new Section(start, count, stride);
-            final Array array = variable.read(section);
-            for (int i = 0; i < line.length; i++) {
-                line[i] = array.getByte(i);
-            }
-        } catch (InvalidRangeException e) {
-            throw new IOException(e.getMessage());
-        }
-    }
-
-    @Override
-    protected void validate(final int x) {
-        final byte value = line[x];
-        if (value < min || value > max) {
-            line[x] = fill;
-        }
-    }
-
-    @Override
-    protected void assign(final int x) {
-        targetData[targetIdx++] = line[x];
-    }
-
-    private void ensureLineWidth(final int sourceWidth) {
-        if ((line == null) || (line.length != sourceWidth)) {
-            line = new byte[sourceWidth];
+        for (int i = 0; i < data.length; i++) {
+            final byte value = data[i];
+            targetData[destOffset + i] = value < min || value > max ? fill : value;
         }
     }
 }
@@ -16,22 +16,10 @@
 package org.esa.beam.dataio.modis.bandreader;
 
 import org.esa.beam.framework.datamodel.ProductData;
-import ucar.ma2.Array;
-import ucar.ma2.InvalidRangeException;
-import ucar.ma2.Section;
 import ucar.nc2.Variable;
 
-import java.io.IOException;
-
 public class ModisUint32BandReader extends ModisBandReader {
 
-    private int[] line;
-    private int min;
-    private long max;
-    private int fill;
-    private int[] targetData;
-    private int targetIdx;
-
     public ModisUint32BandReader(Variable variable, final int layer, final boolean is3d) {
         super(variable, layer, is3d);
     }
@@ -47,10 +35,12 @@ public class ModisUint32BandReader extends ModisBandReader {
     }
 
     @Override
-    protected void prepareForReading(final int sourceOffsetX, final int sourceOffsetY, final int sourceWidth,
-                                     final int sourceHeight, final int sourceStepX, final int sourceStepY,
-                                     final ProductData destBuffer) {
-        fill = (int) Math.round(fillValue);
+    protected void assign(final Object samples, final ProductData destBuffer, final int destOffset) {
+        final int[] data = (int[]) samples;
+        final int[] targetData = (int[]) destBuffer.getElems();
+        final int fill = (int) Math.round(fillValue);
+        final int min;
+        final long max;
         if (validRange == null) {
             min = 0;
             max = Integer.MAX_VALUE * 2L + 1;
@@ -58,40 +48,9 @@ public class ModisUint32BandReader extends ModisBandReader {
             min = (int) Math.round(validRange.getMin());
             max = Math.round(validRange.getMax());
         }
-        targetData = (int[]) destBuffer.getElems();
-        targetIdx = 0;
-        ensureLineWidth(sourceWidth);
-    }
-
-    @Override
-    protected void readLine() throws IOException {
-        try {
-            final Section section = new Section(start, count, stride);
-            final Array array = variable.read(section);
-            for (int i = 0; i < line.length; i++) {
-                line[i] = array.getShort(i);
-            }
-        } catch (InvalidRangeException e) {
-            throw new IOException(e.getMessage());
-        }
-    }
-
-    @Override
-    protected void validate(final int x) {
-        final long value = line[x] & 0xffffffffL;
-        if (value < min || value > max) {
-            line[x] = fill;
-        }
-    }
-
-    @Override
-    protected void assign(final int x) {
-        targetData[targetIdx++] = line[x];
-    }
-
-    private void ensureLineWidth(final int sourceWidth) {
-        if ((line == null) || (line.length != sourceWidth)) {
-            line = new int[sourceWidth];
+        for (int i = 0; i < data.length; i++) {
+            final long value = data[i] & 0xffffffffL;
+            targetData[destOffset + i] = value < min || value > max ? fill : data[i];
         }
     }
-}
\ No newline at end of file
+}
@@ -16,23 +16,10 @@
 package org.esa.beam.dataio.modis.bandreader;
 
 import org.esa.beam.framework.datamodel.ProductData;
-import ucar.ma2.Array;
-import ucar.ma2.InvalidRangeException;
-import ucar.ma2.Section;
 import ucar.nc2.Variable;
 
-import java.io.IOException;
-
 public class ModisUint8ExpBandReader extends ModisBandReader {
 
-    private byte[] line;
-    private short min;
-    private short max;
-    private byte fill;
-    private double invScale;
-    private float[] targetData;
-    private int targetDataIdx;
-
     public ModisUint8ExpBandReader(Variable variable, final int layer, final boolean is3d) {
         super(variable, layer, is3d);
     }
@@ -48,10 +35,12 @@ public class ModisUint8ExpBandReader extends ModisBandReader {
     }
 
     @Override
-    protected void prepareForReading(final int sourceOffsetX, final int sourceOffsetY, final int sourceWidth,
-                                     final int sourceHeight, final int sourceStepX, final int sourceStepY,
-                                     final ProductData destBuffer) {
-        fill = (byte) Math.floor(fillValue + 0.5);
+    protected void assign(final Object samples, final ProductData destBuffer, final int destOffset) {
+        final byte[] data = (byte[]) samples;
+        final float[] targetData = (float[]) destBuffer.getElems();
+        final byte fill = (byte) Math.floor(fillValue + 0.5);
+        final short min;
+        final short max;
         if (validRange == null) {
             min = 0;
             max = Byte.MAX_VALUE * 2 + 1;
@@ -59,41 +48,11 @@ public class ModisUint8ExpBandReader extends ModisBandReader {
             min = (short) Math.floor(validRange.getMin() + 0.5);
             max = (short) Math.floor(validRange.getMax() + 0.5);
         }
-        targetData = (float[]) destBuffer.getElems();
-        targetDataIdx = 0;
-        invScale = 1.0 / scale;
-        ensureLineWidth(sourceWidth);
-    }
-
-    @Override
-    protected void readLine() throws IOException {
-        try {
-            final Section section = new Section(start, count, stride);
-            final Array array = variable.read(section);
-            for (int i = 0; i < line.length; i++) {
-                line[i] = array.getByte(i);
-            }
-        } catch (InvalidRangeException e) {
-            throw new IOException(e.getMessage());
-        }
-    }
-
-    @Override
-    protected void validate(final int x) {
-        final int value = line[x] & 0xff;
-        if (value < min || value > max) {
-            line[x] = fill;
-        }
-    }
-
-    @Override
-    protected void assign(final int x) {
-        targetData[targetDataIdx++] = offset * (float) Math.exp(line[x] * invScale);
-    }
-
-    private void ensureLineWidth(final int sourceWidth) {
-        if ((line == null) || (line.length != sourceWidth)) {
-            line = new byte[sourceWidth];
+        final double invScale = 1.0 / scale;
+        for (int i = 0; i < data.length; i++) {
+            final int value = data[i] & 0xff;
+            final byte sample = value < min || value > max ? fill : data[i];
+            targetData[destOffset + i] = offset * (float) Math.exp(sample * invScale);
         }
     }
 }
@@ -1,7 +1,13 @@
 package org.esa.beam.dataio.modis.bandreader;
 
+import com.bc.ceres.core.ProgressMonitor;
 import junit.framework.TestCase;
 import org.esa.beam.dataio.modis.ModisConstants;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.util.math.Range;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.Variable;
 
 public class ModisBandReaderTest extends TestCase {
 
@@ -14,4 +20,59 @@ public class ModisBandReaderTest extends TestCase {
         assertEquals(ModisBandReader.SCALE_POW_10, ModisBandReader.decodeScalingMethod(ModisConstants.POW_10_SCALE_NAME));
         assertEquals(ModisBandReader.SCALE_SLOPE_INTERCEPT, ModisBandReader.decodeScalingMethod(ModisConstants.SLOPE_INTERCEPT_SCALE_NAME));
     }
+
+    public void testAssignReplacesInvalidSamples() {
+        final ModisUint16BandReader reader = new ModisUint16BandReader(new Variable(null, null, null, "test"), 0, false);
+        reader.setFillValue(65535);
+        reader.setValidRange(new Range(10, 40000));
+
+        final ProductData destBuffer = ProductData.createInstance(ProductData.TYPE_UINT16, 6);
+        reader.assign(new short[]{5, 10, (short) 40000}, destBuffer, 0);
+        reader.assign(new short[]{(short) 40001, 20, 0}, destBuffer, 3);
+
+        assertEquals(65535, destBuffer.getElemIntAt(0));
+        assertEquals(10, destBuffer.getElemIntAt(1));
+        assertEquals(40000, destBuffer.getElemIntAt(2));
+        assertEquals(65535, destBuffer.getElemIntAt(3));
+        assertEquals(20, destBuffer.getElemIntAt(4));
+        assertEquals(65535, destBuffer.getElemIntAt(5));
+    }
+
+    public void testAssignScalesExponentially() {
+        final ModisUint8ExpBandReader reader = new ModisUint8ExpBandReader(new Variable(null, null, null, "test"), 0, false);
+        reader.setScaleAndOffset(2.0f, 3.0f);
+        reader.setFillValue(0);
+
+        final ProductData destBuffer = ProductData.createInstance(ProductData.TYPE_FLOAT32, 2);
+        reader.assign(new byte[]{0, 4}, destBuffer, 0);
+
+        assertEquals(3.0f, destBuffer.getElemFloatAt(0), 1e-6f);
+        assertEquals(3.0f * (float) Math.exp(2.0), destBuffer.getElemFloatAt(1), 1e-5f);
+    }
+
+    public void testReadBandDataWithSubSampling() throws Exception {
+        final int width = 9;
+        final int height = 7;
+        final short[] data = new short[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                data[y * width + x] = (short) (100 * y + x);
+            }
+        }
+        final Variable variable = new Variable(null, null, null, "test");
+        variable.setDataType(DataType.SHORT);
+        variable.setDimensionsAnonymous(new int[]{height, width});
+        variable.setCachedData(Array.factory(DataType.SHORT, new int[]{height, width}, data), false);
+        final ModisUint16BandReader reader = new ModisUint16BandReader(variable, 0, false);
+
+        // source columns 1, 3, 5, 7 of source lines 1, 3, 5
+        final ProductData destBuffer = ProductData.createInstance(ProductData.TYPE_UINT16, 4 * 3);
+        reader.readBandData(1, 1, 7, 6, 2, 2, destBuffer, ProgressMonitor.NULL);
+
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 4; x++) {
+                assertEquals(100 * (1 + 2 * y) + 1 + 2 * x, destBuffer.getElemIntAt(y * 4 + x));
+            }
+        }
+    }
 }
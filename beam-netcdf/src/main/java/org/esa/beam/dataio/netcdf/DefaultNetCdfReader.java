@@ -18,6 +18,7 @@ package org.esa.beam.dataio.netcdf;
 
 import com.bc.ceres.core.ProgressMonitor;
 import org.esa.beam.dataio.netcdf.util.Constants;
+import org.esa.beam.dataio.netcdf.util.NetcdfChunkReader;
 import org.esa.beam.dataio.netcdf.util.NetcdfFileOpener;
 import org.esa.beam.framework.dataio.AbstractProductReader;
 import org.esa.beam.framework.datamodel.Band;
@@ -32,6 +33,7 @@ import java.io.IOException;
 class DefaultNetCdfReader extends AbstractProductReader {
 
     private NetcdfFile netcdfFile;
+    private NetcdfChunkReader chunkReader;
 
     public DefaultNetCdfReader(AbstractNetCdfReaderPlugIn netCdfReaderPlugIn) {
         super(netCdfReaderPlugIn);
@@ -54,6 +56,8 @@ class DefaultNetCdfReader extends AbstractProductReader {
         final ProfileReadContext context = new ProfileReadContextImpl(netcdfFile);
         String filename = extractProductName(fileLocation);
         context.setProperty(Constants.PRODUCT_FILENAME_PROPERTY, filename);
+        chunkReader = NetcdfChunkReader.create(netcdfFile);
+        context.setProperty(Constants.CHUNK_READER_PROPERTY, chunkReader);
         plugIn.initReadContext(context);
         NetCdfReadProfile profile = new NetCdfReadProfile();
         configureProfile(plugIn, profile);
@@ -101,6 +105,10 @@ class DefaultNetCdfReader extends AbstractProductReader {
 
     @Override
     public void close() throws IOException {
+        if (chunkReader != null) {
+            chunkReader.close();
+            chunkReader = null;
+        }
         if (netcdfFile != null) {
             netcdfFile.close();
             netcdfFile = null;
@@ -21,13 +21,18 @@ import org.esa.beam.dataio.netcdf.ProfileWriteContext;
 import org.esa.beam.dataio.netcdf.metadata.ProfileInitPartIO;
 import org.esa.beam.dataio.netcdf.nc.NFileWriteable;
 import org.esa.beam.dataio.netcdf.util.Constants;
+import org.esa.beam.dataio.netcdf.util.DimKey;
+import org.esa.beam.dataio.netcdf.util.NetcdfChunkReader;
+import org.esa.beam.dataio.netcdf.util.RasterDigest;
 import org.esa.beam.framework.dataio.ProductIOException;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.jai.ImageManager;
 import ucar.nc2.Attribute;
+import ucar.nc2.Variable;
 
 import java.awt.Dimension;
 import java.io.IOException;
+import java.util.List;
 
 public class CfInitialisationPart extends ProfileInitPartIO {
 
@@ -54,6 +59,12 @@ public class CfInitialisationPart extends ProfileInitPartIO {
                 }
             }
         }
+        if (product.getPreferredTileSize() == null && ctx.getProperty(Constants.CHUNK_READER_PROPERTY) != null) {
+            Dimension chunkAlignedTileSize = getChunkAlignedTileSize(ctx, product);
+            if (chunkAlignedTileSize != null) {
+                product.setPreferredTileSize(chunkAlignedTileSize);
+            }
+        }
         return product;
     }
 
@@ -75,6 +86,36 @@ public class CfInitialisationPart extends ProfileInitPartIO {
         writeable.addDimension(dimX, p.getSceneRasterWidth());
     }
 
+    /**
+     * Returns a tile size which is a multiple of the chunk size of the raster variables, so that every tile
+     * is composed of whole chunks, or {@code null} if the raster variables are not chunked.
+     */
+    private static Dimension getChunkAlignedTileSize(ProfileReadContext ctx, Product product) {
+        RasterDigest rasterDigest = ctx.getRasterDigest();
+        if (rasterDigest == null) {
+            return null;
+        }
+        for (Variable variable : rasterDigest.getRasterVariables()) {
+            int[] chunkShape = NetcdfChunkReader.getChunkShape(variable);
+            if (chunkShape != null) {
+                List<ucar.nc2.Dimension> dimensions = variable.getDimensions();
+                DimKey dimKey = new DimKey(dimensions.toArray(new ucar.nc2.Dimension[dimensions.size()]));
+                Dimension tileSize = ImageManager.getPreferredTileSize(product);
+                return new Dimension(
+                        alignToChunks(tileSize.width, chunkShape[dimKey.findXDimensionIndex()],
+                                      product.getSceneRasterWidth()),
+                        alignToChunks(tileSize.height, chunkShape[dimKey.findYDimensionIndex()],
+                                      product.getSceneRasterHeight()));
+            }
+        }
+        return null;
+    }
+
+    private static int alignToChunks(int tileSize, int chunkSize, int rasterSize) {
+        int chunkCount = Math.max(1, Math.round(tileSize / (float) chunkSize));
+        return Math.min(chunkCount * chunkSize, rasterSize);
+    }
+
     public String readProductType(final ProfileReadContext ctx) {
         Attribute productType = ctx.getNetcdfFile().findGlobalAttribute("Conventions");
         if (productType != null) {
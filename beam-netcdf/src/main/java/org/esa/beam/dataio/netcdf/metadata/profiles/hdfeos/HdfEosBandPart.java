@@ -23,6 +23,7 @@ import org.esa.beam.dataio.netcdf.metadata.profiles.cf.CfBandPart;
 import org.esa.beam.dataio.netcdf.util.AbstractNetcdfMultiLevelImage;
 import org.esa.beam.dataio.netcdf.util.Constants;
 import org.esa.beam.dataio.netcdf.util.DataTypeUtils;
+import org.esa.beam.dataio.netcdf.util.NetcdfChunkReader;
 import org.esa.beam.dataio.netcdf.util.NetcdfMultiLevelImage;
 import org.esa.beam.dataio.netcdf.util.NetcdfOpImage;
 import org.esa.beam.dataio.netcdf.util.RasterDigest;
@@ -89,6 +90,7 @@ public class HdfEosBandPart extends ProfilePartIO {
         protected RenderedImage createImage(int level) {
             RasterDataNode rdn = getRasterDataNode();
             NetcdfFile lock = ctx.getNetcdfFile();
+            NetcdfChunkReader chunkReader = (NetcdfChunkReader) ctx.getProperty(Constants.CHUNK_READER_PROPERTY);
             final Object object = ctx.getProperty(Constants.Y_FLIPPED_PROPERTY_NAME);
             boolean isYFlipped = object instanceof Boolean && (Boolean) object;
             int dataBufferType = ImageManager.getDataBufferType(rdn.getDataType());
@@ -107,7 +109,7 @@ public class HdfEosBandPart extends ProfilePartIO {
                                                              sourceWidth, sourceHeight, imageTileSize, resolutionLevel);
                 }
             } else {
-                netcdfImg = new NetcdfOpImage(variable, imageOrigin, isYFlipped, lock,
+                netcdfImg = new NetcdfOpImage(variable, imageOrigin, isYFlipped, lock, chunkReader,
                                               dataBufferType, sourceWidth, sourceHeight, imageTileSize, resolutionLevel);
             }
 
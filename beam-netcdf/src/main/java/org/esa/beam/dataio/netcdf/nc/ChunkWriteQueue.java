@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.netcdf.nc;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Performs the writes of completed chunks on a single background thread, in the order in which they
+ * have been submitted.
+ * <p/>
+ * The amount of data waiting to be written is bounded. If it would exceed the limit,
+ * {@link #submit(long, Write)} blocks until enough data has been written. A failed write is reported
+ * by the next call to {@link #submit(long, Write)} or {@link #close()}; subsequent writes are skipped.
+ * <p/>
+ * A queue created by {@link #ChunkWriteQueue()} is synchronous: it has no background thread and performs
+ * every write on the submitting thread.
+ */
+class ChunkWriteQueue {
+
+    /**
+     * A write of a chunk.
+     */
+    interface Write {
+
+        void run() throws IOException;
+    }
+
+    private final long maxQueuedBytes;
+    private final ExecutorService executor;
+    private final Object lock;
+    private long queuedBytes;
+    private long peakQueuedBytes;
+    private int writeCount;
+    private Throwable failure;
+
+    /**
+     * Creates a synchronous queue, which performs every write immediately on the submitting thread.
+     */
+    ChunkWriteQueue() {
+        this.maxQueuedBytes = Long.MAX_VALUE;
+        this.executor = null;
+        this.lock = new Object();
+    }
+
+    ChunkWriteQueue(String name, long maxQueuedBytes) {
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.executor = Executors.newSingleThreadExecutor(new WriterThreadFactory(name));
+        this.lock = new Object();
+    }
+
+    /**
+     * Submits a write. The data referenced by the write must not be modified afterwards.
+     *
+     * @param sizeBytes The size of the data to be written.
+     * @param write     The write.
+     *
+     * @return a future which is done when the data has been written.
+     *
+     * @throws IOException if a previous write has failed, or the calling thread is interrupted while waiting.
+     */
+    Future<?> submit(final long sizeBytes, final Write write) throws IOException {
+        synchronized (lock) {
+            checkFailure();
+            // always admit a write if nothing is queued, even if it exceeds the limit on its own
+            while (queuedBytes > 0 && queuedBytes + sizeBytes > maxQueuedBytes) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for chunks to be written.", e);
+                }
+                checkFailure();
+            }
+            queuedBytes += sizeBytes;
+            peakQueuedBytes = Math.max(peakQueuedBytes, queuedBytes);
+        }
+        final Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (getFailure() == null) {
+                        write.run();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    setFailure(e);
+                } finally {
+                    synchronized (lock) {
+                        queuedBytes -= sizeBytes;
+                        writeCount++;
+                        lock.notifyAll();
+                    }
+                }
+            }
+        };
+        if (executor == null) {
+            final FutureTask<Object> task = new FutureTask<Object>(runnable, null);
+            task.run();
+            synchronized (lock) {
+                checkFailure();
+            }
+            return task;
+        }
+        return executor.submit(runnable);
+    }
+
+    /**
+     * Submits a write and waits until it has been performed.
+     *
+     * @param write The write.
+     *
+     * @throws IOException if this or a previous write has failed.
+     */
+    void submitAndWait(Write write) throws IOException {
+        final Future<?> future = submit(0, write);
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for data to be written.", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        synchronized (lock) {
+            checkFailure();
+        }
+    }
+
+    /**
+     * Waits until all submitted writes have been performed and stops the writer thread.
+     *
+     * @throws IOException if a write has failed.
+     */
+    void close() throws IOException {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    // wait until the last chunk has been written
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for chunks to be written.", e);
+            }
+        }
+        synchronized (lock) {
+            checkFailure();
+        }
+    }
+
+    long getPeakQueuedBytes() {
+        synchronized (lock) {
+            return peakQueuedBytes;
+        }
+    }
+
+    int getWriteCount() {
+        synchronized (lock) {
+            return writeCount;
+        }
+    }
+
+    private Throwable getFailure() {
+        synchronized (lock) {
+            return failure;
+        }
+    }
+
+    private void setFailure(Throwable t) {
+        synchronized (lock) {
+            if (failure == null) {
+                failure = t;
+            }
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            if (failure instanceof IOException) {
+                throw new IOException(failure.getMessage(), failure);
+            }
+            throw new IOException(failure);
+        }
+    }
+
+    private static class WriterThreadFactory implements ThreadFactory {
+
+        private final String name;
+
+        private WriterThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
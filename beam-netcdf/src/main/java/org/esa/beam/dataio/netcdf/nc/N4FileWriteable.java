@@ -18,6 +18,7 @@ package org.esa.beam.dataio.netcdf.nc;
 
 import edu.ucar.ral.nujan.netcdf.*;
 import org.esa.beam.dataio.netcdf.util.VariableNameHelper;
+import org.esa.beam.util.logging.BeamLogManager;
 import ucar.ma2.DataType;
 
 import java.awt.*;
@@ -27,26 +28,38 @@ import java.util.Map;
 
 /**
  * A wrapper around the netCDF 4 {@link edu.ucar.ral.nujan.netcdf.NhFileWriter}.
+ * <p/>
+ * The data of the variables is compressed and written on a background thread, so that the threads computing
+ * the data do not have to wait for it. The size of the data waiting to be written can be limited in MiB with the
+ * system property {@value #WRITE_QUEUE_SIZE_PROPERTY}.
  *
  * @author MarcoZ
  */
 public class N4FileWriteable implements NFileWriteable {
 
+    public static final String WRITE_QUEUE_SIZE_PROPERTY = "beam.netcdf.writeQueueSize";
+
     private static final int DEFAULT_COMPRESSION = 6;
+    private static final int DEFAULT_WRITE_QUEUE_SIZE = 256;
     private final NhFileWriter nhFileWriter;
+    private final ChunkWriteQueue writeQueue;
+    private final String filename;
     private Map<String, NVariable> variables;
 
     public static NFileWriteable create(String filename) throws IOException {
         try {
-            return new N4FileWriteable(new NhFileWriter(filename, NhFileWriter.OPT_OVERWRITE));
+            return new N4FileWriteable(new NhFileWriter(filename, NhFileWriter.OPT_OVERWRITE), filename);
         } catch (NhException e) {
             throw new IOException(e);
         }
     }
 
-    private N4FileWriteable(NhFileWriter nhFileWriter) {
+    private N4FileWriteable(NhFileWriter nhFileWriter, String filename) {
         this.nhFileWriter = nhFileWriter;
+        this.filename = filename;
         this.variables = new HashMap<>();
+        long maxQueuedBytes = Long.getLong(WRITE_QUEUE_SIZE_PROPERTY, DEFAULT_WRITE_QUEUE_SIZE) * 1024L * 1024L;
+        this.writeQueue = new ChunkWriteQueue("NetCDF4 writer " + filename, maxQueuedBytes);
     }
 
     @Override
@@ -85,7 +98,7 @@ public class N4FileWriteable implements NFileWriteable {
         int nhType = N4DataType.convert(dataType, unsigned);
         try {
             NhVariable variable = rootGroup.addVariable(name, nhType, new NhDimension[0], null, null, 0);
-            NVariable nVariable = new N4Variable(variable, null);
+            NVariable nVariable = new N4Variable(variable, null, writeQueue);
             variables.put(name, nVariable);
             return nVariable;
         } catch (NhException e) {
@@ -141,7 +154,7 @@ public class N4FileWriteable implements NFileWriteable {
         try {
             NhVariable variable = rootGroup.addVariable(name, nhType, nhDims, chunkLens, fillValue,
                     compressionLevel);
-            NVariable nVariable = new N4Variable(variable, tileSize);
+            NVariable nVariable = new N4Variable(variable, tileSize, writeQueue);
             variables.put(name, nVariable);
             return nVariable;
         } catch (NhException e) {
@@ -176,9 +189,16 @@ public class N4FileWriteable implements NFileWriteable {
     @Override
     public void close() throws IOException {
         try {
-            nhFileWriter.close();
-        } catch (NhException e) {
-            throw new IOException(e);
+            writeQueue.close();
+            BeamLogManager.getSystemLogger().info(String.format(
+                    "Written %d chunks to %s, at most %.1f MiB of data have been waiting to be written",
+                    writeQueue.getWriteCount(), filename, writeQueue.getPeakQueuedBytes() / (1024.0 * 1024.0)));
+        } finally {
+            try {
+                nhFileWriter.close();
+            } catch (NhException e) {
+                throw new IOException(e);
+            }
         }
     }
 
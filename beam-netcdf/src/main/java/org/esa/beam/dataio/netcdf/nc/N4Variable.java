@@ -38,11 +38,20 @@ public class N4Variable implements NVariable {
 
     private final NhVariable variable;
     private final Dimension tileSize;
+    private final ChunkWriteQueue writeQueue;
     private ChunkWriter writer;
 
+    /**
+     * Creates a variable which writes its data immediately on the calling thread.
+     */
     public N4Variable(NhVariable variable, Dimension tileSize) {
+        this(variable, tileSize, new ChunkWriteQueue());
+    }
+
+    N4Variable(NhVariable variable, Dimension tileSize, ChunkWriteQueue writeQueue) {
         this.variable = variable;
         this.tileSize = tileSize;
+        this.writeQueue = writeQueue;
     }
 
     @Override
@@ -88,13 +97,19 @@ public class N4Variable implements NVariable {
     }
 
     @Override
-    public void writeFully(Array values) throws IOException {
-        int[] idxes = new int[values.getShape().length];
-        try {
-            variable.writeData(idxes, values);
-        } catch (NhException e) {
-            throw new IOException(e);
-        }
+    public void writeFully(final Array values) throws IOException {
+        final int[] idxes = new int[values.getShape().length];
+        // the writer is not thread-safe, therefore all data is written by the thread of the write queue
+        writeQueue.submitAndWait(new ChunkWriteQueue.Write() {
+            @Override
+            public void run() throws IOException {
+                try {
+                    variable.writeData(idxes, values);
+                } catch (NhException e) {
+                    throw new IOException(e);
+                }
+            }
+        });
     }
 
     @Override
@@ -130,12 +145,22 @@ public class N4Variable implements NVariable {
                 final int[] origin = new int[]{rect.y, rect.x};
                 final int[] shape = new int[]{rect.height, rect.width};
                 DataType dataType = N4DataType.convert(variable.getType());
-                final Array values = Array.factory(dataType, shape, data.getElems());
-                try {
-                    variable.writeData(origin, values);
-                } catch (NhException e) {
-                    throw new IOException(e);
-                }
+                // the data may be the caller's buffer, which can be reused before the chunk is written
+                final ProductData chunkData = ProductData.createInstance(data.getType(), data.getNumElems());
+                System.arraycopy(data.getElems(), 0, chunkData.getElems(), 0, data.getNumElems());
+                final Array values = Array.factory(dataType, shape, chunkData.getElems());
+                // compression and writing are done on the thread of the write queue
+                final long sizeBytes = (long) chunkData.getNumElems() * chunkData.getElemSize();
+                writeQueue.submit(sizeBytes, new ChunkWriteQueue.Write() {
+                    @Override
+                    public void run() throws IOException {
+                        try {
+                            variable.writeData(origin, values);
+                        } catch (NhException e) {
+                            throw new IOException(e);
+                        }
+                    }
+                });
                 writtenChunkRects.add(rect);
             }
         }
@@ -64,5 +64,6 @@ public interface Constants {
     String Y_FLIPPED_PROPERTY_NAME = "yFlipped";
     String CONVERT_LOGSCALED_BANDS_PROPERTY = "convertLogScaledBands";
     String PRODUCT_FILENAME_PROPERTY = "productName";
+    String CHUNK_READER_PROPERTY = "chunkReader";
 
 }
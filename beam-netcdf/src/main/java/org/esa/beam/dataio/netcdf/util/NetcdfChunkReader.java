@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.netcdf.util;
+
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the chunks of chunked (NetCDF-4/HDF5) variables of a file concurrently.
+ * <p/>
+ * Every thread reads through its own handle of the file, so that reads of independent chunks are not
+ * serialised behind a single lock. Decoded chunks are kept in a cache which is shared by all readers and
+ * bounded by its size in bytes. The size can be set in MiB with the system property
+ * {@value #CHUNK_CACHE_SIZE_PROPERTY}, it defaults to {@value #DEFAULT_CHUNK_CACHE_SIZE} MiB.
+ */
+public class NetcdfChunkReader implements Closeable {
+
+    public static final String CHUNK_CACHE_SIZE_PROPERTY = "beam.netcdf.chunkCacheSize";
+    public static final int DEFAULT_CHUNK_CACHE_SIZE = 128;
+
+    // the name of the chunk size attribute differs between versions of the NetCDF library
+    private static final String[] CHUNK_SIZE_ATT_NAMES = {"_ChunkSizes", "_ChunkSize"};
+
+    private static final ChunkCache CHUNK_CACHE =
+            new ChunkCache(Long.getLong(CHUNK_CACHE_SIZE_PROPERTY, DEFAULT_CHUNK_CACHE_SIZE) * 1024L * 1024L);
+
+    private final String location;
+    private final ThreadLocal<FileHandle> fileHandle;
+    private final List<FileHandle> openedHandles;
+    private volatile boolean closed;
+
+    private NetcdfChunkReader(String location) {
+        this.location = location;
+        this.fileHandle = new ThreadLocal<>();
+        this.openedHandles = new ArrayList<>();
+    }
+
+    /**
+     * Creates a chunk reader for the given file.
+     *
+     * @param netcdfFile The NetCDF file.
+     *
+     * @return the chunk reader, or {@code null} if the file cannot be opened more than once,
+     * e.g. because it is read from a stream.
+     */
+    public static NetcdfChunkReader create(NetcdfFile netcdfFile) {
+        final String location = netcdfFile.getLocation();
+        if (location == null || !new File(location).isFile()) {
+            return null;
+        }
+        return new NetcdfChunkReader(location);
+    }
+
+    /**
+     * Returns the shape of the chunks of a variable.
+     *
+     * @param variable The variable.
+     *
+     * @return the chunk shape, or {@code null} if the variable is not chunked.
+     */
+    public static int[] getChunkShape(Variable variable) {
+        for (String attName : CHUNK_SIZE_ATT_NAMES) {
+            final Attribute attribute = variable.findAttribute(attName);
+            if (attribute != null) {
+                return parseChunkShape(attribute, variable.getRank());
+            }
+        }
+        return null;
+    }
+
+    static int[] parseChunkShape(Attribute attribute, int rank) {
+        if (attribute.isString() || attribute.getLength() != rank) {
+            return null;
+        }
+        final int[] chunkShape = new int[rank];
+        for (int i = 0; i < rank; i++) {
+            final Number value = attribute.getNumericValue(i);
+            if (value == null || value.intValue() <= 0) {
+                return null;
+            }
+            chunkShape[i] = value.intValue();
+        }
+        return chunkShape;
+    }
+
+    /**
+     * Reads a chunk of a variable.
+     * <p/>
+     * Only the section of the chunk given by {@code origin} and {@code shape} is read. For the raster dimensions,
+     * this is the chunk clipped to the variable's extent, for all other dimensions it is a single index.
+     * The returned array must not be modified, because it may be shared with other callers.
+     *
+     * @param variable The variable.
+     * @param origin   The origin of the chunk section.
+     * @param shape    The shape of the chunk section.
+     *
+     * @return the data of the chunk section, in the variable's dimension order.
+     *
+     * @throws IOException if the chunk cannot be read.
+     */
+    public Array readChunk(Variable variable, int[] origin, int[] shape) throws IOException {
+        final ChunkKey key = new ChunkKey(this, variable.getFullName(), origin, shape);
+        Array chunk = CHUNK_CACHE.get(key);
+        if (chunk == null) {
+            final Variable handleVariable = getFileHandle().findVariable(variable.getFullNameEscaped());
+            if (handleVariable == null) {
+                throw new IOException("Variable '" + variable.getFullName() + "' not found in " + location);
+            }
+            try {
+                chunk = handleVariable.read(new Section(origin, shape));
+            } catch (InvalidRangeException e) {
+                throw new IllegalArgumentException(e);
+            }
+            CHUNK_CACHE.put(key, chunk);
+        }
+        return chunk;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        CHUNK_CACHE.removeAll(this);
+        synchronized (openedHandles) {
+            // the handles stay referenced by the thread locals of other threads until these end,
+            // so only the files are kept by the handles
+            for (FileHandle handle : openedHandles) {
+                handle.file.close();
+                handle.file = null;
+            }
+            openedHandles.clear();
+        }
+        fileHandle.remove();
+    }
+
+    private NetcdfFile getFileHandle() throws IOException {
+        if (closed) {
+            throw new IOException("Chunk reader has been closed: " + location);
+        }
+        FileHandle handle = fileHandle.get();
+        if (handle == null) {
+            final NetcdfFile file = NetcdfFileOpener.open(location);
+            if (file == null) {
+                throw new IOException("Failed to open file " + location);
+            }
+            handle = new FileHandle(file);
+            synchronized (openedHandles) {
+                if (closed) {
+                    file.close();
+                    throw new IOException("Chunk reader has been closed: " + location);
+                }
+                openedHandles.add(handle);
+            }
+            fileHandle.set(handle);
+        }
+        final NetcdfFile file = handle.file;
+        if (file == null) {
+            throw new IOException("Chunk reader has been closed: " + location);
+        }
+        return file;
+    }
+
+    private static final class FileHandle {
+
+        private volatile NetcdfFile file;
+
+        private FileHandle(NetcdfFile file) {
+            this.file = file;
+        }
+    }
+
+    private static final class ChunkKey {
+
+        private final NetcdfChunkReader reader;
+        private final String variableName;
+        private final int[] origin;
+        private final int[] shape;
+
+        private ChunkKey(NetcdfChunkReader reader, String variableName, int[] origin, int[] shape) {
+            this.reader = reader;
+            this.variableName = variableName;
+            this.origin = origin.clone();
+            this.shape = shape.clone();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ChunkKey)) {
+                return false;
+            }
+            final ChunkKey other = (ChunkKey) o;
+            return reader == other.reader
+                   && variableName.equals(other.variableName)
+                   && Arrays.equals(origin, other.origin)
+                   && Arrays.equals(shape, other.shape);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(reader);
+            result = 31 * result + variableName.hashCode();
+            result = 31 * result + Arrays.hashCode(origin);
+            result = 31 * result + Arrays.hashCode(shape);
+            return result;
+        }
+    }
+
+    /**
+     * A least-recently-used cache of chunks, bounded by the size of the chunks in bytes.
+     */
+    static final class ChunkCache {
+
+        private final long maxSize;
+        private final LinkedHashMap<Object, Array> chunks;
+        private long size;
+
+        ChunkCache(long maxSize) {
+            this.maxSize = maxSize;
+            this.chunks = new LinkedHashMap<>(64, 0.75f, true);
+        }
+
+        synchronized Array get(Object key) {
+            return chunks.get(key);
+        }
+
+        synchronized void put(Object key, Array chunk) {
+            final long chunkSize = chunk.getSizeBytes();
+            if (chunkSize > maxSize) {
+                return;
+            }
+            final Array previous = chunks.put(key, chunk);
+            if (previous != null) {
+                size -= previous.getSizeBytes();
+            }
+            size += chunkSize;
+            final Iterator<Array> iterator = chunks.values().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                size -= iterator.next().getSizeBytes();
+                iterator.remove();
+            }
+        }
+
+        synchronized long getSize() {
+            return size;
+        }
+
+        private synchronized void removeAll(NetcdfChunkReader reader) {
+            final Iterator<Map.Entry<Object, Array>> iterator = chunks.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<Object, Array> entry = iterator.next();
+                if (entry.getKey() instanceof ChunkKey && ((ChunkKey) entry.getKey()).reader == reader) {
+                    size -= entry.getValue().getSizeBytes();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+}
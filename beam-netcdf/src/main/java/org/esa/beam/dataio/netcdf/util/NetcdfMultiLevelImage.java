@@ -64,6 +64,7 @@ public class NetcdfMultiLevelImage extends AbstractNetcdfMultiLevelImage {
     protected RenderedImage createImage(int level) {
         RasterDataNode rdn = getRasterDataNode();
         NetcdfFile lock = ctx.getNetcdfFile();
+        NetcdfChunkReader chunkReader = (NetcdfChunkReader) ctx.getProperty(Constants.CHUNK_READER_PROPERTY);
         final Object object = ctx.getProperty(Constants.Y_FLIPPED_PROPERTY_NAME);
         boolean isYFlipped = object instanceof Boolean && (Boolean) object;
         int dataBufferType = ImageManager.getDataBufferType(rdn.getDataType());
@@ -81,7 +82,7 @@ public class NetcdfMultiLevelImage extends AbstractNetcdfMultiLevelImage {
                                                     sceneRasterWidth, sceneRasterHeight, imageTileSize, resolutionLevel);
             }
         } else {
-            return new NetcdfOpImage(variable, imageOrigin, isYFlipped, lock,
+            return new NetcdfOpImage(variable, imageOrigin, isYFlipped, lock, chunkReader,
                                      dataBufferType, sceneRasterWidth, sceneRasterHeight, imageTileSize, resolutionLevel);
         }
     }
@@ -18,6 +18,7 @@ package org.esa.beam.dataio.netcdf.util;
 
 import org.esa.beam.jai.ResolutionLevel;
 import org.esa.beam.jai.SingleBandedOpImage;
+import org.esa.beam.util.ImageUtils;
 import ucar.ma2.Array;
 import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
@@ -28,14 +29,21 @@ import ucar.nc2.Variable;
 import javax.media.jai.PlanarImage;
 import java.awt.Dimension;
 import java.awt.Rectangle;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
 import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * An image that renders the data of a netcdf variable. Using the
  * "stride" feature to allow for faster subsetting.
+ * <p/>
+ * If a {@link NetcdfChunkReader} is given and the variable is chunked, the data is read chunk by chunk
+ * without holding the read lock, and copied directly into the tile's data buffer.
  */
 public class NetcdfOpImage extends SingleBandedOpImage {
 
@@ -48,6 +56,8 @@ public class NetcdfOpImage extends SingleBandedOpImage {
     private final int xIndex;
     private final int yIndex;
     private final int startIndexToCopy;
+    private final NetcdfChunkReader chunkReader;
+    private final int[] chunkShape;
     private int halfSourceWidth;
 
 
@@ -55,16 +65,16 @@ public class NetcdfOpImage extends SingleBandedOpImage {
                                                Object readLock, int dataBufferType,
                                                int sourceWidth, int sourceHeight,
                                                Dimension tileSize, ResolutionLevel level) {
-        return new NetcdfOpImage(variable, imageOrigin, flipY, readLock, dataBufferType, sourceWidth, sourceHeight,
-                                 tileSize, level, ArrayConverter.LSB);
+        return new NetcdfOpImage(variable, imageOrigin, flipY, readLock, null, dataBufferType,
+                                 sourceWidth, sourceHeight, tileSize, level, ArrayConverter.LSB);
     }
 
     public static RenderedImage createMsbImage(Variable variable, int[] imageOrigin, boolean flipY,
                                                Object readLock, int dataBufferType,
                                                int sourceWidth, int sourceHeight,
                                                Dimension tileSize, ResolutionLevel level) {
-        return new NetcdfOpImage(variable, imageOrigin, flipY, readLock, dataBufferType, sourceWidth, sourceHeight,
-                                 tileSize, level, ArrayConverter.MSB);
+        return new NetcdfOpImage(variable, imageOrigin, flipY, readLock, null, dataBufferType,
+                                 sourceWidth, sourceHeight, tileSize, level, ArrayConverter.MSB);
     }
 
     /**
@@ -83,17 +93,41 @@ public class NetcdfOpImage extends SingleBandedOpImage {
     public NetcdfOpImage(Variable variable, int[] imageOrigin, boolean flipY, Object readLock, int dataBufferType,
                          int sourceWidth, int sourceHeight,
                          Dimension tileSize, ResolutionLevel level) {
-        this(variable, imageOrigin, flipY, readLock, dataBufferType, sourceWidth, sourceHeight, tileSize, level,
-             ArrayConverter.IDENTITY);
+        this(variable, imageOrigin, flipY, readLock, null, dataBufferType, sourceWidth, sourceHeight, tileSize, level);
     }
 
-    private NetcdfOpImage(Variable variable, int[] imageOrigin, boolean flipY, Object readLock, int dataBufferType,
+    /**
+     * Used to construct an image which reads chunked variables concurrently.
+     *
+     * @param variable       The netCDF variable
+     * @param imageOrigin    The index within a multidimensional image dataset
+     * @param flipY          The {@code true} if this data should be flipped along the yAxis.
+     * @param readLock       The the lock used for reading, usually the netcdf file that contains the variable
+     * @param chunkReader    The reader used for chunked variables, may be {@code null}.
+     * @param dataBufferType The data type.
+     * @param sourceWidth    The width of the level 0 image.
+     * @param sourceHeight   The height of the level 0 image.
+     * @param tileSize       The tile size for this image.
+     * @param level          The resolution level.
+     */
+    public NetcdfOpImage(Variable variable, int[] imageOrigin, boolean flipY, Object readLock,
+                         NetcdfChunkReader chunkReader, int dataBufferType,
+                         int sourceWidth, int sourceHeight,
+                         Dimension tileSize, ResolutionLevel level) {
+        this(variable, imageOrigin, flipY, readLock, chunkReader, dataBufferType, sourceWidth, sourceHeight,
+             tileSize, level, ArrayConverter.IDENTITY);
+    }
+
+    private NetcdfOpImage(Variable variable, int[] imageOrigin, boolean flipY, Object readLock,
+                          NetcdfChunkReader chunkReader, int dataBufferType,
                           int sourceWidth, int sourceHeight,
                           Dimension tileSize, ResolutionLevel level, ArrayConverter arrayConverter) {
         super(dataBufferType, sourceWidth, sourceHeight, tileSize, null, level);
         this.variable = variable;
         this.imageOrigin = imageOrigin.clone();
         this.readLock = readLock;
+        this.chunkReader = chunkReader;
+        this.chunkShape = chunkReader != null ? NetcdfChunkReader.getChunkShape(variable) : null;
         this.flipY = flipY;
         this.halfSourceWidth = sourceWidth / 2;
         this.sourceHeight = sourceHeight;
@@ -148,6 +182,11 @@ public class NetcdfOpImage extends SingleBandedOpImage {
         stride[yIndex] = (int) scale;
         stride[xIndex] = (int) scale;
 
+        if (chunkShape != null && arrayConverter == ArrayConverter.IDENTITY
+            && readChunks(tile, destRect, origin, stride)) {
+            return;
+        }
+
         Array array;
         synchronized (readLock) {
             try {
@@ -183,6 +222,128 @@ public class NetcdfOpImage extends SingleBandedOpImage {
         }
     }
 
+    /**
+     * Reads the chunks intersecting the requested section and copies their data directly into the tile.
+     *
+     * @return {@code false}, if nothing has been read, because the layout of the tile or the type of the data
+     * does not allow a direct copy.
+     */
+    private boolean readChunks(WritableRaster tile, Rectangle destRect, int[] origin, int[] stride) {
+        final SampleModel sampleModel = tile.getSampleModel();
+        if (!(sampleModel instanceof ComponentSampleModel) || sampleModel.getNumBands() != 1) {
+            return false;
+        }
+        final ComponentSampleModel componentSampleModel = (ComponentSampleModel) sampleModel;
+        if (componentSampleModel.getPixelStride() != 1 || componentSampleModel.getBankIndices()[0] != 0) {
+            return false;
+        }
+        final DataBuffer dataBuffer = tile.getDataBuffer();
+        final Object destData = ImageUtils.getPrimitiveArray(dataBuffer);
+        if (variable.getDataType().getPrimitiveClassType() != destData.getClass().getComponentType()) {
+            return false;
+        }
+        final int scanlineStride = componentSampleModel.getScanlineStride();
+        final int destOffset = dataBuffer.getOffset()
+                               + componentSampleModel.getOffset(destRect.x - tile.getSampleModelTranslateX(),
+                                                                destRect.y - tile.getSampleModelTranslateY());
+
+        final int[] variableShape = variable.getShape();
+        final int chunkWidth = chunkShape[xIndex];
+        final int chunkHeight = chunkShape[yIndex];
+        final int x0 = origin[xIndex];
+        final int y0 = origin[yIndex];
+        final int strideX = stride[xIndex];
+        final int strideY = stride[yIndex];
+        final int lastX = x0 + (destRect.width - 1) * strideX;
+        final int lastY = y0 + (destRect.height - 1) * strideY;
+
+        final int[] chunkOrigin = origin.clone();
+        final int[] chunkSectionShape = new int[origin.length];
+        Arrays.fill(chunkSectionShape, 1);
+        for (int chunkY = y0 / chunkHeight; chunkY <= lastY / chunkHeight; chunkY++) {
+            final int chunkY0 = chunkY * chunkHeight;
+            final int chunkSectionHeight = Math.min(chunkHeight, variableShape[yIndex] - chunkY0);
+            // the rows (in read order) of the section which are located in this chunk
+            final int rowStart = Math.max(0, ceilDiv(chunkY0 - y0, strideY));
+            final int rowEnd = Math.min(destRect.height - 1, (chunkY0 + chunkSectionHeight - 1 - y0) / strideY);
+            for (int chunkX = x0 / chunkWidth; chunkX <= lastX / chunkWidth; chunkX++) {
+                final int chunkX0 = chunkX * chunkWidth;
+                final int chunkSectionWidth = Math.min(chunkWidth, variableShape[xIndex] - chunkX0);
+                final int colStart = Math.max(0, ceilDiv(chunkX0 - x0, strideX));
+                final int colEnd = Math.min(destRect.width - 1, (chunkX0 + chunkSectionWidth - 1 - x0) / strideX);
+                if (rowStart > rowEnd || colStart > colEnd) {
+                    continue;
+                }
+
+                chunkOrigin[yIndex] = chunkY0;
+                chunkOrigin[xIndex] = chunkX0;
+                chunkSectionShape[yIndex] = chunkSectionHeight;
+                chunkSectionShape[xIndex] = chunkSectionWidth;
+                final Object chunkData;
+                try {
+                    chunkData = chunkReader.readChunk(variable, chunkOrigin, chunkSectionShape).getStorage();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+
+                // all dimensions but x and y have a size of 1 in the chunk section
+                final int chunkStepX = xIndex > yIndex ? 1 : chunkSectionHeight;
+                final int chunkStepY = xIndex > yIndex ? chunkSectionWidth : 1;
+                final int count = colEnd - colStart + 1;
+                for (int row = rowStart; row <= rowEnd; row++) {
+                    final int destRow = flipY ? destRect.height - 1 - row : row;
+                    final int chunkIndex = (y0 + row * strideY - chunkY0) * chunkStepY
+                                           + (x0 + colStart * strideX - chunkX0) * chunkStepX;
+                    final int destIndex = destOffset + destRow * scanlineStride + colStart;
+                    copyElements(chunkData, chunkIndex, strideX * chunkStepX, destData, destIndex, count);
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return a > 0 ? (a + b - 1) / b : a / b;
+    }
+
+    private static void copyElements(Object src, int srcPos, int srcStep, Object dest, int destPos, int count) {
+        if (srcStep == 1) {
+            System.arraycopy(src, srcPos, dest, destPos, count);
+        } else if (src instanceof byte[]) {
+            final byte[] s = (byte[]) src;
+            final byte[] d = (byte[]) dest;
+            for (int i = 0; i < count; i++) {
+                d[destPos + i] = s[srcPos + i * srcStep];
+            }
+        } else if (src instanceof short[]) {
+            final short[] s = (short[]) src;
+            final short[] d = (short[]) dest;
+            for (int i = 0; i < count; i++) {
+                d[destPos + i] = s[srcPos + i * srcStep];
+            }
+        } else if (src instanceof int[]) {
+            final int[] s = (int[]) src;
+            final int[] d = (int[]) dest;
+            for (int i = 0; i < count; i++) {
+                d[destPos + i] = s[srcPos + i * srcStep];
+            }
+        } else if (src instanceof float[]) {
+            final float[] s = (float[]) src;
+            final float[] d = (float[]) dest;
+            for (int i = 0; i < count; i++) {
+                d[destPos + i] = s[srcPos + i * srcStep];
+            }
+        } else if (src instanceof double[]) {
+            final double[] s = (double[]) src;
+            final double[] d = (double[]) dest;
+            for (int i = 0; i < count; i++) {
+                d[destPos + i] = s[srcPos + i * srcStep];
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported data type: " + src.getClass());
+        }
+    }
+
     private boolean isGlobalShifted180() {
         for (Attribute attribute : variable.getAttributes()) {
             // for the special case of a global image shifted by 180deg longitude, this attribute was added in CfGeocodingPart
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.netcdf.nc;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ChunkWriteQueueTest {
+
+    @Test
+    public void testWritesInSubmissionOrderWithBoundedQueue() throws Exception {
+        final ChunkWriteQueue queue = new ChunkWriteQueue("test writer", 300);
+        final List<Integer> written = Collections.synchronizedList(new ArrayList<Integer>());
+        for (int i = 0; i < 20; i++) {
+            final int index = i;
+            queue.submit(100, new ChunkWriteQueue.Write() {
+                @Override
+                public void run() throws IOException {
+                    sleep(2);
+                    written.add(index);
+                }
+            });
+        }
+        queue.close();
+
+        assertEquals(20, written.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, written.get(i).intValue());
+        }
+        assertEquals(20, queue.getWriteCount());
+        assertTrue(queue.getPeakQueuedBytes() <= 300);
+    }
+
+    @Test
+    public void testFailureIsReported() throws Exception {
+        final ChunkWriteQueue queue = new ChunkWriteQueue("test writer", 1000);
+        final IOException failure = new IOException("disk full");
+        final boolean[] writtenAfterFailure = new boolean[1];
+        queue.submit(10, new ChunkWriteQueue.Write() {
+            @Override
+            public void run() throws IOException {
+                throw failure;
+            }
+        });
+        try {
+            queue.submitAndWait(new ChunkWriteQueue.Write() {
+                @Override
+                public void run() throws IOException {
+                    writtenAfterFailure[0] = true;
+                }
+            });
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertSame(failure, e.getCause());
+        }
+        try {
+            queue.close();
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertSame(failure, e.getCause());
+        }
+        assertFalse(writtenAfterFailure[0]);
+    }
+
+    @Test
+    public void testSynchronousQueueWritesOnSubmittingThread() throws Exception {
+        final ChunkWriteQueue queue = new ChunkWriteQueue();
+        final Thread submittingThread = Thread.currentThread();
+        final List<Thread> writingThreads = new ArrayList<Thread>();
+        for (int i = 0; i < 3; i++) {
+            queue.submit(100, new ChunkWriteQueue.Write() {
+                @Override
+                public void run() throws IOException {
+                    writingThreads.add(Thread.currentThread());
+                }
+            });
+            assertEquals(i + 1, writingThreads.size());
+        }
+        queue.close();
+
+        assertEquals(3, queue.getWriteCount());
+        for (Thread writingThread : writingThreads) {
+            assertSame(submittingThread, writingThread);
+        }
+
+        final IOException failure = new IOException("disk full");
+        try {
+            queue.submit(10, new ChunkWriteQueue.Write() {
+                @Override
+                public void run() throws IOException {
+                    throw failure;
+                }
+            });
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
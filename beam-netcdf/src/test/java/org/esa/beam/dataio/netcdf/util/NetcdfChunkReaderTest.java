@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.netcdf.util;
+
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.Attribute;
+import ucar.nc2.Dimension;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFileWriteable;
+import ucar.nc2.Variable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class NetcdfChunkReaderTest {
+
+    @Test
+    public void testParseChunkShape() throws Exception {
+        final Attribute chunkSizes = new Attribute("_ChunkSizes", Arrays.<Number>asList(1, 256, 512));
+
+        assertArrayEquals(new int[]{1, 256, 512}, NetcdfChunkReader.parseChunkShape(chunkSizes, 3));
+        assertNull(NetcdfChunkReader.parseChunkShape(chunkSizes, 2));
+        assertNull(NetcdfChunkReader.parseChunkShape(new Attribute("_ChunkSizes", "256 512"), 2));
+        assertNull(NetcdfChunkReader.parseChunkShape(new Attribute("_ChunkSizes", Arrays.<Number>asList(0, 512)), 2));
+    }
+
+    @Test
+    public void testChunkCacheEvictsLeastRecentlyUsedChunks() throws Exception {
+        // room for two chunks of 100 floats
+        final NetcdfChunkReader.ChunkCache cache = new NetcdfChunkReader.ChunkCache(800);
+        final Array chunk1 = Array.factory(DataType.FLOAT, new int[]{10, 10});
+        final Array chunk2 = Array.factory(DataType.FLOAT, new int[]{10, 10});
+        final Array chunk3 = Array.factory(DataType.FLOAT, new int[]{10, 10});
+
+        cache.put("1", chunk1);
+        cache.put("2", chunk2);
+        assertSame(chunk1, cache.get("1"));
+        cache.put("3", chunk3);
+
+        assertSame(chunk1, cache.get("1"));
+        assertNull(cache.get("2"));
+        assertSame(chunk3, cache.get("3"));
+        assertEquals(800, cache.getSize());
+
+        // chunks larger than the cache are not kept
+        cache.put("4", Array.factory(DataType.FLOAT, new int[]{20, 20}));
+        assertNull(cache.get("4"));
+        assertEquals(800, cache.getSize());
+    }
+
+    @Test
+    public void testReadChunksWithSameOriginAndDifferentShapes() throws Exception {
+        final File file = createFile();
+        final NetcdfFile netcdfFile = NetcdfFile.open(file.getPath());
+        final NetcdfChunkReader chunkReader = NetcdfChunkReader.create(netcdfFile);
+        try {
+            final Variable variable = netcdfFile.findVariable("data");
+
+            final Array chunk1 = chunkReader.readChunk(variable, new int[]{0, 0}, new int[]{2, 3});
+            final Array chunk2 = chunkReader.readChunk(variable, new int[]{0, 0}, new int[]{4, 6});
+
+            assertArrayEquals(new int[]{2, 3}, chunk1.getShape());
+            assertArrayEquals(new int[]{4, 6}, chunk2.getShape());
+            assertEquals(7.0F, chunk1.getFloat(4), 0.0F);
+            assertEquals(23.0F, chunk2.getFloat(23), 0.0F);
+        } finally {
+            chunkReader.close();
+            netcdfFile.close();
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testReadChunkAfterClose() throws Exception {
+        final File file = createFile();
+        final NetcdfFile netcdfFile = NetcdfFile.open(file.getPath());
+        final NetcdfChunkReader chunkReader = NetcdfChunkReader.create(netcdfFile);
+        try {
+            final Variable variable = netcdfFile.findVariable("data");
+            chunkReader.readChunk(variable, new int[]{0, 0}, new int[]{2, 3});
+            chunkReader.close();
+            try {
+                chunkReader.readChunk(variable, new int[]{2, 3}, new int[]{2, 3});
+                fail();
+            } catch (IOException expected) {
+            }
+        } finally {
+            netcdfFile.close();
+            assertTrue(file.delete());
+        }
+    }
+
+    private static File createFile() throws IOException {
+        final File file = File.createTempFile("beam-netcdf-chunk-reader-", ".nc");
+        final NetcdfFileWriteable writeable = NetcdfFileWriteable.createNew(file.getPath());
+        try {
+            final Dimension yDim = writeable.addDimension("y", 4);
+            final Dimension xDim = writeable.addDimension("x", 6);
+            writeable.addVariable("data", DataType.FLOAT, new Dimension[]{yDim, xDim});
+            writeable.create();
+            final Array data = Array.factory(DataType.FLOAT, new int[]{4, 6});
+            for (int i = 0; i < 24; i++) {
+                data.setFloat(i, i);
+            }
+            writeable.write("data", data);
+        } catch (Exception e) {
+            throw new IOException(e);
+        } finally {
+            writeable.close();
+        }
+        return file;
+    }
+}
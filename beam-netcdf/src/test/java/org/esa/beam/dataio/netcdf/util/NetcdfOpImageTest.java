@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.netcdf.util;
+
+import org.esa.beam.jai.ResolutionLevel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.Attribute;
+import ucar.nc2.Dimension;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFileWriteable;
+import ucar.nc2.Variable;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the chunk-wise reading of {@link NetcdfOpImage} with reading sections of the variable.
+ * <p/>
+ * The test file is a NetCDF-3 file, its variables are declared as chunked by adding the chunk size
+ * attribute after opening it. Chunks are then read as sections of the chunk size.
+ */
+public class NetcdfOpImageTest {
+
+    private static final int WIDTH = 12;
+    private static final int HEIGHT = 14;
+    private static final java.awt.Dimension TILE_SIZE = new java.awt.Dimension(4, 3);
+
+    private File file;
+    private NetcdfFile netcdfFile;
+    private NetcdfChunkReader chunkReader;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("beam-netcdf-op-image-", ".nc");
+        final NetcdfFileWriteable writeable = NetcdfFileWriteable.createNew(file.getPath());
+        try {
+            final Dimension yDim = writeable.addDimension("y", HEIGHT);
+            final Dimension xDim = writeable.addDimension("x", WIDTH);
+            writeable.addVariable("yx", DataType.FLOAT, new Dimension[]{yDim, xDim});
+            writeable.addVariable("xy", DataType.FLOAT, new Dimension[]{xDim, yDim});
+            writeable.create();
+
+            final Array yx = Array.factory(DataType.FLOAT, new int[]{HEIGHT, WIDTH});
+            final Array xy = Array.factory(DataType.FLOAT, new int[]{WIDTH, HEIGHT});
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    yx.setFloat(y * WIDTH + x, getValue(x, y));
+                    xy.setFloat(x * HEIGHT + y, getValue(x, y));
+                }
+            }
+            writeable.write("yx", yx);
+            writeable.write("xy", xy);
+        } finally {
+            writeable.close();
+        }
+
+        netcdfFile = NetcdfFile.open(file.getPath());
+        // chunks which are not aligned with the tiles
+        netcdfFile.findVariable("yx").addAttribute(new Attribute("_ChunkSizes", Arrays.<Number>asList(5, 3)));
+        netcdfFile.findVariable("xy").addAttribute(new Attribute("_ChunkSizes", Arrays.<Number>asList(3, 5)));
+        chunkReader = NetcdfChunkReader.create(netcdfFile);
+        assertNotNull(chunkReader);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (chunkReader != null) {
+            chunkReader.close();
+        }
+        if (netcdfFile != null) {
+            netcdfFile.close();
+        }
+        if (file != null && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    @Test
+    public void testReadChunks() throws Exception {
+        final float[] data = assertChunksReadAsSections("yx", false, 0);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(getValue(x, y), data[y * WIDTH + x], 0.0F);
+            }
+        }
+    }
+
+    @Test
+    public void testReadChunksFlipped() throws Exception {
+        final float[] data = assertChunksReadAsSections("yx", true, 0);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(getValue(x, HEIGHT - 1 - y), data[y * WIDTH + x], 0.0F);
+            }
+        }
+    }
+
+    @Test
+    public void testReadChunksWithXBeforeY() throws Exception {
+        final float[] data = assertChunksReadAsSections("xy", false, 0);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(getValue(x, y), data[y * WIDTH + x], 0.0F);
+            }
+        }
+        assertChunksReadAsSections("xy", true, 0);
+    }
+
+    @Test
+    public void testReadChunksAtLowerResolution() throws Exception {
+        final float[] data = assertChunksReadAsSections("yx", false, 1);
+
+        for (int y = 0; y < HEIGHT / 2; y++) {
+            for (int x = 0; x < WIDTH / 2; x++) {
+                assertEquals(getValue(2 * x, 2 * y), data[y * (WIDTH / 2) + x], 0.0F);
+            }
+        }
+        assertChunksReadAsSections("yx", true, 1);
+        assertChunksReadAsSections("xy", false, 1);
+        assertChunksReadAsSections("xy", true, 1);
+    }
+
+    /**
+     * Asserts that the image reading chunks equals the image reading sections of the variable.
+     *
+     * @return the data of the image reading chunks.
+     */
+    private float[] assertChunksReadAsSections(String variableName, boolean flipY, int level) {
+        final Variable variable = netcdfFile.findVariable(variableName);
+        final ResolutionLevel resolutionLevel = new ResolutionLevel(level, 1 << level);
+        final RenderedImage chunkImage = new NetcdfOpImage(variable, new int[0], flipY, netcdfFile, chunkReader,
+                                                           DataBuffer.TYPE_FLOAT, WIDTH, HEIGHT, TILE_SIZE,
+                                                           resolutionLevel);
+        final RenderedImage sectionImage = new NetcdfOpImage(variable, new int[0], flipY, netcdfFile,
+                                                             DataBuffer.TYPE_FLOAT, WIDTH, HEIGHT, TILE_SIZE,
+                                                             resolutionLevel);
+
+        final float[] expected = getData(sectionImage);
+        final float[] actual = getData(chunkImage);
+        assertEquals((WIDTH >> level) * (HEIGHT >> level), actual.length);
+        assertArrayEquals(expected, actual, 0.0F);
+        return actual;
+    }
+
+    private static float[] getData(RenderedImage image) {
+        final Raster raster = image.getData();
+        return raster.getSamples(0, 0, raster.getWidth(), raster.getHeight(), 0, (float[]) null);
+    }
+
+    private static float getValue(int x, int y) {
+        return 100 * y + x;
+    }
+}
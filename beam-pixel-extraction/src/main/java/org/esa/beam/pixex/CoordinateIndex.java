@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.pixex;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A spatial index of coordinates on a regular latitude/longitude grid.
+ * <p/>
+ * The indexes of the coordinates of all grid cells are kept in a single array, ordered by cell, so the index needs
+ * two {@code int}s per coordinate and one per cell. Queries return the coordinates in their original order.
+ */
+class CoordinateIndex {
+
+    static final double DEFAULT_CELL_SIZE = 1.0;
+
+    private final List<Coordinate> coordinates;
+    private final double cellSize;
+    private final int numCols;
+    private final int numRows;
+    private final int[] cellStarts;
+    private final int[] cellEntries;
+    private final long[] times;
+
+    CoordinateIndex(List<Coordinate> coordinates) {
+        this(coordinates, DEFAULT_CELL_SIZE);
+    }
+
+    CoordinateIndex(List<Coordinate> coordinates, double cellSize) {
+        this.coordinates = coordinates;
+        this.cellSize = cellSize;
+        numCols = (int) Math.ceil(360.0 / cellSize);
+        numRows = (int) Math.ceil(180.0 / cellSize);
+
+        final int numCoordinates = coordinates.size();
+        final int[] cells = new int[numCoordinates];
+        times = new long[numCoordinates];
+        cellStarts = new int[numCols * numRows + 1];
+        for (int i = 0; i < numCoordinates; i++) {
+            final Coordinate coordinate = coordinates.get(i);
+            cells[i] = getCell(coordinate.getLon(), coordinate.getLat());
+            cellStarts[cells[i] + 1]++;
+            final Date dateTime = coordinate.getDateTime();
+            times[i] = dateTime != null ? dateTime.getTime() : Long.MIN_VALUE;
+        }
+        for (int cell = 0; cell < numCols * numRows; cell++) {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+        cellEntries = new int[numCoordinates];
+        final int[] cellSizes = new int[numCols * numRows];
+        for (int i = 0; i < numCoordinates; i++) {
+            cellEntries[cellStarts[cells[i]] + cellSizes[cells[i]]++] = i;
+        }
+    }
+
+    /**
+     * Finds the coordinates which may lie within the given regions and time span.
+     * <p/>
+     * Coordinates in cells intersecting a region are returned, so the result may contain coordinates near,
+     * but outside, the regions. Coordinates without a date are never excluded by the time span.
+     *
+     * @param regions   The regions in geographical coordinates, x being the longitude in the range [-180..180].
+     * @param startTime The start of the time span, or {@code null} if the time span is open at the start.
+     * @param endTime   The end of the time span, or {@code null} if the time span is open at the end.
+     *
+     * @return the coordinates, in the order of the list the index has been created for.
+     */
+    List<Coordinate> findCoordinates(Rectangle2D[] regions, Date startTime, Date endTime) {
+        final long minTime = startTime != null ? startTime.getTime() : Long.MIN_VALUE;
+        final long maxTime = endTime != null ? endTime.getTime() : Long.MAX_VALUE;
+        final BitSet found = new BitSet(coordinates.size());
+        for (Rectangle2D region : regions) {
+            final int minCol = getCol(region.getMinX());
+            final int maxCol = getCol(region.getMaxX());
+            final int minRow = getRow(region.getMinY());
+            final int maxRow = getRow(region.getMaxY());
+            for (int row = minRow; row <= maxRow; row++) {
+                for (int col = minCol; col <= maxCol; col++) {
+                    final int cell = row * numCols + col;
+                    for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+                        final int index = cellEntries[i];
+                        final long time = times[index];
+                        if (time == Long.MIN_VALUE || time >= minTime && time <= maxTime) {
+                            found.set(index);
+                        }
+                    }
+                }
+            }
+        }
+        final List<Coordinate> result = new ArrayList<>(found.cardinality());
+        for (int index = found.nextSetBit(0); index >= 0; index = found.nextSetBit(index + 1)) {
+            result.add(coordinates.get(index));
+        }
+        return result;
+    }
+
+    private int getCell(double lon, double lat) {
+        if (lon < -180.0 || lon >= 180.0) {
+            lon = ((lon + 180.0) % 360.0 + 360.0) % 360.0 - 180.0;
+        }
+        return getRow(lat) * numCols + getCol(lon);
+    }
+
+    private int getCol(double lon) {
+        final int col = (int) Math.floor((lon + 180.0) / cellSize);
+        return Math.max(0, Math.min(numCols - 1, col));
+    }
+
+    private int getRow(double lat) {
+        final int row = (int) Math.floor((lat + 90.0) / cellSize);
+        return Math.max(0, Math.min(numRows - 1, row));
+    }
+}
@@ -74,7 +74,9 @@ import org.opengis.feature.type.AttributeDescriptor;
 import javax.media.jai.PlanarImage;
 import javax.media.jai.operator.ConstantDescriptor;
 import java.awt.Rectangle;
+import java.awt.geom.GeneralPath;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.io.File;
@@ -87,9 +89,16 @@ import java.util.Calendar;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipOutputStream;
@@ -124,6 +133,13 @@ public class PixExOp extends Operator {
     public static final String MAX_AGGREGATION = "max";
     public static final String MEDIAN_AGGREGATION = "median";
 
+    /**
+     * The number of products searched for coordinates in parallel. Defaults to the number of processors.
+     */
+    static final String PROPERTY_KEY_PARALLELISM = "beam.pixex.parallelism";
+    private static final double SEARCH_MARGIN = 1.0;
+    private static final double POLAR_LATITUDE = 80.0;
+
     @SourceProducts(description = "The source products from which pixels shall be extracted.")
     private Product[] sourceProducts;
 
@@ -230,6 +246,7 @@ public class PixExOp extends Operator {
 
     private ProductValidator validator;
     private List<Coordinate> coordinateList;
+    private CoordinateIndex coordinateIndex;
     private boolean isTargetProductInitialized;
     private int timeDelta;
     private int calendarField = -1;
@@ -290,6 +307,7 @@ public class PixExOp extends Operator {
 
         Set<File> sourceProductFileSet = getSourceProductFileSet(this.sourceProductPaths, getLogger());
         coordinateList = initCoordinateList();
+        coordinateIndex = new CoordinateIndex(coordinateList);
         Measurement[] originalMeasurements = createOriginalMeasurements(coordinateList);
         parseTimeDelta(timeDifference);
         final PixExRasterNamesFactory rasterNamesFactory = new PixExRasterNamesFactory(exportBands, exportTiePoints,
@@ -314,9 +332,7 @@ public class PixExOp extends Operator {
             boolean measurementsFound = false;
             if (sourceProducts != null) {
                 Arrays.sort(sourceProducts, new ProductComparator());
-                for (Product product : sourceProducts) {
-                    measurementsFound |= extractMeasurements(product);
-                }
+                measurementsFound |= extractMeasurements(sourceProducts);
             }
             if (!sourceProductFileSet.isEmpty()) {
                 measurementsFound |= extractMeasurements(sourceProductFileSet);
@@ -476,16 +492,15 @@ public class PixExOp extends Operator {
         return measurements;
     }
 
-    private boolean extractMeasurement(Product product, Coordinate coordinate,
-                                       int coordinateID, RenderedImage validMaskImage) throws IOException {
+    private Match findMatch(Product product, Coordinate coordinate, RenderedImage validMaskImage) {
         PixelPos centerPos = getPixelPosition(product, coordinate);
         if (!product.containsPixel(centerPos)) {
-            return false;
+            return null;
         }
         if (considerTimeDifference(timeDifference) && coordinate.getDateTime() != null) {
             final ProductData.UTC scanLineTime = ProductUtils.getScanLineTime(product, centerPos.y);
             if (scanLineTime == null || !isPixelInTimeSpan(coordinate, timeDelta, calendarField, scanLineTime)) {
-                return false;
+                return null;
             }
         }
         int offset = MathUtils.floorInt(windowSize / 2);
@@ -496,11 +511,9 @@ public class PixExOp extends Operator {
         final Raster validData = validMaskImage.getData(new Rectangle(upperLeftX, upperLeftY, windowSize, windowSize));
         boolean isAnyPixelValid = isAnyPixelInWindowValid(upperLeftX, upperLeftY, validData);
         if (isAnyPixelValid) {
-            measurementWriter.writeMeasurements(centerX, centerY, coordinateID, coordinate.getName(), product,
-                                                validData);
-            return true;
+            return new Match(coordinate, centerX, centerY, validData);
         }
-        return false;
+        return null;
     }
 
     private PixelPos getPixelPosition(Product product, Coordinate coordinate) {
@@ -648,67 +661,235 @@ public class PixExOp extends Operator {
         return extractedCoordinates;
     }
 
+    private boolean extractMeasurements(Product[] products) {
+        final List<Callable<ProductMatches>> tasks = new ArrayList<>();
+        for (final Product product : products) {
+            tasks.add(new Callable<ProductMatches>() {
+                @Override
+                public ProductMatches call() throws Exception {
+                    return findMatches(product, false);
+                }
+            });
+        }
+        return extractMeasurements(tasks);
+    }
+
     private boolean extractMeasurements(Set<File> fileSet) {
+        final List<Callable<ProductMatches>> tasks = new ArrayList<>();
+        for (final File file : fileSet) {
+            tasks.add(new Callable<ProductMatches>() {
+                @Override
+                public ProductMatches call() throws Exception {
+                    return findMatches(file);
+                }
+            });
+        }
+        return extractMeasurements(tasks);
+    }
+
+    /**
+     * Finds the matching coordinates of several products in parallel, and writes the measurements in the
+     * order of the products. At most a few more products than threads are open at the same time.
+     */
+    private boolean extractMeasurements(List<Callable<ProductMatches>> tasks) {
         boolean measurementsFound = false;
-        for (File file : fileSet) {
-            measurementsFound |= extractMeasurements(file);
+        final int numThreads = Math.min(getParallelism(), tasks.size());
+        if (numThreads <= 1) {
+            for (Callable<ProductMatches> task : tasks) {
+                measurementsFound |= writeMeasurements(getMatches(new FutureTask<>(task), true));
+            }
+            return measurementsFound;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        final LinkedList<Future<ProductMatches>> pendingTasks = new LinkedList<>();
+        try {
+            final Iterator<Callable<ProductMatches>> iterator = tasks.iterator();
+            while (iterator.hasNext() || !pendingTasks.isEmpty()) {
+                while (iterator.hasNext() && pendingTasks.size() <= numThreads) {
+                    pendingTasks.add(executor.submit(iterator.next()));
+                }
+                measurementsFound |= writeMeasurements(getMatches(pendingTasks.removeFirst(), false));
+            }
+        } finally {
+            executor.shutdownNow();
+            for (Future<ProductMatches> pendingTask : pendingTasks) {
+                try {
+                    disposeMatches(pendingTask.get());
+                } catch (Exception ignored) {
+                    // the failure has already been logged or is reported by the caller
+                }
+            }
         }
         return measurementsFound;
     }
 
-    private boolean extractMeasurements(File file) {
+    private static ProductMatches getMatches(Future<ProductMatches> future, boolean run) {
+        try {
+            if (run) {
+                ((FutureTask<ProductMatches>) future).run();
+            }
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OperatorException("Interrupted while extracting pixels.", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof OperatorException) {
+                throw (OperatorException) cause;
+            }
+            throw new OperatorException(cause);
+        }
+    }
+
+    private ProductMatches findMatches(File file) {
+        Product product = null;
         try {
-            final Product product = ProductIO.readProduct(file);
+            product = ProductIO.readProduct(file);
             if (product == null) {
                 getLogger().warning("Unable to read product from file '" + file.getAbsolutePath() + "'.");
-                return false;
+                return null;
             }
-            try {
-                return extractMeasurements(product);
-            } finally {
+            final ProductMatches productMatches = findMatches(product, true);
+            if (productMatches == null) {
                 product.dispose();
             }
+            return productMatches;
         } catch (Exception e) {
-            final Logger logger = getLogger();
-            logger.warning("Unable to extract measurements from product file '" + file.getAbsolutePath() + "'.");
-            logger.log(Level.WARNING, e.getMessage());
-            logger.log(Level.FINER, e.getMessage(), e);
+            if (product != null) {
+                product.dispose();
+            }
+            logExtractionFailure(file, e);
+            return null;
         }
-        return false;
     }
 
-    private boolean extractMeasurements(Product product) {
+    /**
+     * Finds the coordinates within a product. Only the coordinates found in the index of coordinates for
+     * the geographical boundary and the time span of the product are considered.
+     *
+     * @return the matches, or {@code null} if no pixels can be extracted from the product.
+     */
+    private ProductMatches findMatches(Product product, boolean disposeProduct) {
 
         if (!isAbleToExtractPixels(product)) {
-            return false;
+            return null;
         }
 
-        ProductData.UTC[] oldTimeStamps = new ProductData.UTC[2];
-        oldTimeStamps[0] = product.getStartTime();
-        oldTimeStamps[1] = product.getEndTime();
+        final ProductMatches productMatches = new ProductMatches(product, disposeProduct);
         try {
             File file = product.getFileLocation();
             if (extractTimeFromFilename && file != null) {
                 String fileName = file.getName();
-                final ProductData.UTC[] timeStamps = timeStampExtractor.extractTimeStamps(fileName);
+                final ProductData.UTC[] timeStamps;
+                synchronized (timeStampExtractor) {
+                    timeStamps = timeStampExtractor.extractTimeStamps(fileName);
+                }
                 product.setStartTime(timeStamps[0]);
                 product.setEndTime(timeStamps[1]);
             }
         } catch (ValidationException e) {
+            productMatches.restoreTimeStamps();
             throw new OperatorException(e);
         }
 
         final PlanarImage validMaskImage = createValidMaskImage(product);
+        try {
+            for (Coordinate coordinate : findCandidateCoordinates(product)) {
+                final Match match = findMatch(product, coordinate, validMaskImage);
+                if (match != null) {
+                    productMatches.matches.add(match);
+                }
+            }
+        } catch (RuntimeException e) {
+            productMatches.restoreTimeStamps();
+            throw e;
+        } finally {
+            validMaskImage.dispose();
+        }
+        return productMatches;
+    }
+
+    private List<Coordinate> findCandidateCoordinates(Product product) {
+        Date startTime = null;
+        Date endTime = null;
+        final ProductData.UTC productStartTime = product.getStartTime();
+        final ProductData.UTC productEndTime = product.getEndTime();
+        if (considerTimeDifference(timeDifference) && productStartTime != null && productEndTime != null) {
+            // the time of a scan line is interpolated between the start and the end time of the product
+            final Calendar lowerTimeBound = productStartTime.getAsCalendar();
+            final Calendar upperTimeBound = productEndTime.getAsCalendar();
+            if (lowerTimeBound.after(upperTimeBound)) {
+                lowerTimeBound.setTime(productEndTime.getAsDate());
+                upperTimeBound.setTime(productStartTime.getAsDate());
+            }
+            lowerTimeBound.add(calendarField, -timeDelta);
+            upperTimeBound.add(calendarField, timeDelta);
+            startTime = lowerTimeBound.getTime();
+            endTime = upperTimeBound.getTime();
+        }
+        return coordinateIndex.findCoordinates(getSearchRegions(product), startTime, endTime);
+    }
+
+    /**
+     * Returns the regions in which coordinates are searched for a product. These are the bounding boxes
+     * of its geographical boundary, enlarged by a margin, since the boundary is only sampled.
+     */
+    static Rectangle2D[] getSearchRegions(Product product) {
+        final Rectangle2D[] world = {new Rectangle2D.Double(-180.0, -90.0, 360.0, 180.0)};
+        final int width = product.getSceneRasterWidth();
+        final int height = product.getSceneRasterHeight();
+        final GeneralPath[] paths;
+        try {
+            paths = ProductUtils.createGeoBoundaryPaths(product, new Rectangle(0, 0, width, height),
+                                                        Math.max(1, Math.min(width, height) / 32));
+        } catch (RuntimeException e) {
+            return world;
+        }
+        if (paths.length == 0) {
+            return world;
+        }
+        final Rectangle2D[] regions = new Rectangle2D[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            final Rectangle2D bounds = paths[i].getBounds2D();
+            if (Double.isNaN(bounds.getWidth()) || Double.isNaN(bounds.getHeight())) {
+                return world;
+            }
+            double minLon = bounds.getMinX() - SEARCH_MARGIN;
+            double maxLon = bounds.getMaxX() + SEARCH_MARGIN;
+            double minLat = bounds.getMinY() - SEARCH_MARGIN;
+            double maxLat = bounds.getMaxY() + SEARCH_MARGIN;
+            // the boundary of a product covering a pole does not enclose the pole
+            if (maxLat >= POLAR_LATITUDE) {
+                maxLat = 90.0;
+                minLon = -180.0;
+                maxLon = 180.0;
+            }
+            if (minLat <= -POLAR_LATITUDE) {
+                minLat = -90.0;
+                minLon = -180.0;
+                maxLon = 180.0;
+            }
+            regions[i] = new Rectangle2D.Double(minLon, minLat, maxLon - minLon, maxLat - minLat);
+        }
+        return regions;
+    }
+
+    private boolean writeMeasurements(ProductMatches productMatches) {
+        if (productMatches == null) {
+            return false;
+        }
+        final Product product = productMatches.product;
         try {
             List<Coordinate> matchedCoordinates = new ArrayList<>();
 
             boolean coordinatesFound = false;
-            for (Coordinate coordinate : coordinateList) {
+            for (Match match : productMatches.matches) {
+                final Coordinate coordinate = match.coordinate;
                 try {
-                    final boolean measurementExtracted = extractMeasurement(product, coordinate, coordinate.getID(),
-                                                                            validMaskImage);
-                    coordinatesFound |= measurementExtracted;
-                    if (measurementExtracted && (exportSubScenes || exportKmz)) {
+                    measurementWriter.writeMeasurements(match.centerX, match.centerY, coordinate.getID(),
+                                                        coordinate.getName(), product, match.validData);
+                    coordinatesFound = true;
+                    if (exportSubScenes || exportKmz) {
                         matchedCoordinates.add(coordinate);
                     }
                 } catch (IOException e) {
@@ -739,13 +920,37 @@ public class PixExOp extends Operator {
                 }
             }
             return coordinatesFound;
+        } catch (RuntimeException e) {
+            if (!productMatches.disposeProduct) {
+                throw e;
+            }
+            logExtractionFailure(product.getFileLocation(), e);
+            return false;
         } finally {
-            validMaskImage.dispose();
-            product.setStartTime(oldTimeStamps[0]);
-            product.setEndTime(oldTimeStamps[1]);
+            disposeMatches(productMatches);
+        }
+    }
+
+    private static void disposeMatches(ProductMatches productMatches) {
+        if (productMatches != null) {
+            productMatches.restoreTimeStamps();
+            if (productMatches.disposeProduct) {
+                productMatches.product.dispose();
+            }
         }
     }
 
+    private void logExtractionFailure(File file, Exception e) {
+        final Logger logger = getLogger();
+        logger.warning("Unable to extract measurements from product file '" + (file != null ? file.getAbsolutePath() : null) + "'.");
+        logger.log(Level.WARNING, e.getMessage());
+        logger.log(Level.FINER, e.getMessage(), e);
+    }
+
+    static int getParallelism() {
+        return Integer.getInteger(PROPERTY_KEY_PARALLELISM, Runtime.getRuntime().availableProcessors());
+    }
+
     private void exportSubScene(Product product, List<Coordinate> coordinates) throws IOException {
         final ProductSubsetDef subsetDef = new ProductSubsetDef(product.getName() + "_subScene");
 
@@ -779,6 +984,50 @@ public class PixExOp extends Operator {
         setTargetProduct(product);
     }
 
+    /**
+     * A coordinate found within a product, with the validity of the pixels in the window around it.
+     */
+    private static class Match {
+
+        private final Coordinate coordinate;
+        private final int centerX;
+        private final int centerY;
+        private final Raster validData;
+
+        private Match(Coordinate coordinate, int centerX, int centerY, Raster validData) {
+            this.coordinate = coordinate;
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.validData = validData;
+        }
+    }
+
+    /**
+     * The coordinates found within a product. The time stamps of the product may have been replaced by the ones
+     * extracted from the file name; they are restored after the measurements have been written.
+     */
+    private static class ProductMatches {
+
+        private final Product product;
+        private final boolean disposeProduct;
+        private final ProductData.UTC oldStartTime;
+        private final ProductData.UTC oldEndTime;
+        private final List<Match> matches;
+
+        private ProductMatches(Product product, boolean disposeProduct) {
+            this.product = product;
+            this.disposeProduct = disposeProduct;
+            this.oldStartTime = product.getStartTime();
+            this.oldEndTime = product.getEndTime();
+            this.matches = new ArrayList<>();
+        }
+
+        private void restoreTimeStamps() {
+            product.setStartTime(oldStartTime);
+            product.setEndTime(oldEndTime);
+        }
+    }
+
     private static class ProductComparator implements Comparator<Product> {
 
         @Override
@@ -7,17 +7,34 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class MatchupFormatStrategy extends AbstractFormatStrategy {
 
     final Measurement[] originalMeasurements;
-    private HashMap<String, Integer> attributeIndices = new HashMap<String, Integer>();
+    private final HashMap<String, Integer> attributeIndices = new HashMap<String, Integer>();
+    private final List<String> originalAttributeNames;
+    private final Map<Integer, Measurement> originalMeasurementMap = new HashMap<Integer, Measurement>();
+    private final Map<Integer, int[]> originalAttributeIndicesMap = new HashMap<Integer, int[]>();
 
     public MatchupFormatStrategy(Measurement[] originalMeasurements,
                                  RasterNamesFactory rasterNamesFactory, int windowSize,
                                  String expression, boolean exportExpressionResult) {
         super(rasterNamesFactory, expression, windowSize, exportExpressionResult);
         this.originalMeasurements = originalMeasurements;
+        this.originalAttributeNames = createOriginalAttributeNames();
+        for (Measurement originalMeasurement : originalMeasurements) {
+            final int coordinateID = originalMeasurement.getCoordinateID();
+            if (!originalMeasurementMap.containsKey(coordinateID)) {
+                originalMeasurementMap.put(coordinateID, originalMeasurement);
+                final String[] attributeNames = originalMeasurement.getOriginalAttributeNames();
+                final int[] indices = new int[attributeNames.length];
+                for (int j = 0; j < attributeNames.length; j++) {
+                    indices[j] = attributeIndices.get(attributeNames[j]);
+                }
+                originalAttributeIndicesMap.put(coordinateID, indices);
+            }
+        }
     }
 
     @Override
@@ -32,7 +49,6 @@ public class MatchupFormatStrategy extends AbstractFormatStrategy {
     }
 
     private void writeOriginalMeasurementsColumns(PrintWriter writer) {
-        final List<String> originalAttributeNames = getOriginalAttributeNames();
         for (final String attributeName : originalAttributeNames) {
             writer.write(attributeName + "\t");
         }
@@ -40,16 +56,21 @@ public class MatchupFormatStrategy extends AbstractFormatStrategy {
 
     @Override
     public void writeMeasurements(Product product, PrintWriter writer, Measurement[] measurements) {
+        final boolean withExpression = expression != null && exportExpressionResult;
         for (Measurement measurement : measurements) {
-            Measurement matchingMeasurement = findMatchingMeasurement(measurement, originalMeasurements);
-            final boolean withExpression = expression != null && exportExpressionResult;
+            final int coordinateID = measurement.getCoordinateID();
+            final Measurement matchingMeasurement = originalMeasurementMap.get(coordinateID);
+            if (matchingMeasurement == null) {
+                throw new IllegalArgumentException(
+                        "No matching measurement found for measurement '" + measurement.toString() + "'.");
+            }
             if (expression == null || exportExpressionResult || measurement.isValid()) {
-                for (int i = 0; i < getOriginalAttributeNames().size(); i++) {
-                    for (int j = 0; j < matchingMeasurement.getOriginalAttributeNames().length; j++) {
-                        String originalAttributeName = matchingMeasurement.getOriginalAttributeNames()[j];
-                        Integer index = attributeIndices.get(originalAttributeName);
-                        if (index == i) {
-                            writeValue(writer, matchingMeasurement.getValues()[j]);
+                final int[] indices = originalAttributeIndicesMap.get(coordinateID);
+                final Object[] values = matchingMeasurement.getValues();
+                for (int i = 0; i < originalAttributeNames.size(); i++) {
+                    for (int j = 0; j < indices.length; j++) {
+                        if (indices[j] == i) {
+                            writeValue(writer, values[j]);
                         }
                     }
                     writer.write("\t");
@@ -72,10 +93,10 @@ public class MatchupFormatStrategy extends AbstractFormatStrategy {
 
     @Override
     protected int getAttributeCount() {
-        return getOriginalAttributeNames().size() + super.getAttributeCount();
+        return originalAttributeNames.size() + super.getAttributeCount();
     }
 
-    private List<String> getOriginalAttributeNames() {
+    private List<String> createOriginalAttributeNames() {
         List<String> attributeNames = new ArrayList<String>();
         for (Measurement originalMeasurement : originalMeasurements) {
             for (String attributeName : originalMeasurement.getOriginalAttributeNames()) {
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.pixex;
+
+import org.junit.Test;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CoordinateIndexTest {
+
+    @Test
+    public void testFindCoordinatesInRegion() {
+        final List<Coordinate> coordinates = new ArrayList<>();
+        coordinates.add(new Coordinate("c0", 10.5f, 20.5f, null));
+        coordinates.add(new Coordinate("c1", -45.0f, 100.0f, null));
+        coordinates.add(new Coordinate("c2", 11.2f, 21.7f, null));
+        coordinates.add(new Coordinate("c3", 89.9f, 179.9f, null));
+        final CoordinateIndex index = new CoordinateIndex(coordinates);
+
+        List<Coordinate> found = index.findCoordinates(new Rectangle2D[]{new Rectangle2D.Double(20, 10, 2, 2)},
+                                                       null, null);
+        assertEquals(2, found.size());
+        assertSame(coordinates.get(0), found.get(0));
+        assertSame(coordinates.get(2), found.get(1));
+
+        found = index.findCoordinates(new Rectangle2D[]{new Rectangle2D.Double(170, 80, 10, 10)}, null, null);
+        assertEquals(1, found.size());
+        assertSame(coordinates.get(3), found.get(0));
+
+        found = index.findCoordinates(new Rectangle2D[]{new Rectangle2D.Double(-10, -10, 20, 20)}, null, null);
+        assertEquals(0, found.size());
+    }
+
+    @Test
+    public void testFindCoordinatesInSeveralRegionsKeepsOrder() {
+        final List<Coordinate> coordinates = new ArrayList<>();
+        coordinates.add(new Coordinate("c0", 0.5f, 179.5f, null));
+        coordinates.add(new Coordinate("c1", 0.5f, -179.5f, null));
+        coordinates.add(new Coordinate("c2", 0.5f, 0.5f, null));
+        final CoordinateIndex index = new CoordinateIndex(coordinates);
+
+        final Rectangle2D[] regions = {
+                new Rectangle2D.Double(-180, -1, 1, 2),
+                new Rectangle2D.Double(179, -1, 1, 2)
+        };
+        final List<Coordinate> found = index.findCoordinates(regions, null, null);
+        assertEquals(2, found.size());
+        assertSame(coordinates.get(0), found.get(0));
+        assertSame(coordinates.get(1), found.get(1));
+    }
+
+    @Test
+    public void testFindCoordinatesInTimeSpan() {
+        final List<Coordinate> coordinates = new ArrayList<>();
+        coordinates.add(new Coordinate("early", 0.5f, 0.5f, new Date(1000)));
+        coordinates.add(new Coordinate("undated", 0.5f, 0.5f, null));
+        coordinates.add(new Coordinate("inside", 0.5f, 0.5f, new Date(5000)));
+        coordinates.add(new Coordinate("late", 0.5f, 0.5f, new Date(9000)));
+        final CoordinateIndex index = new CoordinateIndex(coordinates);
+
+        final Rectangle2D[] regions = {new Rectangle2D.Double(0, 0, 1, 1)};
+        List<Coordinate> found = index.findCoordinates(regions, new Date(2000), new Date(8000));
+        assertEquals(2, found.size());
+        assertSame(coordinates.get(1), found.get(0));
+        assertSame(coordinates.get(2), found.get(1));
+
+        found = index.findCoordinates(regions, new Date(5000), null);
+        assertEquals(3, found.size());
+    }
+}
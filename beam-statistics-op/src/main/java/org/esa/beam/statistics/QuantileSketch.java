@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.statistics;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable quantile sketch after Karnin, Lang and Liberty (KLL).
+ * <p/>
+ * Values are kept in levels; a value in level {@code h} stands for {@code 2^h} input values. If a level
+ * exceeds its capacity, it is sorted and every other value is promoted to the next level. The capacities
+ * decrease geometrically from the top level downwards, so the memory used is bounded by about
+ * {@code 3 * k} values, independent of the number of values added. As long as no level has been compacted,
+ * the sketch holds all values and its quantiles are exact.
+ * <p/>
+ * Unlike the original algorithm, the offset of the promoted values alternates deterministically, so that
+ * the same input gives the same result. Instances are not thread-safe; partial sketches of different
+ * threads are combined with {@link #merge(QuantileSketch)}.
+ */
+class QuantileSketch {
+
+    static final int DEFAULT_K = 512;
+    private static final int MIN_LEVEL_CAPACITY = 8;
+
+    private final int k;
+    private double[][] levels;
+    private int[] levelSizes;
+    private boolean[] oddOffsets;
+    private long count;
+
+    QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    QuantileSketch(int k) {
+        if (k < MIN_LEVEL_CAPACITY) {
+            throw new IllegalArgumentException("k < " + MIN_LEVEL_CAPACITY);
+        }
+        this.k = k;
+        this.levels = new double[][]{new double[MIN_LEVEL_CAPACITY]};
+        this.levelSizes = new int[1];
+        this.oddOffsets = new boolean[1];
+    }
+
+    void add(double value) {
+        append(0, value);
+        count++;
+        if (levelSizes[0] >= getLevelCapacity(0)) {
+            compress();
+        }
+    }
+
+    /**
+     * Adds the values of another sketch to this sketch. The other sketch is not modified.
+     *
+     * @param other The other sketch.
+     */
+    void merge(QuantileSketch other) {
+        for (int level = 0; level < other.levels.length; level++) {
+            final double[] values = other.levels[level];
+            for (int i = 0; i < other.levelSizes[level]; i++) {
+                append(level, values[i]);
+            }
+        }
+        count += other.count;
+        compress();
+    }
+
+    /**
+     * @return the number of values added.
+     */
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * @return {@code true} if the sketch still holds all values added.
+     */
+    boolean isExact() {
+        return levels.length == 1;
+    }
+
+    /**
+     * Returns the values held by the sketch in ascending order, together with the number of input values
+     * each of them stands for.
+     *
+     * @param weights Receives the weights; must have at least {@link #getRetainedCount()} elements.
+     *
+     * @return the sorted values.
+     */
+    double[] getSortedValues(long[] weights) {
+        final int retainedCount = getRetainedCount();
+        final double[] values = new double[retainedCount];
+        int size = 0;
+        for (int level = 0; level < levels.length; level++) {
+            final int levelSize = levelSizes[level];
+            if (levelSize == 0) {
+                continue;
+            }
+            final double[] levelValues = Arrays.copyOf(levels[level], levelSize);
+            Arrays.sort(levelValues);
+            // merge the sorted level from the back, so that no temporary array is needed for the result
+            int i = size - 1;
+            int j = levelSize - 1;
+            int target = size + levelSize - 1;
+            while (j >= 0) {
+                if (i >= 0 && values[i] > levelValues[j]) {
+                    values[target] = values[i];
+                    weights[target] = weights[i];
+                    i--;
+                } else {
+                    values[target] = levelValues[j];
+                    weights[target] = 1L << level;
+                    j--;
+                }
+                target--;
+            }
+            size += levelSize;
+        }
+        return values;
+    }
+
+    /**
+     * @return the number of values held by the sketch.
+     */
+    int getRetainedCount() {
+        int retainedCount = 0;
+        for (int levelSize : levelSizes) {
+            retainedCount += levelSize;
+        }
+        return retainedCount;
+    }
+
+    /**
+     * Returns the smallest value whose rank is at least the given fraction of all values.
+     *
+     * @param fraction The fraction in the interval [0..1].
+     *
+     * @return the quantile, or {@code NaN} if no values have been added.
+     */
+    double getQuantile(double fraction) {
+        final int retainedCount = getRetainedCount();
+        if (retainedCount == 0) {
+            return Double.NaN;
+        }
+        final long[] weights = new long[retainedCount];
+        final double[] values = getSortedValues(weights);
+        long totalWeight = 0;
+        for (long weight : weights) {
+            totalWeight += weight;
+        }
+        final double rank = fraction * totalWeight;
+        long cumulativeWeight = 0;
+        for (int i = 0; i < values.length; i++) {
+            cumulativeWeight += weights[i];
+            if (cumulativeWeight >= rank) {
+                return values[i];
+            }
+        }
+        return values[values.length - 1];
+    }
+
+    private void append(int level, double value) {
+        if (level >= levels.length) {
+            addLevel();
+        }
+        double[] values = levels[level];
+        if (levelSizes[level] == values.length) {
+            values = Arrays.copyOf(values, 2 * values.length);
+            levels[level] = values;
+        }
+        values[levelSizes[level]++] = value;
+    }
+
+    private void addLevel() {
+        final int levelCount = levels.length + 1;
+        levels = Arrays.copyOf(levels, levelCount);
+        levels[levelCount - 1] = new double[MIN_LEVEL_CAPACITY];
+        levelSizes = Arrays.copyOf(levelSizes, levelCount);
+        oddOffsets = Arrays.copyOf(oddOffsets, levelCount);
+    }
+
+    private void compress() {
+        // compacting a level may push the next one over its capacity, and adding a level reduces all capacities
+        boolean compacted = true;
+        while (compacted) {
+            compacted = false;
+            for (int level = 0; level < levels.length; level++) {
+                if (levelSizes[level] >= getLevelCapacity(level)) {
+                    compact(level);
+                    compacted = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    private void compact(int level) {
+        final double[] values = levels[level];
+        int size = levelSizes[level];
+        Arrays.sort(values, 0, size);
+        // with an odd number of values, the largest one stays on this level
+        final boolean keepLast = size % 2 != 0;
+        final double last = values[size - 1];
+        if (keepLast) {
+            size--;
+        }
+        final int offset = oddOffsets[level] ? 1 : 0;
+        oddOffsets[level] = !oddOffsets[level];
+        levelSizes[level] = 0;
+        for (int i = offset; i < size; i += 2) {
+            append(level + 1, values[i]);
+        }
+        if (keepLast) {
+            levels[level][levelSizes[level]++] = last;
+        }
+    }
+
+    private int getLevelCapacity(int level) {
+        final int depth = levels.length - 1 - level;
+        return Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(2.0 / 3.0, depth)));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.statistics;
+
+import org.esa.beam.framework.datamodel.HistogramStxOp;
+
+import javax.media.jai.Histogram;
+
+/**
+ * Accumulates the statistics of a band within a region in a single pass.
+ * <p/>
+ * Minimum, maximum, mean and variance are exact. The distribution of the values is kept in a
+ * {@link QuantileSketch}, from which the median and the histogram are derived, so neither needs the value
+ * range in advance. Accumulators of different threads or products are combined with
+ * {@link #merge(StatisticAccumulator)}.
+ */
+class StatisticAccumulator {
+
+    private final QuantileSketch sketch;
+    private long sampleCount;
+    private double minimum;
+    private double maximum;
+    private double mean;
+    private double meanSqr;
+
+    StatisticAccumulator() {
+        this.sketch = new QuantileSketch();
+        this.minimum = Double.POSITIVE_INFINITY;
+        this.maximum = Double.NEGATIVE_INFINITY;
+    }
+
+    void accumulate(double value) {
+        sampleCount++;
+        if (value < minimum) {
+            minimum = value;
+        }
+        if (value > maximum) {
+            maximum = value;
+        }
+        final double delta = value - mean;
+        mean += delta / sampleCount;
+        meanSqr += delta * (value - mean);
+        sketch.add(value);
+    }
+
+    void merge(StatisticAccumulator other) {
+        if (other.sampleCount == 0) {
+            return;
+        }
+        final long totalCount = sampleCount + other.sampleCount;
+        final double delta = other.mean - mean;
+        // Chan et al., parallel variance algorithm
+        meanSqr += other.meanSqr + delta * delta * sampleCount * other.sampleCount / totalCount;
+        mean += delta * other.sampleCount / totalCount;
+        sampleCount = totalCount;
+        minimum = Math.min(minimum, other.minimum);
+        maximum = Math.max(maximum, other.maximum);
+        sketch.merge(other.sketch);
+    }
+
+    long getSampleCount() {
+        return sampleCount;
+    }
+
+    double getMinimum() {
+        return sampleCount > 0 ? minimum : Double.NaN;
+    }
+
+    double getMaximum() {
+        return sampleCount > 0 ? maximum : Double.NaN;
+    }
+
+    double getMean() {
+        return sampleCount > 0 ? mean : Double.NaN;
+    }
+
+    double getVariance() {
+        return sampleCount > 1 ? meanSqr / (sampleCount - 1) : sampleCount == 1 ? 0.0 : Double.NaN;
+    }
+
+    double getStandardDeviation() {
+        return sampleCount > 0 ? Math.sqrt(getVariance()) : Double.NaN;
+    }
+
+    /**
+     * @return the median; the mean of the two middle values for an even number of values, as long as the sketch
+     *         is exact.
+     */
+    double getMedian() {
+        if (sampleCount == 0) {
+            return Double.NaN;
+        }
+        if (sketch.isExact()) {
+            final long[] weights = new long[sketch.getRetainedCount()];
+            final double[] values = sketch.getSortedValues(weights);
+            final int half = values.length / 2;
+            return values.length % 2 == 0 ? (values[half] + values[half - 1]) / 2 : values[half];
+        }
+        return sketch.getQuantile(0.5);
+    }
+
+    /**
+     * Creates a histogram ranging from the minimum to the maximum value.
+     *
+     * @param binCount     The number of bins.
+     * @param intHistogram Whether the values are integers.
+     *
+     * @return the histogram.
+     */
+    Histogram createHistogram(int binCount, boolean intHistogram) {
+        final Histogram histogram = new HistogramStxOp(binCount, getMinimum(), getMaximum(), intHistogram,
+                                                       false).getHistogram();
+        final int[] bins = histogram.getBins(0);
+        final double lowValue = histogram.getLowValue(0);
+        final double highValue = histogram.getHighValue(0);
+        final double binWidth = (highValue - lowValue) / bins.length;
+        final long[] weights = new long[sketch.getRetainedCount()];
+        final double[] values = sketch.getSortedValues(weights);
+        // same binning as HistogramStxOp
+        for (int i = 0; i < values.length; i++) {
+            final double value = values[i];
+            if (value >= lowValue && value <= highValue) {
+                int binIndex = (int) ((value - lowValue) / binWidth);
+                if (binIndex == bins.length) {
+                    binIndex--;
+                }
+                bins[binIndex] += (int) weights[i];
+            }
+        }
+        return histogram;
+    }
+}
@@ -1,15 +1,10 @@
 package org.esa.beam.statistics;
 
 import com.bc.ceres.core.ProgressMonitor;
-import com.bc.ceres.core.SubProgressMonitor;
-import com.bc.ceres.glevel.MultiLevelImage;
 import org.esa.beam.framework.datamodel.Band;
-import org.esa.beam.framework.datamodel.HistogramStxOp;
 import org.esa.beam.framework.datamodel.Mask;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
-import org.esa.beam.framework.datamodel.StxFactory;
-import org.esa.beam.framework.datamodel.SummaryStxOp;
 import org.esa.beam.framework.datamodel.VectorDataNode;
 import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.jai.ImageManager;
@@ -25,15 +20,26 @@ import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 import javax.media.jai.Histogram;
+import javax.media.jai.PlanarImage;
+import java.awt.Rectangle;
 import java.awt.Shape;
+import java.awt.geom.Area;
 import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 public class StatisticComputer {
@@ -42,7 +48,8 @@ public class StatisticComputer {
     private final FeatureUtils.FeatureCrsProvider crsProvider;
     private final ProgressMonitor pm;
     private final BandConfiguration[] bandConfigurations;
-    private final Map<BandConfiguration, StxOpMapping> stxOpMappings;
+    private final Map<BandConfiguration, AccumulatorMapping> accumulatorMappings;
+    private final int numThreads;
     private final int initialBinCount;
     private final Logger logger;
     private boolean calculateMedian = false;
@@ -70,8 +77,9 @@ public class StatisticComputer {
         };
         pm = ProgressMonitor.NULL;
         this.bandConfigurations = bandConfigurations;
-        stxOpMappings = new HashMap<BandConfiguration, StxOpMapping>();
+        accumulatorMappings = new HashMap<BandConfiguration, AccumulatorMapping>();
         this.calculateMedian = calculateMedian;
+        numThreads = Runtime.getRuntime().availableProcessors();
     }
 
     public void computeStatistic(final Product product) {
@@ -84,7 +92,9 @@ public class StatisticComputer {
                 product.getVectorDataGroup().add(vectorDataNode);
             }
         }
-        for (BandConfiguration bandConfiguration : bandConfigurations) {
+        final Band[] bands = new Band[bandConfigurations.length];
+        for (int i = 0; i < bandConfigurations.length; i++) {
+            final BandConfiguration bandConfiguration = bandConfigurations[i];
             final Band band = getBand(bandConfiguration, product);
             final String newExpression = bandConfiguration.validPixelExpression;
             if (newExpression != null) {
@@ -95,37 +105,48 @@ public class StatisticComputer {
                 }
                 band.setValidPixelExpression(newExpression);
             }
-            final StxOpMapping stxOpsMapping = getStxOpsMapping(bandConfiguration);
-            if (features != null) {
-                for (VectorDataNode vectorDataNode : vectorDataNodes) {
-                    final String vdnName = vectorDataNode.getName();
-                    Mask currentMask = product.getMaskGroup().get(vdnName);
-                    final Shape roiShape = currentMask.getValidShape();
-                    final MultiLevelImage roiImage = currentMask.getSourceImage();
-                    computeStatistic(vdnName, stxOpsMapping, band, roiShape, roiImage);
-                }
-            } else {
-                computeStatistic("world", stxOpsMapping, band, null, null);
+            bands[i] = band;
+        }
+
+        final String[] regionNames;
+        final Shape[] roiShapes;
+        final RenderedImage[] roiImages;
+        if (features != null) {
+            regionNames = new String[vectorDataNodes.length];
+            roiShapes = new Shape[vectorDataNodes.length];
+            roiImages = new RenderedImage[vectorDataNodes.length];
+            for (int i = 0; i < vectorDataNodes.length; i++) {
+                regionNames[i] = vectorDataNodes[i].getName();
+                final Mask currentMask = product.getMaskGroup().get(regionNames[i]);
+                roiShapes[i] = currentMask.getValidShape();
+                roiImages[i] = currentMask.getSourceImage();
             }
+        } else {
+            regionNames = new String[]{"world"};
+            roiShapes = new Shape[1];
+            roiImages = new RenderedImage[1];
+        }
+        if (regionNames.length == 0) {
+            return;
         }
-    }
 
-    private void computeStatistic(String regionName, StxOpMapping stxOpsMapping, Band band, Shape roiShape, MultiLevelImage roiImage) {
-        final SummaryStxOp summaryStxOp = stxOpsMapping.getSummaryOp(regionName, calculateMedian);
-        StxFactory.accumulate(band, 0, roiImage, roiShape, summaryStxOp, SubProgressMonitor.create(pm, 50));
-        final double minimum = summaryStxOp.getMinimum();
-        final double maximum = summaryStxOp.getMaximum();
-        final HistogramStxOp histogramStxOp = stxOpsMapping.getHistogramOp(regionName, minimum, maximum, band);
-        StxFactory.accumulate(band, 0, roiImage, roiShape, histogramStxOp, SubProgressMonitor.create(pm, 50));
+        final StatisticAccumulator[][] accumulators = new StatisticPass(bands, roiShapes, roiImages).run(numThreads);
+        for (int bandIndex = 0; bandIndex < bands.length; bandIndex++) {
+            final AccumulatorMapping accumulatorMapping = getAccumulatorMapping(bandConfigurations[bandIndex]);
+            accumulatorMapping.intHistogram = bands[bandIndex].getGeophysicalImage().getSampleModel().getDataType() < DataBuffer.TYPE_FLOAT;
+            for (int regionIndex = 0; regionIndex < regionNames.length; regionIndex++) {
+                accumulatorMapping.getAccumulator(regionNames[regionIndex]).merge(accumulators[bandIndex][regionIndex]);
+            }
+        }
     }
 
-    private StxOpMapping getStxOpsMapping(BandConfiguration bandConfiguration) {
-        StxOpMapping stxOpMapping = stxOpMappings.get(bandConfiguration);
-        if (stxOpMapping == null) {
-            stxOpMapping = new StxOpMapping(initialBinCount);
-            stxOpMappings.put(bandConfiguration, stxOpMapping);
+    private AccumulatorMapping getAccumulatorMapping(BandConfiguration bandConfiguration) {
+        AccumulatorMapping accumulatorMapping = accumulatorMappings.get(bandConfiguration);
+        if (accumulatorMapping == null) {
+            accumulatorMapping = new AccumulatorMapping(initialBinCount, calculateMedian);
+            accumulatorMappings.put(bandConfiguration, accumulatorMapping);
         }
-        return stxOpMapping;
+        return accumulatorMapping;
     }
 
 
@@ -160,48 +181,199 @@ public class StatisticComputer {
         return band;
     }
 
-    public Map<BandConfiguration, StxOpMapping> getResults() {
-        return stxOpMappings;
+    public Map<BandConfiguration, AccumulatorMapping> getResults() {
+        return accumulatorMappings;
     }
 
-    static class StxOpMapping {
+    static class AccumulatorMapping {
 
-        final Map<String, SummaryStxOp> summaryMap;
-        final Map<String, HistogramStxOp> histogramMap;
-        private final int initialBinCount;
+        final Map<String, StatisticAccumulator> accumulatorMap;
+        private final int binCount;
+        private final boolean calculateMedian;
+        private boolean intHistogram;
+
+        AccumulatorMapping(int binCount, boolean calculateMedian) {
+            this.accumulatorMap = new HashMap<String, StatisticAccumulator>();
+            this.binCount = binCount;
+            this.calculateMedian = calculateMedian;
+        }
 
-        StxOpMapping(int initialBinCount) {
-            this.summaryMap = new HashMap<String, SummaryStxOp>();
-            this.histogramMap = new HashMap<String, HistogramStxOp>();
-            this.initialBinCount = initialBinCount;
+        Histogram createHistogram(String regionName) {
+            return accumulatorMap.get(regionName).createHistogram(binCount, intHistogram);
         }
 
-        private SummaryStxOp getSummaryOp(String vdnName, boolean calculateMedian) {
-            SummaryStxOp summaryStxOp = summaryMap.get(vdnName);
-            if (summaryStxOp == null) {
-                summaryStxOp = new SummaryStxOp(calculateMedian);
-                summaryMap.put(vdnName, summaryStxOp);
+        double getMedian(String regionName) {
+            return calculateMedian ? accumulatorMap.get(regionName).getMedian() : Double.NaN;
+        }
+
+        private StatisticAccumulator getAccumulator(String regionName) {
+            StatisticAccumulator accumulator = accumulatorMap.get(regionName);
+            if (accumulator == null) {
+                accumulator = new StatisticAccumulator();
+                accumulatorMap.put(regionName, accumulator);
             }
-            return summaryStxOp;
-        }
-
-        private HistogramStxOp getHistogramOp(String vdnName, double minimum, double maximum, Band band) {
-            HistogramStxOp histogramStxOp = histogramMap.get(vdnName);
-            boolean intHistogram;
-            intHistogram = band.getGeophysicalImage().getSampleModel().getDataType() < DataBuffer.TYPE_FLOAT;
-            if (histogramStxOp == null) {
-                histogramStxOp = new HistogramStxOp(initialBinCount, minimum, maximum, intHistogram, false);
-                histogramMap.put(vdnName, histogramStxOp);
-            } else {
-                final Histogram oldHistogram = histogramStxOp.getHistogram();
-                final double oldMin = oldHistogram.getLowValue()[0];
-                final double oldMax = oldHistogram.getHighValue()[0];
-                if (minimum < oldMin || maximum > oldMax) {
-                    histogramStxOp = HistogramExpanderTransmitter.createExpandedHistogramOp(oldHistogram, minimum, maximum, intHistogram, this.initialBinCount);
-                    histogramMap.put(vdnName, histogramStxOp);
+            return accumulator;
+        }
+    }
+
+    /**
+     * Computes the statistics of all bands within all regions of a product, reading each tile of a band once.
+     * <p/>
+     * The tiles are distributed over the threads in a fixed order, and each thread accumulates into its own
+     * partial results, which are merged at the end in the order of the threads. So the results do not
+     * depend on the timing of the threads.
+     */
+    static class StatisticPass {
+
+        private final Band[] bands;
+        private final RenderedImage[] dataImages;
+        private final RenderedImage[] validMaskImages;
+        private final RenderedImage[] roiImages;
+        private final Shape[][] effectiveShapes;
+        private final PlanarImage referenceImage;
+        private final Rectangle imageBounds;
+
+        StatisticPass(Band[] bands, Shape[] roiShapes, RenderedImage[] roiImages) {
+            this.bands = bands;
+            this.roiImages = roiImages;
+            dataImages = new RenderedImage[bands.length];
+            validMaskImages = new RenderedImage[bands.length];
+            effectiveShapes = new Shape[bands.length][];
+            for (int i = 0; i < bands.length; i++) {
+                dataImages[i] = ImageManager.getInstance().getGeophysicalImage(bands[i], 0);
+                validMaskImages[i] = ImageManager.getInstance().getValidMaskImage(bands[i], 0);
+                effectiveShapes[i] = new Shape[roiShapes.length];
+                for (int j = 0; j < roiShapes.length; j++) {
+                    effectiveShapes[i][j] = getEffectiveShape(bands[i], roiShapes[j]);
                 }
             }
-            return histogramStxOp;
+            referenceImage = (PlanarImage) dataImages[0];
+            imageBounds = referenceImage.getBounds();
+        }
+
+        StatisticAccumulator[][] run(int numThreads) {
+            final int numTiles = referenceImage.getNumXTiles() * referenceImage.getNumYTiles();
+            final int numTasks = Math.max(1, Math.min(numThreads, numTiles));
+            final StatisticAccumulator[][] result = createAccumulators();
+            if (numTasks == 1) {
+                accumulateTiles(0, 1, result);
+                return result;
+            }
+            final ExecutorService executor = Executors.newFixedThreadPool(numTasks);
+            try {
+                final List<Future<StatisticAccumulator[][]>> futures = new ArrayList<Future<StatisticAccumulator[][]>>();
+                for (int i = 0; i < numTasks; i++) {
+                    final int firstTile = i;
+                    futures.add(executor.submit(new Callable<StatisticAccumulator[][]>() {
+                        @Override
+                        public StatisticAccumulator[][] call() throws Exception {
+                            final StatisticAccumulator[][] partialResult = createAccumulators();
+                            accumulateTiles(firstTile, numTasks, partialResult);
+                            return partialResult;
+                        }
+                    }));
+                }
+                for (Future<StatisticAccumulator[][]> future : futures) {
+                    final StatisticAccumulator[][] partialResult = future.get();
+                    for (int i = 0; i < result.length; i++) {
+                        for (int j = 0; j < result[i].length; j++) {
+                            result[i][j].merge(partialResult[i][j]);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new OperatorException("Interrupted while computing statistics.", e);
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new OperatorException(cause);
+            } finally {
+                executor.shutdownNow();
+            }
+            return result;
+        }
+
+        private StatisticAccumulator[][] createAccumulators() {
+            final StatisticAccumulator[][] accumulators = new StatisticAccumulator[bands.length][roiImages.length];
+            for (StatisticAccumulator[] bandAccumulators : accumulators) {
+                for (int j = 0; j < bandAccumulators.length; j++) {
+                    bandAccumulators[j] = new StatisticAccumulator();
+                }
+            }
+            return accumulators;
+        }
+
+        private void accumulateTiles(int firstTile, int tileStep, StatisticAccumulator[][] accumulators) {
+            final int numXTiles = referenceImage.getNumXTiles();
+            final int numTiles = numXTiles * referenceImage.getNumYTiles();
+            final int maxTileSize = referenceImage.getTileWidth() * referenceImage.getTileHeight();
+            final double[][] values = new double[bands.length][maxTileSize];
+            final int[][] validMasks = new int[bands.length][maxTileSize];
+            final int[] roiMask = new int[maxTileSize];
+            final boolean[] bandsRead = new boolean[bands.length];
+            for (int tile = firstTile; tile < numTiles; tile += tileStep) {
+                final int tileX = referenceImage.getMinTileX() + tile % numXTiles;
+                final int tileY = referenceImage.getMinTileY() + tile / numXTiles;
+                final Rectangle rect = referenceImage.getTileRect(tileX, tileY).intersection(imageBounds);
+                if (rect.isEmpty()) {
+                    continue;
+                }
+                final int numPixels = rect.width * rect.height;
+                Arrays.fill(bandsRead, false);
+                for (int regionIndex = 0; regionIndex < roiImages.length; regionIndex++) {
+                    boolean roiMaskRead = false;
+                    for (int bandIndex = 0; bandIndex < bands.length; bandIndex++) {
+                        final Shape shape = effectiveShapes[bandIndex][regionIndex];
+                        if (shape != null && !shape.intersects(rect)) {
+                            continue;
+                        }
+                        if (!bandsRead[bandIndex]) {
+                            getData(dataImages[bandIndex], tileX, tileY, rect).getSamples(rect.x, rect.y, rect.width, rect.height, 0, values[bandIndex]);
+                            if (validMaskImages[bandIndex] != null) {
+                                getData(validMaskImages[bandIndex], tileX, tileY, rect).getSamples(rect.x, rect.y, rect.width, rect.height, 0, validMasks[bandIndex]);
+                            }
+                            bandsRead[bandIndex] = true;
+                        }
+                        if (roiImages[regionIndex] != null && !roiMaskRead) {
+                            getData(roiImages[regionIndex], tileX, tileY, rect).getSamples(rect.x, rect.y, rect.width, rect.height, 0, roiMask);
+                            roiMaskRead = true;
+                        }
+                        final double[] bandValues = values[bandIndex];
+                        final int[] validMask = validMaskImages[bandIndex] != null ? validMasks[bandIndex] : null;
+                        final boolean useRoiMask = roiImages[regionIndex] != null;
+                        final StatisticAccumulator accumulator = accumulators[bandIndex][regionIndex];
+                        for (int i = 0; i < numPixels; i++) {
+                            if ((validMask == null || validMask[i] != 0) && (!useRoiMask || roiMask[i] != 0)) {
+                                accumulator.accumulate(bandValues[i]);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        private Raster getData(RenderedImage image, int tileX, int tileY, Rectangle rect) {
+            // images with the same tiling as the reference image are read tile-wise, without copying
+            if (image.getTileWidth() == referenceImage.getTileWidth()
+                && image.getTileHeight() == referenceImage.getTileHeight()
+                && image.getTileGridXOffset() == referenceImage.getTileGridXOffset()
+                && image.getTileGridYOffset() == referenceImage.getTileGridYOffset()) {
+                return image.getTile(tileX, tileY);
+            }
+            return image.getData(rect);
+        }
+
+        private static Shape getEffectiveShape(Band band, Shape roiShape) {
+            final Shape validShape = band.getValidShape();
+            if (validShape != null && roiShape != null) {
+                final Area area = new Area(validShape);
+                area.intersect(new Area(roiShape));
+                return area;
+            }
+            return validShape != null ? validShape : roiShape;
         }
     }
 }
@@ -19,10 +19,8 @@ package org.esa.beam.statistics;
 import com.bc.ceres.binding.ConversionException;
 import com.bc.ceres.binding.Converter;
 import org.esa.beam.framework.datamodel.Band;
-import org.esa.beam.framework.datamodel.HistogramStxOp;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
-import org.esa.beam.framework.datamodel.SummaryStxOp;
 import org.esa.beam.framework.gpf.Operator;
 import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.framework.gpf.OperatorSpi;
@@ -187,7 +185,7 @@ public class StatisticsOp extends Operator {
             throw new OperatorException("No input products found that matches the criteria.");
         }
 
-        final Map<BandConfiguration, StatisticComputer.StxOpMapping> results = statisticComputer.getResults();
+        final Map<BandConfiguration, StatisticComputer.AccumulatorMapping> results = statisticComputer.getResults();
         final String[] algorithmNames = getAlgorithmNames(percentiles);
 
 
@@ -203,8 +201,8 @@ public class StatisticsOp extends Operator {
 
 
         regionNames.clear();
-        for (StatisticComputer.StxOpMapping stxOpMapping : results.values()) {
-            regionNames.addAll(stxOpMapping.summaryMap.keySet());
+        for (StatisticComputer.AccumulatorMapping accumulatorMapping : results.values()) {
+            regionNames.addAll(accumulatorMapping.accumulatorMap.keySet());
         }
 
         if (regionNames.size() == 0) {
@@ -225,23 +223,21 @@ public class StatisticsOp extends Operator {
             statisticsOutputter.initialiseOutput(statisticsOutputContext);
         }
 
-        for (Map.Entry<BandConfiguration, StatisticComputer.StxOpMapping> bandConfigurationStxOpMappingEntry : results.entrySet()) {
-            final BandConfiguration bandConfiguration = bandConfigurationStxOpMappingEntry.getKey();
+        for (Map.Entry<BandConfiguration, StatisticComputer.AccumulatorMapping> bandConfigurationAccumulatorMappingEntry : results.entrySet()) {
+            final BandConfiguration bandConfiguration = bandConfigurationAccumulatorMappingEntry.getKey();
             final String bandName;
             if (bandConfiguration.sourceBandName != null) {
                 bandName = bandConfiguration.sourceBandName;
             } else {
                 bandName = bandConfiguration.expression.replace(" ", "_");
             }
-            final StatisticComputer.StxOpMapping stxOpMapping = bandConfigurationStxOpMappingEntry.getValue();
-            final Map<String, SummaryStxOp> summaryMap = stxOpMapping.summaryMap;
-            final Map<String, HistogramStxOp> histogramMap = stxOpMapping.histogramMap;
-            for (String regionName : summaryMap.keySet()) {
+            final StatisticComputer.AccumulatorMapping accumulatorMapping = bandConfigurationAccumulatorMappingEntry.getValue();
+            final Map<String, StatisticAccumulator> accumulatorMap = accumulatorMapping.accumulatorMap;
+            for (String regionName : accumulatorMap.keySet()) {
 
-                final SummaryStxOp summaryStxOp = summaryMap.get(regionName);
-                final Histogram histogram = histogramMap.get(regionName).getHistogram();
+                final StatisticAccumulator accumulator = accumulatorMap.get(regionName);
                 final HashMap<String, Number> stxMap = new HashMap<String, Number>();
-                if (histogram.getTotals()[0] == 0) {
+                if (accumulator.getSampleCount() == 0) {
                     stxMap.put(TOTAL, 0);
                     stxMap.put(MINIMUM, FILL_VALUE);
                     stxMap.put(MAXIMUM, FILL_VALUE);
@@ -257,17 +253,18 @@ public class StatisticsOp extends Operator {
                         stxMap.put(getPercentileName(percentile), FILL_VALUE);
                     }
                 } else {
-                    double median = summaryStxOp.getMedian();
-                    double stdDev = summaryStxOp.getStandardDeviation();
-                    double mean = summaryStxOp.getMean();
-
-                    stxMap.put(TOTAL, histogram.getTotals()[0]);
-                    stxMap.put(MINIMUM, summaryStxOp.getMinimum());
-                    stxMap.put(MAXIMUM, summaryStxOp.getMaximum());
-                    stxMap.put(MEAN, summaryStxOp.getMean());
+                    final Histogram histogram = accumulatorMapping.createHistogram(regionName);
+                    double median = accumulatorMapping.getMedian(regionName);
+                    double stdDev = accumulator.getStandardDeviation();
+                    double mean = accumulator.getMean();
+
+                    stxMap.put(TOTAL, accumulator.getSampleCount());
+                    stxMap.put(MINIMUM, accumulator.getMinimum());
+                    stxMap.put(MAXIMUM, accumulator.getMaximum());
+                    stxMap.put(MEAN, accumulator.getMean());
                     stxMap.put(MEDIAN, median);
                     stxMap.put(SIGMA, stdDev);
-                    stxMap.put(VARIANCE, summaryStxOp.getVariance());
+                    stxMap.put(VARIANCE, accumulator.getVariance());
                     stxMap.put(COEF_VARIATION, Util.getCoefficientOfVariation(stdDev, mean));
                     stxMap.put(TOTAL_BINS, histogram.getNumBins()[0]);
                     stxMap.put(BIN_WIDTH, Util.getBinWidth(histogram));
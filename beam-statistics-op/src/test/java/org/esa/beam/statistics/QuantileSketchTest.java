@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.statistics;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QuantileSketchTest {
+
+    @Test
+    public void testExactForFewValues() {
+        final QuantileSketch sketch = new QuantileSketch(64);
+        final double[] input = {0.8, 0.2, 0.5, 0.1, 0.9};
+        for (double value : input) {
+            sketch.add(value);
+        }
+
+        assertTrue(sketch.isExact());
+        assertEquals(5, sketch.getCount());
+        final long[] weights = new long[sketch.getRetainedCount()];
+        assertArrayEquals(new double[]{0.1, 0.2, 0.5, 0.8, 0.9}, sketch.getSortedValues(weights), 0.0);
+        assertArrayEquals(new long[]{1, 1, 1, 1, 1}, weights);
+        assertEquals(0.1, sketch.getQuantile(0.0), 0.0);
+        assertEquals(0.5, sketch.getQuantile(0.5), 0.0);
+        assertEquals(0.9, sketch.getQuantile(1.0), 0.0);
+    }
+
+    @Test
+    public void testBoundedSizeAndRankError() {
+        final QuantileSketch sketch = new QuantileSketch(256);
+        final Random random = new Random(5);
+        final int n = 1000000;
+        for (int i = 0; i < n; i++) {
+            sketch.add(random.nextInt(n));
+        }
+
+        assertFalse(sketch.isExact());
+        assertEquals(n, sketch.getCount());
+        assertTrue(sketch.getRetainedCount() < 3 * 256 + 8 * 32);
+        assertEquals(0.5 * n, sketch.getQuantile(0.5), 0.02 * n);
+        assertEquals(0.9 * n, sketch.getQuantile(0.9), 0.02 * n);
+    }
+
+    @Test
+    public void testMerge() {
+        final QuantileSketch sketch1 = new QuantileSketch(128);
+        final QuantileSketch sketch2 = new QuantileSketch(128);
+        for (int i = 0; i < 50000; i++) {
+            sketch1.add(i);
+            sketch2.add(50000 + i);
+        }
+        sketch1.merge(sketch2);
+
+        assertEquals(100000, sketch1.getCount());
+        assertEquals(50000, sketch1.getQuantile(0.5), 2000);
+        assertEquals(25000, sketch1.getQuantile(0.25), 2000);
+        assertEquals(50000, sketch2.getCount());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.statistics;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Mask;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.datamodel.VirtualBand;
+import org.junit.Test;
+
+import javax.media.jai.Histogram;
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class StatisticPassTest {
+
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 150;
+
+    @Test
+    public void testStripedMultiThreadedPassEqualsSingleThreadedPass() {
+        Product product = new Product("name", "type", WIDTH, HEIGHT);
+        // 7 x 5 tiles, striped over 4 threads
+        product.setPreferredTileSize(32, 32);
+        Band floatBand = new VirtualBand("float_band", ProductData.TYPE_FLOAT32, WIDTH, HEIGHT,
+                                         "sin(X * 0.05) * cos(Y * 0.07) * 100");
+        product.addBand(floatBand);
+        Band intBand = new VirtualBand("int_band", ProductData.TYPE_INT16, WIDTH, HEIGHT, "(X * 7 + Y * 13) % 101");
+        intBand.setValidPixelExpression("X % 5 != 0");
+        product.addBand(intBand);
+        Mask roiMask = Mask.BandMathsType.create("roi", null, WIDTH, HEIGHT, "X < 120 && Y > 30", Color.RED, 0.5);
+        product.getMaskGroup().add(roiMask);
+
+        Band[] bands = {floatBand, intBand};
+        Shape[] roiShapes = {null, roiMask.getValidShape()};
+        RenderedImage[] roiImages = {null, roiMask.getSourceImage()};
+
+        StatisticAccumulator[][] expected = new StatisticComputer.StatisticPass(bands, roiShapes, roiImages).run(1);
+        StatisticAccumulator[][] actual = new StatisticComputer.StatisticPass(bands, roiShapes, roiImages).run(4);
+
+        for (int bandIndex = 0; bandIndex < bands.length; bandIndex++) {
+            for (int regionIndex = 0; regionIndex < roiImages.length; regionIndex++) {
+                String message = bands[bandIndex].getName() + ", region " + regionIndex;
+                StatisticAccumulator expectedAccumulator = expected[bandIndex][regionIndex];
+                StatisticAccumulator actualAccumulator = actual[bandIndex][regionIndex];
+                double[] values = getValues(bands[bandIndex], roiImages[regionIndex]);
+
+                assertEquals(message, values.length, expectedAccumulator.getSampleCount());
+                assertEquals(message, values.length, actualAccumulator.getSampleCount());
+                assertEquals(message, expectedAccumulator.getMinimum(), actualAccumulator.getMinimum(), 0.0);
+                assertEquals(message, expectedAccumulator.getMaximum(), actualAccumulator.getMaximum(), 0.0);
+                assertEquals(message, expectedAccumulator.getMean(), actualAccumulator.getMean(), 1.0e-9);
+                assertEquals(message, expectedAccumulator.getStandardDeviation(),
+                             actualAccumulator.getStandardDeviation(), 1.0e-9);
+
+                // the sketch is compacted for these numbers of pixels, so the percentiles are approximations
+                Histogram histogram = actualAccumulator.createHistogram(1000, false);
+                double binWidth = (histogram.getHighValue(0) - histogram.getLowValue(0)) / 1000;
+                assertPercentile(message, values, 0.5, actualAccumulator.getMedian(), binWidth);
+                for (int percentile : new int[]{10, 50, 90}) {
+                    assertPercentile(message, values, percentile * 0.01,
+                                     histogram.getPTileThreshold(percentile * 0.01)[0], binWidth);
+                }
+            }
+        }
+    }
+
+    /**
+     * Asserts that a percentile is within the rank error of the quantile sketch, 2 percent for this test,
+     * plus the width of a histogram bin.
+     */
+    private static void assertPercentile(String message, double[] sortedValues, double fraction, double actual,
+                                         double binWidth) {
+        int n = sortedValues.length;
+        double lower = sortedValues[Math.max(0, (int) ((fraction - 0.02) * n))] - binWidth;
+        double upper = sortedValues[Math.min(n - 1, (int) ((fraction + 0.02) * n))] + binWidth;
+        assertTrue(message + ": percentile " + fraction + " is " + actual + ", expected within [" + lower + ", " +
+                   upper + "]", actual >= lower && actual <= upper);
+    }
+
+    /**
+     * @return the sorted valid values of the band within the region.
+     */
+    private static double[] getValues(Band band, RenderedImage roiImage) {
+        double[] samples = band.getGeophysicalImage().getData().getSamples(0, 0, WIDTH, HEIGHT, 0,
+                                                                           new double[WIDTH * HEIGHT]);
+        int[] validMask = getMask(band.getValidMaskImage());
+        int[] roiMask = getMask(roiImage);
+        double[] values = new double[samples.length];
+        int numValues = 0;
+        for (int i = 0; i < samples.length; i++) {
+            if ((validMask == null || validMask[i] != 0) && (roiMask == null || roiMask[i] != 0)) {
+                values[numValues++] = samples[i];
+            }
+        }
+        values = Arrays.copyOf(values, numValues);
+        Arrays.sort(values);
+        return values;
+    }
+
+    private static int[] getMask(RenderedImage maskImage) {
+        if (maskImage == null) {
+            return null;
+        }
+        Raster data = maskImage.getData();
+        return data.getSamples(0, 0, WIDTH, HEIGHT, 0, new int[WIDTH * HEIGHT]);
+    }
+}
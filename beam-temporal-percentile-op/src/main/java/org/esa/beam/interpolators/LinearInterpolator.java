@@ -18,12 +18,10 @@
  */
 package org.esa.beam.interpolators;
 
-import java.text.MessageFormat;
-
 /**
  * Implements a linear function for interpolation of real univariate functions.
  */
-public class LinearInterpolator implements Interpolator {
+public class LinearInterpolator extends PiecewisePolynomialInterpolator {
 
     private final int minNumPoints = 2;
 
@@ -33,49 +31,29 @@ public class LinearInterpolator implements Interpolator {
     }
 
     /**
-     * Computes a linear interpolating function for the data set.
+     * Computes a linear interpolating function for the first {@code numPoints} points of the data set.
      *
-     * @param x the arguments for the interpolation points
-     * @param y the values for the interpolation points
-     * @return a function which interpolates the data set
-     * @throws IllegalArgumentException if {@code x} and {@code y} have different sizes.
+     * @param x         the arguments for the interpolation points
+     * @param y         the values for the interpolation points
+     * @param numPoints the number of interpolation points
+     * @param function  receives the function which interpolates the data set
      * @throws IllegalArgumentException if {@code x} is not sorted in strict increasing order.
-     * @throws IllegalArgumentException if the size of {@code x} is smaller than 2.
+     * @throws IllegalArgumentException if {@code numPoints} is smaller than 2.
      */
-    public InterpolatingFunction interpolate(double[] x, double[] y) {
-        if (x.length != y.length) {
-            throw new IllegalArgumentException(MessageFormat.format(
-                                "Dimension mismatch {0} != {1}.", x.length, y.length));
-        }
-        if (x.length < minNumPoints) {
-            throw new IllegalArgumentException(MessageFormat.format(
-                                "{0} points are required, got only {1}.", minNumPoints, x.length));
-        }
+    @Override
+    public void interpolate(double[] x, double[] y, int numPoints, PiecewisePolynomial function) {
+        checkPoints(x, numPoints);
         // Number of intervals.  The number of data points is n + 1.
-        int n = x.length - 1;
+        int n = numPoints - 1;
 
+        function.init(n, 2);
         for (int i = 0; i < n; i++) {
-            if (x[i] >= x[i + 1]) {
-                throw new IllegalArgumentException(MessageFormat.format(
-                        "Points {0} and {1} are not strictly increasing ({2} >= {3}).",
-                        i, i + 1, x[i], x[i + 1]));
-            }
+            // Slope of the lines between the datapoints.
+            final double m = (y[i + 1] - y[i]) / (x[i + 1] - x[i]);
+            function.setKnot(i, x[i]);
+            function.setCoefficient(i, 0, y[i]);
+            function.setCoefficient(i, 1, m);
         }
-
-        // Slope of the lines between the datapoints.
-        final double[] m = new double[n];
-        for (int i = 0; i < n; i++) {
-            m[i] = (y[i + 1] - y[i]) / (x[i + 1] - x[i]);
-        }
-
-        PolynomialFunction[] polynomials = new PolynomialFunction[n];
-        final double[] coefficients = new double[2];
-        for (int i = 0; i < n; i++) {
-            coefficients[0] = y[i];
-            coefficients[1] = m[i];
-            polynomials[i] = new PolynomialFunction(coefficients);
-        }
-
-        return new InterpolatingFunction(x, polynomials);
+        function.setKnot(n, x[n]);
     }
 }
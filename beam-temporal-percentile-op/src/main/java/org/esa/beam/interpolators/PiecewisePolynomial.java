@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.interpolators;
+
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+/**
+ * A mutable piecewise polynomial function, the reusable counterpart of {@link InterpolatingFunction}.
+ * <p/>
+ * A {@link PiecewisePolynomialInterpolator} computes the knots and coefficients into the buffers of an instance,
+ * which only grow. So interpolating many data sets of similar size with the same instance allocates no memory.
+ * Instances are not thread-safe.
+ */
+public class PiecewisePolynomial {
+
+    private double[] knots;
+    private double[] coefficients;
+    private double[] workspace;
+    private int numSegments;
+    private int numCoefficients;
+
+    public PiecewisePolynomial() {
+        knots = new double[0];
+        coefficients = new double[0];
+        workspace = new double[0];
+    }
+
+    /**
+     * @return the number of polynomials.
+     */
+    public int getNumSegments() {
+        return numSegments;
+    }
+
+    /**
+     * Computes the value for the function, the same way {@link InterpolatingFunction#value(double)} does.
+     *
+     * @param forX Point for which the function value should be computed.
+     *
+     * @return the value.
+     *
+     * @throws IllegalArgumentException if {@code forX} is outside of the domain of the function.
+     */
+    public double value(double forX) {
+        checkDomain(forX);
+        int i = Arrays.binarySearch(knots, 0, numSegments + 1, forX);
+        if (i < 0) {
+            i = -i - 2;
+        }
+        if (i >= numSegments) {
+            i--;
+        }
+        return evaluate(i, forX - knots[i]);
+    }
+
+    /**
+     * Computes the values of the function at the integer positions {@code 0, 1, ... values.length - 1}, which
+     * must lie within the domain of the function.
+     *
+     * @param values Receives the values.
+     */
+    public void evaluate(float[] values) {
+        if (values.length == 0) {
+            return;
+        }
+        checkDomain(0);
+        checkDomain(values.length - 1);
+        int segment = 0;
+        for (int x = 0; x < values.length; x++) {
+            // the largest knot less than or equal to x, but the last polynomial for the last knot
+            while (segment < numSegments - 1 && knots[segment + 1] <= x) {
+                segment++;
+            }
+            values[x] = (float) evaluate(segment, x - knots[segment]);
+        }
+    }
+
+    /**
+     * @return a copy of this function as {@link InterpolatingFunction}.
+     */
+    public InterpolatingFunction toInterpolatingFunction() {
+        final PolynomialFunction[] polynomials = new PolynomialFunction[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            final int offset = i * numCoefficients;
+            polynomials[i] = new PolynomialFunction(Arrays.copyOfRange(coefficients, offset, offset + numCoefficients));
+        }
+        return new InterpolatingFunction(Arrays.copyOf(knots, numSegments + 1), polynomials);
+    }
+
+    /**
+     * Prepares the buffers for a function.
+     *
+     * @param numSegments     The number of polynomials.
+     * @param numCoefficients The number of coefficients of each polynomial, the constant term first.
+     */
+    void init(int numSegments, int numCoefficients) {
+        this.numSegments = numSegments;
+        this.numCoefficients = numCoefficients;
+        if (knots.length < numSegments + 1) {
+            knots = new double[numSegments + 1];
+        }
+        if (coefficients.length < numSegments * numCoefficients) {
+            coefficients = new double[numSegments * numCoefficients];
+        }
+    }
+
+    void setKnot(int index, double knot) {
+        knots[index] = knot;
+    }
+
+    void setCoefficient(int segment, int degree, double coefficient) {
+        coefficients[segment * numCoefficients + degree] = coefficient;
+    }
+
+    /**
+     * @param size The minimum size.
+     *
+     * @return a buffer for intermediate results of an interpolator.
+     */
+    double[] getWorkspace(int size) {
+        if (workspace.length < size) {
+            workspace = new double[size];
+        }
+        return workspace;
+    }
+
+    private void checkDomain(double forX) {
+        if (forX < knots[0] || forX > knots[numSegments]) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                    "Value {0} is out of the domain of the spline function ({1}, {2}).", forX, knots[0], knots[numSegments]));
+        }
+    }
+
+    private double evaluate(int segment, double argument) {
+        final int offset = segment * numCoefficients;
+        // trailing zero coefficients are ignored, as in PolynomialFunction
+        int n = numCoefficients;
+        while (n > 1 && coefficients[offset + n - 1] == 0) {
+            n--;
+        }
+        double result = coefficients[offset + n - 1];
+        for (int j = n - 2; j >= 0; j--) {
+            result = argument * result + coefficients[offset + j];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.interpolators;
+
+import java.text.MessageFormat;
+
+/**
+ * Base class of interpolators which compute a piecewise polynomial function into a reusable
+ * {@link PiecewisePolynomial}. Implementations are stateless, so an instance can be shared between threads,
+ * as long as each thread uses its own {@link PiecewisePolynomial}.
+ */
+public abstract class PiecewisePolynomialInterpolator implements Interpolator {
+
+    /**
+     * Computes an interpolating function for the first {@code numPoints} points of the data set.
+     *
+     * @param x         the arguments for the interpolation points
+     * @param y         the values for the interpolation points
+     * @param numPoints the number of interpolation points
+     * @param function  receives the interpolating function
+     *
+     * @throws IllegalArgumentException if fewer than {@link #getMinNumPoints()} points are given.
+     * @throws IllegalArgumentException if {@code x} is not sorted in strict increasing order.
+     */
+    public abstract void interpolate(double[] x, double[] y, int numPoints, PiecewisePolynomial function);
+
+    @Override
+    public InterpolatingFunction interpolate(double[] x, double[] y) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                    "Dimension mismatch {0} != {1}.", x.length, y.length));
+        }
+        final PiecewisePolynomial function = new PiecewisePolynomial();
+        interpolate(x, y, x.length, function);
+        return function.toInterpolatingFunction();
+    }
+
+    protected void checkPoints(double[] x, int numPoints) {
+        final int minNumPoints = getMinNumPoints();
+        if (numPoints < minNumPoints) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                    "{0} points are required, got only {1}.", minNumPoints, numPoints));
+        }
+        for (int i = 0; i < numPoints - 1; i++) {
+            if (x[i] >= x[i + 1]) {
+                throw new IllegalArgumentException(MessageFormat.format(
+                        "Points {0} and {1} are not strictly increasing ({2} >= {3}).",
+                        i, i + 1, x[i], x[i + 1]));
+            }
+        }
+    }
+}
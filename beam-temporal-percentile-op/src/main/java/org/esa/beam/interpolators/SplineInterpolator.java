@@ -19,8 +19,6 @@ package org.esa.beam.interpolators;
  * NOTE: THIS FILE HAS BEEN MODIFIED BY BC TO SUIT PARTICULAR NEEDS.
  */
 
-import java.text.MessageFormat;
-
 /**
  * Computes a natural (also known as "free", "unclamped") cubic spline interpolation for the data set.
  * <p>
@@ -45,7 +43,7 @@ import java.text.MessageFormat;
  * <u>Numerical Analysis</u>, 4th Ed., 1989, PWS-Kent, ISBN 0-53491-585-X, pp 126-131.
  * </p>
  */
-public class SplineInterpolator implements Interpolator {
+public class SplineInterpolator extends PiecewisePolynomialInterpolator {
 
     private final int minNumPoints = 3;
 
@@ -55,79 +53,60 @@ public class SplineInterpolator implements Interpolator {
     }
 
     /**
-     * Computes an interpolating function for the data set.
+     * Computes an interpolating function for the first {@code numPoints} points of the data set.
      *
-     * @param x the arguments for the interpolation points
-     * @param y the values for the interpolation points
-     * @return a function which interpolates the data set
-     * @throws IllegalArgumentException if {@code x} and {@code y} have different sizes.
-     * @throws IllegalArgumentException if the size of {@code x} is smaller than 3.
+     * @param x         the arguments for the interpolation points
+     * @param y         the values for the interpolation points
+     * @param numPoints the number of interpolation points
+     * @param function  receives the function which interpolates the data set
+     * @throws IllegalArgumentException if {@code numPoints} is smaller than 3.
      * @throws IllegalArgumentException if {@code x} is not sorted in strict increasing order.
      */
-    public InterpolatingFunction interpolate(double[] x, double[] y) {
-        if (x.length != y.length) {
-            throw new IllegalArgumentException(MessageFormat.format(
-                    "Dimension mismatch {0} != {1}.", x.length, y.length));
-        }
-
-        if (x.length < minNumPoints) {
-            throw new IllegalArgumentException(MessageFormat.format(
-                    "{0} points are required, got only {1}.", minNumPoints, x.length));
-        }
+    @Override
+    public void interpolate(double[] x, double[] y, int numPoints, PiecewisePolynomial function) {
+        checkPoints(x, numPoints);
 
         // Number of intervals.  The number of data points is n + 1.
-        int n = x.length - 1;
+        int n = numPoints - 1;
 
-        for (int i = 0; i < n; i++) {
-            if (x[i] >= x[i + 1]) {
-                throw new IllegalArgumentException(MessageFormat.format(
-                        "Points {0} and {1} are not strictly increasing ({2} >= {3}).",
-                        i, i + 1, x[i], x[i + 1]));
-            }
-        }
+        // the intermediate arrays h[n], mu[n], z[n + 1] and c[n + 1] share one buffer
+        final double[] workspace = function.getWorkspace(4 * n + 2);
+        final int h = 0;
+        final int mu = n;
+        final int z = 2 * n;
+        final int c = 3 * n + 1;
 
         // Differences between knot points
-        double[] h = new double[n];
         for (int i = 0; i < n; i++) {
-            h[i] = x[i + 1] - x[i];
+            workspace[h + i] = x[i + 1] - x[i];
         }
 
-        double[] mu = new double[n];
-        double[] z = new double[n + 1];
-        mu[0] = 0d;
-        z[0] = 0d;
+        workspace[mu] = 0d;
+        workspace[z] = 0d;
         double g = 0;
         for (int i = 1; i < n; i++) {
-            g = 2d * (x[i + 1] - x[i - 1]) - h[i - 1] * mu[i - 1];
-            mu[i] = h[i] / g;
-            z[i] = (3d * (y[i + 1] * h[i - 1] - y[i] * (x[i + 1] - x[i - 1]) + y[i - 1] * h[i]) /
-                    (h[i - 1] * h[i]) - h[i - 1] * z[i - 1]) / g;
+            g = 2d * (x[i + 1] - x[i - 1]) - workspace[h + i - 1] * workspace[mu + i - 1];
+            workspace[mu + i] = workspace[h + i] / g;
+            workspace[z + i] = (3d * (y[i + 1] * workspace[h + i - 1] - y[i] * (x[i + 1] - x[i - 1]) + y[i - 1] * workspace[h + i]) /
+                                (workspace[h + i - 1] * workspace[h + i]) - workspace[h + i - 1] * workspace[z + i - 1]) / g;
         }
 
         // cubic spline coefficients --  b is linear, c quadratic, d is cubic (original y's are constants)
-        double[] b = new double[n];
-        double[] c = new double[n + 1];
-        double[] d = new double[n];
-
-        z[n] = 0d;
-        c[n] = 0d;
+        function.init(n, 4);
+        workspace[z + n] = 0d;
+        workspace[c + n] = 0d;
 
         for (int j = n - 1; j >= 0; j--) {
-            c[j] = z[j] - mu[j] * c[j + 1];
-            b[j] = (y[j + 1] - y[j]) / h[j] - h[j] * (c[j + 1] + 2d * c[j]) / 3d;
-            d[j] = (c[j + 1] - c[j]) / (3d * h[j]);
+            workspace[c + j] = workspace[z + j] - workspace[mu + j] * workspace[c + j + 1];
+            final double b = (y[j + 1] - y[j]) / workspace[h + j] - workspace[h + j] * (workspace[c + j + 1] + 2d * workspace[c + j]) / 3d;
+            final double d = (workspace[c + j + 1] - workspace[c + j]) / (3d * workspace[h + j]);
+            function.setCoefficient(j, 0, y[j]);
+            function.setCoefficient(j, 1, b);
+            function.setCoefficient(j, 2, workspace[c + j]);
+            function.setCoefficient(j, 3, d);
         }
-
-        PolynomialFunction[] polynomials = new PolynomialFunction[n];
-        double[] coefficients = new double[4];
-        for (int i = 0; i < n; i++) {
-            coefficients[0] = y[i];
-            coefficients[1] = b[i];
-            coefficients[2] = c[i];
-            coefficients[3] = d[i];
-            polynomials[i] = new PolynomialFunction(coefficients);
+        for (int i = 0; i <= n; i++) {
+            function.setKnot(i, x[i]);
         }
-
-        return new InterpolatingFunction(x, polynomials);
     }
 }
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.statistics.percentile.interpolated;
+
+import org.esa.beam.interpolators.Interpolator;
+import org.esa.beam.interpolators.PiecewisePolynomial;
+import org.esa.beam.interpolators.PiecewisePolynomialInterpolator;
+
+/**
+ * Computes the percentile thresholds of pixel time series, optionally after filling the gaps of a series.
+ * <p/>
+ * All buffers are allocated once, so computing the thresholds of a pixel allocates no memory. Instead of sorting
+ * the values, the thresholds are found by quickselect, for all percentiles in ascending order, each one within
+ * the values above the previous one. Instances are not thread-safe.
+ */
+class PercentileKernel {
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private final int[] percentiles;
+    private final int[] percentileOrder;
+    private final Interpolator interpolator;
+    private final float startValueFallback;
+    private final float endValueFallback;
+    private final float[] values;
+    private final double[] x;
+    private final double[] y;
+    private final PiecewisePolynomial function;
+
+    /**
+     * @param percentiles        The percentiles.
+     * @param length             The length of the time series.
+     * @param interpolator       The interpolator used for gap filling, or {@code null} if gaps are not filled.
+     * @param startValueFallback The value of the first day, if it is missing.
+     * @param endValueFallback   The value of the last day, if it is missing.
+     */
+    PercentileKernel(int[] percentiles, int length, Interpolator interpolator,
+                     float startValueFallback, float endValueFallback) {
+        this.percentiles = percentiles.clone();
+        this.interpolator = interpolator;
+        this.startValueFallback = startValueFallback;
+        this.endValueFallback = endValueFallback;
+        values = new float[length];
+        x = new double[length];
+        y = new double[length];
+        function = new PiecewisePolynomial();
+        // the ranks of the thresholds increase with the percentiles
+        percentileOrder = new int[percentiles.length];
+        for (int i = 0; i < percentileOrder.length; i++) {
+            int j = i;
+            while (j > 0 && percentiles[percentileOrder[j - 1]] > percentiles[i]) {
+                percentileOrder[j] = percentileOrder[j - 1];
+                j--;
+            }
+            percentileOrder[j] = i;
+        }
+    }
+
+    /**
+     * Computes the percentile thresholds of a time series.
+     *
+     * @param series     The buffer containing the time series, missing values are {@code NaN}. It is not modified.
+     * @param offset     The offset of the time series in the buffer.
+     * @param thresholds Receives the thresholds, in the order of the percentiles.
+     */
+    void computeThresholds(float[] series, int offset, float[] thresholds) {
+        final int numValues;
+        if (interpolator == null) {
+            numValues = copyValuesNotNaN(series, offset);
+        } else {
+            System.arraycopy(series, offset, values, 0, values.length);
+            fillGaps();
+            numValues = values.length;
+        }
+        int lo = 0;
+        for (final int percentileIndex : percentileOrder) {
+            final int percentile = percentiles[percentileIndex];
+            final int rank = Math.min(numValues - 1, (int) Math.floor(percentile / 100f * numValues));
+            if (rank >= lo) {
+                select(values, lo, numValues - 1, rank);
+                lo = rank + 1;
+            }
+            thresholds[percentileIndex] = values[rank];
+        }
+    }
+
+    private int copyValuesNotNaN(float[] series, int offset) {
+        int numValues = 0;
+        for (int i = 0; i < values.length; i++) {
+            final float value = series[offset + i];
+            if (!Float.isNaN(value)) {
+                values[numValues++] = value;
+            }
+        }
+        return numValues;
+    }
+
+    /**
+     * Does the same as {@link GapFiller#fillGaps}, but without allocating memory if the interpolator supports it.
+     */
+    private void fillGaps() {
+        if (!(interpolator instanceof PiecewisePolynomialInterpolator)) {
+            GapFiller.fillGaps(values, interpolator, startValueFallback, endValueFallback);
+            return;
+        }
+        GapFiller.fillStartAndEndWithFallback(values, startValueFallback, endValueFallback);
+        int numPoints = 0;
+        for (int i = 0; i < values.length; i++) {
+            final float value = values[i];
+            if (!Float.isNaN(value)) {
+                x[numPoints] = i;
+                y[numPoints] = value;
+                numPoints++;
+            }
+        }
+        ((PiecewisePolynomialInterpolator) interpolator).interpolate(x, y, numPoints, function);
+        function.evaluate(values);
+    }
+
+    /**
+     * Partially sorts the values in {@code [lo, hi]}, so that the value at {@code k} is the one a complete sort
+     * would put there, with no greater value before and no smaller value after it.
+     */
+    static void select(float[] values, int lo, int hi, int k) {
+        while (hi - lo > INSERTION_SORT_THRESHOLD) {
+            // median of three as pivot
+            final int mid = (lo + hi) >>> 1;
+            if (values[mid] < values[lo]) {
+                swap(values, lo, mid);
+            }
+            if (values[hi] < values[lo]) {
+                swap(values, lo, hi);
+            }
+            if (values[hi] < values[mid]) {
+                swap(values, mid, hi);
+            }
+            final float pivot = values[mid];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(values, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            final float value = values[i];
+            int j = i - 1;
+            while (j >= lo && values[j] > value) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = value;
+        }
+    }
+
+    private static void swap(float[] values, int i, int j) {
+        final float value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
@@ -126,6 +126,8 @@ public class TemporalPercentileOp extends Operator {
     private static final String UNABLE_TO_READ_TIMESERIES_DATA_PRODUCT = "Unable to read timeseries data product.";
     private final static String BAND_MATH_EXPRESSION_BAND_NAME = "bandMathExpressionBandName";
     private final static String COUNT_BAND_NAME = "values_count";
+    private static final String CUBE_FILE_EXTENSION = ".cube";
+    private static final long CUBE_STRIPE_BUFFER_SIZE = 128L * 1024 * 1024;
 
 
     @SourceProducts(description = "Using this parameter is discouraged. For performance reasons use sourceProductPaths instead")
@@ -236,8 +238,8 @@ public class TemporalPercentileOp extends Operator {
     private int timeSeriesLength;
     private Product timeSeriesDataProduct;
     private HashMap<String, Integer> timeSeriesBandNameToDayIndexMap;
-    private PercentileComputer percentileComputer;
     private Interpolator interpolator;
+    private TimeSeriesCube timeSeriesCube;
 
     @Override
     public void initialize() throws OperatorException {
@@ -281,9 +283,9 @@ public class TemporalPercentileOp extends Operator {
 
         dailyGroupedSourceProducts.clear();
 
-        getLogger().log(Level.INFO, "Input products colocated with target product.");
+        createTimeSeriesCube();
 
-        initPercentileComputer();
+        getLogger().log(Level.INFO, "Input products colocated with target product.");
     }
 
     private void checkMemNeeds(Product targetProduct) {
@@ -330,24 +332,49 @@ public class TemporalPercentileOp extends Operator {
         }
     }
 
-    private void initPercentileComputer() {
-        if (GAP_FILLING_METHOD_NO_GAP_FILLING.equalsIgnoreCase(gapFillingMethod)) {
-            percentileComputer = new PercentileComputer() {
-                @Override
-                public float[] computeThresholds(int[] targetPercentiles, float[] availableValues, int numAvailableValues) {
-                    final float[] onlyValues = getValuesNotNaN(availableValues, numAvailableValues);
-                    return computePercentileThresholds(targetPercentiles, onlyValues);
+    /**
+     * Copies the daily mean bands of the intermediate time series product into a {@link TimeSeriesCube}, whose
+     * chunks are aligned with the target tiles. The day bands are read in stripes of full rows, so each band file
+     * is read sequentially, and every target tile later reads the time series of its pixels from a single chunk.
+     */
+    private void createTimeSeriesCube() {
+        final int width = timeSeriesDataProduct.getSceneRasterWidth();
+        final int height = timeSeriesDataProduct.getSceneRasterHeight();
+        final Dimension tileSize = getTargetProduct().getPreferredTileSize();
+        final File timeSeriesDataProductLocation = getTimeSeriesDataProductLocation().getAbsoluteFile();
+        final String cubeFileName = FileUtils.getFilenameWithoutExtension(timeSeriesDataProductLocation) + CUBE_FILE_EXTENSION;
+        final File cubeFile = new File(timeSeriesDataProductLocation.getParentFile(), cubeFileName);
+        try {
+            timeSeriesCube = new TimeSeriesCube(cubeFile, width, height, timeSeriesLength, tileSize.width, tileSize.height);
+            final long bytesPerRow = (long) width * timeSeriesLength * 4;
+            final int stripeHeight = (int) Math.max(1, Math.min(height, CUBE_STRIPE_BUFFER_SIZE / bytesPerRow));
+            final float[][] stripeData = new float[timeSeriesLength][];
+            for (int y = 0; y < height; y += stripeHeight) {
+                final int h = Math.min(stripeHeight, height - y);
+                for (Map.Entry<String, Integer> entry : timeSeriesBandNameToDayIndexMap.entrySet()) {
+                    final int dayIndex = entry.getValue();
+                    if (stripeData[dayIndex] == null || stripeData[dayIndex].length != width * h) {
+                        stripeData[dayIndex] = new float[width * h];
+                    }
+                    timeSeriesDataProduct.getBand(entry.getKey()).readPixels(0, y, width, h, stripeData[dayIndex]);
                 }
-            };
+                timeSeriesCube.writeRows(y, h, stripeData);
+            }
+        } catch (IOException e) {
+            throw new OperatorException(UNABLE_TO_WRITE_TIMESERIES_DATA_PRODUCT, e);
+        }
+        getLogger().log(Level.INFO, "Time series cube written to '" + cubeFile.getPath() + "'.");
+    }
+
+    private PercentileKernel createPercentileKernel(int[] targetPercentiles) {
+        final Interpolator gapFillingInterpolator;
+        if (GAP_FILLING_METHOD_NO_GAP_FILLING.equalsIgnoreCase(gapFillingMethod)) {
+            gapFillingInterpolator = null;
         } else {
-            percentileComputer = new PercentileComputer() {
-                @Override
-                public float[] computeThresholds(int[] targetPercentiles, float[] availableValues, int numAvailableValues) {
-                    GapFiller.fillGaps(availableValues, interpolator, startValueFallback.floatValue(), endValueFallback.floatValue());
-                    return computePercentileThresholds(targetPercentiles, availableValues);
-                }
-            };
+            gapFillingInterpolator = interpolator;
         }
+        return new PercentileKernel(targetPercentiles, timeSeriesLength, gapFillingInterpolator,
+                                    startValueFallback.floatValue(), endValueFallback.floatValue());
     }
 
     private void computeMeanDataForEachDayAndWriteDataToTimeSeriesProduct() {
@@ -436,46 +463,47 @@ public class TemporalPercentileOp extends Operator {
             }
         }
 
-        final float[][] sourceTiles = new float[timeSeriesLength][0];
-        for (String bandName : timeSeriesBandNameToDayIndexMap.keySet()) {
-            final float[] sourceTile;
+        final int[] targetPercentiles = new int[targetPercentileBands.length];
+        for (int i = 0; i < targetPercentileBands.length; i++) {
+            targetPercentiles[i] = extractPercentileFromBandName(targetPercentileBands[i].getName());
+        }
+        final float[][] percentileThresholdData = new float[targetPercentileTiles.length][r.width * r.height];
+        final int[] countData = new int[r.width * r.height];
+        final float[] emptyThresholds = new float[targetPercentiles.length];
+        Arrays.fill(emptyThresholds, Float.NaN);
+        final float[] percentileThresholds = new float[targetPercentiles.length];
+        final PercentileKernel percentileKernel = createPercentileKernel(targetPercentiles);
+
+        final float[] timeSeries = new float[r.width * timeSeriesLength];
+        final int minNumValues = interpolator.getMinNumPoints();
+        for (int sourceY = 0; sourceY < r.height; sourceY++) {
             try {
-                sourceTile = new float[r.width * r.height];
-                timeSeriesDataProduct.getBand(bandName).readPixels(r.x, r.y, r.width, r.height, sourceTile);
+                timeSeriesCube.readTimeSeries(r.x, r.y + sourceY, r.width, timeSeries);
             } catch (IOException e) {
                 throw new OperatorException("Unable to load source tiles.", e);
             }
-            final int index = timeSeriesBandNameToDayIndexMap.get(bandName);
-            sourceTiles[index] = sourceTile;
-        }
+            for (int sourceX = 0; sourceX < r.width; sourceX++) {
+                final int seriesOffset = sourceX * timeSeriesLength;
+                final int valueCount = countAvailableValues(timeSeries, seriesOffset, timeSeriesLength);
 
-        final float[] interpolationFloats = new float[timeSeriesLength];
-        final int minNumValues = interpolator.getMinNumPoints();
-        for (int targetY = r.y, sourceY = 0; targetY < (r.y + r.height); targetY++, sourceY++) {
-            for (int targetX = r.x, sourceX = 0; targetX < (r.x + r.width); targetX++, sourceX++) {
-                clear(interpolationFloats);
-                int idx = sourceY * r.width + sourceX;
-                final int valueCount = fillWithAvailableValues(idx, interpolationFloats, sourceTiles);
-
-                final float[] percentileThresholds;
-                final int[] targetPercentiles = new int[targetPercentileBands.length];
+                final float[] thresholds;
                 if (valueCount < minNumValues) {
-                    percentileThresholds = new float[targetPercentiles.length];
-                    Arrays.fill(percentileThresholds, Float.NaN);
+                    thresholds = emptyThresholds;
                 } else {
-                    for (int i = 0; i < targetPercentileBands.length; i++) {
-                        targetPercentiles[i] = extractPercentileFromBandName(targetPercentileBands[i].getName());
-                    }
-                    percentileThresholds = percentileComputer.computeThresholds(targetPercentiles, interpolationFloats, valueCount);
+                    percentileKernel.computeThresholds(timeSeries, seriesOffset, percentileThresholds);
+                    thresholds = percentileThresholds;
                 }
-                for (int i = 0; i < targetPercentileTiles.length; i++) {
-                    Tile percentileTile = targetPercentileTiles[i];
-                    percentileTile.setSample(targetX, targetY, percentileThresholds[i]);
+                final int idx = sourceY * r.width + sourceX;
+                for (int i = 0; i < percentileThresholdData.length; i++) {
+                    percentileThresholdData[i][idx] = thresholds[i];
                 }
-                targetCountTile.setSample(targetX, targetY, valueCount);
+                countData[idx] = valueCount;
             }
         }
-        gc();
+        for (int i = 0; i < targetPercentileTiles.length; i++) {
+            targetPercentileTiles[i].setSamples(percentileThresholdData[i]);
+        }
+        targetCountTile.setSamples(countData);
     }
 
     private void dispose(List<Product> products) {
@@ -578,6 +606,18 @@ public class TemporalPercentileOp extends Operator {
 
         final File timeSeriesDataProductLocation = getTimeSeriesDataProductLocation();
         timeSeriesDataProduct.dispose();
+        if (timeSeriesCube != null) {
+            try {
+                timeSeriesCube.close();
+            } catch (IOException e) {
+                getLogger().log(Level.WARNING, "Unable to close time series cube.", e);
+            }
+            final File cubeFile = timeSeriesCube.getFile();
+            if (!cubeFile.delete()) {
+                cubeFile.deleteOnExit();
+            }
+            timeSeriesCube = null;
+        }
         if (!keepIntermediateTimeSeriesProduct) {
             final String filenameWithoutExtension = FileUtils.getFilenameWithoutExtension(timeSeriesDataProductLocation);
             final File parentFile = timeSeriesDataProductLocation.getParentFile();
@@ -591,19 +631,10 @@ public class TemporalPercentileOp extends Operator {
         dailyGroupedSourceProducts = null;
     }
 
-    private void clear(float[] interpolationFloats) {
-        Arrays.fill(interpolationFloats, Float.NaN);
-    }
-
-    private int fillWithAvailableValues(int idx, float[] interpolationFloats, float[][] sourceTiles) {
+    private static int countAvailableValues(float[] timeSeries, int offset, int length) {
         int count = 0;
-        for (int i = 0; i < interpolationFloats.length; i++) {
-            float[] floats = sourceTiles[i];
-            if (floats.length == 0) {
-                continue;
-            }
-            interpolationFloats[i] = floats[idx];
-            if (!Float.isNaN(interpolationFloats[i])) {
+        for (int i = offset; i < offset + length; i++) {
+            if (!Float.isNaN(timeSeries[i])) {
                 count++;
             }
         }
@@ -851,32 +882,4 @@ public class TemporalPercentileOp extends Operator {
             super(TemporalPercentileOp.class);
         }
     }
-
-    private static abstract class PercentileComputer {
-
-        abstract float[] computeThresholds(int[] targetPercentiles, float[] availableValues, int numAvailableValues);
-
-        protected float[] computePercentileThresholds(int[] targetPercentiles, float[] availableValues) {
-            Arrays.sort(availableValues);
-            final float[] thresholds = new float[targetPercentiles.length];
-            for (int i = 0; i < targetPercentiles.length; i++) {
-                int percentile = targetPercentiles[i];
-                int percentileIndex = (int) Math.floor(percentile / 100f * availableValues.length);
-                thresholds[i] = availableValues[percentileIndex];
-            }
-            return thresholds;
-        }
-
-        protected float[] getValuesNotNaN(float[] availableValues, int numAvailableValues) {
-            final float[] onlyValues = new float[numAvailableValues];
-            int i = 0;
-            for (float availableValue : availableValues) {
-                if (!Float.isNaN(availableValue)) {
-                    onlyValues[i] = availableValue;
-                    i++;
-                }
-            }
-            return onlyValues;
-        }
-    }
 }
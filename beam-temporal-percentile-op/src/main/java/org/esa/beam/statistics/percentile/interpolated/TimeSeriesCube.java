@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.statistics.percentile.interpolated;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file holding the time series of all pixels of a scene, so that the whole time series of a pixel can be read
+ * at once.
+ * <p/>
+ * The scene is divided into chunks. Within a chunk, the pixels are stored row by row and the values of a pixel
+ * are stored day after day, so the time series of all pixels of a chunk are contiguous in the file. Chunks are
+ * written row-wise through a file channel and read through memory-mapped buffers, one per chunk.
+ */
+class TimeSeriesCube implements Closeable {
+
+    private static final int BYTES_PER_VALUE = 4;
+
+    private final File file;
+    private final int width;
+    private final int height;
+    private final int length;
+    private final int chunkWidth;
+    private final int chunkHeight;
+    private final int numChunksX;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final FloatBuffer[] chunkBuffers;
+
+    /**
+     * Creates a new cube file, replacing an existing file.
+     *
+     * @param file        The file.
+     * @param width       The width of the scene.
+     * @param height      The height of the scene.
+     * @param length      The number of values of a time series.
+     * @param chunkWidth  The preferred width of a chunk, usually the tile width.
+     * @param chunkHeight The preferred height of a chunk, usually the tile height.
+     *
+     * @throws IOException if the file cannot be created.
+     */
+    TimeSeriesCube(File file, int width, int height, int length, int chunkWidth, int chunkHeight) throws IOException {
+        this.file = file;
+        this.width = width;
+        this.height = height;
+        this.length = length;
+        chunkWidth = Math.min(chunkWidth, width);
+        chunkHeight = Math.min(chunkHeight, height);
+        // a chunk must fit into a single mapped buffer
+        while ((long) chunkWidth * chunkHeight * length * BYTES_PER_VALUE > Integer.MAX_VALUE) {
+            if (chunkHeight > 1) {
+                chunkHeight = (chunkHeight + 1) / 2;
+            } else {
+                chunkWidth = (chunkWidth + 1) / 2;
+            }
+        }
+        this.chunkWidth = chunkWidth;
+        this.chunkHeight = chunkHeight;
+        numChunksX = (width + chunkWidth - 1) / chunkWidth;
+        final int numChunksY = (height + chunkHeight - 1) / chunkHeight;
+        chunkBuffers = new FloatBuffer[numChunksX * numChunksY];
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to delete file '" + file.getAbsolutePath() + "'.");
+        }
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        raf.setLength((long) width * height * length * BYTES_PER_VALUE);
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Writes the values of all days for a stripe of full rows.
+     *
+     * @param y      The first row of the stripe.
+     * @param h      The number of rows of the stripe.
+     * @param values The values of each day, row by row, {@code width * h} per day. The values of days given as
+     *               {@code null} are {@code NaN}.
+     *
+     * @throws IOException if the values cannot be written.
+     */
+    void writeRows(int y, int h, float[][] values) throws IOException {
+        if (values.length != length) {
+            throw new IllegalArgumentException("values.length != length");
+        }
+        ByteBuffer buffer = null;
+        for (int rowY = y; rowY < y + h; ) {
+            final int chunkY = rowY / chunkHeight;
+            final int chunkRowEnd = Math.min(height, (chunkY + 1) * chunkHeight);
+            final int rows = Math.min(y + h, chunkRowEnd) - rowY;
+            for (int chunkX = 0; chunkX < numChunksX; chunkX++) {
+                final int x0 = chunkX * chunkWidth;
+                final int w = Math.min(chunkWidth, width - x0);
+                // the rows of a chunk are contiguous, so all rows of the stripe within a chunk are written at once
+                final int size = rows * w * length * BYTES_PER_VALUE;
+                if (buffer == null || buffer.capacity() < size) {
+                    buffer = ByteBuffer.allocate(size).order(ByteOrder.nativeOrder());
+                }
+                buffer.clear();
+                final FloatBuffer floatBuffer = buffer.asFloatBuffer();
+                for (int row = rowY; row < rowY + rows; row++) {
+                    final int rowOffset = (row - y) * width;
+                    for (int x = x0; x < x0 + w; x++) {
+                        final int index = rowOffset + x;
+                        for (final float[] dayValues : values) {
+                            floatBuffer.put(dayValues != null ? dayValues[index] : Float.NaN);
+                        }
+                    }
+                }
+                buffer.limit(size);
+                long position = getPixelIndex(x0, rowY) * length * BYTES_PER_VALUE;
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            }
+            rowY += rows;
+        }
+    }
+
+    /**
+     * Reads the time series of the pixels of a row segment.
+     *
+     * @param x      The first pixel of the segment.
+     * @param y      The row of the segment.
+     * @param w      The number of pixels of the segment.
+     * @param series Receives the time series of the pixels one after the other, {@code w * length} values.
+     *
+     * @throws IOException if the values cannot be read.
+     */
+    void readTimeSeries(int x, int y, int w, float[] series) throws IOException {
+        int offset = 0;
+        for (int segmentX = x; segmentX < x + w; ) {
+            final int chunkX = segmentX / chunkWidth;
+            final int chunkY = y / chunkHeight;
+            final int segmentWidth = Math.min(x + w, Math.min(width, (chunkX + 1) * chunkWidth)) - segmentX;
+            final FloatBuffer chunkBuffer = getChunkBuffer(chunkX, chunkY).duplicate();
+            final long chunkStart = getPixelIndex(chunkX * chunkWidth, chunkY * chunkHeight);
+            chunkBuffer.position((int) ((getPixelIndex(segmentX, y) - chunkStart) * length));
+            chunkBuffer.get(series, offset, segmentWidth * length);
+            offset += segmentWidth * length;
+            segmentX += segmentWidth;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (chunkBuffers) {
+            for (int i = 0; i < chunkBuffers.length; i++) {
+                chunkBuffers[i] = null;
+            }
+        }
+        raf.close();
+    }
+
+    /**
+     * Returns the index of a pixel in the order of the file. The pixels of all chunk rows above the pixel
+     * precede it, followed by the pixels of the chunks left of it in the same chunk row and the pixels of
+     * its own chunk.
+     */
+    private long getPixelIndex(int x, int y) {
+        final int chunkX = x / chunkWidth;
+        final int chunkY = y / chunkHeight;
+        final int chunkX0 = chunkX * chunkWidth;
+        final int chunkY0 = chunkY * chunkHeight;
+        final int w = Math.min(chunkWidth, width - chunkX0);
+        final int h = Math.min(chunkHeight, height - chunkY0);
+        return (long) chunkY0 * width + (long) chunkX0 * h + (long) (y - chunkY0) * w + (x - chunkX0);
+    }
+
+    private FloatBuffer getChunkBuffer(int chunkX, int chunkY) throws IOException {
+        final int chunkIndex = chunkY * numChunksX + chunkX;
+        synchronized (chunkBuffers) {
+            FloatBuffer chunkBuffer = chunkBuffers[chunkIndex];
+            if (chunkBuffer == null) {
+                final int x0 = chunkX * chunkWidth;
+                final int y0 = chunkY * chunkHeight;
+                final long w = Math.min(chunkWidth, width - x0);
+                final long h = Math.min(chunkHeight, height - y0);
+                final long position = getPixelIndex(x0, y0) * length * BYTES_PER_VALUE;
+                final long size = w * h * length * BYTES_PER_VALUE;
+                chunkBuffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size)
+                        .order(ByteOrder.nativeOrder()).asFloatBuffer();
+                chunkBuffers[chunkIndex] = chunkBuffer;
+            }
+            return chunkBuffer;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2015 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.statistics.percentile.interpolated;
+
+import org.esa.beam.interpolators.Interpolator;
+import org.esa.beam.interpolators.LinearInterpolator;
+import org.esa.beam.interpolators.QuadraticInterpolator;
+import org.esa.beam.interpolators.SplineInterpolator;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the time needed to compute the percentile thresholds of 365-day time series with
+ * the {@link PercentileKernel} and with gap filling by {@link GapFiller} followed by sorting, as done before.
+ * Not enabled by default, as the class does not end in Test.
+ * <p/>
+ * Invoke by running<br/>
+ * {@code mvn test -Dtest=org.esa.beam.statistics.percentile.interpolated.PercentileKernelPerformance}<br/>
+ * or by running<br/>
+ * {@code mvn test -Dtest=org.esa.beam.statistics.percentile.interpolated.PercentileKernelPerformance -DargLine="-DnumSeries=20000 -DgapFraction=0.6"}<br/>
+ */
+public class PercentileKernelPerformance {
+
+    private static final int LENGTH = 365;
+    private static final int[] PERCENTILES = {10, 50, 90};
+    private static final int NUM_ROUNDS = 5;
+    private static final int NUM_SERIES = Integer.parseInt(System.getProperty("numSeries", "20000"));
+    private static final double GAP_FRACTION = Double.parseDouble(System.getProperty("gapFraction", "0.6"));
+
+    @Test
+    @Ignore
+    public void test() {
+        final int numSeries = NUM_SERIES;
+        final double gapFraction = GAP_FRACTION;
+
+        final Random random = new Random(42);
+        final float[] series = new float[numSeries * LENGTH];
+        for (int i = 0; i < series.length; i++) {
+            series[i] = random.nextDouble() < gapFraction ? Float.NaN : (float) random.nextGaussian();
+        }
+
+        final String[] names = {"no gap filling", "linear", "spline", "quadratic"};
+        final Interpolator[] interpolators = {
+                null, new LinearInterpolator(), new SplineInterpolator(), new QuadraticInterpolator()
+        };
+        for (int i = 0; i < interpolators.length; i++) {
+            System.out.println(names[i] + ":");
+            for (int round = 0; round < NUM_ROUNDS; round++) {
+                final long t1 = System.nanoTime();
+                final double checksum1 = runSortingImplementation(series, numSeries, interpolators[i]);
+                final long t2 = System.nanoTime();
+                final double checksum2 = runKernel(series, numSeries, interpolators[i]);
+                final long t3 = System.nanoTime();
+                System.out.printf("  round %d: sorting %8.1f ns/series, kernel %8.1f ns/series, checksums %s%n",
+                                  round, (t2 - t1) / (double) numSeries, (t3 - t2) / (double) numSeries,
+                                  checksum1 == checksum2 ? "equal" : "DIFFERENT");
+            }
+        }
+    }
+
+    private static double runSortingImplementation(float[] series, int numSeries, Interpolator interpolator) {
+        double checksum = 0;
+        for (int s = 0; s < numSeries; s++) {
+            float[] values = Arrays.copyOfRange(series, s * LENGTH, (s + 1) * LENGTH);
+            if (interpolator != null) {
+                GapFiller.fillGaps(values, interpolator, 0.0f, 0.0f);
+            } else {
+                int numValues = 0;
+                for (float value : values) {
+                    if (!Float.isNaN(value)) {
+                        numValues++;
+                    }
+                }
+                final float[] onlyValues = new float[numValues];
+                int j = 0;
+                for (float value : values) {
+                    if (!Float.isNaN(value)) {
+                        onlyValues[j++] = value;
+                    }
+                }
+                values = onlyValues;
+            }
+            Arrays.sort(values);
+            for (int percentile : PERCENTILES) {
+                checksum += values[(int) Math.floor(percentile / 100f * values.length)];
+            }
+        }
+        return checksum;
+    }
+
+    private static double runKernel(float[] series, int numSeries, Interpolator interpolator) {
+        final PercentileKernel kernel = new PercentileKernel(PERCENTILES, LENGTH, interpolator, 0.0f, 0.0f);
+        final float[] thresholds = new float[PERCENTILES.length];
+        double checksum = 0;
+        for (int s = 0; s < numSeries; s++) {
+            kernel.computeThresholds(series, s * LENGTH, thresholds);
+            for (float threshold : thresholds) {
+                checksum += threshold;
+            }
+        }
+        return checksum;
+    }
+}
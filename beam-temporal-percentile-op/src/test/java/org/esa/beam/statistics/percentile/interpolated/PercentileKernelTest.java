@@ -0,0 +1,93 @@
+package org.esa.beam.statistics.percentile.interpolated;
+
+import org.esa.beam.interpolators.Interpolator;
+import org.esa.beam.interpolators.LinearInterpolator;
+import org.esa.beam.interpolators.QuadraticInterpolator;
+import org.esa.beam.interpolators.SplineInterpolator;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PercentileKernelTest {
+
+    private static final int[] PERCENTILES = {90, 10, 50, 50, 0};
+
+    @Test
+    public void testSelect() {
+        final Random random = new Random(3);
+        for (int n = 1; n < 200; n++) {
+            final float[] values = new float[n];
+            for (int i = 0; i < n; i++) {
+                values[i] = random.nextInt(n / 2 + 1);
+            }
+            final float[] sorted = values.clone();
+            Arrays.sort(sorted);
+            final int k = random.nextInt(n);
+            PercentileKernel.select(values, 0, n - 1, k);
+            assertEquals(sorted[k], values[k], 0.0f);
+            for (int i = 0; i < k; i++) {
+                assertTrue(values[i] <= values[k]);
+            }
+            for (int i = k + 1; i < n; i++) {
+                assertTrue(values[i] >= values[k]);
+            }
+        }
+    }
+
+    @Test
+    public void testThresholdsWithoutGapFilling() {
+        final float xx = Float.NaN;
+        final float[] series = {xx, 7, 1, xx, 3, 9, 5};
+        final PercentileKernel kernel = new PercentileKernel(new int[]{100, 50, 0}, series.length, null, 0, 0);
+        final float[] thresholds = new float[3];
+
+        kernel.computeThresholds(series, 0, thresholds);
+
+        assertArrayEquals(new float[]{9, 5, 1}, thresholds, 0.0f);
+        assertTrue(Float.isNaN(series[0]));
+    }
+
+    @Test
+    public void testThresholdsAsWithSortedGapFilledSeries() {
+        final Random random = new Random(7);
+        final int length = 365;
+        final float[] series = new float[3 * length];
+        for (int i = 0; i < series.length; i++) {
+            series[i] = random.nextFloat() < 0.6f ? Float.NaN : random.nextFloat() * 10;
+        }
+        for (Interpolator interpolator : new Interpolator[]{
+                null, new LinearInterpolator(), new SplineInterpolator(), new QuadraticInterpolator()
+        }) {
+            final PercentileKernel kernel = new PercentileKernel(PERCENTILES, length, interpolator, 1.0f, 2.0f);
+            final float[] thresholds = new float[PERCENTILES.length];
+            for (int offset = 0; offset < series.length; offset += length) {
+                kernel.computeThresholds(series, offset, thresholds);
+                assertArrayEquals(computeExpectedThresholds(series, offset, length, interpolator), thresholds, 0.0f);
+            }
+        }
+    }
+
+    private static float[] computeExpectedThresholds(float[] series, int offset, int length, Interpolator interpolator) {
+        float[] values = Arrays.copyOfRange(series, offset, offset + length);
+        if (interpolator != null) {
+            GapFiller.fillGaps(values, interpolator, 1.0f, 2.0f);
+        } else {
+            int numValues = 0;
+            for (float value : values) {
+                if (!Float.isNaN(value)) {
+                    values[numValues++] = value;
+                }
+            }
+            values = Arrays.copyOf(values, numValues);
+        }
+        Arrays.sort(values);
+        final float[] thresholds = new float[PERCENTILES.length];
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            thresholds[i] = values[(int) Math.floor(PERCENTILES[i] / 100f * values.length)];
+        }
+        return thresholds;
+    }
+}
@@ -0,0 +1,91 @@
+package org.esa.beam.statistics.percentile.interpolated;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class TimeSeriesCubeTest {
+
+    private static final int WIDTH = 7;
+    private static final int HEIGHT = 5;
+    private static final int LENGTH = 4;
+
+    private File cubeFile;
+    private TimeSeriesCube cube;
+
+    @Before
+    public void setUp() throws Exception {
+        cubeFile = File.createTempFile("TimeSeriesCubeTest", ".cube");
+        cube = new TimeSeriesCube(cubeFile, WIDTH, HEIGHT, LENGTH, 3, 2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cube.close();
+        cubeFile.delete();
+    }
+
+    @Test
+    public void testFileSize() {
+        assertEquals(WIDTH * HEIGHT * LENGTH * 4, cubeFile.length());
+    }
+
+    @Test
+    public void testWriteAndReadTimeSeries() throws IOException {
+        // stripes which do not match the chunk rows
+        writeStripe(0, 3);
+        writeStripe(3, 2);
+
+        final float[] series = new float[WIDTH * LENGTH];
+        for (int y = 0; y < HEIGHT; y++) {
+            cube.readTimeSeries(0, y, WIDTH, series);
+            for (int x = 0; x < WIDTH; x++) {
+                for (int day = 0; day < LENGTH; day++) {
+                    assertEquals(getExpectedValue(x, y, day), series[x * LENGTH + day], 0.0f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReadSegmentAcrossChunks() throws IOException {
+        writeStripe(0, HEIGHT);
+
+        final float[] series = new float[3 * LENGTH];
+        cube.readTimeSeries(2, 3, 3, series);
+        for (int i = 0; i < 3; i++) {
+            for (int day = 0; day < LENGTH; day++) {
+                assertEquals(getExpectedValue(2 + i, 3, day), series[i * LENGTH + day], 0.0f);
+            }
+        }
+    }
+
+    private void writeStripe(int y, int h) throws IOException {
+        final float[][] values = new float[LENGTH][];
+        for (int day = 0; day < LENGTH; day++) {
+            if (day == 2) {
+                // a day without a mean band
+                continue;
+            }
+            values[day] = new float[WIDTH * h];
+            for (int row = 0; row < h; row++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    values[day][row * WIDTH + x] = getExpectedValue(x, y + row, day);
+                }
+            }
+        }
+        cube.writeRows(y, h, values);
+    }
+
+    private static float getExpectedValue(int x, int y, int day) {
+        if (day == 2) {
+            return Float.NaN;
+        }
+        return 1000 * day + 10 * y + x;
+    }
+}